@@ -3,29 +3,66 @@ package com.enterprisepasswordsafe.database;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class AbstractAccessControlDAO {
 
     public static final int ACCESS_CONTROL_FIELD_COUNT = 4;
 
-    Permissions getPermissions(PreparedStatement preparedStatement)
+    /**
+     * Build the access summaries for an item from two queries, one returning every actor with flags
+     * showing whether they can read and modify the item, and one returning the roles granted on the
+     * item. Both queries take the item ID as their only parameter.
+     *
+     * @param accessSql Query returning the actor ID, actor name, and Y/N read and modify flags.
+     * @param rolesSql Query returning the actor ID and role for each role granted on the item.
+     * @param itemId The ID of the item.
+     *
+     * @return The summaries ordered by actor name.
+     */
+
+    Set<AccessSummary> getSummaries(final String accessSql, final String rolesSql, final String itemId)
             throws SQLException {
-        Permissions permissions = new Permissions();
-        try(ResultSet rs = preparedStatement.executeQuery()) {
-            while( rs.next() ) {
-                String role = rs.getString(1);
-                if( rs.wasNull() ) {
-                    continue;
+        Map<String, Permissions> permissionsByActor = getPermissionsByActor(rolesSql, itemId);
+        Permissions noPermissions = new Permissions();
+
+        Set<AccessSummary> summaries = new TreeSet<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(accessSql)) {
+            ps.setString(1, itemId);
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String actorId = rs.getString(1);
+                    Permissions permissions = permissionsByActor.getOrDefault(actorId, noPermissions);
+                    summaries.add(new AccessSummary(actorId, rs.getString(2),
+                            "Y".equals(rs.getString(3)), "Y".equals(rs.getString(4)),
+                            permissions.canApproveRARequest, permissions.canViewHistory));
                 }
+            }
+        }
+        return summaries;
+    }
 
-                if( role.equals(AccessRole.APPROVER_ROLE) ) {
-                    permissions.canApproveRARequest = true;
-                } else if (role.equals(AccessRole.HISTORYVIEWER_ROLE)) {
-                    permissions.canViewHistory = true;
+    private Map<String, Permissions> getPermissionsByActor(final String rolesSql, final String itemId)
+            throws SQLException {
+        Map<String, Permissions> permissionsByActor = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(rolesSql)) {
+            ps.setString(1, itemId);
+            try(ResultSet rs = ps.executeQuery()) {
+                while( rs.next() ) {
+                    String actorId = rs.getString(1);
+                    String role = rs.getString(2);
+                    if( role == null ) {
+                        continue;
+                    }
+
+                    permissionsByActor.computeIfAbsent(actorId, id -> new Permissions()).add(role);
                 }
             }
         }
-        return permissions;
+        return permissionsByActor;
     }
 
     static class Permissions {
@@ -36,5 +73,13 @@ public class AbstractAccessControlDAO {
             canApproveRARequest = false;
             canViewHistory = false;
         }
+
+        void add(final String role) {
+            if( role.equals(AccessRole.APPROVER_ROLE) ) {
+                canApproveRARequest = true;
+            } else if (role.equals(AccessRole.HISTORYVIEWER_ROLE)) {
+                canViewHistory = true;
+            }
+        }
     }
 }
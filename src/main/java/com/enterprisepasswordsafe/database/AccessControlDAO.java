@@ -36,6 +36,15 @@ public abstract class AccessControlDAO {
     public abstract AccessControl getReadAccessControl(final User user, final String itemId)
         throws GeneralSecurityException, SQLException, UnsupportedEncodingException;
 
+    /**
+     * Get the access control a user can read an item with, decrypting any group keys needed via a
+     * cache shared with the other lookups made while handling a request.
+     */
+
+    public abstract AccessControl getReadAccessControl(final User user, final String itemId,
+                                                       final KeyMaterialCache keyMaterialCache)
+        throws GeneralSecurityException, SQLException, UnsupportedEncodingException;
+
     public abstract AccessControl getAccessControlEvenIfDisabled(final User user, final String itemId)
         throws GeneralSecurityException, SQLException, UnsupportedEncodingException;
 
@@ -109,6 +109,18 @@ public final class AccessControlDAOGroupPrecedent
         return ac;
     }
 
+    @Override
+	public AccessControl getReadAccessControl(final User theUser, final String itemId,
+                                              final KeyMaterialCache keyMaterialCache)
+        throws GeneralSecurityException, SQLException {
+        AccessControl ac = GroupAccessControlDAO.getInstance().getReadGac(theUser, itemId, keyMaterialCache);
+        if  (ac == null) {
+            ac = UserAccessControlDAO.getInstance().get(theUser, itemId);
+        }
+
+        return ac;
+    }
+
     /**
      * Checks to see if a user has explicit access rights, if they don't
      * check if they have access via a group.
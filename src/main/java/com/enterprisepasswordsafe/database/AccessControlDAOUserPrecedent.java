@@ -104,6 +104,18 @@ public final class AccessControlDAOUserPrecedent
         return ac;
     }
 
+    @Override
+	public AccessControl getReadAccessControl(final User theUser, final String itemId,
+                                              final KeyMaterialCache keyMaterialCache)
+        throws GeneralSecurityException, SQLException {
+        AccessControl ac = UserAccessControlDAO.getInstance().get(theUser, itemId);
+        if  (ac == null) {
+            ac = GroupAccessControlDAO.getInstance().getReadGac(theUser, itemId, keyMaterialCache);
+        }
+
+        return ac;
+    }
+
     /**
      * Checks to see if a user has explicit access rights, if they don't
      * check if they have access via a group.
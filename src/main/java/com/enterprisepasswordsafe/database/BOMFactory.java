@@ -62,6 +62,17 @@ public final class BOMFactory {
 		return databaseAccessManager.getConnection();
 	}
 
+	/**
+	 * Gets the connection for queries which can be served by the read replica.
+	 *
+	 * @see DatabaseAccessManager#getReadConnection()
+	 */
+
+	public static Connection getReadConnection()
+		throws SQLException {
+		return getInstance().getReadConnection();
+	}
+
 	/**
 	 * Gets the database abstraction layer currently in use
 	 */
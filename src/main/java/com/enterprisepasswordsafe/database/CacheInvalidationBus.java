@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.utils.Cache;
+
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Channel used to keep the in-process DAO caches on each node of a cluster consistent.
+ *
+ * Changes are removed from the local cache immediately, and again when the transaction making the
+ * change ends, and sent to the other nodes via a transport, which each node polls for events from
+ * other nodes. Invalidations are idempotent, so events may safely be delivered more than once.
+ */
+
+public final class CacheInvalidationBus {
+
+    /**
+     * Cache names used by the DAOs.
+     */
+
+    public static final String CONFIGURATION = "configuration";
+    public static final String HIERARCHY = "hierarchy";
+    public static final String GROUPS = "groups";
+    public static final String USER_SUMMARIES = "user_summaries";
+
+    /**
+     * The time between polls of the transport.
+     */
+
+    private static final long POLL_INTERVAL = 2000;
+
+    /**
+     * The age after which events are removed.
+     */
+
+    private static final long EVENT_LIFETIME = TimeUnit.HOURS.toMillis(1);
+
+    private static final String LOG_TAG = "CacheInvalidationBus";
+
+    private final Map<String, List<Cache<String, ?>>> caches = new ConcurrentHashMap<>();
+
+    private final CacheInvalidationTransport transport;
+
+    private final String origin;
+
+    /**
+     * The sequence number of the last event seen. This starts at zero so the first poll applies
+     * every event still held, including any published while this node was filling its caches.
+     */
+
+    private long lastSequence;
+
+    private long lastPurge;
+
+    private ScheduledExecutorService poller;
+
+    CacheInvalidationBus(final CacheInvalidationTransport transport, final String origin) {
+        this.transport = transport;
+        this.origin = origin;
+        lastPurge = System.currentTimeMillis();
+    }
+
+    /**
+     * Register a cache so it is kept up to date with changes made on other nodes. Several caches
+     * holding data derived from the same source may be registered under one name.
+     *
+     * @param cacheName The name used for the cache in events.
+     * @param cache The cache.
+     */
+
+    public void register(final String cacheName, final Cache<String, ?> cache) {
+        caches.computeIfAbsent(cacheName, k -> new CopyOnWriteArrayList<>()).add(cache);
+    }
+
+    /**
+     * Remove an entry from a cache on this and all other nodes.
+     *
+     * @param cacheName The name of the cache.
+     * @param key The key of the entry which has changed.
+     *
+     * @throws SQLException Thrown if the event could not be sent to the other nodes, so the change
+     *  should not be committed.
+     */
+
+    public void publish(final String cacheName, final String key)
+            throws SQLException {
+        invalidateLocally(cacheName, key);
+        // Another request may read and cache the old value before the change commits
+        BOMFactory.getInstance().runAfterTransaction(() -> invalidateLocally(cacheName, key));
+        transport.publish(origin, cacheName, key);
+    }
+
+    /**
+     * Apply any events published by other nodes since the last poll.
+     */
+
+    synchronized void poll()
+            throws SQLException {
+        lastSequence = Math.max(lastSequence, transport.deliverSince(lastSequence, this::receive));
+
+        long now = System.currentTimeMillis();
+        if (now - lastPurge > EVENT_LIFETIME) {
+            transport.purge(now - EVENT_LIFETIME);
+            lastPurge = now;
+        }
+    }
+
+    private void receive(final String eventOrigin, final String cacheName, final String key) {
+        if (!origin.equals(eventOrigin)) {
+            invalidateLocally(cacheName, key);
+        }
+    }
+
+    private void invalidateLocally(final String cacheName, final String key) {
+        List<Cache<String, ?>> namedCaches = caches.get(cacheName);
+        if (namedCaches != null) {
+            for (Cache<String, ?> cache : namedCaches) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Start polling for events from other nodes.
+     */
+
+    public synchronized void start() {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eps-cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollIfConfigured, POLL_INTERVAL, POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop polling for events.
+     */
+
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    private void pollIfConfigured() {
+        if (!Repositories.databasePoolFactory.isConfigured()) {
+            return;
+        }
+        try {
+            poll();
+        } catch (Exception e) {
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to poll for cache invalidations", e);
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final CacheInvalidationBus INSTANCE =
+                new CacheInvalidationBus(CacheInvalidationDAO.getInstance(),
+                        Long.toHexString(new SecureRandom().nextLong()));
+    }
+
+    public static CacheInvalidationBus getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
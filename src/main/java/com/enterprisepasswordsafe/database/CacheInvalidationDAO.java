@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.database.schema.CacheInvalidationSequenceTable;
+import com.enterprisepasswordsafe.engine.utils.IDGenerator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Cache invalidation transport which uses a table in the shared database. Each event is numbered
+ * from a sequence held in the database, and nodes poll for events numbered after the last one they
+ * saw, so differences between the clocks on each node don't matter.
+ */
+
+public final class CacheInvalidationDAO
+        extends JDBCBase
+        implements CacheInvalidationTransport {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO cache_invalidation(event_id, origin, cache_name, cache_key, dt_l, seq_l) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INCREMENT_SEQUENCE_SQL =
+            "UPDATE cache_invalidation_seq SET seq_l = seq_l + 1 WHERE seq_id = ?";
+
+    private static final String GET_SEQUENCE_SQL =
+            "SELECT seq_l FROM cache_invalidation_seq WHERE seq_id = ?";
+
+    private static final String GET_SINCE_SQL =
+            "SELECT origin, cache_name, cache_key, seq_l FROM cache_invalidation WHERE seq_l > ? ORDER BY seq_l";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM cache_invalidation WHERE dt_l < ?";
+
+    private CacheInvalidationDAO() {
+        super();
+    }
+
+    /**
+     * Record an event under the next sequence number. The sequence row stays locked until the
+     * transaction the event is written in ends, so events become visible in sequence order and a
+     * poll can never see an event before one with a lower number which has yet to commit. If no
+     * transaction is open one is used for the event alone.
+     */
+
+    @Override
+    public void publish(final String origin, final String cacheName, final String key)
+            throws SQLException {
+        Connection connection = BOMFactory.getCurrentConntection();
+        boolean autoCommit = connection.getAutoCommit();
+        if (autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            try(PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+                ps.setString(1, IDGenerator.getID());
+                ps.setString(2, origin);
+                ps.setString(3, cacheName);
+                ps.setString(4, key);
+                ps.setLong(5, System.currentTimeMillis());
+                ps.setLong(6, nextSequence(connection));
+                ps.executeUpdate();
+            }
+            if (autoCommit) {
+                connection.commit();
+            }
+        } catch(SQLException e) {
+            if (autoCommit) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private long nextSequence(final Connection connection)
+            throws SQLException {
+        try(PreparedStatement ps = connection.prepareStatement(INCREMENT_SEQUENCE_SQL)) {
+            ps.setString(1, CacheInvalidationSequenceTable.SEQUENCE_ID);
+            if (ps.executeUpdate() != 1) {
+                throw new SQLException("The cache invalidation sequence has not been initialised");
+            }
+        }
+        try(PreparedStatement ps = connection.prepareStatement(GET_SEQUENCE_SQL)) {
+            ps.setString(1, CacheInvalidationSequenceTable.SEQUENCE_ID);
+            try(ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("The cache invalidation sequence has not been initialised");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    @Override
+    public long deliverSince(final long sinceSequence, final Receiver receiver)
+            throws SQLException {
+        long highestSequence = sinceSequence;
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_SINCE_SQL)) {
+            ps.setLong(1, sinceSequence);
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    receiver.invalidate(rs.getString(1), rs.getString(2), rs.getString(3));
+                    highestSequence = Math.max(highestSequence, rs.getLong(4));
+                }
+            }
+        }
+        return highestSequence;
+    }
+
+    @Override
+    public void purge(final long olderThan)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(PURGE_SQL)) {
+            ps.setLong(1, olderThan);
+            ps.executeUpdate();
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final CacheInvalidationDAO INSTANCE = new CacheInvalidationDAO();
+    }
+
+    public static CacheInvalidationDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import java.sql.SQLException;
+
+/**
+ * Interface implemented by classes which can carry cache invalidation events between the nodes
+ * in a cluster.
+ */
+
+public interface CacheInvalidationTransport {
+
+    /**
+     * Send an invalidation event to all nodes.
+     *
+     * @param origin The ID of the node which sent the event.
+     * @param cacheName The name of the cache which holds the changed entry.
+     * @param key The key of the changed entry.
+     */
+
+    void publish(String origin, String cacheName, String key) throws SQLException;
+
+    /**
+     * Pass all events with a sequence number greater than the one given to a receiver. Events
+     * must become visible in sequence order, so once a number has been delivered no event with
+     * a lower number can appear later.
+     *
+     * @param sinceSequence The sequence number after which events should be delivered.
+     * @param receiver The receiver for the events.
+     *
+     * @return The highest sequence number seen, or sinceSequence if there were no events.
+     */
+
+    long deliverSince(long sinceSequence, Receiver receiver) throws SQLException;
+
+    /**
+     * Remove events which are no longer needed.
+     *
+     * @param olderThan The time, in milliseconds since the epoch, before which events can be removed.
+     */
+
+    void purge(long olderThan) throws SQLException;
+
+    /**
+     * Interface implemented by classes which act on delivered events.
+     */
+
+    interface Receiver {
+        void invalidate(String origin, String cacheName, String key);
+    }
+}
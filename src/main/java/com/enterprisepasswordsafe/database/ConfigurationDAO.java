@@ -16,12 +16,12 @@
 
 package com.enterprisepasswordsafe.database;
 
+import com.enterprisepasswordsafe.engine.utils.Cache;
+
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public final class ConfigurationDAO
         extends JDBCBase {
@@ -38,7 +38,23 @@ public final class ConfigurationDAO
     private static final String DELETE_SQL =
             "DELETE FROM configuration WHERE property_name = ?";
 
-	private static final Map<String,CachedValue> cache = new HashMap<>();
+    /**
+     * The maximum number of configuration values cached.
+     */
+
+    private static final int CACHE_SIZE = 500;
+
+    /**
+     * The maximum life of a cached entry.
+     */
+
+    private static final long CACHE_LIFETIME = 5 * 60 * 1000;	// 5m
+
+	private static final Cache<String,String> cache = new Cache<>(CACHE_SIZE, CACHE_LIFETIME);
+
+	static {
+		CacheInvalidationBus.getInstance().register(CacheInvalidationBus.CONFIGURATION, cache);
+	}
 
 	private ConfigurationDAO() {
 		super();
@@ -59,30 +75,18 @@ public final class ConfigurationDAO
             return null;
         }
 
-        String cachedValue = getValueFromCache(name);
-        if(cachedValue != null) {
-            return cachedValue;
-        }
+        String value = cache.get(name, this::fetchValue);
+        return value == null ? defaultValue : value;
+    }
 
+    private String fetchValue(final String name)
+            throws SQLException {
         try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_SQL)) {
             ps.setString(1, name);
             ps.setMaxRows(1);
 
             try(ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    return defaultValue;
-                }
-
-                String value = rs.getString(1);
-                if(rs.wasNull()) {
-                    return defaultValue;
-                }
-
-                synchronized(cache) {
-                    cache.put(name, new CachedValue(value));
-                }
-
-                return value;
+                return rs.next() ? rs.getString(1) : null;
             }
         }
     }
@@ -115,9 +119,7 @@ public final class ConfigurationDAO
             ps.executeUpdate();
         }
 
-        synchronized (cache) {
-            cache.remove(name);
-        }
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.CONFIGURATION, name);
     }
 
     public void set(final ConfigurationOption configurationOption, final String value)
@@ -135,7 +137,8 @@ public final class ConfigurationDAO
             ps.executeUpdate();
         }
 
-        putValueInCache(name, value);
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.CONFIGURATION, name);
+        cache.put(name, value);
 
         final List<ConfigurationListenersDAO.ConfigurationListener> listeners =
         	ConfigurationListenersDAO.getListenersForProperty(name);
@@ -147,83 +150,6 @@ public final class ConfigurationDAO
         }
     }
 
-    private void putValueInCache(final String name, final String value) {
-        synchronized(cache) {
-            if (value == null) {
-                cache.remove(name);
-                return;
-            }
-            cache.put(name, new CachedValue(value));
-        }
-    }
-
-    private String getValueFromCache(final String name) {
-        synchronized(cache) {
-            CachedValue cachedValue = cache.get(name);
-            if( cachedValue != null ) {
-                if( cachedValue.hasExpired() ) {
-                    cache.remove(name);
-                } else {
-                    return cachedValue.getValue();
-                }
-            }
-        }
-
-        return null;
-    }
-
-
-
-    /**
-     * Class holding a cached configuration value.
-     */
-
-    private static class CachedValue {
-    	/**
-    	 * The maximum life of a cached entry.
-    	 */
-
-    	private static final long CACHE_LIFETIME = 30 * 1000;	// 30s
-
-    	/**
-    	 * The time the record was inserted into the cache.
-    	 */
-
-    	private final long insertTime;
-
-    	/**
-    	 * The value.
-    	 */
-
-    	private final String value;
-
-    	/**
-    	 * Constructor. Stores data.
-    	 *
-    	 * @param newValue The value to be cached.
-    	 */
-    	private CachedValue( String newValue ) {
-    		insertTime = System.currentTimeMillis();
-    		value = newValue;
-    	}
-
-    	/**
-    	 * Check to see if this entry has expired.
-    	 */
-
-    	boolean hasExpired() {
-    		return System.currentTimeMillis() > (insertTime + CACHE_LIFETIME);
-    	}
-
-    	/**
-    	 * Gets the value.
-    	 */
-
-    	String getValue() {
-    		return value;
-    	}
-    }
-
     public static String getValue(final ConfigurationOption configurationOption)
             throws SQLException {
     	return getInstance().get(configurationOption);
@@ -26,6 +26,8 @@ public enum ConfigurationOption {
     DEFAULT_LOGIN_ACCESS("user.login_access", UserIPZoneRestriction.ALLOW_STRING),
     DEFAULT_HIERARCHY_ACCESS_RULE("hierarchy.default_rule", Configuration.HIERARCHY_ACCESS_ALLOW),
     EDIT_USER_MINIMUM_USER_LEVEL("hierarchy.edit_userlevel", "A"),
+    EVENT_LOG_CHAINED("eventlog.chained", "N"),
+    EXPIRY_DIGEST_ENABLED("expiry.digest", "N"),
     HIDDEN_PASSWORD_ENTRY("password.entry_hidden", "true"),
     HIDE_EMPTY_FOLDERS("hierarchy.hide_empty", Configuration.HIDE_EMPTY_FOLDERS_ON),
     MAX_FUTURE_EXPIRY_DISTANCE("expiry.max_distance", "0"),
@@ -43,9 +45,14 @@ public enum ConfigurationOption {
     REPORT_SEPARATOR("report.separator",","),
     REJECT_HISTORICAL_EXPIRY_DATES("expiry.allow_historical", "N"),
     SCHEMA_VERSION("schema.id", null),
+    SEARCH_INDEX_FINGERPRINT("search.index.fingerprint", null),
+    SEARCH_THREADS("search.threads", "8"),
+    SEARCH_THREADS_PER_REQUEST("search.request_threads", "4"),
+    SEARCH_TIMEOUT("search.timeout", "120"),
     SESSION_TIMEOUT("session.timeout", "30"),
     SMTP_ENABLED("smtp.enabled", null),
     SMTP_HOST("smtphost", null),
+    SMTP_PORT("smtpport", "25"),
     SMTP_TO_PROPERTY("smtpto", null),
     SMTP_FROM("smtpfrom", null),
     STORE_PASSWORD_HISTORY("password.history", Password.SYSTEM_PASSWORD_CREATOR_CHOOSE),
@@ -16,6 +16,7 @@
 
 package com.enterprisepasswordsafe.database;
 
+import com.enterprisepasswordsafe.database.dbpool.DatabasePool;
 import com.enterprisepasswordsafe.database.exceptions.DatabaseUnavailableException;
 import com.enterprisepasswordsafe.database.vendorspecific.DALFactory;
 import com.enterprisepasswordsafe.database.vendorspecific.DALInterface;
@@ -23,9 +24,10 @@ import com.enterprisepasswordsafe.engine.configuration.JDBCConnectionInformation
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,17 +40,51 @@ public class DatabaseAccessManager {
 
 	private final String dbType;
 
+	private final int statementCacheSize;
+
 	private Connection connection;
 
+	private StatementCache statementCache;
+
+	/**
+	 * The connection to the read replica, if one has been opened.
+	 */
+	private Connection readConnection;
+
+	/**
+	 * Whether the read replica pool is available, or null if it hasn't been checked yet.
+	 */
+	private Boolean replicaAvailable;
+
+	/**
+	 * Whether reads have been pinned to the primary database, or something which may write has
+	 * been prepared on it.
+	 */
+	private boolean pinnedToPrimary, written;
+
+	/**
+	 * The tasks waiting for the current transaction to end, and those which are only run if it
+	 * is committed.
+	 */
+	private final List<Runnable> afterTransaction = new ArrayList<>(),
+								 afterCommit = new ArrayList<>();
+
 	private DALInterface databaseAbstractionLayer;
 
 	private Map<String,Object> cache;
 
 	public DatabaseAccessManager(JDBCConnectionInformation jdbcConnectionInformation) {
 		dbType =jdbcConnectionInformation.getDbType();
+		statementCacheSize = jdbcConnectionInformation.getPoolSettings()
+				.getRequestStatementCacheSize(StatementCache.MAXIMUM_SIZE);
 	}
 
 	public void close() {
+		closeReadConnection();
+		pinnedToPrimary = false;
+		written = false;
+		replicaAvailable = null;
+
 		if(connection == null) {
 			return;
 		}
@@ -62,6 +98,22 @@ public class DatabaseAccessManager {
 		}
 
 		connection = null;
+		statementCache = null;
+		// Anything committed on close has already been handled, so anything left was not committed.
+		transactionEnded(false);
+	}
+
+	private void closeReadConnection() {
+		if(readConnection == null) {
+			return;
+		}
+
+		try {
+			readConnection.close();
+		} catch(SQLException e) {
+			Logger.getAnonymousLogger().log(Level.WARNING, "Problem closing read replica connection", e);
+		}
+		readConnection = null;
 	}
 
 	private void commitAndCloseConnection() {
@@ -80,7 +132,8 @@ public class DatabaseAccessManager {
 
 	public boolean hasOpenConnection() {
 		try {
-			return connection != null && !connection.isClosed();
+			return (connection != null && !connection.isClosed())
+				|| (readConnection != null && !readConnection.isClosed());
 		} catch(SQLException sqle) {
 			return false;
 		}
@@ -89,7 +142,9 @@ public class DatabaseAccessManager {
 	public Connection getConnection() throws SQLException {
 		if(connection == null || connection.isClosed()) {
 			try {
-				connection = DriverManager.getConnection("jdbc:apache:commons:dbcp:pwsafe");
+				statementCache = new StatementCache(DatabasePool.getConnection(DatabasePool.POOL_NAME),
+						statementCacheSize, () -> written = true, this::transactionEnded);
+				connection = statementCache.getConnection();
 			} catch(SQLException e) {
 				Logger.getAnonymousLogger().log(Level.WARNING, "Error attempting to get database connection", e);
 				throw new DatabaseUnavailableException(e);
@@ -99,6 +154,103 @@ public class DatabaseAccessManager {
 	}
 
 
+	/**
+	 * Get a connection for queries which can tolerate reading from the read replica. This is the
+	 * primary connection if there is no replica, if it is unavailable, or once anything which may
+	 * write has been prepared on the primary connection, so a request always sees its own writes.
+	 */
+	public Connection getReadConnection() throws SQLException {
+		if(pinnedToPrimary || written || !isReplicaAvailable()) {
+			return getConnection();
+		}
+
+		if(readConnection == null || readConnection.isClosed()) {
+			try {
+				readConnection = new StatementCache(DatabasePool.getConnection(DatabasePool.REPLICA_POOL_NAME),
+						statementCacheSize, () -> {}, committed -> {}).getConnection();
+			} catch(SQLException e) {
+				Logger.getAnonymousLogger().log(Level.WARNING,
+						"Unable to connect to the read replica, reading from the primary database", e);
+				replicaAvailable = Boolean.FALSE;
+				return getConnection();
+			}
+		}
+		return readConnection;
+	}
+
+	private boolean isReplicaAvailable() {
+		if(replicaAvailable == null) {
+			replicaAvailable = DatabasePool.isRegistered(DatabasePool.REPLICA_POOL_NAME);
+		}
+		return replicaAvailable;
+	}
+
+	/**
+	 * Send all reads to the primary database until the connections are closed, for example
+	 * because the user has recently written something which may not have reached the replica.
+	 */
+	public void pinToPrimary() {
+		pinnedToPrimary = true;
+	}
+
+	/**
+	 * Check if anything which may write has been prepared since the connections were last closed.
+	 */
+	public boolean hasWritten() {
+		return written;
+	}
+
+	/**
+	 * Run a task once the current transaction has been committed or rolled back, or straight
+	 * away if there is no transaction open.
+	 */
+	public void runAfterTransaction(final Runnable task) {
+		runAfter(afterTransaction, task);
+	}
+
+	/**
+	 * Run a task once the current transaction has been committed, or straight away if there is
+	 * no transaction open. The task is dropped if the transaction is rolled back.
+	 */
+	public void runAfterCommit(final Runnable task) {
+		runAfter(afterCommit, task);
+	}
+
+	private void runAfter(final List<Runnable> tasks, final Runnable task) {
+		try {
+			if (connection != null && !connection.isClosed() && !connection.getAutoCommit()) {
+				tasks.add(task);
+				return;
+			}
+		} catch(SQLException e) {
+			Logger.getAnonymousLogger().log(Level.FINE, "Unable to check for an open transaction", e);
+		}
+		task.run();
+	}
+
+	private void transactionEnded(final boolean committed) {
+		if (afterTransaction.isEmpty() && afterCommit.isEmpty()) {
+			return;
+		}
+		List<Runnable> tasks = new ArrayList<>(afterTransaction);
+		if (committed) {
+			tasks.addAll(afterCommit);
+		}
+		afterTransaction.clear();
+		afterCommit.clear();
+		for (Runnable task : tasks) {
+			task.run();
+		}
+	}
+
+	/**
+	 * Get the cache of the statements prepared on the current connection, or null if there is
+	 * no connection.
+	 */
+	StatementCache getStatementCache() {
+		return statementCache;
+	}
+
 	public synchronized DALInterface getDatabaseAbstractionLayer()
 			throws InstantiationException, IllegalAccessException, NoSuchMethodException, InvocationTargetException {
 		if(databaseAbstractionLayer != null )
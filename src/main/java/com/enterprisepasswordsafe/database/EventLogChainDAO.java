@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.database.schema.EventLogChainTable;
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.logging.LogEventHasher;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Data access object for the hash chain over the event log and the checkpoints recording how much
+ * of the chain has been verified.
+ *
+ * When chaining is enabled each new event log entry is given the next position in the chain and a
+ * hash covering its contents and the hash of the entry before it, so any change to, or removal of,
+ * an entry is detected when the chain is next verified. The hashes are keyed with the secret in the
+ * EPS_EVENT_LOG_CHAIN_KEY environment variable, so they can't be recreated for an altered entry by
+ * anyone without it, and chaining is only used while the key is set.
+ */
+
+public final class EventLogChainDAO
+        extends JDBCBase {
+
+    /**
+     * The checkpoint statuses.
+     */
+
+    static final String STATUS_VERIFIED = "V",
+                        STATUS_FAILED = "F";
+
+    private static final String LOCK_HEAD_SQL =
+            "UPDATE event_log_chain SET seq_l = seq_l WHERE head_id = ?";
+
+    private static final String GET_HEAD_SQL =
+            "SELECT seq_l, chain_b FROM event_log_chain WHERE head_id = ?";
+
+    private static final String MOVE_HEAD_SQL =
+            "UPDATE event_log_chain SET seq_l = ?, chain_b = ? WHERE head_id = ? AND seq_l = ?";
+
+    private static final String GET_LAST_CHECKPOINT_SQL =
+            "SELECT seq_l, chain_b, status FROM event_log_checkpoints ORDER BY seq_l DESC, verified_l DESC, status DESC";
+
+    private static final String GET_LAST_VERIFIED_CHECKPOINT_SQL =
+            "SELECT seq_l, chain_b, status FROM event_log_checkpoints WHERE status = 'V' ORDER BY seq_l DESC";
+
+    private static final String GET_FAILURES_SQL =
+            "SELECT seq_l FROM event_log_checkpoints WHERE status = 'F'";
+
+    private static final String INSERT_CHECKPOINT_SQL =
+            "INSERT INTO event_log_checkpoints(seq_l, dt_l, chain_b, verified_l, status) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String GET_ENTRIES_AFTER_SQL =
+            "SELECT seq_l, dt_l, event, item_id, user_id, stamp_b, chain_b FROM event_log"
+            + " WHERE seq_l > ? ORDER BY seq_l";
+
+    private final LogEventHasher logEventHasher = new LogEventHasher();
+
+    private String chainKeyText;
+
+    private SecretKeySpec chainKey;
+
+    private EventLogChainDAO() {
+        super();
+    }
+
+    /**
+     * Test if new entries should be added to the chain.
+     */
+
+    public boolean isEnabled()
+            throws SQLException {
+        String chained = ConfigurationDAO.getValue(ConfigurationOption.EVENT_LOG_CHAINED);
+        return chained != null && chained.equalsIgnoreCase("Y") && getChainKey() != null;
+    }
+
+    /**
+     * Get the key for the chain hashes, or null if no key has been set.
+     */
+
+    synchronized SecretKeySpec getChainKey() {
+        String keyText = Repositories.eventLogChainKeyRepository.get();
+        if (keyText == null || keyText.isEmpty()) {
+            return null;
+        }
+        if (!keyText.equals(chainKeyText)) {
+            chainKey = LogEventHasher.createChainKey(keyText);
+            chainKeyText = keyText;
+        }
+        return chainKey;
+    }
+
+    /**
+     * Lock the head of the chain until the current transaction ends, and get the last link in the
+     * chain. The lock is taken by updating the head row, so the link read is the latest one even
+     * where the database would otherwise read from a snapshot.
+     */
+
+    Link lockHead()
+            throws SQLException {
+        Connection connection = BOMFactory.getCurrentConntection();
+        try(PreparedStatement ps = connection.prepareStatement(LOCK_HEAD_SQL)) {
+            ps.setString(1, EventLogChainTable.HEAD_ID);
+            if (ps.executeUpdate() != 1) {
+                throw new SQLException("The event log chain has not been initialised");
+            }
+        }
+        try(PreparedStatement ps = connection.prepareStatement(GET_HEAD_SQL)) {
+            ps.setString(1, EventLogChainTable.HEAD_ID);
+            try(ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("The event log chain has not been initialised");
+                }
+                return new Link(rs.getLong(1), rs.getBytes(2));
+            }
+        }
+    }
+
+    /**
+     * Move the head of the chain on from the head locked by {@link #lockHead()}.
+     *
+     * @param previousHead The head the new entries were chained from.
+     * @param newHead The last of the new entries.
+     */
+
+    void moveHead(final Link previousHead, final Link newHead)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(MOVE_HEAD_SQL)) {
+            ps.setLong(1, newHead.sequence);
+            ps.setBytes(2, newHead.hash);
+            ps.setString(3, EventLogChainTable.HEAD_ID);
+            ps.setLong(4, previousHead.sequence);
+            if (ps.executeUpdate() != 1) {
+                throw new SQLException("The head of the event log chain was moved while it was locked");
+            }
+        }
+    }
+
+    /**
+     * Get the most recent checkpoint, or null if the chain has not been checked.
+     */
+
+    Checkpoint getLastCheckpoint()
+            throws SQLException {
+        return getCheckpoint(GET_LAST_CHECKPOINT_SQL);
+    }
+
+    /**
+     * Get the position of the failure verification of the chain has stopped at.
+     *
+     * @return The position, or -1 if verification has not stopped.
+     */
+
+    public long getStoppedAt()
+            throws SQLException {
+        Checkpoint checkpoint = getLastCheckpoint();
+        return checkpoint != null && STATUS_FAILED.equals(checkpoint.status) ? checkpoint.sequence : -1;
+    }
+
+    /**
+     * Get the position in the chain up to which the chain has been verified.
+     */
+
+    public long getVerifiedUpTo()
+            throws SQLException {
+        return getLastVerifiedCheckpoint().sequence;
+    }
+
+    /**
+     * Get the checkpoint at the end of the verified part of the chain. If no part of the chain has
+     * been verified this is the start of the chain.
+     */
+
+    Checkpoint getLastVerifiedCheckpoint()
+            throws SQLException {
+        Checkpoint checkpoint = getCheckpoint(GET_LAST_VERIFIED_CHECKPOINT_SQL);
+        return checkpoint == null ?
+                new Checkpoint(0, EventLogChainTable.GENESIS_HASH, STATUS_VERIFIED) : checkpoint;
+    }
+
+    private Checkpoint getCheckpoint(final String sql)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            ps.setMaxRows(1);
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new Checkpoint(rs.getLong(1), rs.getBytes(2), rs.getString(3)) : null;
+            }
+        }
+    }
+
+    void recordCheckpoint(final long sequence, final long datetime, final byte[] hash, final String status)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_CHECKPOINT_SQL)) {
+            ps.setLong(1, sequence);
+            ps.setLong(2, datetime);
+            ps.setBytes(3, hash);
+            ps.setLong(4, System.currentTimeMillis());
+            ps.setString(5, status);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the chained entries following a position in the chain.
+     *
+     * @param sequence The position to read from.
+     * @param maximum The maximum number of entries to read.
+     */
+
+    List<ChainedEntry> getEntriesAfter(final long sequence, final int maximum)
+            throws SQLException {
+        List<ChainedEntry> entries = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_ENTRIES_AFTER_SQL)) {
+            ps.setMaxRows(maximum);
+            ps.setLong(1, sequence);
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && entries.size() < maximum) {
+                    entries.add(new ChainedEntry(rs));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the current state of verification of the chain, or null if there is no key to check
+     * entries in the chain with.
+     */
+
+    public Verification getVerification()
+            throws SQLException {
+        SecretKeySpec key = getChainKey();
+        if (key == null) {
+            return null;
+        }
+
+        Set<Long> failures = new HashSet<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_FAILURES_SQL)) {
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    failures.add(rs.getLong(1));
+                }
+            }
+        }
+        return new Verification(key, getLastVerifiedCheckpoint().sequence, failures);
+    }
+
+    /**
+     * A position in the chain and the hash of the entry at that position.
+     */
+
+    static class Link {
+        final long sequence;
+        final byte[] hash;
+
+        Link(final long sequence, final byte[] hash) {
+            this.sequence = sequence;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A record of the chain having been checked up to a position.
+     */
+
+    static final class Checkpoint extends Link {
+        final String status;
+
+        Checkpoint(final long sequence, final byte[] hash, final String status) {
+            super(sequence, hash);
+            this.status = status;
+        }
+    }
+
+    /**
+     * An entry in the chain as stored in the event log.
+     */
+
+    static final class ChainedEntry extends Link {
+        final long datetime;
+        final String event;
+        final String itemId;
+        final String userId;
+        final byte[] tamperstamp;
+
+        ChainedEntry(final ResultSet rs)
+                throws SQLException {
+            this(rs.getLong(1), rs.getBytes(7), rs.getLong(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                    rs.getBytes(6));
+        }
+
+        ChainedEntry(final long sequence, final byte[] hash, final long datetime, final String event,
+                     final String itemId, final String userId, final byte[] tamperstamp) {
+            super(sequence, hash);
+            this.datetime = datetime;
+            this.event = event;
+            this.itemId = itemId;
+            this.userId = userId;
+            this.tamperstamp = tamperstamp;
+        }
+    }
+
+    /**
+     * The result of verifying the chain, used to find the status of entries without checking their
+     * tamperstamps.
+     */
+
+    public final class Verification {
+        private final SecretKeySpec key;
+        private final long verifiedUpTo;
+        private final Set<Long> failures;
+
+        Verification(final SecretKeySpec key, final long verifiedUpTo, final Set<Long> failures) {
+            this.key = key;
+            this.verifiedUpTo = verifiedUpTo;
+            this.failures = failures;
+        }
+
+        /**
+         * Get the status of an entry in the chain. An entry before the last verified checkpoint is
+         * also checked against the entry before it, so a change made after it was verified is found.
+         *
+         * @param entry The entry.
+         * @param previousHash The chain hash of the entry before it, or null if that entry is missing.
+         *
+         * @return OK if the chain has been verified past the entry and the entry still matches its
+         * hash, INVALID if the entry failed verification or no longer matches its hash, or UNKNOWN
+         * if the entry has not yet been verified.
+         */
+
+        ExpandedTamperproofEventLogEntry.Status statusOf(final ChainedEntry entry, final byte[] previousHash)
+                throws GeneralSecurityException {
+            if (failures.contains(entry.sequence)) {
+                return ExpandedTamperproofEventLogEntry.Status.INVALID;
+            }
+            byte[] linkedHash = entry.sequence == 1 ? EventLogChainTable.GENESIS_HASH : previousHash;
+            if (entry.sequence > verifiedUpTo || linkedHash == null) {
+                return ExpandedTamperproofEventLogEntry.Status.UNKNOWN;
+            }
+            byte[] expectedHash = logEventHasher.createChainHash(key, linkedHash, entry.sequence, entry.datetime,
+                    entry.event, entry.itemId, entry.userId, entry.tamperstamp);
+            return Arrays.equals(expectedHash, entry.hash) ?
+                    ExpandedTamperproofEventLogEntry.Status.OK : ExpandedTamperproofEventLogEntry.Status.INVALID;
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final EventLogChainDAO INSTANCE = new EventLogChainDAO();
+    }
+
+    public static EventLogChainDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.logging.LogEventHasher;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks the event log chain in the background.
+ *
+ * Each run continues from the last verified checkpoint, checks the entries added since then, and
+ * records a new checkpoint, so the cost of verification is spread over time rather than being paid
+ * each time the event log is viewed. If an entry is missing or has been changed a failed checkpoint
+ * is recorded at its position and verification stops until the failure has been investigated and
+ * an administrator resets it.
+ */
+
+public final class EventLogChainVerifier {
+
+    /**
+     * The time, in milliseconds, between runs of the verifier.
+     */
+
+    private static final long VERIFICATION_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The number of entries read from the database at a time.
+     */
+
+    private static final int BATCH_SIZE = 5000;
+
+    private static final String LOG_TAG = "EventLogChainVerifier";
+
+    private final LogEventHasher logEventHasher = new LogEventHasher();
+
+    private ScheduledExecutorService verifier;
+
+    private EventLogChainVerifier() {
+        super();
+    }
+
+    /**
+     * Verify the entries added to the chain since the last checkpoint.
+     *
+     * @return The number of entries verified.
+     */
+
+    synchronized int verify()
+            throws SQLException, GeneralSecurityException {
+        EventLogChainDAO chainDAO = EventLogChainDAO.getInstance();
+        SecretKeySpec key = chainDAO.getChainKey();
+        if (key == null) {
+            return 0;
+        }
+        EventLogChainDAO.Checkpoint lastCheckpoint = chainDAO.getLastCheckpoint();
+        if (lastCheckpoint != null && EventLogChainDAO.STATUS_FAILED.equals(lastCheckpoint.status)) {
+            return 0;
+        }
+
+        EventLogChainDAO.Checkpoint verified = chainDAO.getLastVerifiedCheckpoint();
+        long sequence = verified.sequence;
+        byte[] hash = verified.hash;
+        long datetime = 0;
+        int verifiedCount = 0;
+
+        List<EventLogChainDAO.ChainedEntry> entries;
+        do {
+            entries = chainDAO.getEntriesAfter(sequence, BATCH_SIZE);
+            for (EventLogChainDAO.ChainedEntry entry : entries) {
+                if (entry.sequence != sequence + 1) {
+                    recordFailure(sequence, datetime, hash, sequence + 1, "is missing");
+                    return verifiedCount;
+                }
+                byte[] expectedHash = logEventHasher.createChainHash(key, hash, entry.sequence, entry.datetime,
+                        entry.event, entry.itemId, entry.userId, entry.tamperstamp);
+                if (!Arrays.equals(expectedHash, entry.hash)) {
+                    recordFailure(sequence, datetime, hash, entry.sequence, "has been altered");
+                    return verifiedCount;
+                }
+                sequence = entry.sequence;
+                hash = expectedHash;
+                datetime = entry.datetime;
+                verifiedCount++;
+            }
+        } while (entries.size() == BATCH_SIZE);
+
+        if (verifiedCount > 0) {
+            chainDAO.recordCheckpoint(sequence, datetime, hash, EventLogChainDAO.STATUS_VERIFIED);
+        }
+        return verifiedCount;
+    }
+
+    private void recordFailure(final long lastGoodSequence, final long lastGoodDatetime, final byte[] lastGoodHash,
+                               final long failedSequence, final String reason)
+            throws SQLException, GeneralSecurityException {
+        EventLogChainDAO chainDAO = EventLogChainDAO.getInstance();
+        if (lastGoodSequence > chainDAO.getLastVerifiedCheckpoint().sequence) {
+            chainDAO.recordCheckpoint(lastGoodSequence, lastGoodDatetime, lastGoodHash, EventLogChainDAO.STATUS_VERIFIED);
+        }
+        chainDAO.recordCheckpoint(failedSequence, 0, null, EventLogChainDAO.STATUS_FAILED);
+
+        String message = "Event log chain entry " + failedSequence + " " + reason;
+        Logger.getLogger(LOG_TAG).log(Level.SEVERE, message);
+        TamperproofEventLogDAO.getInstance().create(null, null, message, true,
+                TamperproofEventLog.LOG_LEVEL_CONFIGURATION, false);
+    }
+
+    /**
+     * Let verification continue after a failure. The chain is picked up again from the entry which
+     * failed, or the first entry after it if it is missing; that entry stays marked as failed, and
+     * the entries after it are verified against it.
+     *
+     * @param adminUser The administrator resetting verification.
+     *
+     * @return true if verification was reset, false if it had not stopped at a failure.
+     */
+
+    public synchronized boolean reset(final User adminUser)
+            throws SQLException, GeneralSecurityException {
+        EventLogChainDAO chainDAO = EventLogChainDAO.getInstance();
+        EventLogChainDAO.Checkpoint lastCheckpoint = chainDAO.getLastCheckpoint();
+        if (lastCheckpoint == null || !EventLogChainDAO.STATUS_FAILED.equals(lastCheckpoint.status)) {
+            return false;
+        }
+
+        List<EventLogChainDAO.ChainedEntry> entries = chainDAO.getEntriesAfter(lastCheckpoint.sequence - 1, 1);
+        if (entries.isEmpty()) {
+            return false;
+        }
+        EventLogChainDAO.ChainedEntry restart = entries.get(0);
+        chainDAO.recordCheckpoint(restart.sequence, restart.datetime, restart.hash, EventLogChainDAO.STATUS_VERIFIED);
+
+        TamperproofEventLogDAO.getInstance().create(TamperproofEventLog.LOG_LEVEL_CONFIGURATION, adminUser,
+                "Event log chain verification was reset after the failure at entry " + lastCheckpoint.sequence
+                + ", continuing from entry " + restart.sequence, true);
+        return true;
+    }
+
+    /**
+     * Start verifying the chain in the background.
+     */
+
+    public synchronized void start() {
+        if (verifier != null) {
+            return;
+        }
+        verifier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eps-event-log-verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        verifier.scheduleWithFixedDelay(this::verifyIfConfigured, VERIFICATION_INTERVAL, VERIFICATION_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop verifying the chain.
+     */
+
+    public synchronized void stop() {
+        if (verifier != null) {
+            verifier.shutdownNow();
+            verifier = null;
+        }
+    }
+
+    private void verifyIfConfigured() {
+        if (!Repositories.databasePoolFactory.isConfigured()) {
+            return;
+        }
+        try {
+            verify();
+        } catch (Exception e) {
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to verify the event log chain", e);
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final EventLogChainVerifier INSTANCE = new EventLogChainVerifier();
+    }
+
+    public static EventLogChainVerifier getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -64,7 +64,7 @@ public final class ExpandedTamperproofEventLogEntry
 
 	private final String event;
 
-	private final String humanReadableMessage;
+	private String humanReadableMessage;
 
 	private final Calendar timestamp;
 
@@ -82,13 +82,27 @@ public final class ExpandedTamperproofEventLogEntry
 
 	private final UserClassifier userClassifier;
 	private final LogEventHasher logEventHasher;
-	private final AccessControlDAO accessControlDAO;
+	private final LogEventParser logEventParser;
 
 	public static ExpandedTamperproofEventLogEntry from(final ResultSet rs, final User user, final Group adminGroup,
 														final boolean validateTamperstamp) throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
-		return new ExpandedTamperproofEventLogEntry(new UserClassifier(), new LogEventHasher(), new LogEventParser(),
-				AccessControlDAO.getInstance(), UserDAO.getInstance(), new PasswordUtils<>(), rs, user, adminGroup,
-				validateTamperstamp);
+		try (KeyMaterialCache keyMaterialCache = new KeyMaterialCache()) {
+			return from(rs, user, adminGroup, validateTamperstamp, new LogEventParser(), keyMaterialCache);
+		}
+	}
+
+	/**
+	 * Create an entry using a parser and key cache shared with the other entries being shown, so the
+	 * names in the messages can be looked up together and each key is only decrypted once.
+	 */
+
+	public static ExpandedTamperproofEventLogEntry from(final ResultSet rs, final User user, final Group adminGroup,
+														final boolean validateTamperstamp,
+														final LogEventParser logEventParser,
+														final KeyMaterialCache keyMaterialCache)
+			throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
+		return new ExpandedTamperproofEventLogEntry(new UserClassifier(), new LogEventHasher(), logEventParser,
+				keyMaterialCache, new PasswordUtils<>(), rs, user, adminGroup, validateTamperstamp);
 	}
 
 	ExpandedTamperproofEventLogEntry(final UserClassifier userClassifier, final LogEventHasher logEventHasher,
@@ -97,9 +111,20 @@ public final class ExpandedTamperproofEventLogEntry
 									 final User validatingUser, final Group adminGroup,
 									 boolean validateTamperstamp)
 			throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
+		this(userClassifier, logEventHasher, logEventParser, new KeyMaterialCache(userDAO, accessControlDAO),
+				passwordUtils, rs, validatingUser, adminGroup, validateTamperstamp);
+	}
+
+	private ExpandedTamperproofEventLogEntry(final UserClassifier userClassifier, final LogEventHasher logEventHasher,
+											 final LogEventParser logEventParser,
+											 final KeyMaterialCache keyMaterialCache,
+											 final PasswordUtils<Password> passwordUtils, final ResultSet rs,
+											 final User validatingUser, final Group adminGroup,
+											 boolean validateTamperstamp)
+			throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
 		this.userClassifier = userClassifier;
 		this.logEventHasher = logEventHasher;
-		this.accessControlDAO = accessControlDAO;
+		this.logEventParser = logEventParser;
 
 		long dateTime = rs.getLong(1);
 		timestamp = Calendar.getInstance();
@@ -109,22 +134,23 @@ public final class ExpandedTamperproofEventLogEntry
 		event = rs.getString(4);
 		tamperstamp = rs.getBytes(5);
 		username = rs.getString(6);
-		humanReadableMessage = logEventParser.getParsedMessage(event);
+		logEventParser.prepare(event);
 
 		if (validateTamperstamp && userId != null) {
-			testTamperstamp(userDAO.getByIdDecrypted(userId, adminGroup), dateTime, itemId);
+			testTamperstamp(keyMaterialCache.getDecryptedUser(userId, adminGroup), dateTime, itemId);
 		} else {
 			tamperstampStatus = Status.UNKNOWN;
 		}
 
 		if (itemId != null) {
-			populateObjectDetails(rs, validatingUser, passwordUtils);
+			populateObjectDetails(rs, validatingUser, passwordUtils, keyMaterialCache);
 		}
 	}
 
-	private void populateObjectDetails(ResultSet rs, User validatingUser, PasswordUtils<Password> passwordUtils)
+	private void populateObjectDetails(ResultSet rs, User validatingUser, PasswordUtils<Password> passwordUtils,
+									   KeyMaterialCache keyMaterialCache)
 			throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
-		AccessControl ac = accessControlDAO.getReadAccessControl(validatingUser, itemId);
+		AccessControl ac = keyMaterialCache.getReadAccessControl(validatingUser, itemId);
 		if (ac == null) {
 			return;
 		}
@@ -196,12 +222,20 @@ public final class ExpandedTamperproofEventLogEntry
 	}
 
     public String getHumanReadableMessage() {
+		if (humanReadableMessage == null && event != null) {
+			try {
+				humanReadableMessage = logEventParser.getParsedMessage(event);
+			} catch (SQLException e) {
+				Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Problem parsing event", e);
+				humanReadableMessage = event;
+			}
+		}
 		return humanReadableMessage;
 	}
 
 	@Override
 	public String toString() {
-		return humanReadableMessage;
+		return getHumanReadableMessage();
 	}
 
 	public String getUsername() {
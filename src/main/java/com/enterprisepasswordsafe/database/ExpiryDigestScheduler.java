@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+
+import javax.mail.internet.AddressException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds the expiry summary in the background and, if it is enabled, sends each user a daily
+ * Email telling them how many of their passwords have expired or will expire soon.
+ *
+ * Every node polls for work, but each job is only run by the node which holds its lease, so the
+ * jobs run once per interval however many nodes are active.
+ */
+
+public final class ExpiryDigestScheduler {
+
+    /**
+     * The time, in milliseconds, between checks for jobs to run.
+     */
+
+    private static final long POLL_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * The time, in milliseconds, a node holds a lease for. If the job has not completed in this
+     * time another node can run it.
+     */
+
+    private static final long LEASE_LIFETIME = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * The ID of the job which sends the digests.
+     */
+
+    static final String DIGEST_JOB_ID = "expiry.digest";
+
+    /**
+     * The time, in milliseconds, between digests.
+     */
+
+    private static final long DIGEST_INTERVAL = TimeUnit.DAYS.toMillis(1);
+
+    private static final String DIGEST_SUBJECT = "Expiring passwords";
+
+    private static final String LOG_TAG = "ExpiryDigestScheduler";
+
+    private ScheduledExecutorService scheduler;
+
+    private ExpiryDigestScheduler() {
+        super();
+    }
+
+    /**
+     * Run any jobs which are due and not being run by another node.
+     */
+
+    synchronized void runDueJobs()
+            throws SQLException {
+        JobLeaseDAO leases = JobLeaseDAO.getInstance();
+        if (leases.acquire(ExpirySummaryDAO.JOB_ID, LEASE_LIFETIME, ExpirySummaryDAO.REFRESH_INTERVAL)) {
+            ExpirySummaryDAO.getInstance().rebuild(PasswordDAO.getInstance().getExpiryWarningDate());
+            leases.complete(ExpirySummaryDAO.JOB_ID);
+        }
+
+        String sender = ConfigurationDAO.getValue(ConfigurationOption.SMTP_FROM);
+        if (!"Y".equals(ConfigurationDAO.getValue(ConfigurationOption.EXPIRY_DIGEST_ENABLED))
+        || sender == null || sender.isEmpty()) {
+            return;
+        }
+        if (leases.acquire(DIGEST_JOB_ID, LEASE_LIFETIME, DIGEST_INTERVAL)) {
+            sendDigests(sender);
+            leases.complete(DIGEST_JOB_ID);
+        }
+    }
+
+    private void sendDigests(final String sender)
+            throws SQLException {
+        String baseUrl = ConfigurationDAO.getValue(ConfigurationOption.PROPERTY_SERVER_BASE_URL);
+        for (ExpirySummaryDAO.Digest digest : ExpirySummaryDAO.getInstance().getDigests(System.currentTimeMillis(),
+                PasswordDAO.getInstance().getExpiryWarningDate())) {
+            StringBuilder body = new StringBuilder();
+            body.append("You have access to ");
+            body.append(digest.expired);
+            body.append(" password(s) which have expired and ");
+            body.append(digest.expiring);
+            body.append(" password(s) which will expire soon.\n\n");
+            body.append("Please log in to the password safe to review them.");
+            if (baseUrl != null && !baseUrl.isEmpty()) {
+                body.append("\n\n");
+                body.append(baseUrl);
+            }
+
+            try {
+                OutboundMailQueue.getInstance().enqueue(sender, Collections.singletonList(digest.email),
+                        DIGEST_SUBJECT, body.toString());
+            } catch (AddressException e) {
+                Logger.getLogger(LOG_TAG).log(Level.WARNING,
+                        "Unable to send expiry digest to user " + digest.userId, e);
+            }
+        }
+    }
+
+    /**
+     * Start checking for jobs in the background.
+     */
+
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "eps-expiry-digest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runDueJobsIfConfigured, POLL_INTERVAL, POLL_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop checking for jobs.
+     */
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void runDueJobsIfConfigured() {
+        if (!Repositories.databasePoolFactory.isConfigured()) {
+            return;
+        }
+        try {
+            runDueJobs();
+        } catch (Exception e) {
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to run the expiry summary jobs", e);
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final ExpiryDigestScheduler INSTANCE = new ExpiryDigestScheduler();
+    }
+
+    public static ExpiryDigestScheduler getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
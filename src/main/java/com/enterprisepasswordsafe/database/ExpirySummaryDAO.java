@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.users.UserClassifier;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Data access object for the precomputed list of the passwords each user can access which have
+ * expired or will expire soon.
+ *
+ * The list is built from the password expiry index by the ExpiryDigestScheduler, so it only holds
+ * the IDs and expiry dates of passwords, and the passwords themselves are checked and decrypted
+ * when the list is read. Disabled passwords are included, and are only returned to administrators.
+ */
+
+public final class ExpirySummaryDAO
+        extends JDBCBase {
+
+    /**
+     * The ID of the job which rebuilds the summary.
+     */
+
+    static final String JOB_ID = "expiry.summary";
+
+    /**
+     * The time, in milliseconds, between rebuilds of the summary.
+     */
+
+    static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * The age, in milliseconds, after which the summary is no longer used because the job which
+     * rebuilds it does not appear to be running.
+     */
+
+    private static final long MAXIMUM_AGE = REFRESH_INTERVAL * 2;
+
+    private static final String DELETE_ALL_SQL = "DELETE FROM expiry_summary";
+
+    private static final String BUILD_SQL =
+            "INSERT INTO expiry_summary(user_id, password_id, expiry_l) "
+            + "SELECT uac.user_id, pass.password_id, pass.expiry_l "
+            + "  FROM passwords pass, user_access_control uac "
+            + " WHERE uac.item_id = pass.password_id AND uac.rkey is not null "
+            + "   AND pass.expiry_l < ? "
+            + "UNION "
+            + "SELECT mem.user_id, pass.password_id, pass.expiry_l "
+            + "  FROM passwords pass, group_access_control gac, membership mem "
+            + " WHERE mem.group_id = gac.group_id AND gac.item_id = pass.password_id AND gac.rkey is not null "
+            + "   AND pass.expiry_l < ?";
+
+    private static final String GET_PASSWORD_IDS_EVEN_IF_DISABLED_SQL =
+            "SELECT password_id FROM expiry_summary WHERE user_id = ? ORDER BY expiry_l";
+
+    private static final String GET_PASSWORD_IDS_SQL =
+            "SELECT es.password_id FROM expiry_summary es, passwords pass "
+            + " WHERE es.user_id = ? AND pass.password_id = es.password_id "
+            + "   AND (pass.enabled is null OR pass.enabled = 'Y') "
+            + " ORDER BY es.expiry_l";
+
+    private static final String GET_DIGESTS_SQL =
+            "SELECT usr.user_id, usr.email, es.expiry_l "
+            + "  FROM expiry_summary es, application_users usr, passwords pass "
+            + " WHERE es.user_id = usr.user_id AND (usr.disabled is null OR usr.disabled = 'N') "
+            + "   AND usr.email is not null AND pass.password_id = es.password_id "
+            + "   AND (pass.enabled is null OR pass.enabled = 'Y' "
+            + "        OR EXISTS (SELECT 1 FROM membership mem WHERE mem.user_id = usr.user_id AND mem.group_id = ?)) "
+            + "   AND es.expiry_l < ? "
+            + " ORDER BY usr.user_id";
+
+    private final UserClassifier userClassifier = new UserClassifier();
+
+    private ExpirySummaryDAO() {
+        super();
+    }
+
+    /**
+     * Replace the summary with the passwords which expire before a given date. Passwords which will
+     * reach the warning period before the summary is too old to be used are also included, and are
+     * filtered out when the summary is read.
+     *
+     * @param warningDate The date before which passwords are shown as expiring.
+     */
+
+    void rebuild(final long warningDate)
+            throws SQLException {
+        Connection connection = BOMFactory.getCurrentConntection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try(PreparedStatement ps = connection.prepareStatement(DELETE_ALL_SQL)) {
+                ps.executeUpdate();
+            }
+            try(PreparedStatement ps = connection.prepareStatement(BUILD_SQL)) {
+                ps.setLong(1, warningDate + MAXIMUM_AGE);
+                ps.setLong(2, warningDate + MAXIMUM_AGE);
+                ps.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Test if the summary has been rebuilt recently enough to be used.
+     */
+
+    public boolean isCurrent()
+            throws SQLException {
+        return JobLeaseDAO.getInstance().getLastRun(JOB_ID) >= System.currentTimeMillis() - MAXIMUM_AGE;
+    }
+
+    /**
+     * Get the IDs of the passwords in the summary for a user, soonest expiry first. Disabled
+     * passwords are only included for administrators.
+     *
+     * @param user The user.
+     */
+
+    public List<String> getPasswordIds(final User user)
+            throws SQLException {
+        String sql = userClassifier.isAdministrator(user) ? GET_PASSWORD_IDS_EVEN_IF_DISABLED_SQL : GET_PASSWORD_IDS_SQL;
+        List<String> ids = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            ps.setString(1, user.getId());
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Get the number of expired and expiring passwords in the summary for each enabled user with
+     * an Email address. Disabled passwords are only counted for administrators.
+     *
+     * @param now The time before which passwords are counted as expired.
+     * @param warningDate The time before which passwords are counted as expiring. The summary also
+     *                    holds passwords expiring after this, which are not counted.
+     */
+
+    List<Digest> getDigests(final long now, final long warningDate)
+            throws SQLException {
+        List<Digest> digests = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_DIGESTS_SQL)) {
+            ps.setString(1, Group.ADMIN_GROUP_ID);
+            ps.setLong(2, warningDate);
+            try(ResultSet rs = ps.executeQuery()) {
+                Digest current = null;
+                while (rs.next()) {
+                    String userId = rs.getString(1);
+                    if (current == null || !current.userId.equals(userId)) {
+                        current = new Digest(userId, rs.getString(2));
+                        digests.add(current);
+                    }
+                    if (rs.getLong(3) < now) {
+                        current.expired++;
+                    } else {
+                        current.expiring++;
+                    }
+                }
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * The counts of the passwords in the summary for a user.
+     */
+
+    static final class Digest {
+        final String userId;
+        final String email;
+        int expired;
+        int expiring;
+
+        Digest(final String userId, final String email) {
+            this.userId = userId;
+            this.email = email;
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final ExpirySummaryDAO INSTANCE = new ExpirySummaryDAO();
+    }
+
+    public static ExpirySummaryDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -150,6 +150,17 @@ public final class Group
     	groupName = name;
     }
 
+    /**
+     * Creates a copy of the details of an existing group. The access key is not copied.
+     *
+     * @param original The group to copy.
+     */
+
+    Group(final Group original) {
+        this(original.groupId, original.groupName);
+        status = original.status;
+    }
+
     /**
      * Creates a new instance of Group using the name only. This method will
      * generate an ID and an AES key for the group.
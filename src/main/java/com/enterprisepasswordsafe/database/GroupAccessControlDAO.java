@@ -25,12 +25,10 @@ import com.enterprisepasswordsafe.engine.utils.KeyUtils;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
 import java.security.PrivateKey;
-import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Data access object for GroupAccessControl objects.
@@ -104,21 +102,24 @@ public class GroupAccessControlDAO
             + " WHERE gac.group_id = ? AND gac.item_id = ? AND gac.rkey IS NOT NULL ";
 
     /**
-     * The SQL to get all group access controls for all groups with access to
-     * this password.
+     * The SQL to get the roles granted to groups on a password.
      */
 
     private static final String GET_GAC_SUMMARIES_GAR_SQL =
-              "SELECT gar.role" + "  FROM group_access_roles gar WHERE gar.item_id = ? AND gar.actor_id = ?";
+              "SELECT gar.actor_id, gar.role" + "  FROM group_access_roles gar WHERE gar.item_id = ?";
 
     /**
-     * The SQL to get all group access controls for all groups with access to
-     * this password.
+     * The SQL to get every group along with whether it can read and modify a password.
      */
 
-    private static final String GET_GAC_SUMMARIES_GAC_SQL =
-              "SELECT gac.rkey, gac.mkey FROM group_access_control gac "
-            +  "WHERE gac.item_id = ? AND gac.group_id = ? AND gac.rkey IS NOT NULL ";
+    private static final String GET_GAC_SUMMARIES_SQL =
+              "SELECT grp.group_id, grp.group_name, "
+            + "       CASE WHEN gac.rkey IS NULL THEN 'N' ELSE 'Y' END, "
+            + "       CASE WHEN gac.mkey IS NULL THEN 'N' ELSE 'Y' END "
+            + "  FROM groups grp "
+            + "  LEFT OUTER JOIN group_access_control gac "
+            + "    ON gac.group_id = grp.group_id AND gac.item_id = ? AND gac.rkey IS NOT NULL "
+            + " WHERE grp.status < " + Group.STATUS_DELETED;
 
 
     /**
@@ -142,6 +143,16 @@ public class GroupAccessControlDAO
 	    return get(GET_GROUP_FOR_GAC_SQL, theUser, itemId);
     }
 
+    /**
+     * Get the GAC a user can read an item via, taking the decrypted group from a request cache.
+     */
+
+    public GroupAccessControl getReadGac(final User theUser, final String itemId,
+                                         final KeyMaterialCache keyMaterialCache)
+            throws SQLException, GeneralSecurityException {
+        return get(GET_GROUP_FOR_GAC_SQL, theUser, itemId, keyMaterialCache);
+    }
+
     public GroupAccessControl get(final User theUser, final AccessControledObject item)
         throws SQLException, GeneralSecurityException {
         return get(theUser, item.getId());
@@ -210,6 +221,12 @@ public class GroupAccessControlDAO
 
     private GroupAccessControl get(final String sql, final User theUser, final String itemId)
             throws SQLException, GeneralSecurityException {
+        return get(sql, theUser, itemId, null);
+    }
+
+    private GroupAccessControl get(final String sql, final User theUser, final String itemId,
+                                   final KeyMaterialCache keyMaterialCache)
+            throws SQLException, GeneralSecurityException {
         try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
             ps.setString(1, theUser.getId());
             ps.setString(2, itemId);
@@ -217,7 +234,9 @@ public class GroupAccessControlDAO
             try(ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     String groupId = rs.getString(4);
-                    Group group = GroupDAO.getInstance().getByIdDecrypted(groupId, theUser);
+                    Group group = keyMaterialCache == null ?
+                            GroupDAO.getInstance().getByIdDecrypted(groupId, theUser) :
+                            keyMaterialCache.getDecryptedGroup(groupId, theUser);
                     return buildFromResultSet(rs, group);
                 }
             }
@@ -301,51 +320,26 @@ public class GroupAccessControlDAO
 
     public Set<AccessSummary> getSummaries(final AccessControledObject item)
             throws SQLException {
-        Set<AccessSummary> summaries = new TreeSet<>();
-
-        Connection conn = BOMFactory.getCurrentConntection();
-    	try(PreparedStatement gacPS = conn.prepareStatement(GET_GAC_SUMMARIES_GAC_SQL)) {
-        	try(PreparedStatement garPS = conn.prepareStatement(GET_GAC_SUMMARIES_GAR_SQL)) {
-	    		gacPS.setString(1, item.getId());
-	    		garPS.setString(1, item.getId());
-
-	    		for(Group thisGroup :  GroupDAO.getInstance().getAll()) {
-		    		boolean canRead = false;
-		    		boolean canModify = false;
-		    		gacPS.setString(2, thisGroup.getGroupId());
-		    		try(ResultSet rs = gacPS.executeQuery()) {
-		    			if( rs.next() ) {
-		    				rs.getString(1);	// Read the read key
-		    				canRead = !rs.wasNull();
-		    				rs.getString(2);	// Read the modify key
-		    				canModify = !rs.wasNull();
-		    			}
-		    		}
-
-		    		garPS.setString(2, thisGroup.getGroupId());
-		    		Permissions permissions = getPermissions(garPS);
-	            	AccessSummary gas = new AccessSummary( thisGroup.getGroupId(), thisGroup.getGroupName(),
-                            canRead, canModify, permissions.canApproveRARequest, permissions.canViewHistory);
-	            	summaries.add(gas);
-		    	}
-
-	    		return summaries;
-        	}
-    	}
+        return getSummaries(GET_GAC_SUMMARIES_SQL, GET_GAC_SUMMARIES_GAR_SQL, item.getId());
     }
 
     static GroupAccessControl buildFromResultSet(final ResultSet rs,
                                                  final AccessControlDecryptor decryptor)
             throws SQLException, GeneralSecurityException {
-	    return GroupAccessControl.builder()
-                .withItemId(rs.getString(1))
-                .withModifyKey(
-                        KeyUtils.decryptPrivateKey(rs.getBytes(1 +1), decryptor.getKeyDecrypter()))
-                .withReadKey(
-                        KeyUtils.decryptPublicKey(rs.getBytes(1 +2), decryptor.getKeyDecrypter()))
-                .withAccessorId(rs.getString(1 +3))
-                .build();
+        return buildFromEncryptedKeys(rs.getString(1), rs.getBytes(1 +1), rs.getBytes(1 +2), rs.getString(1 +3),
+                decryptor);
+    }
 
+    static GroupAccessControl buildFromEncryptedKeys(final String itemId, final byte[] encryptedModifyKey,
+                                                     final byte[] encryptedReadKey, final String accessorId,
+                                                     final AccessControlDecryptor decryptor)
+            throws GeneralSecurityException {
+        return GroupAccessControl.builder()
+                .withItemId(itemId)
+                .withModifyKey(KeyUtils.decryptPrivateKey(encryptedModifyKey, decryptor.getKeyDecrypter()))
+                .withReadKey(KeyUtils.decryptPublicKey(encryptedReadKey, decryptor.getKeyDecrypter()))
+                .withAccessorId(accessorId)
+                .build();
     }
 
     @Override
@@ -23,8 +23,10 @@ import org.apache.commons.csv.CSVRecord;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Data access object for the group objects.
@@ -45,6 +47,12 @@ public class GroupDAO extends GroupStoreManipulator
 
     private static final String GET_BY_ID_SQL = "SELECT " + GROUP_FIELDS +" FROM groups grp" + " WHERE grp.group_id = ?";
 
+    /**
+     * The SQL to get the names of a set of groups.
+     */
+
+    private static final String GET_NAMES_BY_IDS_SQL = "SELECT group_id, group_name FROM groups WHERE group_id IN (";
+
     /**
      * The SQL to get a particular group by its' name.
      */
@@ -169,6 +177,39 @@ public class GroupDAO extends GroupStoreManipulator
         return create( theCreator, IDGenerator.getID(), groupName);
     }
 
+    /**
+     * Gets a group by its ID. Each call returns a separate instance so the caller is free to set its
+     * access key.
+     *
+     * @param groupId The ID of the group to fetch.
+     *
+     * @return The group, or null if it does not exist.
+     */
+
+    @Override
+    public Group getById(final String groupId)
+            throws SQLException {
+        if (groupId == null) {
+            return null;
+        }
+
+        Group group = groupCache.get(groupId, super::getById);
+        return group == null ? null : new Group(group);
+    }
+
+    /**
+     * Get the names of a set of groups.
+     *
+     * @param groupIds The IDs of the groups.
+     *
+     * @return The names of the groups which exist, keyed by their IDs.
+     */
+
+    public Map<String, String> getNamesById(final Collection<String> groupIds)
+            throws SQLException {
+        return getValuesForKeys(GET_NAMES_BY_IDS_SQL, groupIds);
+    }
+
     public Group getAdminGroup(final User theUser)
             throws SQLException, GeneralSecurityException {
         // Get the admin group either directly (if the user is an admin),
@@ -1,5 +1,7 @@
 package com.enterprisepasswordsafe.database;
 
+import com.enterprisepasswordsafe.engine.utils.Cache;
+
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,6 +18,20 @@ public abstract class GroupStoreManipulator extends StoredObjectManipulator<Grou
 
     private static final String[] DELETE_SQL_STATEMENTS = { DELETE_SQL, DELETE_GAC_SQL, DELETE_MEMBERSHIP_SQL };
 
+    private static final int GROUP_CACHE_SIZE = 1000;
+
+    private static final long GROUP_CACHE_LIFETIME = 5 * 60 * 1000;	// 5m
+
+    /**
+     * Cache of groups fetched by ID. The cached groups never hold an access key.
+     */
+
+    static final Cache<String, Group> groupCache = new Cache<>(GROUP_CACHE_SIZE, GROUP_CACHE_LIFETIME);
+
+    static {
+        CacheInvalidationBus.getInstance().register(CacheInvalidationBus.GROUPS, groupCache);
+    }
+
     GroupStoreManipulator(String getByIdSql, String getByNameSql, String getCountSql) {
         super(getByIdSql, getByNameSql, getCountSql);
     }
@@ -34,6 +50,7 @@ public abstract class GroupStoreManipulator extends StoredObjectManipulator<Grou
             ps.setString(3, group.getGroupId());
             ps.executeUpdate();
         }
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.GROUPS, group.getGroupId());
     }
 
     public void delete( final Group group )
@@ -42,5 +59,6 @@ public abstract class GroupStoreManipulator extends StoredObjectManipulator<Grou
         for(String sql: DELETE_SQL_STATEMENTS) {
             runResultlessParameterisedSQL(sql, theGroupId);
         }
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.GROUPS, theGroupId);
     }
 }
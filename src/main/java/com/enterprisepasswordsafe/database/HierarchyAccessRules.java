@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import java.util.Map;
+
+/**
+ * The hierarchy access rules which apply to a single user, held in memory so the accessibility of
+ * a large number of nodes can be checked without a query for each one.
+ */
+
+public final class HierarchyAccessRules {
+
+    private final HierarchyNodeAccessRuleDAO resolver;
+
+    private final Map<String, Byte> userRules;
+
+    private final Map<String, Boolean> groupRules;
+
+    private final String defaultRule;
+
+    HierarchyAccessRules(final HierarchyNodeAccessRuleDAO resolver, final Map<String, Byte> userRules,
+                         final Map<String, Boolean> groupRules, final String defaultRule) {
+        this.resolver = resolver;
+        this.userRules = userRules;
+        this.groupRules = groupRules;
+        this.defaultRule = defaultRule;
+    }
+
+    /**
+     * Get the accessibility of a node without taking its parents into account. This gives the same
+     * result as HierarchyNodeAccessRuleDAO.getAccessibilityForUser(nodeId, user, false).
+     *
+     * @param nodeId The ID of the node.
+     *
+     * @return The accessibility of the node.
+     */
+
+    public byte getAccessibility(final String nodeId) {
+        if (nodeId == null || nodeId.equals(HierarchyNode.ROOT_NODE_ID)) {
+            return HierarchyNodeAccessRuleDAO.ACCESIBILITY_ALLOWED;
+        }
+        return resolver.resolveAccessibility(userRules.get(nodeId), groupRules.get(nodeId), defaultRule);
+    }
+}
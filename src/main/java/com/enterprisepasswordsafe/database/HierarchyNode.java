@@ -115,6 +115,19 @@ public final class HierarchyNode
         }
     }
 
+    /**
+     * Creates a copy of an existing node.
+     *
+     * @param original The node to copy.
+     */
+
+    HierarchyNode(final HierarchyNode original) {
+        nodeId = original.nodeId;
+        name = original.name;
+        parentId = original.parentId;
+        type = original.type;
+    }
+
     /**
      * Extracts the information about this node from the JDBC ResultSet.
      *
@@ -17,15 +17,20 @@
 package com.enterprisepasswordsafe.database;
 
 import com.enterprisepasswordsafe.database.derived.AbstractUserSummary;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
 
 import java.security.GeneralSecurityException;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Data access object for hierarchy node access rules.
@@ -56,11 +61,13 @@ public abstract class HierarchyNodeAccessRuleDAO {
             "SELECT setting FROM hierarchy_access_control WHERE node_id = ? AND user_id = ?";
 
     /**
-     * SQL to get the access rule for a node and user.
+     * SQL to get all of the user access rules for a node along with the users they are for.
      */
 
-    private static final String GET_NODE_RULES_SQL =
-            "SELECT hac.setting FROM hierarchy_access_control hac WHERE node_id = ? AND user_id = ? ";
+    private static final String GET_NODE_USER_RULES_SQL =
+            "SELECT hac.setting, " + UserDAO.USER_FIELDS
+        +   "  FROM hierarchy_access_control hac, application_users appusers "
+        +   " WHERE hac.node_id = ? AND appusers.user_id = hac.user_id";
 
     /**
      * SQL to insert an access rule for a node and user.
@@ -92,6 +99,21 @@ public abstract class HierarchyNodeAccessRuleDAO {
             "SELECT hgac.setting FROM hierarchy_group_access_control hgac, membership mem "
         +   " WHERE hgac.node_id = ? AND hgac.group_id = mem.group_id AND mem.user_id = ?";
 
+    /**
+     * SQL to get all of the access rules for a user.
+     */
+
+    private static final String GET_ALL_USER_RULES_SQL =
+            "SELECT node_id, setting FROM hierarchy_access_control WHERE user_id = ?";
+
+    /**
+     * SQL to get all of the access rules for the groups a user is a member of.
+     */
+
+    private static final String GET_ALL_USERS_GROUP_RULES_SQL =
+            "SELECT hgac.node_id, hgac.setting FROM hierarchy_group_access_control hgac, membership mem "
+        +   " WHERE hgac.group_id = mem.group_id AND mem.user_id = ?";
+
     /**
      * SQL to get the access rule for a node and group.
      */
@@ -120,6 +142,13 @@ public abstract class HierarchyNodeAccessRuleDAO {
     private static final String DELETE_GROUP_NODE_RULE_SQL =
            "DELETE FROM hierarchy_group_access_control WHERE node_id = ? AND group_id = ? ";
 
+    /**
+     * SQL to get all of the group access rules for a node.
+     */
+
+    private static final String GET_NODE_GROUP_RULES_SQL =
+            "SELECT group_id, setting FROM hierarchy_group_access_control WHERE node_id = ?";
+
     public byte getAccessibilityForUser( final HierarchyNode node, final User user)
         throws SQLException, GeneralSecurityException {
     	return getAccessibilityForUser( node.getNodeId(), user, true);
@@ -133,6 +162,65 @@ public abstract class HierarchyNodeAccessRuleDAO {
     public abstract byte getAccessibilityForUser( final String nodeId, final User user, boolean recurse)
         throws SQLException, GeneralSecurityException;
 
+    /**
+     * Decide the accessibility of a single node, without looking at its parents, from the rules
+     * which apply to it.
+     *
+     * @param userRule The rule for the user, or null if there is none.
+     * @param allowedViaGroup The combined rule for the users groups, or null if there is none.
+     * @param defaultRule The configured default rule.
+     *
+     * @return The accessibility of the node.
+     */
+
+    abstract byte resolveAccessibility(final Byte userRule, final Boolean allowedViaGroup, final String defaultRule);
+
+    /**
+     * Get all of the rules which apply to a user so that the accessibility of many nodes can be
+     * checked without going back to the database.
+     *
+     * @param user The user to get the rules for.
+     *
+     * @return The rules for the user.
+     */
+
+    public HierarchyAccessRules getRulesForUser(final User user)
+        throws SQLException, GeneralSecurityException {
+        Map<String, Byte> userRules = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_ALL_USER_RULES_SQL)) {
+            ps.setString(1, user.getId());
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    byte[] rule = rs.getBytes(2);
+                    userRules.put(rs.getString(1), rule.length > 1 ? user.getKeyDecrypter().decrypt(rule)[0] : rule[0]);
+                }
+            }
+        }
+
+        Map<String, Boolean> groupRules = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_ALL_USERS_GROUP_RULES_SQL)) {
+            ps.setString(1, user.getId());
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    String nodeId = rs.getString(1);
+                    byte rule = rs.getBytes(2)[0];
+                    if (rule == ACCESIBILITY_DENIED) {
+                        groupRules.put(nodeId, Boolean.FALSE);
+                    } else if (rule == ACCESIBILITY_ALLOWED) {
+                        groupRules.putIfAbsent(nodeId, Boolean.TRUE);
+                    }
+                }
+            }
+        }
+
+        String defaultRule = ConfigurationDAO.getValue(ConfigurationOption.DEFAULT_HIERARCHY_ACCESS_RULE);
+        return new HierarchyAccessRules(this, userRules, groupRules, defaultRule);
+    }
+
+    byte resolveDefault(final String defaultRule) {
+        return defaultRule != null && defaultRule.equals("D") ? ACCESIBILITY_DENIED : ACCESIBILITY_ALLOWED;
+    }
+
     protected byte[] getUserAccessibilityRule( final String nodeId, final User user)
         throws SQLException {
         try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_USER_NODE_RULE_SQL)) {
@@ -172,58 +260,95 @@ public abstract class HierarchyNodeAccessRuleDAO {
         }
     }
 
+    /**
+     * Get the access rule for every user other than the administrator for a node. All of the rules
+     * for the node are read in one query, and only the users who have an encrypted rule have their
+     * keys decrypted, which is done in parallel.
+     *
+     * @param node The node to get the rules for.
+     * @param adminGroup The admin group, used to decrypt the users keys.
+     *
+     * @return The rules, including the default rule for users without one.
+     */
+
     public Set<HierarchyNodeAccessRule> getAccessibilityRules( final HierarchyNode node, final Group adminGroup)
     	throws SQLException, GeneralSecurityException {
-    	Set<HierarchyNodeAccessRule> permissions = new TreeSet<>();
-
-    	try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_NODE_RULES_SQL)) {
+        Map<String, Byte> rules = new HashMap<>();
+        List<EncryptedUserRule> encryptedRules = new ArrayList<>();
+    	try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_NODE_USER_RULES_SQL)) {
 	        ps.setString(1, node.getNodeId());
-
-			UserDAO uDAO = UserDAO.getInstance();
-	        UserSummaryDAO usDAO = UserSummaryDAO.getInstance();
-	    	for(AbstractUserSummary thisUser : usDAO.getSummaryListExcludingAdmin()) {
-				ps.setString(2, thisUser.getId());
-	            try(ResultSet rs = ps.executeQuery()) {
-	                byte ruleByte = HierarchyNodeAccessRuleDAO.ACCESIBILITY_DEFAULT;
-	                if(rs.next()) {
-	                	byte[] rule = rs.getBytes(1);
-	                	if( rule.length > 1 ) {
-	                		User theUser = uDAO.getByIdDecrypted(thisUser.getId(), adminGroup);
-	                		rule = theUser.getKeyDecrypter().decrypt(rule);
-	                		ruleByte = rule[0];
-	                	}
-	                }
-
-	                permissions.add(new HierarchyNodeAccessRule(thisUser.getId(), thisUser.getName(), ruleByte));
-	            }
-	    	}
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    byte[] rule = rs.getBytes(1);
+                    User user = new User(rs, 2);
+                    if( rule.length > 1 ) {
+                        encryptedRules.add(new EncryptedUserRule(user, rule, adminGroup));
+                    } else {
+                        rules.put(user.getId(), rule[0]);
+                    }
+                }
+            }
     	}
 
+        List<Byte> decryptedRules = decryptInOrder(encryptedRules);
+        for (int i = 0 ; i < encryptedRules.size() ; i++) {
+            rules.put(encryptedRules.get(i).user.getId(), decryptedRules.get(i));
+        }
+
+    	Set<HierarchyNodeAccessRule> permissions = new TreeSet<>();
+    	for(AbstractUserSummary thisUser : UserSummaryDAO.getInstance().getSummaryListExcludingAdmin()) {
+            Byte rule = rules.get(thisUser.getId());
+            permissions.add(new HierarchyNodeAccessRule(thisUser.getId(), thisUser.getName(),
+                    rule == null ? ACCESIBILITY_DEFAULT : rule));
+    	}
         return permissions;
     }
 
+    /**
+     * Get the access rule for every group for a node using a single query for the rules.
+     *
+     * @param node The node to get the rules for.
+     *
+     * @return The rules, including the default rule for groups without one.
+     */
+
     public Set<HierarchyNodeAccessRule> getGroupAccessibilityRules( final HierarchyNode node )
 	    throws SQLException {
-    	Set<HierarchyNodeAccessRule> permissions = new TreeSet<>();
-        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_GROUP_NODE_RULE_SQL)) {
+        Map<String, Byte> rules = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_NODE_GROUP_RULES_SQL)) {
 	        ps.setString(1, node.getNodeId());
-
-	        for(Group thisGroup : GroupDAO.getInstance().getAll()) {
-	        	ps.setString(2, thisGroup.getGroupId());
-		        try(ResultSet rs = ps.executeQuery()) {
-	                byte ruleByte = HierarchyNodeAccessRuleDAO.ACCESIBILITY_DEFAULT;
-		            if(rs.next()) {
-		            	byte[] rule = rs.getBytes(1);
-		            	ruleByte = rule[0];
-		            }
-	            	permissions.add(new HierarchyNodeAccessRule(thisGroup.getGroupId(),thisGroup.getGroupName(),ruleByte));
-		        }
-	        }
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    rules.put(rs.getString(1), rs.getBytes(2)[0]);
+                }
+            }
         }
 
+    	Set<HierarchyNodeAccessRule> permissions = new TreeSet<>();
+        for(Group thisGroup : GroupDAO.getInstance().getAll()) {
+            Byte rule = rules.get(thisGroup.getGroupId());
+            permissions.add(new HierarchyNodeAccessRule(thisGroup.getGroupId(), thisGroup.getGroupName(),
+                    rule == null ? ACCESIBILITY_DEFAULT : rule));
+        }
         return permissions;
     }
 
+    private List<Byte> decryptInOrder(final List<EncryptedUserRule> encryptedRules)
+            throws SQLException, GeneralSecurityException {
+        try {
+            return WorkerPool.getInstance().invokeAllInOrder(encryptedRules);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            throw new GeneralSecurityException("Unable to decrypt hierarchy access rules", cause);
+        }
+    }
+
     public void setAccessibleByUser( final HierarchyNode node, final User user, final byte accessibility)
         throws SQLException, GeneralSecurityException {
     	String sql;
@@ -299,6 +424,29 @@ public abstract class HierarchyNodeAccessRuleDAO {
     	return allowed;
 	}
 
+    /**
+     * A users rule which is encrypted with their access key, which can be decrypted away from the
+     * thread which read it from the database.
+     */
+
+    private static final class EncryptedUserRule implements Callable<Byte> {
+        private final User user;
+        private final byte[] rule;
+        private final Group adminGroup;
+
+        EncryptedUserRule(final User user, final byte[] rule, final Group adminGroup) {
+            this.user = user;
+            this.rule = rule;
+            this.adminGroup = adminGroup;
+        }
+
+        @Override
+        public Byte call() throws GeneralSecurityException {
+            user.decryptAdminAccessKey(adminGroup);
+            return user.getKeyDecrypter().decrypt(rule)[0];
+        }
+    }
+
     //------------------------
 
     private static final class InstanceHolder {
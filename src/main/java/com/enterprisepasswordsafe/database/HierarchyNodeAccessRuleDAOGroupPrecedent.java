@@ -53,4 +53,15 @@ public class HierarchyNodeAccessRuleDAOGroupPrecedent
 
     	return ACCESIBILITY_ALLOWED;
     }
+
+    @Override
+    byte resolveAccessibility(final Byte userRule, final Boolean allowedViaGroup, final String defaultRule) {
+    	if( allowedViaGroup != null ) {
+    		return allowedViaGroup ? ACCESIBILITY_ALLOWED : ACCESIBILITY_DENIED;
+    	}
+    	if( userRule != null ) {
+    		return userRule;
+    	}
+    	return resolveDefault(defaultRule);
+    }
 }
\ No newline at end of file
@@ -53,4 +53,15 @@ public class HierarchyNodeAccessRuleDAOUserPrecedent
 
     	return ACCESIBILITY_ALLOWED;
     }
+
+    @Override
+    byte resolveAccessibility(final Byte userRule, final Boolean allowedViaGroup, final String defaultRule) {
+    	if( userRule != null ) {
+    		return userRule;
+    	}
+    	if( allowedViaGroup != null ) {
+    		return allowedViaGroup ? ACCESIBILITY_ALLOWED : ACCESIBILITY_DENIED;
+    	}
+    	return resolveDefault(defaultRule);
+    }
 }
\ No newline at end of file
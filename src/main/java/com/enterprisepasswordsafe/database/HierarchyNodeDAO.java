@@ -16,10 +16,13 @@
 
 package com.enterprisepasswordsafe.database;
 
+import com.enterprisepasswordsafe.database.actions.NodeObjectAction;
 import com.enterprisepasswordsafe.database.derived.HierarchyNodeSummary;
+import com.enterprisepasswordsafe.engine.AccessControlDecryptor;
 import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
 import com.enterprisepasswordsafe.engine.users.UserClassifier;
 import com.enterprisepasswordsafe.engine.utils.Cache;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
@@ -28,6 +31,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -51,6 +56,12 @@ public final class HierarchyNodeDAO
 
     private static final String GET_NODE_PARENT_ID_SQL = "SELECT " + NODE_FIELDS + " FROM hierarchy WHERE node_id = ? ";
 
+    /**
+     * SQL to get the names of a set of nodes.
+     */
+
+    private static final String GET_NAMES_BY_IDS_SQL = "SELECT node_id, name FROM hierarchy WHERE node_id IN (";
+
     /**
      * SQL To get a node from its' ID.
      */
@@ -125,6 +136,45 @@ public final class HierarchyNodeDAO
             + "   AND m.user_id = ? AND g.group_id = gac.group_id AND g.status = " + Group.STATUS_ENABLED;
 
 
+    /**
+     * The SQL statement to get the password and user access control for every object node below
+     * a node which a user can access via user access control.
+     */
+
+    private static final String GET_SUBTREE_OBJECTS_VIA_UAC_SQL =
+            "SELECT   " + UserAccessControlDAO.UAC_FIELDS+", "+PasswordDAO.PASSWORD_FIELDS + ", h.parent_id "
+            + "  FROM hierarchy_paths hp, hierarchy h, passwords pass, user_access_control uac "
+            + " WHERE hp.ancestor_id = ? AND h.node_id = hp.descendant_id AND h.type = " + HierarchyNode.OBJECT_NODE
+            + "   AND uac.item_id = h.name AND uac.rkey is not null AND uac.user_id = ? AND pass.password_id = h.name";
+
+    /**
+     * The SQL statement to get the password and group access control for every object node below
+     * a node which a user can access via group access control.
+     */
+
+    private static final String GET_SUBTREE_OBJECTS_VIA_GAC_SQL =
+            "SELECT   " + GroupAccessControlDAO.GAC_FIELDS +", "+PasswordDAO.PASSWORD_FIELDS + ", h.parent_id "
+            + "  FROM hierarchy_paths hp, hierarchy h, passwords pass, group_access_control gac, membership m, groups g "
+            + " WHERE hp.ancestor_id = ? AND h.node_id = hp.descendant_id AND h.type = " + HierarchyNode.OBJECT_NODE
+            + "   AND pass.password_id = h.name AND gac.item_id = h.name AND gac.rkey is not null "
+            + "   AND m.group_id = gac.group_id AND m.user_id = ? AND g.group_id = gac.group_id "
+            + "   AND g.status = " + Group.STATUS_ENABLED;
+
+    /**
+     * The SQL statement to get all of the container nodes below a node.
+     */
+
+    private static final String GET_SUBTREE_CONTAINER_NODES_SQL =
+            "SELECT " + HierarchyNode.NODE_FIELDS + " FROM hierarchy_paths hp, hierarchy nodes "
+            + " WHERE hp.ancestor_id = ? AND hp.depth > 0 AND nodes.node_id = hp.descendant_id "
+            + "   AND nodes.type = " + HierarchyNode.CONTAINER_NODE;
+
+    /**
+     * The number of passwords decrypted before they are passed on when processing a subtree.
+     */
+
+    private static final int SUBTREE_DECRYPTION_BATCH_SIZE = 256;
+
     /**
      * The SQL statement to get the child container nodes of a specific node.
      */
@@ -168,6 +218,24 @@ public final class HierarchyNodeDAO
     private static final String UPDATE_NODE_SQL =
             "UPDATE hierarchy SET name = ?, parent_id = ?, type = ? WHERE node_id = ?";
 
+    /**
+     * The SQL statement to get the ancestors of a node, starting with the furthest away.
+     */
+
+    private static final String GET_ANCESTORS_SQL =
+            "SELECT " + HierarchyNode.NODE_FIELDS + " FROM hierarchy_paths hp, hierarchy nodes "
+            + " WHERE hp.descendant_id = ? AND hp.depth > 0 AND nodes.node_id = hp.ancestor_id "
+            + " ORDER BY hp.depth DESC";
+
+    /**
+     * The SQL statement to get the stored node at the top of the branch holding a node.
+     */
+
+    private static final String GET_TOP_ANCESTOR_SQL =
+            "SELECT " + HierarchyNode.NODE_FIELDS + " FROM hierarchy_paths hp, hierarchy nodes "
+            + " WHERE hp.descendant_id = ? AND nodes.node_id = hp.ancestor_id "
+            + " ORDER BY hp.depth DESC";
+
     /**
      * SQL to count the number of nodes referring to a object.
      */
@@ -182,9 +250,23 @@ public final class HierarchyNodeDAO
     private static final String DELETE_SQL = "DELETE FROM hierarchy WHERE node_id = ?";
 
     /**
-     * Cache for node summaries.
+     * The maximum number of nodes held in the node cache.
+     */
+
+    private static final int NODE_CACHE_SIZE = 5000;
+
+    /**
+     * The maximum life of a cached node.
+     */
+
+    private static final long NODE_CACHE_LIFETIME = 5 * 60 * 1000;	// 5m
+
+    /**
+     * Cache for nodes fetched by their ID.
      */
 
+    private final Cache<String, HierarchyNode> nodeCache = new Cache<>(NODE_CACHE_SIZE, NODE_CACHE_LIFETIME);
+
 	private final UserClassifier userClassifier = new UserClassifier();
 
 	/**
@@ -193,6 +275,7 @@ public final class HierarchyNodeDAO
 
 	private HierarchyNodeDAO( ) {
 		super(GET_NODE_BY_ID_SQL, GET_NODE_BY_NAME_SQL, DELETE_SQL);
+		CacheInvalidationBus.getInstance().register(CacheInvalidationBus.HIERARCHY, nodeCache);
 	}
 
     @Override
@@ -225,7 +308,8 @@ public final class HierarchyNodeDAO
 
     public void store(final HierarchyNode node)
         throws SQLException {
-        String statementSQL = getById(node.getNodeId()) == null ? INSERT_NODE_SQL : UPDATE_NODE_SQL;
+        HierarchyNode storedNode = super.getById(node.getNodeId());
+        String statementSQL = storedNode == null ? INSERT_NODE_SQL : UPDATE_NODE_SQL;
         try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(statementSQL)) {
             ps.setString(1, node.getName());
             ps.setString(2, node.getParentId());
@@ -233,6 +317,29 @@ public final class HierarchyNodeDAO
             ps.setString(4, node.getNodeId());
             ps.executeUpdate();
         }
+        if (storedNode == null) {
+            HierarchyPathDAO.getInstance().nodeAdded(node.getNodeId(), node.getParentId());
+        } else if (!Objects.equals(storedNode.getParentId(), node.getParentId())) {
+            HierarchyPathDAO.getInstance().nodeMoved(node.getNodeId(), node.getParentId());
+        }
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.HIERARCHY, node.getNodeId());
+    }
+
+    /**
+     * Get the names of a set of nodes.
+     *
+     * @param nodeIds The IDs of the nodes.
+     *
+     * @return The names of the nodes which exist, keyed by their IDs.
+     */
+
+    public Map<String, String> getNamesById(final Collection<String> nodeIds)
+            throws SQLException {
+        Map<String, String> names = getValuesForKeys(GET_NAMES_BY_IDS_SQL, nodeIds);
+        if (nodeIds.contains(HierarchyNode.ROOT_NODE_ID)) {
+            names.put(HierarchyNode.ROOT_NODE_ID, ROOT_NODE.getName());
+        }
+        return names;
     }
 
     /**
@@ -247,7 +354,12 @@ public final class HierarchyNodeDAO
     @Override
     public HierarchyNode getById(final String nodeId)
             throws SQLException {
-        return (nodeId == null || nodeId.equals(HierarchyNode.ROOT_NODE_ID)) ? ROOT_NODE : super.getById(nodeId);
+        if (nodeId == null || nodeId.equals(HierarchyNode.ROOT_NODE_ID)) {
+            return ROOT_NODE;
+        }
+
+        HierarchyNode node = nodeCache.get(nodeId, super::getById);
+        return node == null ? null : new HierarchyNode(node);
     }
 
 
@@ -271,6 +383,48 @@ public final class HierarchyNodeDAO
         return node == null ? null : node.getNodeId();
     }
 
+    /**
+     * Gets the ancestors of a node, starting with the root or personal node at the top of its branch
+     * and ending with its parent.
+     *
+     * @param node The node to get the ancestors of.
+     *
+     * @return The ancestors of the node.
+     *
+     * @throws SQLException Thrown if there is problem talking to the database.
+     */
+
+    public List<HierarchyNode> getAncestors(final HierarchyNode node)
+            throws SQLException {
+        List<HierarchyNode> ancestors = new ArrayList<>();
+        if (node.getParentId() == null) {
+            return ancestors;
+        }
+
+        ancestors.addAll(getMultiple(GET_ANCESTORS_SQL, node.getNodeId()));
+        String topParentId = ancestors.isEmpty() ? node.getParentId() : ancestors.get(0).getParentId();
+        if (HierarchyNode.ROOT_NODE_ID.equals(topParentId)) {
+            ancestors.add(0, ROOT_NODE);
+        }
+        return ancestors;
+    }
+
+    /**
+     * Tests if a node is in a users personal branch of the hierarchy, rather than below the root.
+     *
+     * @param nodeId The ID of the node to check.
+     *
+     * @return true if the node is not below the root node.
+     *
+     * @throws SQLException Thrown if there is problem talking to the database.
+     */
+
+    public boolean isPersonal(final String nodeId)
+            throws SQLException {
+        HierarchyNode topNode = fetchObjectIfExists(GET_TOP_ANCESTOR_SQL, nodeId);
+        return topNode != null && topNode.getParentId() == null;
+    }
+
     /**
      * Gets a specific child node by it's name.
      *
@@ -305,6 +459,8 @@ public final class HierarchyNodeDAO
         }
 
         runResultlessParameterisedSQL(DELETE_SQL, node.getNodeId());
+        HierarchyPathDAO.getInstance().nodeRemoved(node.getNodeId());
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.HIERARCHY, node.getNodeId());
 
         if (node.getType()== HierarchyNode.OBJECT_NODE) {
             deleteOrphanedPasswords(node, deletingUser);
@@ -340,89 +496,258 @@ public final class HierarchyNodeDAO
         return node == null ? null : node.getNodeId();
     }
 
+    /**
+     * Gets all of the passwords directly under a node which a user can access. The access control rows are
+     * read in one pass for each of the user and group routes, each group key is decrypted once, and the
+     * password data is then decrypted in parallel.
+     *
+     * @param node The node to get the passwords for.
+     * @param user The user the passwords are being fetched for.
+     * @param comparator The comparator used to order the results, or null for the natural order.
+     *
+     * @return The accessible passwords, ordered by the comparator.
+     */
+
     public Set<Password> getAllChildrenObjects(final HierarchyNode node, final User user, final Comparator<Password> comparator)
             throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
-        Map<String, Password> resultMap = new HashMap<>();
+        Map<String, EncryptedChildObject> encryptedObjects = new LinkedHashMap<>();
 
-        addUserAccessControlAccessibleObjects(node, user, resultMap);
-        addGroupAccessControlAccessibleObjects(node, user, resultMap);
+        addUserAccessControlAccessibleObjects(GET_CHILD_OBJECTS_VIA_UAC_SQL, node, user, false, encryptedObjects);
+        addGroupAccessControlAccessibleObjects(GET_CHILD_OBJECTS_VIA_GAC_SQL, node, user, false, encryptedObjects);
 
         Set<Password> results = comparator == null ? new TreeSet<>() : new TreeSet<>(comparator);
-
-        results.addAll(resultMap.values());
+        results.addAll(decryptChildObjects(encryptedObjects.values()));
         return results;
     }
 
-    private void addUserAccessControlAccessibleObjects(final HierarchyNode node, final User user,
-                                                       Map<String,Password> results)
-            throws SQLException, GeneralSecurityException {
-        StringBuilder sql = new StringBuilder(GET_CHILD_OBJECTS_VIA_UAC_SQL);
-        if(!userClassifier.isPriviledgedUser(user)) {
-            sql.append("   AND (pass.enabled is null OR pass.enabled = 'Y')" );
+    /**
+     * Passes every password directly under a node which a user can access, and which the action wants,
+     * to the action.
+     *
+     * @param node The node to get the passwords for.
+     * @param user The user the passwords are being fetched for.
+     * @param action The action to pass each password to.
+     */
+
+    public void processChildObjects(final HierarchyNode node, final User user, final NodeObjectAction action)
+            throws Exception {
+        Map<String, EncryptedChildObject> encryptedObjects = new LinkedHashMap<>();
+        addUserAccessControlAccessibleObjects(GET_CHILD_OBJECTS_VIA_UAC_SQL, node, user, false, encryptedObjects);
+        addGroupAccessControlAccessibleObjects(GET_CHILD_OBJECTS_VIA_GAC_SQL, node, user, false, encryptedObjects);
+        encryptedObjects.values().removeIf(object -> !action.wants(object.passwordId));
+
+        for (Password password : decryptChildObjects(encryptedObjects.values())) {
+            action.process(node, password);
         }
+    }
 
-        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql.toString())) {
-            ps.setString(1, node.getNodeId());
-            ps.setString(2, user.getId());
+    /**
+     * Passes every password in a subtree which a user can access to an action. The nodes, access rules and
+     * access controls for the whole subtree are read using a fixed number of queries, the hierarchy access
+     * rules are applied in memory, and the passwords the action wants are decrypted and passed to it in batches.
+     *
+     * @param node The node at the top of the subtree.
+     * @param user The user the passwords are being fetched for.
+     * @param action The action to pass each node and password to.
+     */
 
-            try(ResultSet rs = ps.executeQuery()) {
-                processObjectResults(user, results, rs);
+    public void processSubtreeObjects(final HierarchyNode node, final User user, final NodeObjectAction action)
+            throws Exception {
+        Map<String, HierarchyNode> accessibleNodes = getAccessibleSubtreeContainers(node, user);
+
+        Map<String, EncryptedChildObject> encryptedObjects = new LinkedHashMap<>();
+        addUserAccessControlAccessibleObjects(GET_SUBTREE_OBJECTS_VIA_UAC_SQL, node, user, true, encryptedObjects);
+        addGroupAccessControlAccessibleObjects(GET_SUBTREE_OBJECTS_VIA_GAC_SQL, node, user, true, encryptedObjects);
+        encryptedObjects.values().removeIf(object ->
+                !accessibleNodes.containsKey(object.parentId) || !action.wants(object.passwordId));
+
+        List<EncryptedChildObject> batch = new ArrayList<>(SUBTREE_DECRYPTION_BATCH_SIZE);
+        for (EncryptedChildObject encryptedObject : encryptedObjects.values()) {
+            batch.add(encryptedObject);
+            if (batch.size() == SUBTREE_DECRYPTION_BATCH_SIZE) {
+                processDecryptedBatch(batch, accessibleNodes, action);
+                batch.clear();
             }
         }
+        processDecryptedBatch(batch, accessibleNodes, action);
     }
 
-    private void processObjectResults(User user, Map<String, Password> results, ResultSet rs)
-            throws SQLException, GeneralSecurityException {
-        while (rs.next()) {
-            String passwordId = rs.getString(AbstractAccessControlDAO.ACCESS_CONTROL_FIELD_COUNT + 1);
-            if (results.containsKey(passwordId)) {
-                continue;
+    private void processDecryptedBatch(final List<EncryptedChildObject> batch,
+                                       final Map<String, HierarchyNode> nodes, final NodeObjectAction action)
+            throws Exception {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Password> decrypted = decryptInOrder(batch);
+        for (int i = 0 ; i < batch.size() ; i++) {
+            Password password = decrypted.get(i);
+            if (password != null) {
+                action.process(nodes.get(batch.get(i).parentId), password);
             }
+        }
+    }
+
+    /**
+     * Get the container nodes in a subtree which a user can reach, including the node at the top. A
+     * container the user is denied access to hides everything below it.
+     */
 
-            addPasswordToResults(results, passwordId, rs,UserAccessControlDAO.buildFromResultSet(rs, user));
+    private Map<String, HierarchyNode> getAccessibleSubtreeContainers(final HierarchyNode node, final User user)
+            throws SQLException, GeneralSecurityException {
+        Map<String, List<HierarchyNode>> childrenByParent = new HashMap<>();
+        for (HierarchyNode thisNode : getMultiple(GET_SUBTREE_CONTAINER_NODES_SQL, node.getNodeId())) {
+            childrenByParent.computeIfAbsent(thisNode.getParentId(), k -> new ArrayList<>()).add(thisNode);
         }
+
+        HierarchyAccessRules rules = userClassifier.isAdministrator(user) ?
+                null : HierarchyNodeAccessRuleDAO.getInstance().getRulesForUser(user);
+
+        Map<String, HierarchyNode> accessibleNodes = new HashMap<>();
+        Deque<HierarchyNode> toVisit = new ArrayDeque<>();
+        toVisit.add(node);
+        while (!toVisit.isEmpty()) {
+            HierarchyNode thisNode = toVisit.remove();
+            accessibleNodes.put(thisNode.getNodeId(), thisNode);
+            for (HierarchyNode child : childrenByParent.getOrDefault(thisNode.getNodeId(), Collections.emptyList())) {
+                if (rules == null
+                || rules.getAccessibility(child.getNodeId()) != HierarchyNodeAccessRuleDAO.ACCESIBILITY_DENIED) {
+                    toVisit.add(child);
+                }
+            }
+        }
+        return accessibleNodes;
     }
 
+    private void addUserAccessControlAccessibleObjects(final String baseSql, final HierarchyNode node,
+                                                       final User user, final boolean includesParentId,
+                                                       final Map<String,EncryptedChildObject> results)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(addEnabledFilter(baseSql, user))) {
+            ps.setString(1, node.getNodeId());
+            ps.setString(2, user.getId());
 
-    private void addGroupAccessControlAccessibleObjects(final HierarchyNode node, final User user,
-                                                        Map<String,Password> results)
-            throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
-        StringBuilder sql = new StringBuilder(GET_CHILD_OBJECTS_VIA_GAC_SQL);
-        if(!userClassifier.isPriviledgedUser(user)) {
-            sql.append("   AND (pass.enabled is null OR pass.enabled = 'Y')" );
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    addEncryptedObject(results, rs, user, includesParentId);
+                }
+            }
         }
+    }
 
-        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql.toString())) {
+    private void addGroupAccessControlAccessibleObjects(final String baseSql, final HierarchyNode node,
+                                                        final User user, final boolean includesParentId,
+                                                        final Map<String,EncryptedChildObject> results)
+            throws SQLException, GeneralSecurityException {
+        Map<String, Group> decryptedGroups = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(addEnabledFilter(baseSql, user))) {
             ps.setString(1, node.getNodeId());
             ps.setString(2, user.getId());
 
             try(ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    processGroupAccessControlResult(results, user, rs);
+                    String groupId = rs.getString(4);
+                    if (!decryptedGroups.containsKey(groupId)) {
+                        decryptedGroups.put(groupId, GroupDAO.getInstance().getByIdDecrypted(groupId, user));
+                    }
+                    Group group = decryptedGroups.get(groupId);
+                    if (group != null) {
+                        addEncryptedObject(results, rs, group, includesParentId);
+                    }
                 }
             }
         }
     }
 
-    private void processGroupAccessControlResult(Map<String,Password> results, User user, ResultSet rs)
-            throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
+    private String addEnabledFilter(final String sql, final User user)
+            throws SQLException {
+        if(userClassifier.isPriviledgedUser(user)) {
+            return sql;
+        }
+        return sql + "   AND (pass.enabled is null OR pass.enabled = 'Y')";
+    }
+
+    private void addEncryptedObject(final Map<String,EncryptedChildObject> results, final ResultSet rs,
+                                    final AccessControlDecryptor decryptor, final boolean includesParentId)
+            throws SQLException {
+        String parentId = includesParentId ? rs.getString("parent_id") : null;
         String passwordId = rs.getString(AbstractAccessControlDAO.ACCESS_CONTROL_FIELD_COUNT + 1);
-        if (results.containsKey(passwordId)) {
+        String key = parentId == null ? passwordId : parentId + "/" + passwordId;
+        if (results.containsKey(key)) {
             return;
         }
 
-        Group group =  GroupDAO.getInstance().getByIdDecrypted(rs.getString(4), user);
-        addPasswordToResults(results, passwordId, rs, GroupAccessControlDAO.buildFromResultSet(rs, group));
+        results.put(key, new EncryptedChildObject(rs, decryptor, parentId));
     }
 
-    private void addPasswordToResults(Map<String,Password> results, String passwordId,
-                                      ResultSet rs, AccessControl ac)
+    private List<Password> decryptChildObjects(final Collection<EncryptedChildObject> encryptedObjects)
+            throws SQLException, GeneralSecurityException {
+        List<Password> decrypted = decryptInOrder(new ArrayList<>(encryptedObjects));
+        decrypted.removeIf(Objects::isNull);
+        return decrypted;
+    }
+
+    /**
+     * Decrypt a list of objects, returning the results in the same order with a null entry for any
+     * object which could not be decrypted.
+     */
+
+    private List<Password> decryptInOrder(final List<EncryptedChildObject> encryptedObjects)
             throws SQLException, GeneralSecurityException {
         try {
-            Password password = new Password(passwordId, rs.getBytes(AbstractAccessControlDAO.ACCESS_CONTROL_FIELD_COUNT + 2), ac);
-            results.put(passwordId, password);
-        } catch (IOException e) {
-            Logger.getAnonymousLogger().log(Level.SEVERE, "Unable to decrypt password " + passwordId, e);
+            return WorkerPool.getInstance().invokeAllInOrder(encryptedObjects);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            throw new GeneralSecurityException("Unable to decrypt passwords", cause);
+        }
+    }
+
+    /**
+     * The raw data for a password and the access control which grants access to it, which can
+     * be decrypted away from the thread which read it from the database.
+     */
+
+    static final class EncryptedChildObject implements Callable<Password> {
+        private final String passwordId;
+        private final byte[] encryptedModifyKey;
+        private final byte[] encryptedReadKey;
+        private final String accessorId;
+        private final byte[] passwordData;
+        private final AccessControlDecryptor decryptor;
+        private final boolean isGroupAccessControl;
+        private final String parentId;
+
+        EncryptedChildObject(final ResultSet rs, final AccessControlDecryptor decryptor, final String parentId)
+                throws SQLException {
+            passwordId = rs.getString(AbstractAccessControlDAO.ACCESS_CONTROL_FIELD_COUNT + 1);
+            encryptedModifyKey = rs.getBytes(2);
+            encryptedReadKey = rs.getBytes(3);
+            accessorId = rs.getString(4);
+            passwordData = rs.getBytes(AbstractAccessControlDAO.ACCESS_CONTROL_FIELD_COUNT + 2);
+            this.decryptor = decryptor;
+            isGroupAccessControl = decryptor instanceof Group;
+            this.parentId = parentId;
+        }
+
+        @Override
+        public Password call()
+                throws SQLException, GeneralSecurityException {
+            AccessControl ac = isGroupAccessControl ?
+                    GroupAccessControlDAO.buildFromEncryptedKeys(passwordId, encryptedModifyKey, encryptedReadKey,
+                            accessorId, decryptor) :
+                    UserAccessControlDAO.buildFromEncryptedKeys(passwordId, encryptedModifyKey, encryptedReadKey,
+                            accessorId, decryptor);
+            try {
+                return new Password(passwordId, passwordData, ac);
+            } catch (IOException e) {
+                Logger.getAnonymousLogger().log(Level.SEVERE, "Unable to decrypt password " + passwordId, e);
+                return null;
+            }
         }
     }
 
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data access object for the hierarchy closure table, which holds a row for every ancestor of every
+ * node so that ancestry and subtree questions can be answered in a single query.
+ *
+ * Each node has a row linking it to itself with a depth of 0, a row linking it to its parent with a
+ * depth of 1, and so on up to the root node.
+ */
+public final class HierarchyPathDAO
+    extends JDBCBase {
+
+    /**
+     * The number of rows sent to the database in each batch.
+     */
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO hierarchy_paths(ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+
+    private static final String GET_ANCESTORS_SQL =
+            "SELECT ancestor_id, depth FROM hierarchy_paths WHERE descendant_id = ? AND depth > 0";
+
+    private static final String GET_DESCENDANTS_SQL =
+            "SELECT descendant_id, depth FROM hierarchy_paths WHERE ancestor_id = ?";
+
+    private static final String IS_ANCESTOR_SQL =
+            "SELECT depth FROM hierarchy_paths WHERE ancestor_id = ? AND descendant_id = ?";
+
+    private static final String DELETE_ANCESTORS_ABOVE_SQL =
+            "DELETE FROM hierarchy_paths WHERE descendant_id = ? AND depth > ?";
+
+    private static final String DELETE_NODE_SQL =
+            "DELETE FROM hierarchy_paths WHERE descendant_id = ?";
+
+    private static final String DELETE_ALL_SQL =
+            "DELETE FROM hierarchy_paths";
+
+    private static final String GET_ALL_PARENT_LINKS_SQL =
+            "SELECT node_id, parent_id FROM hierarchy";
+
+    private HierarchyPathDAO() {
+        super();
+    }
+
+    /**
+     * Record the paths for a newly created node.
+     *
+     * @param nodeId The ID of the new node.
+     * @param parentId The ID of its parent, or null if it is a top level node.
+     */
+
+    public void nodeAdded(final String nodeId, final String parentId)
+            throws SQLException {
+        Map<String, Integer> descendants = new HashMap<>();
+        descendants.put(nodeId, 0);
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SQL)) {
+            int batched = addRow(ps, nodeId, nodeId, 0, 0);
+            addAncestorRows(ps, descendants, parentId, batched);
+        }
+    }
+
+    /**
+     * Update the paths for a node, and everything below it, which has been moved to a new parent.
+     *
+     * @param nodeId The ID of the node which has moved.
+     * @param newParentId The ID of its new parent, or null if it is now a top level node.
+     */
+
+    public void nodeMoved(final String nodeId, final String newParentId)
+            throws SQLException {
+        Map<String, Integer> descendants = getDescendantsWithDepth(nodeId);
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(DELETE_ANCESTORS_ABOVE_SQL)) {
+            int batched = 0;
+            for(Map.Entry<String, Integer> descendant : descendants.entrySet()) {
+                ps.setString(1, descendant.getKey());
+                ps.setInt(2, descendant.getValue());
+                ps.addBatch();
+                batched = flushIfFull(ps, batched + 1);
+            }
+            if (batched > 0) {
+                ps.executeBatch();
+            }
+        }
+
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SQL)) {
+            addAncestorRows(ps, descendants, newParentId, 0);
+        }
+    }
+
+    /**
+     * Remove the paths for a node which has been deleted. Any children should be removed first.
+     *
+     * @param nodeId The ID of the deleted node.
+     */
+
+    public void nodeRemoved(final String nodeId)
+            throws SQLException {
+        runResultlessParameterisedSQL(DELETE_NODE_SQL, nodeId);
+    }
+
+    /**
+     * Test if one node is an ancestor of another. A node is not its own ancestor.
+     *
+     * @param ancestorId The ID of the possible ancestor.
+     * @param nodeId The ID of the node to check.
+     *
+     * @return true if the node is below the possible ancestor.
+     */
+
+    public boolean isAncestor(final String ancestorId, final String nodeId)
+            throws SQLException {
+        return !ancestorId.equals(nodeId) && exists(IS_ANCESTOR_SQL, ancestorId, nodeId);
+    }
+
+    /**
+     * Get the IDs of a node and all nodes below it.
+     *
+     * @param nodeId The ID of the node at the top of the subtree.
+     *
+     * @return The IDs of the nodes in the subtree.
+     */
+
+    public List<String> getSubtreeIds(final String nodeId)
+            throws SQLException {
+        return new ArrayList<>(getDescendantsWithDepth(nodeId).keySet());
+    }
+
+    /**
+     * Rebuild the whole table from the parent links held in the hierarchy table.
+     */
+
+    public void rebuild()
+            throws SQLException {
+        Map<String, String> parents = new HashMap<>();
+        Connection conn = BOMFactory.getCurrentConntection();
+        try(Statement stmt = conn.createStatement()) {
+            try(ResultSet rs = stmt.executeQuery(GET_ALL_PARENT_LINKS_SQL)) {
+                while(rs.next()) {
+                    parents.put(rs.getString(1), rs.getString(2));
+                }
+            }
+            stmt.executeUpdate(DELETE_ALL_SQL);
+        }
+
+        try(PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            int batched = 0;
+            for(String nodeId : parents.keySet()) {
+                String ancestorId = nodeId;
+                int depth = 0;
+                while(ancestorId != null && depth <= parents.size()) {
+                    batched = addRow(ps, ancestorId, nodeId, depth, batched);
+                    ancestorId = parents.get(ancestorId);
+                    depth++;
+                }
+            }
+            if (batched > 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    private Map<String, Integer> getDescendantsWithDepth(final String nodeId)
+            throws SQLException {
+        return getIdsWithDepth(GET_DESCENDANTS_SQL, nodeId);
+    }
+
+    private Map<String, Integer> getIdsWithDepth(final String sql, final String nodeId)
+            throws SQLException {
+        Map<String, Integer> results = new LinkedHashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            ps.setString(1, nodeId);
+            try(ResultSet rs = ps.executeQuery()) {
+                while(rs.next()) {
+                    results.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Add rows linking each node in a subtree to each ancestor of the subtree's new parent.
+     */
+
+    private void addAncestorRows(final PreparedStatement ps, final Map<String, Integer> descendants,
+                                 final String parentId, int batched)
+            throws SQLException {
+        if (parentId != null) {
+            Map<String, Integer> ancestors = getIdsWithDepth(GET_ANCESTORS_SQL, parentId);
+            ancestors.put(parentId, 0);
+            for(Map.Entry<String, Integer> descendant : descendants.entrySet()) {
+                for(Map.Entry<String, Integer> ancestor : ancestors.entrySet()) {
+                    batched = addRow(ps, ancestor.getKey(), descendant.getKey(),
+                            ancestor.getValue() + 1 + descendant.getValue(), batched);
+                }
+            }
+        }
+        if (batched > 0) {
+            ps.executeBatch();
+        }
+    }
+
+    private int addRow(final PreparedStatement ps, final String ancestorId, final String descendantId,
+                       final int depth, final int batched)
+            throws SQLException {
+        ps.setString(1, ancestorId);
+        ps.setString(2, descendantId);
+        ps.setInt(3, depth);
+        ps.addBatch();
+        return flushIfFull(ps, batched + 1);
+    }
+
+    private int flushIfFull(final PreparedStatement ps, final int batched)
+            throws SQLException {
+        if (batched < BATCH_SIZE) {
+            return batched;
+        }
+        ps.executeBatch();
+        return 0;
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final HierarchyPathDAO INSTANCE = new HierarchyPathDAO();
+    }
+
+    public static HierarchyPathDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -3,9 +3,20 @@ package com.enterprisepasswordsafe.database;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class JDBCBase {
 
+    /**
+     * The maximum number of values bound to a single IN clause.
+     */
+
+    private static final int MAX_IN_CLAUSE_VALUES = 100;
+
     void runResultlessParameterisedSQL(String sql, String... parameters)
             throws SQLException {
         try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
@@ -34,4 +45,38 @@ public class JDBCBase {
             }
         }
     }
+
+    /**
+     * Run a query ending in an open IN clause for a set of keys, and map the first column of each row
+     * to the second. Large sets of keys are split over several queries.
+     *
+     * @param sqlPrefix The SQL up to and including "IN (".
+     * @param keys The keys to bind to the IN clause.
+     *
+     * @return The values found, keyed by the first column.
+     */
+
+    Map<String, String> getValuesForKeys(final String sqlPrefix, final Collection<String> keys)
+            throws SQLException {
+        Map<String, String> values = new HashMap<>();
+        List<String> remaining = new ArrayList<>(keys);
+        for (int start = 0; start < remaining.size(); start += MAX_IN_CLAUSE_VALUES) {
+            List<String> chunk = remaining.subList(start, Math.min(start + MAX_IN_CLAUSE_VALUES, remaining.size()));
+            StringBuilder sql = new StringBuilder(sqlPrefix);
+            for (int i = 0; i < chunk.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+
+            try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql.toString())) {
+                setParameters(ps, chunk.toArray(new String[0]));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        values.put(rs.getString(1), rs.getString(2));
+                    }
+                }
+            }
+        }
+        return values;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.utils.IDGenerator;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Data access object for the leases which stop background jobs running on more than one node at once.
+ *
+ * A node may only run a job while it holds the lease for it. Leases expire, so a node which stops
+ * while running a job does not stop the job being run again by another node.
+ */
+
+public final class JobLeaseDAO
+        extends JDBCBase {
+
+    private static final String EXISTS_SQL =
+            "SELECT job_id FROM job_leases WHERE job_id = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO job_leases(job_id, holder, lease_until_l, last_run_l) VALUES (?, NULL, 0, 0)";
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE job_leases SET holder = ?, lease_until_l = ? "
+            + " WHERE job_id = ? AND lease_until_l < ? AND last_run_l <= ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE job_leases SET holder = NULL, lease_until_l = 0, last_run_l = ? WHERE job_id = ? AND holder = ?";
+
+    private static final String GET_LAST_RUN_SQL =
+            "SELECT last_run_l FROM job_leases WHERE job_id = ?";
+
+    /**
+     * The ID used to identify this node as the holder of a lease.
+     */
+
+    private final String holderId = IDGenerator.getID();
+
+    private JobLeaseDAO() {
+        super();
+    }
+
+    /**
+     * Try to take the lease for a job. The lease is only given if no other node holds it and the job
+     * has not completed within the interval.
+     *
+     * @param jobId The ID of the job.
+     * @param lifetime The time, in milliseconds, the lease is held for if it is not completed.
+     * @param interval The minimum time, in milliseconds, between completed runs of the job.
+     *
+     * @return true if this node now holds the lease.
+     */
+
+    public boolean acquire(final String jobId, final long lifetime, final long interval)
+            throws SQLException {
+        if (!exists(EXISTS_SQL, jobId)) {
+            try {
+                runResultlessParameterisedSQL(INSERT_SQL, jobId);
+            } catch (SQLException e) {
+                // Another node has created the lease row at the same time.
+                if (!exists(EXISTS_SQL, jobId)) {
+                    throw e;
+                }
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(ACQUIRE_SQL)) {
+            ps.setString(1, holderId);
+            ps.setLong(2, now + lifetime);
+            ps.setString(3, jobId);
+            ps.setLong(4, now);
+            ps.setLong(5, now - interval);
+            return ps.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Release the lease for a job after a successful run.
+     *
+     * @param jobId The ID of the job.
+     */
+
+    public void complete(final String jobId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(COMPLETE_SQL)) {
+            ps.setLong(1, System.currentTimeMillis());
+            ps.setString(2, jobId);
+            ps.setString(3, holderId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Get the time the job last completed.
+     *
+     * @param jobId The ID of the job.
+     *
+     * @return The time the job last completed, or 0 if it has never completed.
+     */
+
+    public long getLastRun(final String jobId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_LAST_RUN_SQL)) {
+            ps.setString(1, jobId);
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final JobLeaseDAO INSTANCE = new JobLeaseDAO();
+    }
+
+    public static JobLeaseDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
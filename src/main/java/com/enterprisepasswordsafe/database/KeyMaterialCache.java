@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the decrypted keys and access controls used while handling a single request, so that keys
+ * needed for many rows are only unwrapped once.
+ *
+ * Instances are not thread safe and should be closed when the request has been handled, which
+ * removes the decrypted keys from the users and groups held by the cache.
+ */
+
+public final class KeyMaterialCache implements AutoCloseable {
+
+    private final UserDAO userDAO;
+
+    private final AccessControlDAO accessControlDAO;
+
+    /**
+     * Users with their access keys decrypted via the admin group, keyed by user ID.
+     */
+
+    private final Map<String, User> users = new HashMap<>();
+
+    /**
+     * Groups with their access keys decrypted via a users membership, keyed by user ID then group ID.
+     */
+
+    private final Map<String, Map<String, Group>> groups = new HashMap<>();
+
+    /**
+     * Read access controls, keyed by accessor ID then item ID.
+     */
+
+    private final Map<String, Map<String, AccessControl>> accessControls = new HashMap<>();
+
+    public KeyMaterialCache()
+            throws SQLException {
+        this(UserDAO.getInstance(), AccessControlDAO.getInstance());
+    }
+
+    KeyMaterialCache(final UserDAO userDAO, final AccessControlDAO accessControlDAO) {
+        this.userDAO = userDAO;
+        this.accessControlDAO = accessControlDAO;
+    }
+
+    /**
+     * Get a user with their access key decrypted using the admin group.
+     *
+     * @return The user, or null if the user doesn't exist.
+     */
+
+    public User getDecryptedUser(final String userId, final Group adminGroup)
+            throws SQLException, GeneralSecurityException {
+        if (users.containsKey(userId)) {
+            return users.get(userId);
+        }
+        User user = userDAO.getByIdDecrypted(userId, adminGroup);
+        users.put(userId, user);
+        return user;
+    }
+
+    /**
+     * Get a group with its access key decrypted using a users membership of the group.
+     *
+     * @return The group, or null if it doesn't exist or the user isn't a member of it.
+     */
+
+    public Group getDecryptedGroup(final String groupId, final User user)
+            throws SQLException, GeneralSecurityException {
+        Map<String, Group> usersGroups = groups.computeIfAbsent(user.getId(), id -> new HashMap<>());
+        if (usersGroups.containsKey(groupId)) {
+            return usersGroups.get(groupId);
+        }
+        Group group = GroupDAO.getInstance().getByIdDecrypted(groupId, user);
+        usersGroups.put(groupId, group);
+        return group;
+    }
+
+    /**
+     * Get the access control a user can read an item with.
+     *
+     * @return The access control, or null if the user can't read the item.
+     */
+
+    public AccessControl getReadAccessControl(final User accessor, final String itemId)
+            throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
+        Map<String, AccessControl> accessorsControls =
+                accessControls.computeIfAbsent(accessor.getId(), id -> new HashMap<>());
+        if (accessorsControls.containsKey(itemId)) {
+            return accessorsControls.get(itemId);
+        }
+        AccessControl ac = accessControlDAO.getReadAccessControl(accessor, itemId, this);
+        accessorsControls.put(itemId, ac);
+        return ac;
+    }
+
+    /**
+     * Remove the decrypted keys from the cached users and groups and drop all cached material.
+     */
+
+    @Override
+    public void close() {
+        for (User user : users.values()) {
+            if (user != null) {
+                user.setAccessKey(null);
+            }
+        }
+        for (Map<String, Group> usersGroups : groups.values()) {
+            for (Group group : usersGroups.values()) {
+                if (group != null) {
+                    group.setAccessKey(null);
+                }
+            }
+        }
+        users.clear();
+        groups.clear();
+        accessControls.clear();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.utils.IDGenerator;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Data access object for the queue of Emails waiting to be sent.
+ *
+ * Messages are claimed by a sender before they are sent by moving their next attempt time forward, so
+ * when several nodes share the queue each message is only sent by one of them.
+ */
+
+public final class OutboundMailDAO
+        extends JDBCBase {
+
+    /**
+     * The character used to separate recipients in the database.
+     */
+
+    private static final String RECIPIENT_SEPARATOR = ";";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO mail_queue(message_id, created_l, next_attempt_l, attempts, sender, recipients, subject, body_b) "
+            + "VALUES (?, ?, ?, 0, ?, ?, ?, ?)";
+
+    private static final String GET_DUE_SQL =
+            "SELECT message_id, next_attempt_l, attempts, sender, recipients, subject, body_b "
+            + "FROM mail_queue WHERE next_attempt_l <= ? ORDER BY next_attempt_l";
+
+    private static final String CLAIM_SQL =
+            "UPDATE mail_queue SET next_attempt_l = ? WHERE message_id = ? AND next_attempt_l = ?";
+
+    private static final String RESCHEDULE_SQL =
+            "UPDATE mail_queue SET next_attempt_l = ?, attempts = ? WHERE message_id = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM mail_queue WHERE message_id = ?";
+
+    private static final String COUNT_SQL =
+            "SELECT COUNT(*) FROM mail_queue";
+
+    private OutboundMailDAO() {
+        super();
+    }
+
+    /**
+     * Add a message to the queue.
+     *
+     * @param sender The address the message is from.
+     * @param recipients The addresses the message is to.
+     * @param subject The subject of the message.
+     * @param body The text of the message.
+     */
+
+    public void enqueue(final String sender, final Collection<String> recipients, final String subject,
+                        final String body)
+            throws SQLException {
+        long now = System.currentTimeMillis();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SQL)) {
+            ps.setString(1, IDGenerator.getID());
+            ps.setLong(2, now);
+            ps.setLong(3, now);
+            ps.setString(4, sender);
+            ps.setString(5, String.join(RECIPIENT_SEPARATOR, recipients));
+            ps.setString(6, subject);
+            ps.setBytes(7, body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Claim messages which are due to be sent. Claimed messages will not be offered again until the
+     * claim expires.
+     *
+     * @param maximum The maximum number of messages to claim.
+     * @param claimedUntil The time the claim expires at.
+     *
+     * @return The claimed messages.
+     */
+
+    List<QueuedMessage> claimDue(final int maximum, final long claimedUntil)
+            throws SQLException {
+        List<QueuedMessage> due = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_DUE_SQL)) {
+            ps.setMaxRows(maximum);
+            ps.setLong(1, System.currentTimeMillis());
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && due.size() < maximum) {
+                    due.add(new QueuedMessage(rs));
+                }
+            }
+        }
+
+        List<QueuedMessage> claimed = new ArrayList<>(due.size());
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(CLAIM_SQL)) {
+            for (QueuedMessage message : due) {
+                ps.setLong(1, claimedUntil);
+                ps.setString(2, message.id);
+                ps.setLong(3, message.nextAttempt);
+                if (ps.executeUpdate() == 1) {
+                    claimed.add(message);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Set the time of the next attempt to send a message.
+     */
+
+    void reschedule(final String messageId, final int attempts, final long nextAttempt)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(RESCHEDULE_SQL)) {
+            ps.setLong(1, nextAttempt);
+            ps.setInt(2, attempts);
+            ps.setString(3, messageId);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Remove a message from the queue.
+     */
+
+    void delete(final String messageId)
+            throws SQLException {
+        runResultlessParameterisedSQL(DELETE_SQL, messageId);
+    }
+
+    /**
+     * Get the number of messages in the queue.
+     */
+
+    public int getQueueDepth()
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(COUNT_SQL)) {
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * A message read from the queue.
+     */
+
+    static final class QueuedMessage {
+        final String id;
+        final long nextAttempt;
+        final int attempts;
+        final String sender;
+        final List<String> recipients;
+        final String subject;
+        final String body;
+
+        QueuedMessage(final ResultSet rs)
+                throws SQLException {
+            id = rs.getString(1);
+            nextAttempt = rs.getLong(2);
+            attempts = rs.getInt(3);
+            sender = rs.getString(4);
+            String recipientList = rs.getString(5);
+            recipients = recipientList == null || recipientList.isEmpty() ?
+                    new ArrayList<>() : Arrays.asList(recipientList.split(RECIPIENT_SEPARATOR));
+            subject = rs.getString(6);
+            byte[] bodyBytes = rs.getBytes(7);
+            body = bodyBytes == null ? "" : new String(bodyBytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final OutboundMailDAO INSTANCE = new OutboundMailDAO();
+    }
+
+    public static OutboundMailDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
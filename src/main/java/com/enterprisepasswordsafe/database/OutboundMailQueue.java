@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends Emails from a persistent queue using a small pool of sender threads.
+ *
+ * Messages are written to the queue on the thread which creates them and sent later, so a slow or
+ * unavailable SMTP server does not hold up requests. Each sender reuses one SMTP connection for all
+ * of the messages it claims in a poll, and messages which can not be sent are retried with an
+ * increasing delay until they have failed too many times.
+ */
+
+public final class OutboundMailQueue {
+
+    /**
+     * The time, in milliseconds, between checks for messages to send.
+     */
+
+    private static final long POLL_INTERVAL = 5000;
+
+    /**
+     * The number of threads sending messages.
+     */
+
+    private static final int SENDER_THREADS = 2;
+
+    /**
+     * The maximum number of messages claimed by a sender in one poll.
+     */
+
+    private static final int BATCH_SIZE = 50;
+
+    /**
+     * The time, in milliseconds, a claimed message is held for a sender. If the sender has not
+     * finished with it in this time it can be claimed again.
+     */
+
+    private static final long CLAIM_LIFETIME = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * The number of attempts made to send a message before it is abandoned.
+     */
+
+    private static final int MAXIMUM_ATTEMPTS = 8;
+
+    /**
+     * The delay before the first retry, which doubles for each subsequent retry.
+     */
+
+    private static final long FIRST_RETRY_DELAY = TimeUnit.SECONDS.toMillis(30);
+
+    private static final long MAXIMUM_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The SMTP connection and read timeout in milliseconds.
+     */
+
+    private static final String SMTP_TIMEOUT = "30000";
+
+    private static final String LOG_TAG = "OutboundMailQueue";
+
+    private final LongAdder messagesSent = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder messagesAbandoned = new LongAdder();
+    private volatile long lastSendTime;
+
+    private ScheduledExecutorService senders;
+
+    private Session session;
+
+    private String sessionServer;
+
+    private OutboundMailQueue() {
+        super();
+    }
+
+    /**
+     * Add a message to the queue. Blank recipients are ignored, invalid recipients are logged and
+     * skipped, and nothing is queued if there are no recipients.
+     *
+     * @param sender The address the message is from.
+     * @param recipients The addresses to send the message to.
+     * @param subject The subject of the message.
+     * @param body The text of the message.
+     *
+     * @throws AddressException Thrown if the sender is not a valid address, or if none of the
+     * recipients are.
+     */
+
+    public void enqueue(final String sender, final Collection<String> recipients, final String subject,
+                        final String body)
+            throws SQLException, AddressException {
+        new InternetAddress(sender).validate();
+        List<String> validRecipients = new ArrayList<>(recipients.size());
+        AddressException lastInvalid = null;
+        for (String recipient : recipients) {
+            if (recipient == null || recipient.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                InternetAddress address = new InternetAddress(recipient.trim());
+                address.validate();
+                validRecipients.add(address.getAddress());
+            } catch (AddressException e) {
+                Logger.getLogger(LOG_TAG).log(Level.WARNING,
+                        "Not sending \"" + subject + "\" to the invalid address " + recipient, e);
+                lastInvalid = e;
+            }
+        }
+        if (validRecipients.isEmpty()) {
+            if (lastInvalid != null) {
+                throw lastInvalid;
+            }
+            return;
+        }
+
+        OutboundMailDAO.getInstance().enqueue(sender, validRecipients, subject, body);
+
+        ScheduledExecutorService currentSenders = senders;
+        if (currentSenders != null) {
+            currentSenders.execute(this::sendDueIfConfigured);
+        }
+    }
+
+    /**
+     * Send a batch of messages which are due to be sent.
+     *
+     * @return The number of messages claimed from the queue.
+     */
+
+    int sendDue()
+            throws SQLException {
+        Session currentSession = getSession();
+        if (currentSession == null) {
+            return 0;
+        }
+
+        List<OutboundMailDAO.QueuedMessage> batch =
+                OutboundMailDAO.getInstance().claimDue(BATCH_SIZE, System.currentTimeMillis() + CLAIM_LIFETIME);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Transport transport;
+        try {
+            transport = currentSession.getTransport("smtp");
+            transport.connect();
+        } catch (MessagingException e) {
+            for (OutboundMailDAO.QueuedMessage message : batch) {
+                sendFailed(message, e);
+            }
+            return batch.size();
+        }
+
+        try {
+            for (OutboundMailDAO.QueuedMessage message : batch) {
+                send(currentSession, transport, message);
+            }
+        } finally {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                Logger.getLogger(LOG_TAG).log(Level.FINE, "Problem closing SMTP connection", e);
+            }
+        }
+        return batch.size();
+    }
+
+    private void send(final Session currentSession, final Transport transport,
+                      final OutboundMailDAO.QueuedMessage message)
+            throws SQLException {
+        try {
+            MimeMessage mimeMessage = new MimeMessage(currentSession);
+            mimeMessage.setFrom(new InternetAddress(message.sender));
+            // A single message is sent to all recipients, so they are only visible to each other if
+            // there is one of them.
+            Message.RecipientType recipientType =
+                    message.recipients.size() == 1 ? Message.RecipientType.TO : Message.RecipientType.BCC;
+            for (String recipient : message.recipients) {
+                mimeMessage.addRecipient(recipientType, new InternetAddress(recipient));
+            }
+            mimeMessage.setSubject(message.subject);
+            mimeMessage.setText(message.body);
+
+            long start = System.nanoTime();
+            if (!transport.isConnected()) {
+                transport.connect();
+            }
+            transport.sendMessage(mimeMessage, mimeMessage.getAllRecipients());
+            lastSendTime = System.nanoTime() - start;
+            messagesSent.increment();
+        } catch (MessagingException e) {
+            sendFailed(message, e);
+            return;
+        }
+
+        OutboundMailDAO.getInstance().delete(message.id);
+    }
+
+    private void sendFailed(final OutboundMailDAO.QueuedMessage message, final MessagingException e)
+            throws SQLException {
+        failedAttempts.increment();
+        int attempts = message.attempts + 1;
+        if (attempts < MAXIMUM_ATTEMPTS) {
+            long delay = Math.min(MAXIMUM_RETRY_DELAY, FIRST_RETRY_DELAY << (attempts - 1));
+            OutboundMailDAO.getInstance().reschedule(message.id, attempts, System.currentTimeMillis() + delay);
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to send Email, will retry : " + message.subject, e);
+            return;
+        }
+
+        OutboundMailDAO.getInstance().delete(message.id);
+        messagesAbandoned.increment();
+        Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Unable to send Email, giving up : " + message.subject, e);
+        try {
+            TamperproofEventLogDAO.getInstance().create(null, null,
+                    "Unable to send Email \"" + message.subject + "\" (Reason:" + e.getMessage() + ")", false,
+                    TamperproofEventLog.LOG_LEVEL_CONFIGURATION, false);
+        } catch (GeneralSecurityException gse) {
+            Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Unable to log abandoned Email", gse);
+        }
+    }
+
+    /**
+     * Get the SMTP session for the configured server, or null if no server is configured.
+     */
+
+    private synchronized Session getSession()
+            throws SQLException {
+        String host = ConfigurationDAO.getValue(ConfigurationOption.SMTP_HOST);
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        String port = ConfigurationDAO.getValue(ConfigurationOption.SMTP_PORT);
+        String server = host + ":" + port;
+        if (!server.equals(sessionServer)) {
+            Properties props = new Properties();
+            props.put("mail.smtp.host", host);
+            props.put("mail.smtp.port", port);
+            props.put("mail.smtp.connectiontimeout", SMTP_TIMEOUT);
+            props.put("mail.smtp.timeout", SMTP_TIMEOUT);
+            session = Session.getInstance(props, null);
+            sessionServer = server;
+        }
+        return session;
+    }
+
+    /**
+     * Start the sender threads.
+     */
+
+    public synchronized void start() {
+        if (senders != null) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        senders = Executors.newScheduledThreadPool(SENDER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "eps-mail-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < SENDER_THREADS; i++) {
+            senders.scheduleWithFixedDelay(this::sendDueIfConfigured, POLL_INTERVAL, POLL_INTERVAL,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the sender threads. Any unsent messages stay in the queue.
+     */
+
+    public synchronized void stop() {
+        if (senders == null) {
+            return;
+        }
+        senders.shutdown();
+        try {
+            senders.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        senders = null;
+    }
+
+    private void sendDueIfConfigured() {
+        if (!Repositories.databasePoolFactory.isConfigured()) {
+            return;
+        }
+        try {
+            while (sendDue() == BATCH_SIZE) {
+                // Keep going while there are full batches waiting.
+            }
+        } catch (Exception e) {
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to send queued Emails", e);
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    /**
+     * Get the number of messages waiting to be sent.
+     */
+
+    public int getQueueDepth()
+            throws SQLException {
+        return OutboundMailDAO.getInstance().getQueueDepth();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.sum();
+    }
+
+    public long getFailedAttempts() {
+        return failedAttempts.sum();
+    }
+
+    public long getMessagesAbandoned() {
+        return messagesAbandoned.sum();
+    }
+
+    /**
+     * Get the time, in nanoseconds, taken to send the last message.
+     */
+
+    public long getLastSendTime() {
+        return lastSendTime;
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final OutboundMailQueue INSTANCE = new OutboundMailQueue();
+    }
+
+    public static OutboundMailQueue getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -25,7 +25,9 @@ import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
 import com.enterprisepasswordsafe.engine.accesscontrol.UserAccessControl;
 import com.enterprisepasswordsafe.engine.passwords.AuditingLevel;
 import com.enterprisepasswordsafe.engine.passwords.PasswordPermissionApplier;
+import com.enterprisepasswordsafe.engine.users.UserClassifier;
 import com.enterprisepasswordsafe.engine.utils.PasswordUtils;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -33,6 +35,9 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public final class PasswordDAO
         extends PasswordStoreManipulator  {
@@ -68,11 +73,40 @@ public final class PasswordDAO
 
     private static final String WRITE_PASSWORD_SQL =
             "INSERT INTO passwords(password_id, enabled, audited, history_stored, restriction_id, ra_enabled, "
-            + "		ra_approvers, ra_blockers, ptype, location_id, password_data  )"
-            + " VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? )";
+            + "		ra_approvers, ra_blockers, ptype, location_id, expiry_l, password_data  )"
+            + " VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? )";
 
-    private static final String GET_EXPIRY_DETAILS_SQL =
-    	"SELECT password_id, password_data FROM passwords";
+    private static final String INDEXED_EXPIRY_VIA_UAC_SQL =
+            "SELECT pass.password_id FROM passwords pass, user_access_control uac "
+            + " WHERE uac.user_id = ? AND uac.item_id = pass.password_id AND uac.rkey is not null "
+            + "   AND pass.expiry_l < ?";
+
+    private static final String INDEXED_EXPIRY_VIA_GAC_SQL =
+            "SELECT pass.password_id FROM passwords pass, group_access_control gac, membership mem "
+            + " WHERE mem.user_id = ? AND mem.group_id = gac.group_id AND gac.item_id = pass.password_id "
+            + "   AND gac.rkey is not null AND pass.expiry_l < ?";
+
+    private static final String UNINDEXED_EXPIRY_VIA_UAC_SQL =
+            "SELECT " + PASSWORD_FIELDS + " FROM passwords pass, user_access_control uac "
+            + " WHERE uac.user_id = ? AND uac.item_id = pass.password_id AND uac.rkey is not null "
+            + "   AND pass.expiry_l IS NULL";
+
+    private static final String UNINDEXED_EXPIRY_VIA_GAC_SQL =
+            "SELECT " + PASSWORD_FIELDS + " FROM passwords pass, group_access_control gac, membership mem "
+            + " WHERE mem.user_id = ? AND mem.group_id = gac.group_id AND gac.item_id = pass.password_id "
+            + "   AND gac.rkey is not null AND pass.expiry_l IS NULL";
+
+    private static final String GET_UNINDEXED_EXPIRY_IDS_SQL =
+            "SELECT password_id FROM passwords WHERE expiry_l IS NULL";
+
+    private static final String SET_INDEXED_EXPIRY_SQL =
+            "UPDATE passwords SET expiry_l = ? WHERE password_id = ?";
+
+    /**
+     * Flag to stop more than one expiry index backfill running at the same time.
+     */
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean(false);
 
 	private PasswordDAO( ) {
 		super(GET_BY_ID_SQL);
@@ -185,7 +219,8 @@ public final class PasswordDAO
             ps.setInt(8, password.getRaBlockers());
             ps.setInt(9, password.getPasswordType());
             ps.setString(10, LocationDAO.getInstance().getId(password.getLocation()));
-            ps.setBytes(11, PasswordUtils.encrypt(password, ac));
+            ps.setLong(11, password.getExpiry());
+            ps.setBytes(12, PasswordUtils.encrypt(password, ac));
             ps.executeUpdate();
 
             // Write the password with the data encrypted
@@ -193,6 +228,8 @@ public final class PasswordDAO
             	HistoricalPasswordDAO.getInstance().writeHistoryEntry(password, ac);
             }
         }
+
+        PasswordSearchIndexDAO.getInstance().index(password);
     }
 
     public List<Password> getPasswordsRestrictionAppliesTo(final String restrictionId)
@@ -200,8 +237,55 @@ public final class PasswordDAO
         return getMultiple(USE_CHECK_SQL, restrictionId);
     }
 
+    /**
+     * Test if the user can access any passwords which have expired or will expire within the warning period.
+     *
+     * The indexed expiry dates are checked first, and only passwords which do not yet have an indexed
+     * expiry date are decrypted, which also adds them to the index.
+     */
+
     public boolean hasExpiringPasswords(final User user)
             throws SQLException, GeneralSecurityException, IOException {
+        long expiryWarningDate = getExpiryWarningDate();
+
+        if (hasIndexedExpiryBefore(user, INDEXED_EXPIRY_VIA_UAC_SQL, expiryWarningDate)
+        ||  hasIndexedExpiryBefore(user, INDEXED_EXPIRY_VIA_GAC_SQL, expiryWarningDate)) {
+            return true;
+        }
+
+        boolean hasExpiring = false;
+        for (Password password : indexUnindexedExpiries(user)) {
+            if (password.getExpiry() < expiryWarningDate) {
+                hasExpiring = true;
+            }
+        }
+        return hasExpiring;
+    }
+
+    /**
+     * Add the passwords a user can access which do not yet have an indexed expiry date to the index.
+     *
+     * @return The decrypted passwords which were added.
+     */
+
+    private List<Password> indexUnindexedExpiries(final User user)
+            throws SQLException, GeneralSecurityException, IOException {
+        List<Password> indexed = new ArrayList<>();
+        for (String sql : new String[] {UNINDEXED_EXPIRY_VIA_UAC_SQL, UNINDEXED_EXPIRY_VIA_GAC_SQL}) {
+            for (Password password : getMultiple(user, sql, user.getId())) {
+                indexExpiry(password);
+                indexed.add(password);
+            }
+        }
+        return indexed;
+    }
+
+    /**
+     * Get the date before which passwords are shown as expiring.
+     */
+
+    long getExpiryWarningDate()
+            throws SQLException {
     	Calendar expiryCal = Calendar.getInstance();
         String warningPeriod = ConfigurationDAO.getValue(ConfigurationOption.DAYS_BEFORE_EXPIRY_TO_WARN);
         if (warningPeriod != null && warningPeriod.length() > 0) {
@@ -214,21 +298,113 @@ public final class PasswordDAO
         } else {
             expiryCal.add(Calendar.DAY_OF_MONTH, DEFAULT_PASSWORD_EXPIRY_WARNING_DAYS);
         }
-        long expiryWarningDate = expiryCal.getTimeInMillis();
+        return expiryCal.getTimeInMillis();
+    }
+
+    private boolean hasIndexedExpiryBefore(final User user, final String sql, final long date)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            ps.setString(1, user.getId());
+            ps.setLong(2, date);
+            ps.setMaxRows(1);
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Store the expiry date of a decrypted password in the expiry index.
+     *
+     * @param password The decrypted password.
+     */
+
+    void indexExpiry(final Password password)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(SET_INDEXED_EXPIRY_SQL)) {
+            ps.setLong(1, password.getExpiry());
+            ps.setString(2, password.getId());
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Add every password the administrator can read which was stored before the expiry index
+     * existed to the index.
+     *
+     * @param adminUser The user used to decrypt the passwords.
+     */
 
-        for(Password password : getMultiple(user, GET_EXPIRY_DETAILS_SQL)) {
-            if( password.getExpiry() < expiryWarningDate) {
-                return true;
+    public void backfillExpiryIndex(final User adminUser)
+            throws SQLException, GeneralSecurityException, IOException {
+        // Passwords the administrator can not read, such as personal passwords, are added to
+        // the index when their owner next logs in.
+        for (String passwordId : getUnindexedExpiryIds()) {
+            Password password = getById(adminUser, passwordId);
+            if (password != null) {
+                indexExpiry(password);
             }
         }
+    }
 
-        return false;
+    /**
+     * Start adding passwords to the expiry index in the background if any are missing from it.
+     *
+     * @param adminUser The user used to decrypt the passwords.
+     */
+
+    public void backfillExpiryIndexInBackgroundIfNeeded(final User adminUser)
+            throws SQLException {
+        if (!exists(GET_UNINDEXED_EXPIRY_IDS_SQL) || !backfillRunning.compareAndSet(false, true)) {
+            return;
+        }
+
+        WorkerPool.getInstance().submit(() -> {
+            try {
+                backfillExpiryIndex(adminUser);
+            } catch (Exception e) {
+                Logger.getAnonymousLogger().log(Level.SEVERE, "Unable to backfill the password expiry index", e);
+            } finally {
+                backfillRunning.set(false);
+            }
+            return null;
+        });
+    }
+
+    private List<String> getUnindexedExpiryIds()
+            throws SQLException {
+        List<String> ids = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_UNINDEXED_EXPIRY_IDS_SQL)) {
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
     }
 
     public ExpiringAccessiblePasswords getExpiringPasswords(final User user)
             throws Exception {
         ExpiringAccessiblePasswordsAction expiryTester = new ExpiringAccessiblePasswordsAction(user);
-        new PasswordProcessor().processAllPasswords(user, expiryTester);
+        ExpirySummaryDAO expirySummaryDAO = ExpirySummaryDAO.getInstance();
+        if (expirySummaryDAO.isCurrent()) {
+            boolean includeDisabled = new UserClassifier().isAdministrator(user);
+            Set<String> processedIds = new HashSet<>();
+            for (String passwordId : expirySummaryDAO.getPasswordIds(user)) {
+                processedIds.add(passwordId);
+                expiryTester.process(null, includeDisabled ?
+                        UnfilteredPasswordDAO.getInstance().getById(user, passwordId) : getById(user, passwordId));
+            }
+            // The summary only holds passwords whose expiry date was indexed when it was built
+            for (Password password : indexUnindexedExpiries(user)) {
+                if ((includeDisabled || password.isEnabled()) && processedIds.add(password.getId())) {
+                    expiryTester.process(null, password);
+                }
+            }
+        } else {
+            new PasswordProcessor().processPasswordsExpiringBefore(user, expiryTester.getExpiryWarning(), expiryTester);
+        }
         return ImmutableExpiringAccessiblePasswords.builder()
                 .expired(expiryTester.getExpired())
                 .expiring(expiryTester.getExpiring())
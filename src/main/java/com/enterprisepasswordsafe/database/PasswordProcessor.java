@@ -1,32 +1,56 @@
 package com.enterprisepasswordsafe.database;
 
 import com.enterprisepasswordsafe.database.actions.PasswordAction;
-import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
 import com.enterprisepasswordsafe.engine.users.UserClassifier;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.ArrayList;
-import java.util.List;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Passes every password a user can access to an action.
+ *
+ * The access control for each password is taken from the row which joined it, the passwords are
+ * decrypted on the shared WorkerPool, and they are passed to the action in the order they were read
+ * with a bounded number of passwords decrypted ahead of the action.
+ */
 
 public class PasswordProcessor {
 
+    /**
+     * The maximum number of passwords which can be waiting to be passed to the action.
+     */
+
+    private static final int DEFAULT_REORDER_BUFFER_SIZE = 256;
+
     /**
      * The SQL to get all the active passwords to be acted on.
      */
 
     private static final String GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_SQL =
-            "SELECT " + PasswordDAO.PASSWORD_FIELDS + " FROM passwords pass, user_access_control uac "
-        + " WHERE uac.user_id = ? AND uac.item_id = pass.password_id AND (pass.enabled is null OR pass.enabled = 'Y')";
+            "SELECT " + UserAccessControlDAO.UAC_FIELDS + ", " + PasswordBase.PASSWORD_BASE_FIELDS
+        + "  FROM passwords pass, user_access_control uac "
+        + " WHERE uac.user_id = ? AND uac.item_id = pass.password_id AND uac.rkey is not null "
+        + "   AND (pass.enabled is null OR pass.enabled = 'Y')";
 
     /**
      * The SQL to get all the active passwords to be acted on.
      */
 
     private static final String GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_SQL =
-            "SELECT " + PasswordDAO.PASSWORD_FIELDS + "  FROM passwords pass, group_access_control gac, membership mem "
-         + " WHERE mem.user_id  = ? AND mem.group_id    = gac.group_id AND gac.item_id = pass.password_id "
-         + " AND (pass.enabled is null OR pass.enabled = 'Y')";
+            "SELECT " + GroupAccessControlDAO.GAC_FIELDS + ", " + PasswordBase.PASSWORD_BASE_FIELDS
+        + "  FROM passwords pass, group_access_control gac, membership mem "
+        + " WHERE mem.user_id  = ? AND mem.group_id    = gac.group_id AND gac.item_id = pass.password_id "
+        + "   AND gac.rkey is not null AND (pass.enabled is null OR pass.enabled = 'Y')";
 
 
     /**
@@ -34,20 +58,39 @@ public class PasswordProcessor {
      */
 
     private static final String GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_EVEN_IF_DISABLED_SQL =
-            "SELECT " + PasswordDAO.PASSWORD_FIELDS + "  FROM passwords pass, user_access_control uac "
-        + " WHERE uac.user_id = ?AND uac.item_id = pass.password_id";
+            "SELECT " + UserAccessControlDAO.UAC_FIELDS + ", " + PasswordBase.PASSWORD_BASE_FIELDS
+        + "  FROM passwords pass, user_access_control uac "
+        + " WHERE uac.user_id = ? AND uac.item_id = pass.password_id AND uac.rkey is not null";
 
     /**
      * The SQL to get all the active passwords to be acted on.
      */
 
     private static final String GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_EVEN_IF_DISABLED_SQL =
-            "SELECT " + PasswordDAO.PASSWORD_FIELDS + " FROM passwords pass, group_access_control gac, membership  mem "
-                    + " WHERE mem.user_id = ? AND mem.group_id    = gac.group_id AND gac.item_id = pass.password_id ";
+            "SELECT " + GroupAccessControlDAO.GAC_FIELDS + ", " + PasswordBase.PASSWORD_BASE_FIELDS
+        + "  FROM passwords pass, group_access_control gac, membership  mem "
+        + " WHERE mem.user_id = ? AND mem.group_id    = gac.group_id AND gac.item_id = pass.password_id "
+        + "   AND gac.rkey is not null";
+
+    /**
+     * The condition added to restrict the passwords to those which expire before a given date, or
+     * which have not yet been added to the expiry index.
+     */
 
+    private static final String EXPIRING_BEFORE_FILTER = " AND (pass.expiry_l IS NULL OR pass.expiry_l < ?)";
 
     private final UserClassifier userClassifier = new UserClassifier();
 
+    private final int reorderBufferSize;
+
+    public PasswordProcessor() {
+        this(DEFAULT_REORDER_BUFFER_SIZE);
+    }
+
+    PasswordProcessor(final int reorderBufferSize) {
+        this.reorderBufferSize = reorderBufferSize;
+    }
+
     /**
      * Performs an action on all passwords stored in the database.
      *
@@ -58,49 +101,130 @@ public class PasswordProcessor {
      */
 
     public void processAllPasswords(final User user, final PasswordAction action) throws Exception {
-        List<String> processedIds = new ArrayList<>();
-        if (userClassifier.isAdministrator(user)) {
-            processAllPasswordsWork(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_EVEN_IF_DISABLED_SQL, processedIds);
-            processAllPasswordsWork(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_EVEN_IF_DISABLED_SQL, processedIds);
-        } else {
-            processAllPasswordsWork(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_SQL, processedIds);
-            processAllPasswordsWork(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_SQL, processedIds);
-        }
+        process(user, action, null);
     }
 
     /**
-     * Performs an action on all passwords stored in the database.
+     * Performs an action on the passwords which the expiry index shows expire before a given date. Passwords
+     * which are not in the expiry index are always passed to the action.
      *
      * @param user The user performing the action.
+     * @param date The date before which the passwords expire.
      * @param action The object which will act on each password.
-     * @param sql The SQL to use to get the passwords.
-     * @param processedIds The List of IDs which have been processed
      *
      * @throws Exception Any exception can be thrown during the processing of passwords.
      */
 
-    public void processAllPasswordsWork(final User user,
-                                        final PasswordAction action, final String sql,
-                                        final List<String> processedIds)
+    public void processPasswordsExpiringBefore(final User user, final long date, final PasswordAction action)
+            throws Exception {
+        process(user, action, date);
+    }
+
+    private void process(final User user, final PasswordAction action, final Long expiringBefore)
             throws Exception {
-        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+        Set<String> processedIds = new HashSet<>();
+        Deque<Future<Password>> pending = new ArrayDeque<>(reorderBufferSize);
+        try {
+            if (userClassifier.isAdministrator(user)) {
+                processUserAccessControls(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_EVEN_IF_DISABLED_SQL, expiringBefore, processedIds, pending);
+                processGroupAccessControls(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_EVEN_IF_DISABLED_SQL, expiringBefore, processedIds, pending);
+            } else {
+                processUserAccessControls(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_USER_SQL, expiringBefore, processedIds, pending);
+                processGroupAccessControls(user, action, GET_ALL_PASSWORDS_FOR_ACTION_BY_GROUP_SQL, expiringBefore, processedIds, pending);
+            }
+            while (!pending.isEmpty()) {
+                processNext(action, pending);
+            }
+        } finally {
+            for (Future<Password> future : pending) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private PreparedStatement prepare(final User user, final String sql, final Long expiringBefore)
+            throws SQLException {
+        if (expiringBefore == null) {
+            PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql);
             ps.setString(1, user.getId());
+            return ps;
+        }
+
+        PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql + EXPIRING_BEFORE_FILTER);
+        ps.setString(1, user.getId());
+        ps.setLong(2, expiringBefore);
+        return ps;
+    }
+
+    private void processUserAccessControls(final User user, final PasswordAction action, final String sql,
+                                           final Long expiringBefore, final Set<String> processedIds,
+                                           final Deque<Future<Password>> pending)
+            throws Exception {
+        try(PreparedStatement ps = prepare(user, sql, expiringBefore)) {
             try (ResultSet rs = ps.executeQuery()){
-                AccessControlDAO acDAO = AccessControlDAO.getInstance();
                 while (rs.next()) {
-                    final String id = rs.getString(1);
+                    if (processedIds.add(rs.getString(1))) {
+                        submit(new HierarchyNodeDAO.EncryptedChildObject(rs, user, null), action, pending);
+                    }
+                }
+            }
+        }
+    }
+
+    private void processGroupAccessControls(final User user, final PasswordAction action, final String sql,
+                                            final Long expiringBefore, final Set<String> processedIds,
+                                            final Deque<Future<Password>> pending)
+            throws Exception {
+        Map<String, Group> decryptedGroups = new HashMap<>();
+        try(PreparedStatement ps = prepare(user, sql, expiringBefore)) {
+            try (ResultSet rs = ps.executeQuery()){
+                while (rs.next()) {
+                    String id = rs.getString(1);
                     if (processedIds.contains(id)) {
                         continue;
                     }
-                    final AccessControl ac = acDAO.getAccessControl(user, id);
-                    if( ac == null ) {
-                        continue;
+                    String groupId = rs.getString(4);
+                    if (!decryptedGroups.containsKey(groupId)) {
+                        decryptedGroups.put(groupId, GroupDAO.getInstance().getByIdDecrypted(groupId, user));
+                    }
+                    Group group = decryptedGroups.get(groupId);
+                    if (group != null) {
+                        processedIds.add(id);
+                        submit(new HierarchyNodeDAO.EncryptedChildObject(rs, group, null), action, pending);
                     }
-                    final Password thisPassword = new Password(id, rs.getBytes(2), ac);
-                    action.process(null, thisPassword);
-                    processedIds.add(id);
                 }
             }
         }
     }
+
+    /**
+     * Start decrypting a password, first passing the oldest password to the action if the reorder
+     * buffer is full.
+     */
+
+    private void submit(final HierarchyNodeDAO.EncryptedChildObject encryptedPassword, final PasswordAction action,
+                        final Deque<Future<Password>> pending)
+            throws Exception {
+        if (pending.size() >= reorderBufferSize) {
+            processNext(action, pending);
+        }
+        pending.add(WorkerPool.getInstance().submit(encryptedPassword));
+    }
+
+    private void processNext(final PasswordAction action, final Deque<Future<Password>> pending)
+            throws Exception {
+        Password password;
+        try {
+            password = pending.remove().get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+        if (password != null) {
+            action.process(null, password);
+        }
+    }
 }
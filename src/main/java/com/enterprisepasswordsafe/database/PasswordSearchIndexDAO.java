@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.utils.SearchTokenizer;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data access object for the optional password search index.
+ *
+ * The index holds keyed hash tokens for the substrings of the username, location and notes of each
+ * password. It is enabled by setting the EPS_SEARCH_INDEX_KEY environment variable, and is only used
+ * to answer queries once every password has been indexed with the current key, so a partly built
+ * index can never hide a password from a search.
+ */
+
+public final class PasswordSearchIndexDAO
+    extends JDBCBase {
+
+    /**
+     * The names of the indexed fields.
+     */
+
+    public static final String USERNAME_FIELD = "username",
+                               LOCATION_FIELD = "location",
+                               NOTES_FIELD = "notes";
+
+    /**
+     * The maximum number of tokens from a query which are looked up. Any subset of the tokens for
+     * a query will find every password which matches it.
+     */
+
+    private static final int MAXIMUM_QUERY_TOKENS = 32;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO password_search_index(password_id, token) VALUES (?, ?)";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM password_search_index WHERE password_id = ?";
+
+    private static final String GET_ALL_PASSWORD_IDS_SQL =
+            "SELECT password_id FROM passwords";
+
+    private static final String GET_UNINDEXED_PASSWORD_IDS_SQL =
+            "SELECT p.password_id FROM passwords p WHERE NOT EXISTS "
+            + "(SELECT 1 FROM password_search_index i WHERE i.password_id = p.password_id)";
+
+    private static final String LOG_TAG = "PasswordSearchIndexDAO";
+
+    private final AtomicBoolean rebuildRunning = new AtomicBoolean(false);
+
+    private String tokenizerKey;
+
+    private SearchTokenizer tokenizer;
+
+    private PasswordSearchIndexDAO() {
+        super();
+    }
+
+    /**
+     * Get the tokenizer for the configured key, or null if the index is not enabled.
+     */
+
+    synchronized SearchTokenizer getTokenizer() {
+        String key = Repositories.searchIndexKeyRepository.get();
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        if (!key.equals(tokenizerKey)) {
+            tokenizer = new SearchTokenizer(key);
+            tokenizerKey = key;
+        }
+        return tokenizer;
+    }
+
+    /**
+     * Test if the index can be used to answer queries.
+     */
+
+    public boolean isUsable()
+            throws SQLException, GeneralSecurityException {
+        SearchTokenizer currentTokenizer = getTokenizer();
+        return currentTokenizer != null
+            && currentTokenizer.getKeyFingerprint().equals(
+                    ConfigurationDAO.getValue(ConfigurationOption.SEARCH_INDEX_FINGERPRINT));
+    }
+
+    /**
+     * Update the index entries for a password.
+     *
+     * @param password The decrypted password.
+     */
+
+    public void index(final Password password)
+            throws SQLException, GeneralSecurityException {
+        SearchTokenizer currentTokenizer = getTokenizer();
+        if (currentTokenizer == null) {
+            // A change made while the index is disabled means any existing index is out of date.
+            if (ConfigurationDAO.getValue(ConfigurationOption.SEARCH_INDEX_FINGERPRINT) != null) {
+                ConfigurationDAO.getInstance().delete(ConfigurationOption.SEARCH_INDEX_FINGERPRINT);
+            }
+            return;
+        }
+
+        Set<String> tokens = new HashSet<>();
+        tokens.addAll(currentTokenizer.tokenize(USERNAME_FIELD, password.getUsername()));
+        tokens.addAll(currentTokenizer.tokenize(LOCATION_FIELD, password.getLocation()));
+        tokens.addAll(currentTokenizer.tokenize(NOTES_FIELD, password.getNotes()));
+
+        remove(password.getId());
+        addTokens(password.getId(), tokens);
+    }
+
+    void addTokens(final String passwordId, final Set<String> tokens)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SQL)) {
+            int batched = 0;
+            for (String token : tokens) {
+                ps.setString(1, passwordId);
+                ps.setString(2, token);
+                ps.addBatch();
+                batched++;
+                if (batched == BATCH_SIZE) {
+                    ps.executeBatch();
+                    batched = 0;
+                }
+            }
+            if (batched > 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Remove the index entries for a password.
+     *
+     * @param passwordId The ID of the password.
+     */
+
+    public void remove(final String passwordId)
+            throws SQLException {
+        runResultlessParameterisedSQL(DELETE_SQL, passwordId);
+    }
+
+    /**
+     * Get the IDs of the passwords which may contain a value in a field.
+     *
+     * @param field The field being searched.
+     * @param query The text being searched for.
+     *
+     * @return The IDs of every password which may match, including any which have no index entries,
+     * or null if the index can not answer the query, in which case every password should be checked.
+     */
+
+    public Set<String> getCandidates(final String field, final String query)
+            throws SQLException, GeneralSecurityException {
+        if (query == null || query.length() < SearchTokenizer.GRAM_LENGTH || !isUsable()) {
+            return null;
+        }
+
+        List<String> tokens = new ArrayList<>(getTokenizer().tokenize(field, query));
+        if (tokens.size() > MAXIMUM_QUERY_TOKENS) {
+            tokens = tokens.subList(0, MAXIMUM_QUERY_TOKENS);
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT password_id, token FROM password_search_index WHERE token IN (");
+        for (int i = 0; i < tokens.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        Map<String, Set<String>> tokensByPassword = new HashMap<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql.toString())) {
+            setParameters(ps, tokens.toArray(new String[0]));
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tokensByPassword.computeIfAbsent(rs.getString(1), k -> new HashSet<>()).add(rs.getString(2));
+                }
+            }
+        }
+
+        Set<String> candidates = getIdsFrom(GET_UNINDEXED_PASSWORD_IDS_SQL);
+        for (Map.Entry<String, Set<String>> entry : tokensByPassword.entrySet()) {
+            if (entry.getValue().size() == tokens.size()) {
+                candidates.add(entry.getKey());
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Index every password. This needs a user who can read every password, and marks the index as
+     * usable once it has finished.
+     *
+     * @param adminUser The user used to decrypt the passwords.
+     */
+
+    public void rebuild(final User adminUser)
+            throws SQLException, GeneralSecurityException, IOException {
+        SearchTokenizer currentTokenizer = getTokenizer();
+        if (currentTokenizer == null) {
+            return;
+        }
+
+        ConfigurationDAO.getInstance().delete(ConfigurationOption.SEARCH_INDEX_FINGERPRINT);
+
+        // Passwords the user can not read, such as personal passwords, are left without index entries,
+        // which makes them a candidate for every query until their owner next saves them.
+        PasswordDAO passwordDAO = PasswordDAO.getInstance();
+        for (String passwordId : getIdsFrom(GET_ALL_PASSWORD_IDS_SQL)) {
+            Password password = passwordDAO.getById(adminUser, passwordId);
+            if (password == null) {
+                remove(passwordId);
+            } else {
+                index(password);
+            }
+        }
+
+        ConfigurationDAO.getInstance().set(ConfigurationOption.SEARCH_INDEX_FINGERPRINT,
+                currentTokenizer.getKeyFingerprint());
+    }
+
+    /**
+     * Start rebuilding the index in the background if it is enabled but not yet usable.
+     *
+     * @param adminUser The user used to decrypt the passwords.
+     */
+
+    public void rebuildInBackgroundIfNeeded(final User adminUser)
+            throws SQLException, GeneralSecurityException {
+        if (getTokenizer() == null || isUsable() || !rebuildRunning.compareAndSet(false, true)) {
+            return;
+        }
+
+        WorkerPool.getInstance().submit(() -> {
+            try {
+                rebuild(adminUser);
+            } catch (Exception e) {
+                Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Unable to rebuild the search index", e);
+            } finally {
+                rebuildRunning.set(false);
+            }
+            return null;
+        });
+    }
+
+    private Set<String> getIdsFrom(final String sql)
+            throws SQLException {
+        Set<String> ids = new HashSet<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final PasswordSearchIndexDAO INSTANCE = new PasswordSearchIndexDAO();
+    }
+
+    public static PasswordSearchIndexDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
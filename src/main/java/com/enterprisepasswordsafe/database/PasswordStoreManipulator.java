@@ -30,7 +30,7 @@ public abstract class PasswordStoreManipulator
 
     private static final String UPDATE_PASSWORD_SQL = "UPDATE passwords SET enabled = ?, audited = ?, " +
         "history_stored = ?, restriction_id = ?, ra_enabled = ?, ra_approvers = ?, ra_blockers = ?, " +
-        "ptype = ?, password_data = ? WHERE password_id = ?";
+        "ptype = ?, expiry_l = ?, password_data = ? WHERE password_id = ?";
 
 
     /**
@@ -170,11 +170,14 @@ public abstract class PasswordStoreManipulator
             ps.setInt(idx++, password.getRaApprovers());
             ps.setInt(idx++, password.getRaBlockers());
             ps.setInt(idx++, password.getPasswordType());
+            ps.setLong(idx++, password.getExpiry());
             ps.setBytes(idx++, PasswordUtils.encrypt(password, ac));
 
             ps.setString(idx, password.getId());
             ps.executeUpdate();
         }
+
+        PasswordSearchIndexDAO.getInstance().index(password);
     }
 
     public void delete(final User deletingUser, final Password password)
@@ -186,6 +189,7 @@ public abstract class PasswordStoreManipulator
         try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(DELETE_SQL)) {
             ps.setString(1, password.getId());
             ps.executeUpdate();
+            PasswordSearchIndexDAO.getInstance().remove(password.getId());
 
             if( password.getPasswordType() != Password.TYPE_PERSONAL ) {
                 TamperproofEventLogDAO.getInstance().create(TamperproofEventLog.LOG_LEVEL_OBJECT_MANIPULATION,
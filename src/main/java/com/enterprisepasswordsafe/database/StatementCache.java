@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of the prepared statements used on a single connection, keyed by their SQL.
+ *
+ * The DAOs prepare and close a statement for every query. The connection returned by
+ * {@link #getConnection()} hands back a cached statement for SQL it has seen before, and a close
+ * of that statement returns it to the cache instead of closing it. A statement is only handed out
+ * again once it has been closed, so a query nested inside the results of the same query gets a
+ * statement of its own. Statement settings such as the maximum row count are put back when a
+ * statement is returned. The cached statements are closed when the connection is closed.
+ *
+ * The connection also reports when something which may write to the database is prepared, so
+ * the request can stop reading from the read replica, and when a transaction ends.
+ */
+final class StatementCache {
+
+    /**
+     * The maximum number of statements kept for a connection.
+     */
+    static final int MAXIMUM_SIZE = 64;
+
+    /**
+     * Matches SQL which takes locks for a later update.
+     */
+    private static final Pattern FOR_UPDATE = Pattern.compile("\\sFOR\\s+UPDATE\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The keywords statements which only read data start with.
+     */
+    private static final String[] QUERY_KEYWORDS = { "SELECT", "VALUES", "WITH", "(" };
+
+    /**
+     * The statement settings which are put back to their original values when a statement is returned.
+     * Any other change to the statement stops it being reused.
+     */
+    private static final Set<String> RESTORABLE_SETTINGS = new HashSet<>(Arrays.asList(
+            "setMaxRows", "setFetchSize", "setQueryTimeout", "setMaxFieldSize", "setFetchDirection"));
+
+    private final Connection connection;
+
+    private final Connection cachingConnection;
+
+    private final int maximumSize;
+
+    private final Runnable writeListener;
+
+    private final TransactionListener transactionListener;
+
+    private final Map<String, CachedStatement> statements = new HashMap<>();
+
+    private long hits, misses;
+
+    StatementCache(final Connection connection) {
+        this(connection, MAXIMUM_SIZE, () -> {}, committed -> {});
+    }
+
+    /**
+     * @param connection The connection to prepare statements on.
+     * @param maximumSize The maximum number of statements to keep, or zero to only report writes.
+     * @param writeListener Called when SQL which may write is prepared, or a transaction is started.
+     * @param transactionListener Called after a transaction is committed or rolled back.
+     */
+    StatementCache(final Connection connection, final int maximumSize, final Runnable writeListener,
+                   final TransactionListener transactionListener) {
+        this.connection = connection;
+        this.maximumSize = maximumSize;
+        this.writeListener = writeListener;
+        this.transactionListener = transactionListener;
+        cachingConnection = (Connection) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new CachingConnection());
+    }
+
+    /**
+     * Get the connection which uses this cache for single argument prepareStatement calls.
+     */
+    Connection getConnection() {
+        return cachingConnection;
+    }
+
+    synchronized long getHitCount() {
+        return hits;
+    }
+
+    synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Check if some SQL may change the database.
+     */
+    static boolean isWrite(final String sql) {
+        int start = 0;
+        while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+            start++;
+        }
+        for (String keyword : QUERY_KEYWORDS) {
+            if (sql.regionMatches(true, start, keyword, 0, keyword.length())) {
+                return FOR_UPDATE.matcher(sql).find();
+            }
+        }
+        return true;
+    }
+
+    private synchronized PreparedStatement prepare(final String sql)
+            throws SQLException {
+        if (isWrite(sql)) {
+            writeListener.run();
+        }
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            if (cached.statement.isClosed()) {
+                statements.remove(sql);
+            } else {
+                cached.inUse = true;
+                hits++;
+                return checkout(sql, cached.statement);
+            }
+        }
+
+        misses++;
+        return checkout(sql, connection.prepareStatement(sql));
+    }
+
+    private PreparedStatement checkout(final String sql, final PreparedStatement statement) {
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new CheckedOutStatement(sql, statement));
+    }
+
+    /**
+     * Return a statement to the cache, or close it if it can't be reused or the cache is full.
+     */
+    private synchronized void release(final CheckedOutStatement checkout) {
+        PreparedStatement statement = checkout.statement;
+        boolean reusable = checkout.reusable && resetStatement(checkout);
+
+        CachedStatement cached = statements.get(checkout.sql);
+        if (cached != null && cached.statement == statement) {
+            if (reusable) {
+                cached.inUse = false;
+                return;
+            }
+            statements.remove(checkout.sql);
+        } else if (reusable && cached == null && statements.size() < maximumSize) {
+            statements.put(checkout.sql, new CachedStatement(statement));
+            return;
+        }
+        closeQuietly(statement);
+    }
+
+    private boolean resetStatement(final CheckedOutStatement checkout) {
+        try {
+            if (checkout.statement.isClosed()) {
+                return false;
+            }
+            checkout.statement.clearParameters();
+            if (checkout.batched) {
+                checkout.statement.clearBatch();
+            }
+            for (Map.Entry<Method, Object> setting : checkout.originalSettings.entrySet()) {
+                setting.getKey().invoke(checkout.statement, setting.getValue());
+            }
+            return true;
+        } catch (SQLException | ReflectiveOperationException e) {
+            Logger.getLogger(StatementCache.class.getName()).log(Level.FINE, "Unable to reset statement", e);
+            return false;
+        }
+    }
+
+    /**
+     * Close all the cached statements.
+     */
+    synchronized void close() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(final Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            Logger.getLogger(StatementCache.class.getName()).log(Level.FINE, "Problem closing statement", e);
+        }
+    }
+
+    private static Object invoke(final Object target, final Method method, final Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Object invokeObjectMethod(final Object proxy, final Object target, final Method method,
+                                             final Object[] args)
+            throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return invoke(target, method, args);
+        }
+    }
+
+    /**
+     * Passes everything except single argument prepareStatement calls to the real connection, noting
+     * anything which may write.
+     */
+    private final class CachingConnection implements InvocationHandler {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, connection, method, args);
+            }
+            switch (method.getName()) {
+                case "prepareStatement":
+                    if (args.length == 1) {
+                        return prepare((String) args[0]);
+                    }
+                    if (isWrite((String) args[0])) {
+                        writeListener.run();
+                    }
+                    break;
+                case "createStatement":
+                case "prepareCall":
+                    writeListener.run();
+                    break;
+                case "setAutoCommit":
+                    if (!((Boolean) args[0])) {
+                        writeListener.run();
+                    } else if (!connection.getAutoCommit()) {
+                        return endTransaction(method, args, true);
+                    }
+                    break;
+                case "commit":
+                case "rollback":
+                    if (args == null) {
+                        return endTransaction(method, args, method.getName().equals("commit"));
+                    }
+                    break;
+                case "close":
+                    StatementCache.this.close();
+                    break;
+                default:
+                    break;
+            }
+            return StatementCache.invoke(connection, method, args);
+        }
+    }
+
+    private Object endTransaction(final Method method, final Object[] args, final boolean committed)
+            throws Throwable {
+        Object result = StatementCache.invoke(connection, method, args);
+        transactionListener.transactionEnded(committed);
+        return result;
+    }
+
+    /**
+     * Told when a transaction on the connection has been committed or rolled back.
+     */
+    interface TransactionListener {
+        void transactionEnded(boolean committed);
+    }
+
+    /**
+     * A statement handed out by the cache. Closing it returns the statement to the cache.
+     */
+    private final class CheckedOutStatement implements InvocationHandler {
+        private final String sql;
+        private final PreparedStatement statement;
+        private final Map<Method, Object> originalSettings = new HashMap<>();
+        private boolean closed, reusable = true, batched;
+
+        private CheckedOutStatement(final String sql, final PreparedStatement statement) {
+            this.sql = sql;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return invokeObjectMethod(proxy, statement, method, args);
+            }
+
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "getConnection":
+                    return cachingConnection;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            if (name.equals("addBatch")) {
+                batched = true;
+            } else if (method.getDeclaringClass() == Statement.class) {
+                if (RESTORABLE_SETTINGS.contains(name)) {
+                    if (!originalSettings.containsKey(method)) {
+                        originalSettings.put(method,
+                                Statement.class.getMethod("get" + name.substring(3)).invoke(statement));
+                    }
+                } else if (name.startsWith("set") || name.equals("closeOnCompletion")) {
+                    reusable = false;
+                }
+            }
+            return StatementCache.invoke(statement, method, args);
+        }
+    }
+
+    /**
+     * A statement held by the cache and whether it is currently handed out.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+
+        private CachedStatement(final PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+}
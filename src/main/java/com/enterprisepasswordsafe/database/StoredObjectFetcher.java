@@ -31,7 +31,7 @@ public abstract class StoredObjectFetcher<T>
     List<T> getMultiple(final String sql, final String... parameters)
             throws SQLException {
         List<T> results = new ArrayList<>();
-        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+        try (PreparedStatement ps = BOMFactory.getReadConnection().prepareStatement(sql)) {
             setParameters(ps, parameters);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
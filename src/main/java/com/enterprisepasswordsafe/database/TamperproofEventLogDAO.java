@@ -19,55 +19,65 @@ package com.enterprisepasswordsafe.database;
 import com.enterprisepasswordsafe.engine.hierarchy.HierarchyTools;
 import com.enterprisepasswordsafe.engine.logging.LogEventHasher;
 import com.enterprisepasswordsafe.engine.logging.LogEventMailer;
+import com.enterprisepasswordsafe.engine.logging.LogEventParser;
 import com.enterprisepasswordsafe.engine.utils.DateFormatter;
 
+import javax.crypto.spec.SecretKeySpec;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class TamperproofEventLogDAO {
 
     private static final String GET_BY_DATE_RANGE_SQL =
-        	"SELECT evl.dt_l, evl.user_id, evl.item_id, evl.event, evl.stamp_b, usr.user_name, pass.password_data, pass.history_stored"
+        	"SELECT evl.dt_l, evl.user_id, evl.item_id, evl.event, evl.stamp_b, usr.user_name, pass.password_data, pass.history_stored, evl.seq_l,"
+            + "       evl.chain_b, prev.chain_b"
             + "  FROM event_log evl "
             + "  LEFT OUTER JOIN application_users usr ON evl.user_id = usr.user_id"
             + "  LEFT OUTER JOIN passwords pass        ON evl.item_id = pass.password_id"
-            + " WHERE evl.dt_l >= ? AND evl.dt_l <= ? ORDER BY evl.dt_l ASC";
+            + "  LEFT OUTER JOIN event_log prev        ON prev.seq_l = evl.seq_l - 1"
+            + " WHERE evl.dt_l >= ? AND evl.dt_l <= ?";
 
-    private static final String GET_BY_DATE_RANGE_AND_USER_SQL =
-              "SELECT evl.dt_l, evl.user_id, evl.item_id, evl.event, evl.stamp_b, usr.user_name, pass.password_data, pass.history_stored"
-            + "  FROM event_log evl "
-            + "  LEFT OUTER JOIN application_users usr ON evl.user_id = usr.user_id"
-            + "  LEFT OUTER JOIN passwords pass        ON evl.item_id = pass.password_id"
-            + " WHERE evl.dt_l >= ? AND evl.dt_l <= ? AND evl.user_id = ? ORDER BY evl.dt_l ASC";
+    private static final String USER_LIMIT_SQL = " AND evl.user_id = ?";
 
-    private static final String GET_BY_DATE_RANGE_AND_ITEM_SQL =
-    		  "SELECT evl.dt_l, evl.user_id, evl.item_id, evl.event, evl.stamp_b, usr.user_name, pass.password_data, pass.history_stored"
-            + "  FROM event_log evl"
-            + "  LEFT OUTER JOIN application_users usr ON evl.user_id = usr.user_id"
-            + "  LEFT OUTER JOIN passwords pass        ON evl.item_id = pass.password_id"
-            + " WHERE evl.dt_l >= ? AND evl.dt_l <= ? AND evl.item_id = ? ORDER BY evl.datetime ASC";
+    private static final String ITEM_LIMIT_SQL = " AND evl.item_id = ?";
 
-    private static final String GET_BY_DATE_RANGE_AND_USER_AND_ITEM_SQL =
-		    "SELECT evl.dt_l, evl.user_id, evl.item_id, evl.event, evl.stamp_b, usr.user_name, pass.password_data, pass.history_stored"
-            + "  FROM event_log evl "
-            + "  LEFT OUTER JOIN application_users usr ON evl.user_id = usr.user_id"
-            + "  LEFT OUTER JOIN passwords pass        ON evl.item_id = pass.password_id"
-            + " WHERE evl.dt_l >= ? AND evl.dt_l <= ? AND evl.user_id = ? AND evl.item_id = ? ORDER BY evl.datetime ASC";
+    /**
+     * The order events are returned in. Events in the same millisecond are ordered so that a cursor
+     * can count how many of them have already been returned.
+     */
+
+    private static final String EVENT_ORDER_SQL = " ORDER BY evl.dt_l ASC, evl.user_id ASC, evl.item_id ASC";
+
+    /**
+     * The number of rows fetched from the database at a time when reading events. Events are also
+     * passed on in batches of this size so the names in their messages can be looked up together.
+     */
+
+    private static final int EVENT_FETCH_SIZE = 500;
 
     private static final String WRITE_SQL =
               "INSERT INTO event_log(dt_l, item_id, event, user_id, stamp_b) VALUES (?, ?, ?, ?, ?)";
 
+    private static final String WRITE_CHAINED_SQL =
+              "INSERT INTO event_log(dt_l, item_id, event, user_id, stamp_b, seq_l, chain_b) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
     private final HierarchyTools hierarchyTools;
 
+    private final LogEventHasher logEventHasher;
+
 	private TamperproofEventLogDAO( ) {
 		super();
 		hierarchyTools = new HierarchyTools();
+		logEventHasher = new LogEventHasher();
 	}
 
 	public void create( final User theUser, final AccessControledObject item,
@@ -102,20 +112,135 @@ public class TamperproofEventLogDAO {
     private void write(final String logLevel, TamperproofEventLog eventLogEntry,
     		final AccessControledObject item, boolean sendEmail)
             throws SQLException, GeneralSecurityException {
-        String userId = eventLogEntry.getUserId();
-        if (userId == null) {
-        	userId = TamperproofEventLog.DUMMY_USER_ID;
+        TamperproofEventLogWriter.getInstance().submit(
+                new TamperproofEventLogWriter.PendingEntry(logLevel, eventLogEntry, item, sendEmail));
+    }
+
+    /**
+     * Write a batch of entries in one transaction, and send any Emails needed for them once the
+     * entries have been committed, so a failed write which is retried does not send them twice, and
+     * entries rolled back with the caller's transaction do not send them at all.
+     */
+
+    void write(final List<TamperproofEventLogWriter.PendingEntry> entries)
+            throws SQLException, GeneralSecurityException {
+        List<TamperproofEventLog> toWrite = new ArrayList<>(entries.size());
+        for (TamperproofEventLogWriter.PendingEntry entry : entries) {
+            toWrite.add(entry.entry);
+        }
+        writeEntries(toWrite);
+        BOMFactory.getInstance().runAfterCommit(() -> sendEmails(entries));
+    }
+
+    /**
+     * Write entries in one transaction. If a transaction is already open the entries are written
+     * as part of it.
+     */
+
+    private void writeEntries(final List<TamperproofEventLog> entries)
+            throws SQLException, GeneralSecurityException {
+        if (EventLogChainDAO.getInstance().isEnabled()) {
+            writeChained(entries);
+            return;
+        }
+
+        Connection conn = BOMFactory.getCurrentConntection();
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            try(PreparedStatement ps = conn.prepareStatement(WRITE_SQL)) {
+                for (TamperproofEventLog eventLogEntry : entries) {
+                    setEntryParameters(ps, eventLogEntry);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            if (autoCommit) {
+                conn.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
         }
+    }
 
-        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(WRITE_SQL)) {
-            if (sendEmail) {
-                sendEmail(ps, logLevel, eventLogEntry, item);
+    /**
+     * Send the Emails for entries which have been written, logging any which could not be sent.
+     */
+
+    private void sendEmails(final List<TamperproofEventLogWriter.PendingEntry> entries) {
+        List<TamperproofEventLog> failures = new ArrayList<>();
+        try {
+            for (TamperproofEventLogWriter.PendingEntry entry : entries) {
+                if (entry.sendEmail) {
+                    sendEmail(failures, entry.logLevel, entry.entry, entry.item);
+                }
             }
-            writeEntry(ps, userId, eventLogEntry);
+            if (!failures.isEmpty()) {
+                writeEntries(failures);
+            }
+        } catch (SQLException | GeneralSecurityException | RuntimeException e) {
+            Logger.getAnonymousLogger().log(Level.SEVERE, "Unable to send audit Emails", e);
         }
     }
 
-    private void sendEmail(final PreparedStatement writePreparedStatement, final String logLevel,
+    /**
+     * Write entries as the next links in the event log chain. The head of the chain is locked before
+     * it is read, so other writers wait until the entries have been committed. If a transaction is
+     * already open the entries are written as part of it.
+     */
+
+    private void writeChained(final List<TamperproofEventLog> entries)
+            throws SQLException, GeneralSecurityException {
+        EventLogChainDAO chainDAO = EventLogChainDAO.getInstance();
+        Connection conn = BOMFactory.getCurrentConntection();
+        boolean autoCommit = conn.getAutoCommit();
+        if (autoCommit) {
+            conn.setAutoCommit(false);
+        }
+        try {
+            SecretKeySpec chainKey = chainDAO.getChainKey();
+            EventLogChainDAO.Link head = chainDAO.lockHead();
+            long sequence = head.sequence;
+            byte[] hash = head.hash;
+            try(PreparedStatement ps = conn.prepareStatement(WRITE_CHAINED_SQL)) {
+                for (TamperproofEventLog eventLogEntry : entries) {
+                    sequence++;
+                    hash = logEventHasher.createChainHash(chainKey, hash, sequence, eventLogEntry.getDateTime(),
+                            eventLogEntry.getEvent(), eventLogEntry.getItemId(), getUserId(eventLogEntry),
+                            eventLogEntry.getTamperStamp());
+                    setEntryParameters(ps, eventLogEntry);
+                    ps.setLong(6, sequence);
+                    ps.setBytes(7, hash);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            chainDAO.moveHead(head, new EventLogChainDAO.Link(sequence, hash));
+            if (autoCommit) {
+                conn.commit();
+            }
+        } catch (SQLException | GeneralSecurityException | RuntimeException e) {
+            if (autoCommit) {
+                conn.rollback();
+            }
+            throw e;
+        } finally {
+            if (autoCommit) {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void sendEmail(final List<TamperproofEventLog> failures, final String logLevel,
                            TamperproofEventLog eventLogEntry, final AccessControledObject item )
             throws SQLException, GeneralSecurityException {
         String sendEmails = ConfigurationDAO.getValue(
@@ -124,22 +249,25 @@ public class TamperproofEventLogDAO {
             try {
                 new LogEventMailer().sendEmail(logLevel, eventLogEntry, item);
             } catch (Exception ex) {
-                TamperproofEventLog log = new TamperproofEventLog(null,null,
+                failures.add(new TamperproofEventLog(null,null,
                         "Unable to send audit Email (Reason:"+ex.getMessage()+")",
-                        false);
-                writeEntry(writePreparedStatement, TamperproofEventLog.DUMMY_USER_ID, log);
+                        false));
             }
         }
     }
 
-    private void writeEntry(PreparedStatement ps, String userId, TamperproofEventLog eventLogEntry)
+    private void setEntryParameters(PreparedStatement ps, TamperproofEventLog eventLogEntry)
             throws SQLException {
         ps.setLong(1, eventLogEntry.getDateTime());
         ps.setString(2, eventLogEntry.getItemId());
         ps.setString(3, eventLogEntry.getEvent());
-        ps.setString(4, userId);
+        ps.setString(4, getUserId(eventLogEntry));
         ps.setBytes(5, eventLogEntry.getTamperStamp());
-        ps.executeUpdate();
+    }
+
+    private String getUserId(TamperproofEventLog eventLogEntry) {
+        String userId = eventLogEntry.getUserId();
+        return userId == null ? TamperproofEventLog.DUMMY_USER_ID : userId;
     }
 
 
@@ -165,12 +293,75 @@ public class TamperproofEventLogDAO {
             throws 	SQLException,
             		UnsupportedEncodingException,
             		GeneralSecurityException {
+        DayGrouper grouper = new DayGrouper();
+        scanEvents(startDate, endDate, userIdLimit, itemIdLimit, fetchingUser, includePersonal,
+                validateTamperstamp, null, Integer.MAX_VALUE, grouper);
+        return grouper.days;
+    }
+
+    /**
+     * Get a page of events. Only the events on the page are expanded, so the cost of decrypting the
+     * items and checking the tamperstamps is only paid for the events which are shown.
+     *
+     * @param after The cursor returned with the previous page, or null for the first page.
+     * @param pageSize The maximum number of events on the page.
+     *
+     * @return The page of events.
+     */
+
+    public EventsPage getEventsPage(final long startDate, final long endDate, final String userIdLimit,
+            final String itemIdLimit, final User fetchingUser, final boolean includePersonal,
+            final boolean validateTamperstamp, final EventCursor after, final int pageSize)
+            throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
+        DayGrouper grouper = new DayGrouper();
+        EventCursor next = scanEvents(startDate, endDate, userIdLimit, itemIdLimit, fetchingUser, includePersonal,
+                validateTamperstamp, after, pageSize, grouper);
+        return new EventsPage(grouper.days, next);
+    }
+
+    /**
+     * Pass each event in a date range to a handler as it is read from the database, so that the events
+     * don't have to be held in memory.
+     */
+
+    public <E extends Exception> void streamEvents(final long startDate, final long endDate,
+            final String userIdLimit, final String itemIdLimit, final User fetchingUser,
+            final boolean includePersonal, final boolean validateTamperstamp, final EventHandler<E> handler)
+            throws SQLException, UnsupportedEncodingException, GeneralSecurityException, E {
+        scanEvents(startDate, endDate, userIdLimit, itemIdLimit, fetchingUser, includePersonal,
+                validateTamperstamp, null, Integer.MAX_VALUE, handler);
+    }
+
+    /**
+     * Read the events in a date range, expanding and handling at most the maximum number given.
+     *
+     * @return The cursor to continue from, or null if there are no more events.
+     */
+
+    private <E extends Exception> EventCursor scanEvents(final long startDate, final long endDate,
+            final String userIdLimit, final String itemIdLimit, final User fetchingUser,
+            final boolean includePersonal, final boolean validateTamperstamp, final EventCursor after,
+            final int maximum, final EventHandler<E> handler)
+            throws SQLException, UnsupportedEncodingException, GeneralSecurityException, E {
     	Group adminGroup = GroupDAO.getInstance().getAdminGroup(fetchingUser);
+        EventLogChainDAO.Verification verification =
+                validateTamperstamp ? EventLogChainDAO.getInstance().getVerification() : null;
+        LogEventParser logEventParser = new LogEventParser();
+        List<ExpandedTamperproofEventLogEntry> batch = new ArrayList<>();
+
+        long firstDatetime = startDate;
+        int toSkip = 0;
+        if (after != null && after.datetime >= startDate) {
+            firstDatetime = after.datetime;
+            toSkip = after.skip;
+        }
 
-        try (PreparedStatement ps =
-                     BOMFactory.getCurrentConntection().prepareStatement(getSQLStatement(userIdLimit, itemIdLimit))) {
+        try (KeyMaterialCache keyMaterialCache = new KeyMaterialCache();
+             PreparedStatement ps =
+                     BOMFactory.getReadConnection().prepareStatement(getSQLStatement(userIdLimit, itemIdLimit))) {
+            ps.setFetchSize(EVENT_FETCH_SIZE);
             int idx = 1;
-            ps.setLong(idx++, startDate);
+            ps.setLong(idx++, firstDatetime);
             ps.setLong(idx++, endDate);
 
             if (userIdLimit != null) {
@@ -181,62 +372,198 @@ public class TamperproofEventLogDAO {
             }
 
             try (ResultSet rs = ps.executeQuery()) {
-                return processResults(rs, fetchingUser, adminGroup, includePersonal, validateTamperstamp);
+                long lastDatetime = Long.MIN_VALUE;
+                int rowsAtLastDatetime = 0;
+                int handled = 0;
+                while (rs.next()) {
+                    if (handled == maximum) {
+                        deliver(batch, logEventParser, handler);
+                        return new EventCursor(lastDatetime, rowsAtLastDatetime);
+                    }
+
+                    long datetime = rs.getLong(1);
+                    if (datetime == lastDatetime) {
+                        rowsAtLastDatetime++;
+                    } else {
+                        lastDatetime = datetime;
+                        rowsAtLastDatetime = 1;
+                    }
+                    if (toSkip > 0 && datetime == firstDatetime) {
+                        toSkip--;
+                        continue;
+                    }
+
+                    ExpandedTamperproofEventLogEntry entry = expand(rs, fetchingUser, adminGroup, includePersonal,
+                            verification, validateTamperstamp, logEventParser, keyMaterialCache);
+                    if (entry != null) {
+                        batch.add(entry);
+                        handled++;
+                        if (batch.size() == EVENT_FETCH_SIZE) {
+                            deliver(batch, logEventParser, handler);
+                        }
+                    }
+                }
             }
         }
+        deliver(batch, logEventParser, handler);
+        return null;
+    }
+
+    /**
+     * Look up the names used in a batch of events and pass the events to the handler.
+     */
+
+    private <E extends Exception> void deliver(final List<ExpandedTamperproofEventLogEntry> batch,
+                                               final LogEventParser logEventParser, final EventHandler<E> handler)
+            throws SQLException, E {
+        logEventParser.resolvePending();
+        for (ExpandedTamperproofEventLogEntry entry : batch) {
+            handler.handle(entry);
+        }
+        batch.clear();
     }
 
     private String getSQLStatement(final String userIdLimit, final String itemIdLimit) {
-        String sql;
-        if (userIdLimit != null && itemIdLimit != null) {
-            sql = GET_BY_DATE_RANGE_AND_USER_AND_ITEM_SQL;
-        } else if (userIdLimit != null) {
-            sql = GET_BY_DATE_RANGE_AND_USER_SQL;
-        } else if (itemIdLimit != null) {
-            sql = GET_BY_DATE_RANGE_AND_ITEM_SQL;
-        } else {
-            sql = GET_BY_DATE_RANGE_SQL;
+        StringBuilder sql = new StringBuilder(GET_BY_DATE_RANGE_SQL);
+        if (userIdLimit != null) {
+            sql.append(USER_LIMIT_SQL);
         }
-        return sql;
+        if (itemIdLimit != null) {
+            sql.append(ITEM_LIMIT_SQL);
+        }
+        sql.append(EVENT_ORDER_SQL);
+        return sql.toString();
     }
 
-    private List<EventsForDay> processResults(final ResultSet rs, User fetchingUser, Group adminGroup,
-                                             final boolean includePersonal, final boolean validateTamperstamp)
+    private ExpandedTamperproofEventLogEntry expand(ResultSet rs, User fetchingUser, Group adminGroup,
+                                                    final boolean includePersonal,
+                                                    final EventLogChainDAO.Verification verification,
+                                                    final boolean validateTamperstamp,
+                                                    final LogEventParser logEventParser,
+                                                    final KeyMaterialCache keyMaterialCache)
             throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
-        List<EventsForDay> events = new ArrayList<>();
-
-        List<ExpandedTamperproofEventLogEntry> daysEvents = new ArrayList<>();
-        long currentDate = Long.MIN_VALUE;
-        while (rs.next()) {
-            long newDate = DateFormatter.stripTime(rs.getLong(1));
-            if (currentDate != Long.MIN_VALUE && currentDate != newDate) {
-                EventsForDay eventsForDay = new EventsForDay(currentDate, daysEvents);
-                events.add(eventsForDay);
+        String itemId = rs.getString(3);
+        if (!includePersonal && (rs.wasNull() || itemId == null) && hierarchyTools.isPersonalByName(itemId)) {
+            return null;
+        }
+
+        // Entries covered by a verified part of the chain are checked against their keyed chain hash
+        // instead of having their tamperstamps checked individually.
+        ExpandedTamperproofEventLogEntry.Status chainStatus = ExpandedTamperproofEventLogEntry.Status.UNKNOWN;
+        if (verification != null) {
+            long sequence = rs.getLong(9);
+            if (!rs.wasNull()) {
+                EventLogChainDAO.ChainedEntry chainedEntry = new EventLogChainDAO.ChainedEntry(sequence,
+                        rs.getBytes(10), rs.getLong(1), rs.getString(4), itemId, rs.getString(2), rs.getBytes(5));
+                chainStatus = verification.statusOf(chainedEntry, rs.getBytes(11));
+            }
+        }
+        if (chainStatus == ExpandedTamperproofEventLogEntry.Status.UNKNOWN) {
+            return ExpandedTamperproofEventLogEntry.from(rs, fetchingUser, adminGroup, validateTamperstamp,
+                    logEventParser, keyMaterialCache);
+        }
+
+        ExpandedTamperproofEventLogEntry entry =
+                ExpandedTamperproofEventLogEntry.from(rs, fetchingUser, adminGroup, false, logEventParser,
+                        keyMaterialCache);
+        entry.setTamperstampStatus(chainStatus);
+        return entry;
+    }
+
+    /**
+     * Interface for classes which process events as they are read.
+     */
+
+    @FunctionalInterface
+    public interface EventHandler<E extends Exception> {
+        void handle(ExpandedTamperproofEventLogEntry entry) throws E;
+    }
+
+    /**
+     * Handler which groups events by the day they occurred on.
+     */
+
+    private static final class DayGrouper implements EventHandler<RuntimeException> {
+        private final List<EventsForDay> days = new ArrayList<>();
+        private List<ExpandedTamperproofEventLogEntry> daysEvents;
+        private long currentDate = Long.MIN_VALUE;
+
+        @Override
+        public void handle(final ExpandedTamperproofEventLogEntry entry) {
+            long date = DateFormatter.stripTime(entry.getDateTime());
+            if (daysEvents == null || date != currentDate) {
                 daysEvents = new ArrayList<>();
+                days.add(new EventsForDay(date, daysEvents));
+                currentDate = date;
             }
+            daysEvents.add(entry);
+        }
+    }
+
+    /**
+     * The position after the last event on a page. The event log has no row identifier, so the
+     * position is the time of the last event and the number of events at that time which have
+     * already been returned.
+     */
 
-            processResult(rs, daysEvents, fetchingUser, adminGroup, includePersonal, validateTamperstamp);
+    public static final class EventCursor {
+        private final long datetime;
+        private final int skip;
 
-            currentDate = newDate;
+        EventCursor(final long datetime, final int skip) {
+            this.datetime = datetime;
+            this.skip = skip;
         }
 
-        if (daysEvents.size() > 0) {
-            EventsForDay eventsForDay = new EventsForDay(currentDate, daysEvents);
-            events.add(eventsForDay);
+        /**
+         * Recreate a cursor from the value returned by toString.
+         *
+         * @return The cursor, or null if the value is not a valid cursor.
+         */
+
+        public static EventCursor parse(final String value) {
+            if (value == null) {
+                return null;
+            }
+            int separator = value.indexOf(':');
+            if (separator == -1) {
+                return null;
+            }
+            try {
+                long datetime = Long.parseLong(value.substring(0, separator));
+                int skip = Integer.parseInt(value.substring(separator + 1));
+                return skip < 0 ? null : new EventCursor(datetime, skip);
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
 
-        return events;
+        @Override
+        public String toString() {
+            return datetime + ":" + skip;
+        }
     }
 
-    private void processResult(ResultSet rs, List<ExpandedTamperproofEventLogEntry> daysEvents, User fetchingUser,
-                               Group adminGroup, final boolean includePersonal, final boolean validateTamperstamp)
-            throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
-        String itemId = rs.getString(3);
-        if (!includePersonal && (rs.wasNull() || itemId == null) && hierarchyTools.isPersonalByName(itemId)) {
-            return;
+    public static final class EventsPage {
+        private final List<EventsForDay> days;
+        private final EventCursor nextCursor;
+
+        EventsPage(final List<EventsForDay> days, final EventCursor nextCursor) {
+            this.days = days;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<EventsForDay> getDays() {
+            return days;
         }
 
-        daysEvents.add( ExpandedTamperproofEventLogEntry.from( rs, fetchingUser, adminGroup, validateTamperstamp));
+        /**
+         * Get the cursor for the next page, or null if this is the last page.
+         */
+
+        public EventCursor getNextCursor() {
+            return nextCursor;
+        }
     }
 
     public static class EventsForDay {
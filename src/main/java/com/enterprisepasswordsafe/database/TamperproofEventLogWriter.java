@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes event log entries to the database from a background thread.
+ *
+ * Entries are created, including their tamperstamp, on the thread which logs the event and then
+ * queued. The writer thread inserts them in batches and sends any Emails for them. If the queue is
+ * full the logging thread waits briefly and then writes the entry itself, and when the writer is not
+ * running, or is being stopped, entries are always written by the logging thread so none are lost.
+ *
+ * If the writer can not write a batch the entries are kept, and logging threads write their own entries
+ * directly, retrying the kept entries first, until the kept entries have been written. Any failure to
+ * write an entry is then reported to the code logging the event.
+ */
+
+public final class TamperproofEventLogWriter {
+
+    /**
+     * The maximum number of entries waiting to be written.
+     */
+
+    private static final int QUEUE_SIZE = 10000;
+
+    /**
+     * The maximum number of entries written in one batch.
+     */
+
+    private static final int BATCH_SIZE = 250;
+
+    /**
+     * The time, in milliseconds, a logging thread waits for space in a full queue before
+     * writing the entry itself.
+     */
+
+    private static final long QUEUE_WAIT = 100;
+
+    /**
+     * The number of times writing a batch is attempted before its entries are handed to the
+     * logging threads.
+     */
+
+    private static final int WRITE_ATTEMPTS = 3;
+
+    private static final long RETRY_DELAY = 1000;
+
+    private static final String LOG_TAG = "TamperproofEventLogWriter";
+
+    private final BlockingQueue<PendingEntry> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    /**
+     * Entries the writer thread was unable to write.
+     */
+
+    private final Queue<PendingEntry> unwritten = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder entriesWritten = new LongAdder();
+    private final LongAdder batchesWritten = new LongAdder();
+    private final LongAdder totalFlushTime = new LongAdder();
+    private final LongAdder synchronousWrites = new LongAdder();
+    private volatile long lastFlushTime;
+
+    private volatile boolean running = false;
+
+    private volatile Thread writerThread;
+
+    private TamperproofEventLogWriter() {
+        super();
+    }
+
+    /**
+     * Queue an entry to be written, or write it on the calling thread if it can not be queued.
+     *
+     * @param entry The entry to write.
+     */
+
+    void submit(final PendingEntry entry)
+            throws SQLException, GeneralSecurityException {
+        if (running && unwritten.isEmpty() && offer(entry)) {
+            if (!running) {
+                // The writer stopped while the entry was being queued, so it may not have seen it.
+                writeQueuedEntries();
+            }
+            return;
+        }
+
+        writeSynchronously(entry);
+    }
+
+    /**
+     * Write an entry on the calling thread, after retrying any entries the writer thread was unable
+     * to write. Entries which still can't be written are kept for the next attempt, and a failure to
+     * write the entry itself is passed to the caller.
+     */
+
+    private void writeSynchronously(final PendingEntry entry)
+            throws SQLException, GeneralSecurityException {
+        List<PendingEntry> retries = new ArrayList<>();
+        for (PendingEntry failed = unwritten.poll(); failed != null; failed = unwritten.poll()) {
+            retries.add(failed);
+        }
+        if (!retries.isEmpty()) {
+            try {
+                TamperproofEventLogDAO.getInstance().write(retries);
+                entriesWritten.add(retries.size());
+                Logger.getLogger(LOG_TAG).log(Level.INFO, "Wrote " + retries.size() + " delayed event log entries");
+            } catch (SQLException | GeneralSecurityException | RuntimeException e) {
+                unwritten.addAll(retries);
+                Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to write delayed event log entries", e);
+            }
+        }
+
+        synchronousWrites.increment();
+        long start = System.nanoTime();
+        TamperproofEventLogDAO.getInstance().write(Collections.singletonList(entry));
+        recordFlush(1, System.nanoTime() - start);
+    }
+
+    private boolean offer(final PendingEntry entry) {
+        try {
+            return queue.offer(entry, QUEUE_WAIT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Start the writer thread.
+     */
+
+    public synchronized void start() {
+        if (writerThread != null) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeUntilStopped, "eps-event-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stop the writer thread and write any entries still in the queue. The writer is waited for
+     * without holding any lock logging threads use, so they can carry on writing entries themselves.
+     */
+
+    public void stop() {
+        Thread stoppingThread;
+        synchronized (this) {
+            stoppingThread = writerThread;
+            writerThread = null;
+            running = false;
+        }
+        if (stoppingThread == null) {
+            return;
+        }
+
+        try {
+            stoppingThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            writeQueuedEntries();
+            writeUnwrittenEntries();
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    /**
+     * Make a last attempt to write the entries the writer was unable to write, logging any which
+     * still can't be written.
+     */
+
+    private void writeUnwrittenEntries() {
+        List<PendingEntry> batch = new ArrayList<>();
+        for (PendingEntry failed = unwritten.poll(); failed != null; failed = unwritten.poll()) {
+            batch.add(failed);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        write(batch);
+        for (PendingEntry failed = unwritten.poll(); failed != null; failed = unwritten.poll()) {
+            Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Event log entry not written : " + failed.entry.getEvent());
+        }
+    }
+
+    private void writeUntilStopped() {
+        try {
+            // A writer which outlives a stop must not carry on if the writer is restarted
+            while (running && writerThread == Thread.currentThread()) {
+                PendingEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<PendingEntry> batch = new ArrayList<>(BATCH_SIZE);
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                write(batch);
+            }
+        } catch (InterruptedException e) {
+            Logger.getLogger(LOG_TAG).log(Level.WARNING, "Event log writer interrupted");
+        } finally {
+            BOMFactory.closeCurrent();
+        }
+    }
+
+    /**
+     * Write everything in the queue on the calling thread. Each call drains different entries, so
+     * this can run on several threads at once.
+     */
+
+    private void writeQueuedEntries() {
+        List<PendingEntry> batch = new ArrayList<>(BATCH_SIZE);
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(final List<PendingEntry> batch) {
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= WRITE_ATTEMPTS; attempt++) {
+            try {
+                TamperproofEventLogDAO.getInstance().write(batch);
+                recordFlush(batch.size(), System.nanoTime() - start);
+                return;
+            } catch (Exception e) {
+                Logger.getLogger(LOG_TAG).log(Level.WARNING, "Unable to write event log entries", e);
+                BOMFactory.closeCurrent();
+            }
+            if (attempt < WRITE_ATTEMPTS && !sleepBeforeRetry()) {
+                break;
+            }
+        }
+
+        unwritten.addAll(batch);
+        Logger.getLogger(LOG_TAG).log(Level.SEVERE, "Unable to write " + batch.size()
+                + " event log entries, they will be written by the next thread to log an event");
+    }
+
+    private boolean sleepBeforeRetry() {
+        try {
+            Thread.sleep(RETRY_DELAY);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void recordFlush(final int entries, final long time) {
+        entriesWritten.add(entries);
+        batchesWritten.increment();
+        totalFlushTime.add(time);
+        lastFlushTime = time;
+    }
+
+    /**
+     * Get the number of entries waiting to be written.
+     */
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of entries the writer thread was unable to write which are waiting to be
+     * written by a logging thread.
+     */
+
+    public int getUnwrittenCount() {
+        return unwritten.size();
+    }
+
+    public long getEntriesWritten() {
+        return entriesWritten.sum();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.sum();
+    }
+
+    /**
+     * Get the number of entries written by the logging thread because the writer was stopped or the
+     * queue was full.
+     */
+
+    public long getSynchronousWrites() {
+        return synchronousWrites.sum();
+    }
+
+    /**
+     * Get the time, in nanoseconds, taken to write the last batch.
+     */
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    /**
+     * Get the average time, in nanoseconds, taken to write a batch.
+     */
+
+    public long getAverageFlushTime() {
+        long batches = batchesWritten.sum();
+        return batches == 0 ? 0 : totalFlushTime.sum() / batches;
+    }
+
+    /**
+     * An entry waiting to be written, along with the information needed to Email it.
+     */
+
+    static final class PendingEntry {
+        final String logLevel;
+        final TamperproofEventLog entry;
+        final AccessControledObject item;
+        final boolean sendEmail;
+
+        PendingEntry(final String logLevel, final TamperproofEventLog entry, final AccessControledObject item,
+                     final boolean sendEmail) {
+            this.logLevel = logLevel;
+            this.entry = entry;
+            this.item = item;
+            this.sendEmail = sendEmail;
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final TamperproofEventLogWriter INSTANCE = new TamperproofEventLogWriter();
+    }
+
+    public static TamperproofEventLogWriter getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
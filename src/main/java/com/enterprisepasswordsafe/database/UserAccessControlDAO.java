@@ -20,6 +20,7 @@ import com.enterprisepasswordsafe.database.schema.AccessControlDAOInterface;
 import com.enterprisepasswordsafe.engine.AccessControlDecryptor;
 import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
 import com.enterprisepasswordsafe.engine.accesscontrol.UserAccessControl;
+import com.enterprisepasswordsafe.engine.users.UserClassifier;
 import com.enterprisepasswordsafe.engine.utils.KeyUtils;
 
 import javax.crypto.BadPaddingException;
@@ -32,7 +33,6 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,12 +58,21 @@ public final class UserAccessControlDAO
     private static final String DELETE_ALL_FOR_ITEM_SQL =
             "DELETE FROM user_access_control WHERE item_id = ?";
 
-    private static final String GET_UAC_SUMMARIES_UAC_SQL =
-              "SELECT uac.rkey, uac.mkey FROM user_access_control uac "
-            + " WHERE uac.item_id = ? AND uac.user_id = ? AND uac.rkey is not null ";
+    /**
+     * SQL to get every user along with whether they can read and modify an item.
+     */
+
+    private static final String GET_UAC_SUMMARIES_SQL =
+              "SELECT appusers.user_id, appusers.user_name, "
+            + "       CASE WHEN uac.rkey IS NULL THEN 'N' ELSE 'Y' END, "
+            + "       CASE WHEN uac.mkey IS NULL THEN 'N' ELSE 'Y' END "
+            + "  FROM application_users appusers "
+            + "  LEFT OUTER JOIN user_access_control uac "
+            + "    ON uac.user_id = appusers.user_id AND uac.item_id = ? AND uac.rkey IS NOT NULL "
+            + " WHERE appusers.user_id <> '" + UserClassifier.ADMIN_USER_ID + "' AND appusers.disabled <> 'D'";
 
     private static final String GET_UAC_SUMMARIES_UAR_SQL =
-              "SELECT uar.role  FROM user_access_roles uar WHERE uar.item_id = ? AND uar.actor_id = ?";
+              "SELECT uar.actor_id, uar.role  FROM user_access_roles uar WHERE uar.item_id = ?";
 
 	private UserAccessControlDAO( ) {
 		super();
@@ -190,37 +199,7 @@ public final class UserAccessControlDAO
 
     public Set<AccessSummary> getSummaries(final AccessControledObject item)
             throws SQLException {
-        Set<AccessSummary> summaries = new TreeSet<>();
-
-    	try(PreparedStatement uacPS = BOMFactory.getCurrentConntection().prepareStatement(GET_UAC_SUMMARIES_UAC_SQL)) {
-        	try(PreparedStatement uarPS = BOMFactory.getCurrentConntection().prepareStatement(GET_UAC_SUMMARIES_UAR_SQL)) {
-	    		uacPS.setString(1, item.getId());
-	    		uarPS.setString(1, item.getId());
-
-	    		for(User thisUser : UserDAO.getInstance().getAll()) {
-		    		boolean canRead = false;
-		    		boolean canModify = false;
-		    		uacPS.setString(2, thisUser.getId());
-		    		uacPS.setMaxRows(1);
-		    		try(ResultSet rs = uacPS.executeQuery()) {
-		    			if( rs.next() ) {
-		    				rs.getBytes(1);	// Read the read key
-		    				canRead = !rs.wasNull();
-		    				rs.getBytes(2);	// Read the modify key
-		    				canModify = !rs.wasNull();
-		    			}
-		    		}
-
-		    		uarPS.setString(2, thisUser.getId());
-					AbstractAccessControlDAO.Permissions permissions = getPermissions(uarPS);
-	            	AccessSummary gas = new AccessSummary(thisUser.getId(), thisUser.getUserName(),
-	            				canRead, canModify, permissions.canApproveRARequest, permissions.canViewHistory);
-	            	summaries.add(gas);
-		    	}
-
-	    		return summaries;
-        	}
-    	}
+        return getSummaries(GET_UAC_SUMMARIES_SQL, GET_UAC_SUMMARIES_UAR_SQL, item.getId());
     }
 
     public void update(final User user, final UserAccessControl uac)
@@ -238,15 +217,20 @@ public final class UserAccessControlDAO
 	static UserAccessControl buildFromResultSet(final ResultSet rs,
                                                 final AccessControlDecryptor decryptor)
 			throws SQLException, GeneralSecurityException {
+		return buildFromEncryptedKeys(rs.getString(1), rs.getBytes(1 +1), rs.getBytes(1 +2), rs.getString(1 +3),
+				decryptor);
+	}
+
+	static UserAccessControl buildFromEncryptedKeys(final String itemId, final byte[] encryptedModifyKey,
+													final byte[] encryptedReadKey, final String accessorId,
+													final AccessControlDecryptor decryptor)
+			throws GeneralSecurityException {
 		return UserAccessControl.builder()
-				.withItemId(rs.getString(1))
-				.withModifyKey(
-						KeyUtils.decryptPrivateKey(rs.getBytes(1 +1), decryptor.getKeyDecrypter()))
-				.withReadKey(
-						KeyUtils.decryptPublicKey(rs.getBytes(1 +2), decryptor.getKeyDecrypter()))
-				.withAccessorId(rs.getString(1 +3))
+				.withItemId(itemId)
+				.withModifyKey(KeyUtils.decryptPrivateKey(encryptedModifyKey, decryptor.getKeyDecrypter()))
+				.withReadKey(KeyUtils.decryptPublicKey(encryptedReadKey, decryptor.getKeyDecrypter()))
+				.withAccessorId(accessorId)
 				.build();
-
 	}
 
 	//------------------------
@@ -17,16 +17,13 @@
 package com.enterprisepasswordsafe.database;
 
 import com.enterprisepasswordsafe.database.derived.AbstractUserSummary;
-import com.enterprisepasswordsafe.engine.jaas.EPSJAASConfiguration;
-import com.enterprisepasswordsafe.engine.jaas.WebLoginCallbackHandler;
+import com.enterprisepasswordsafe.engine.jaas.JAASAuthenticator;
 import com.enterprisepasswordsafe.engine.users.UserAccessKeyEncryptionHandler;
 import com.enterprisepasswordsafe.engine.users.UserClassifier;
 import com.enterprisepasswordsafe.engine.users.UserPasswordEncryptionHandler;
 import com.enterprisepasswordsafe.engine.utils.KeyUtils;
 
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
-import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
@@ -118,6 +115,9 @@ public final class UserDAO extends StoredObjectManipulator<User>
     private static final String SET_LOGIN_FAILURE_COUNT =
             "UPDATE application_users SET login_attempts = ? WHERE user_id = ? ";
 
+    private static final String INCREASE_LOGIN_FAILURE_COUNT =
+            "UPDATE application_users SET login_attempts = COALESCE(login_attempts, 0) + 1 WHERE user_id = ? ";
+
     /**
      * The SQL to see if a user is member of a particular group.
      */
@@ -224,12 +224,14 @@ public final class UserDAO extends StoredObjectManipulator<User>
                 ps.executeUpdate();
             }
         }
+        UserSummaryDAO.invalidate(userId);
     }
 
     public void increaseFailedLogins( User user )
         throws SQLException, GeneralSecurityException, UnsupportedEncodingException {
-    	int loginAttempts = getFailedLoginAttempts(user)+1;
-    	setFailedLogins(user, loginAttempts);
+        // The count is increased in the database so concurrent failures for the same user are all counted.
+        runResultlessParameterisedSQL(INCREASE_LOGIN_FAILURE_COUNT, user.getId());
+    	int loginAttempts = getFailedLoginAttempts(user);
 
         String maxAttempts = ConfigurationDAO.getValue(ConfigurationOption.LOGIN_ATTEMPTS);
         int maxAttemptsInt = Integer.parseInt(maxAttempts);
@@ -243,7 +245,10 @@ public final class UserDAO extends StoredObjectManipulator<User>
     }
 
     /**
-     * Update the users login password.
+     * Update the users login password. For the master admin the access key is also replaced; their
+     * access controls are re-encrypted in committed chunks first, which continue from where they
+     * stopped if an earlier attempt was interrupted, and the re-encrypted keys are then put in place
+     * and the new key stored along with the new password in a single transaction.
      *
      * @param theUser The user being updated.
      * @param newPassword The new password.
@@ -252,6 +257,13 @@ public final class UserDAO extends StoredObjectManipulator<User>
     public void updatePassword(User theUser, String newPassword )
     	throws UnsupportedEncodingException, SQLException, GeneralSecurityException {
 
+    	Group adminGroup = null;
+    	SecretKey accessKey = null;
+    	if( userClassifier.isMasterAdmin(theUser) ) {
+    		adminGroup = GroupDAO.getInstance().getAdminGroup(theUser);
+    		accessKey = UserRekeyDAO.getInstance().rekeyAccessControls(theUser, adminGroup);
+    	}
+
     	boolean committed = false;
 
     	Connection connection = BOMFactory.getCurrentConntection();
@@ -259,17 +271,11 @@ public final class UserDAO extends StoredObjectManipulator<User>
     	connection.setAutoCommit(false);
     	try {
 
-	    	if( userClassifier.isMasterAdmin(theUser) ) {
-	    		Group adminGroup = GroupDAO.getInstance().getAdminGroup(theUser);
-
-	            KeyGenerator kgen = KeyGenerator.getInstance(User.USER_KEY_ALGORITHM);
-	            kgen.init(User.USER_KEY_SIZE);
-	            SecretKey accessKey = kgen.generateKey();
-
+	    	if( accessKey != null ) {
 	            Encrypter newEncrypter = new UserAccessKeyEncryptionHandler(accessKey);
-	            UserAccessControlDAO.getInstance().updateEncryptionOnKeys(theUser, newEncrypter);
 	            MembershipDAO.getInstance().updateEncryptionOnKeys(theUser, newEncrypter);
 
+	            UserRekeyDAO.getInstance().complete(theUser, accessKey);
 	            theUser.setAccessKey(accessKey);
 	            updateAdminKey(theUser, adminGroup);
 	    	}
@@ -408,6 +414,7 @@ public final class UserDAO extends StoredObjectManipulator<User>
             ps.setString(9, theUser.getId());
             ps.executeUpdate();
         }
+        UserSummaryDAO.invalidate(theUser.getId());
     }
 
     /**
@@ -465,22 +472,14 @@ public final class UserDAO extends StoredObjectManipulator<User>
             throw new LoginException("User unknown");
         }
 
-        synchronized( theUser.getId().intern() )
-        {
-	        try {
-	            AuthenticationSource authSource = theUser.getAuthenticationSource();
-
-	            EPSJAASConfiguration configuration = new EPSJAASConfiguration(authSource.getProperties());
-	            javax.security.auth.login.Configuration.setConfiguration(configuration);
-	            LoginContext loginContext = new LoginContext(authSource.getJaasType(),
-	                    new WebLoginCallbackHandler(theUser.getUserName(), loginPassword.toCharArray()));
-	            loginContext.login();
-	        } catch(LoginException ex) {
-	            if(!userClassifier.isMasterAdmin(theUser)) {
-	            	increaseFailedLogins(theUser);
-	            }
-	            throw ex;
-	        }
+        try {
+            JAASAuthenticator.getInstance().login(theUser.getAuthenticationSource(), theUser.getUserName(),
+                    loginPassword.toCharArray());
+        } catch(LoginException ex) {
+            if(!userClassifier.isMasterAdmin(theUser)) {
+                increaseFailedLogins(theUser);
+            }
+            throw ex;
         }
     }
 
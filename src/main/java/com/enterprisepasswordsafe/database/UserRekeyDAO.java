@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.users.UserAccessKeyEncryptionHandler;
+import com.enterprisepasswordsafe.engine.utils.KeyUtils;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data access object which moves a users access controls from their current access key to a new one.
+ *
+ * The access controls are re-encrypted in chunks, ordered by item ID, with each chunk committed along
+ * with a marker recording the last item re-encrypted. The re-encrypted keys are written to the pending
+ * key columns, leaving the current keys in place, and are only moved over to the current keys in the
+ * transaction which stores the new access key, so the access controls can be read with the current key
+ * until the new key is in use. The new key is held, encrypted with the admin group key, until the
+ * re-key is completed, so a run which is interrupted continues from the marker the next time the user
+ * changes their password.
+ *
+ * Access controls are always written with new rows, so any written after they were re-encrypted have
+ * no pending keys, and are re-encrypted again before the re-key is completed.
+ */
+
+public final class UserRekeyDAO
+        extends JDBCBase {
+
+    /**
+     * The number of access controls re-encrypted and committed together.
+     */
+
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private static final String GET_SQL =
+            "SELECT user_id, pending_key_b, last_item_id, items_done, items_total, started_l, updated_l "
+            + "FROM user_rekey WHERE user_id = ?";
+
+    private static final String GET_ALL_SQL =
+            "SELECT user_id, pending_key_b, last_item_id, items_done, items_total, started_l, updated_l "
+            + "FROM user_rekey";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO user_rekey(user_id, pending_key_b, last_item_id, items_done, items_total, started_l, updated_l) "
+            + "VALUES (?, ?, NULL, 0, ?, ?, ?)";
+
+    private static final String UPDATE_MARKER_SQL =
+            "UPDATE user_rekey SET last_item_id = ?, items_done = ?, updated_l = ? WHERE user_id = ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM user_rekey WHERE user_id = ?";
+
+    private static final String COUNT_UAC_SQL =
+            "SELECT COUNT(*) FROM user_access_control WHERE user_id = ?";
+
+    private static final String GET_FIRST_UAC_CHUNK_SQL =
+            "SELECT item_id, rkey, mkey FROM user_access_control WHERE user_id = ? ORDER BY item_id";
+
+    private static final String GET_NEXT_UAC_CHUNK_SQL =
+            "SELECT item_id, rkey, mkey FROM user_access_control WHERE user_id = ? AND item_id > ? ORDER BY item_id";
+
+    private static final String MISSING_PENDING_KEYS_CONDITION =
+            "AND ((rkey IS NOT NULL AND pending_rkey IS NULL) OR (mkey IS NOT NULL AND pending_mkey IS NULL)) ";
+
+    private static final String GET_FIRST_MISSED_UAC_CHUNK_SQL =
+            "SELECT item_id, rkey, mkey FROM user_access_control WHERE user_id = ? "
+            + MISSING_PENDING_KEYS_CONDITION + "ORDER BY item_id";
+
+    private static final String GET_NEXT_MISSED_UAC_CHUNK_SQL =
+            "SELECT item_id, rkey, mkey FROM user_access_control WHERE user_id = ? AND item_id > ? "
+            + MISSING_PENDING_KEYS_CONDITION + "ORDER BY item_id";
+
+    /**
+     * The pending keys are only written if the key they replace is still there, so a permission removed
+     * while the chunk was being re-encrypted isn't restored when the pending keys are moved over.
+     */
+
+    private static final String UPDATE_PENDING_RKEY_SQL =
+            "UPDATE user_access_control SET pending_rkey = ? WHERE user_id = ? AND item_id = ? AND rkey IS NOT NULL";
+
+    private static final String UPDATE_PENDING_MKEY_SQL =
+            "UPDATE user_access_control SET pending_mkey = ? WHERE user_id = ? AND item_id = ? AND mkey IS NOT NULL";
+
+    private static final String PROMOTE_PENDING_KEYS_SQL =
+            "UPDATE user_access_control SET rkey = pending_rkey, mkey = pending_mkey, "
+            + "pending_rkey = NULL, pending_mkey = NULL "
+            + "WHERE user_id = ? AND (rkey IS NULL OR pending_rkey IS NOT NULL) "
+            + "AND (mkey IS NULL OR pending_mkey IS NOT NULL)";
+
+    private final int chunkSize;
+
+    private UserRekeyDAO() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    UserRekeyDAO(final int chunkSize) {
+        super();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Re-encrypt all of a users access controls with a new access key, continuing from where any
+     * earlier run for the user stopped, and then re-encrypt any which have been written since they
+     * were re-encrypted. Each chunk is committed as it is completed. The new key isn't used until
+     * {@link #complete(User, SecretKey)} is called.
+     *
+     * @param user The user, with their current access key available.
+     * @param adminGroup The admin group, used to protect the new key until the re-key is complete.
+     *
+     * @return The new access key.
+     */
+
+    SecretKey rekeyAccessControls(final User user, final Group adminGroup)
+            throws SQLException, GeneralSecurityException {
+        Connection connection = BOMFactory.getCurrentConntection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            RekeyProgress progress = startOrResume(user, adminGroup);
+            connection.commit();
+            while (rekeyNextChunk(user, progress)) {
+                connection.commit();
+            }
+            String lastItemId = null;
+            while ((lastItemId = rekeyNextMissedChunk(user, progress.pendingKey, lastItemId)) != null) {
+                connection.commit();
+            }
+            return progress.pendingKey;
+        } catch (SQLException | GeneralSecurityException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Get the progress of an existing re-key for a user, or record the start of a new one.
+     */
+
+    RekeyProgress startOrResume(final User user, final Group adminGroup)
+            throws SQLException, GeneralSecurityException {
+        RekeyProgress progress = get(user.getId());
+        if (progress != null) {
+            progress.pendingKey = KeyUtils.decryptSecretKey(progress.encryptedPendingKey, adminGroup.getKeyDecrypter());
+            return progress;
+        }
+
+        KeyGenerator kgen = KeyGenerator.getInstance(User.USER_KEY_ALGORITHM);
+        kgen.init(User.USER_KEY_SIZE);
+        SecretKey pendingKey = kgen.generateKey();
+
+        long now = System.currentTimeMillis();
+        byte[] encryptedPendingKey = KeyUtils.encryptKey(pendingKey, adminGroup.getKeyEncrypter());
+        int total = count(user.getId());
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SQL)) {
+            ps.setString(1, user.getId());
+            ps.setBytes(2, encryptedPendingKey);
+            ps.setInt(3, total);
+            ps.setLong(4, now);
+            ps.setLong(5, now);
+            ps.executeUpdate();
+        }
+
+        progress = new RekeyProgress(user.getId(), encryptedPendingKey, null, 0, total, now, now);
+        progress.pendingKey = pendingKey;
+        return progress;
+    }
+
+    /**
+     * Re-encrypt the next chunk of access controls after the marker and move the marker on. The
+     * caller is responsible for committing the changes.
+     *
+     * @return true if a chunk was re-encrypted, false if there were no access controls left.
+     */
+
+    boolean rekeyNextChunk(final User user, final RekeyProgress progress)
+            throws SQLException, GeneralSecurityException {
+        String sql = progress.lastItemId == null ? GET_FIRST_UAC_CHUNK_SQL : GET_NEXT_UAC_CHUNK_SQL;
+        List<EncryptedAccessControl> chunk = getChunk(user, sql, progress.lastItemId, progress.pendingKey);
+        if (chunk.isEmpty()) {
+            return false;
+        }
+        writePendingKeys(user, chunk);
+
+        progress.lastItemId = chunk.get(chunk.size() - 1).itemId;
+        progress.itemsDone += chunk.size();
+        progress.updated = System.currentTimeMillis();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(UPDATE_MARKER_SQL)) {
+            ps.setString(1, progress.lastItemId);
+            ps.setInt(2, progress.itemsDone);
+            ps.setLong(3, progress.updated);
+            ps.setString(4, progress.userId);
+            ps.executeUpdate();
+        }
+        return true;
+    }
+
+    /**
+     * Re-encrypt the next chunk of access controls after an item which are missing pending keys,
+     * either because they were written after their chunk was re-encrypted, or because re-encrypting
+     * them failed. The caller is responsible for committing the changes.
+     *
+     * @return The ID of the last item in the chunk, or null if there were no access controls left.
+     */
+
+    private String rekeyNextMissedChunk(final User user, final SecretKey pendingKey, final String lastItemId)
+            throws SQLException, GeneralSecurityException {
+        String sql = lastItemId == null ? GET_FIRST_MISSED_UAC_CHUNK_SQL : GET_NEXT_MISSED_UAC_CHUNK_SQL;
+        List<EncryptedAccessControl> chunk = getChunk(user, sql, lastItemId, pendingKey);
+        if (chunk.isEmpty()) {
+            return null;
+        }
+        writePendingKeys(user, chunk);
+        return chunk.get(chunk.size() - 1).itemId;
+    }
+
+    private List<EncryptedAccessControl> getChunk(final User user, final String sql, final String lastItemId,
+                                                  final SecretKey pendingKey)
+            throws SQLException {
+        List<EncryptedAccessControl> chunk = new ArrayList<>(chunkSize);
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+            ps.setMaxRows(chunkSize);
+            ps.setString(1, user.getId());
+            if (lastItemId != null) {
+                ps.setString(2, lastItemId);
+            }
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && chunk.size() < chunkSize) {
+                    chunk.add(new EncryptedAccessControl(user, rs.getString(1), rs.getBytes(2), rs.getBytes(3),
+                            pendingKey));
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private void writePendingKeys(final User user, final List<EncryptedAccessControl> chunk)
+            throws SQLException, GeneralSecurityException {
+        List<byte[][]> reencrypted = reencryptInOrder(chunk);
+        Connection connection = BOMFactory.getCurrentConntection();
+        try(PreparedStatement readKeyPs = connection.prepareStatement(UPDATE_PENDING_RKEY_SQL);
+            PreparedStatement modifyKeyPs = connection.prepareStatement(UPDATE_PENDING_MKEY_SQL)) {
+            for (int i = 0 ; i < chunk.size() ; i++) {
+                byte[][] keys = reencrypted.get(i);
+                if (keys == null) {
+                    continue;
+                }
+                addPendingKey(readKeyPs, keys[0], user, chunk.get(i).itemId);
+                addPendingKey(modifyKeyPs, keys[1], user, chunk.get(i).itemId);
+            }
+            readKeyPs.executeBatch();
+            modifyKeyPs.executeBatch();
+        }
+    }
+
+    private void addPendingKey(final PreparedStatement ps, final byte[] key, final User user, final String itemId)
+            throws SQLException {
+        if (key == null) {
+            return;
+        }
+        ps.setBytes(1, key);
+        ps.setString(2, user.getId());
+        ps.setString(3, itemId);
+        ps.addBatch();
+    }
+
+    private List<byte[][]> reencryptInOrder(final List<EncryptedAccessControl> chunk)
+            throws SQLException, GeneralSecurityException {
+        try {
+            return WorkerPool.getInstance().invokeAllInOrder(chunk);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            throw new GeneralSecurityException("Unable to re-encrypt access controls", cause);
+        }
+    }
+
+    private int count(final String userId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(COUNT_UAC_SQL)) {
+            ps.setString(1, userId);
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * Re-encrypt any access controls written since {@link #rekeyAccessControls(User, Group)} finished,
+     * move the pending keys over to the current keys, and remove the record of the users re-key. This
+     * should be called in the transaction which stores the new access key, and before the key is set
+     * on the user.
+     *
+     * @param user The user, with their current access key available.
+     * @param newKey The new access key.
+     */
+
+    void complete(final User user, final SecretKey newKey)
+            throws SQLException, GeneralSecurityException {
+        String lastItemId = null;
+        do {
+            lastItemId = rekeyNextMissedChunk(user, newKey, lastItemId);
+        } while (lastItemId != null);
+
+        runResultlessParameterisedSQL(PROMOTE_PENDING_KEYS_SQL, user.getId());
+        runResultlessParameterisedSQL(DELETE_SQL, user.getId());
+    }
+
+    /**
+     * Get the progress of a re-key for a user.
+     *
+     * @param userId The ID of the user.
+     *
+     * @return The progress, or null if there is no re-key in progress for the user.
+     */
+
+    public RekeyProgress get(final String userId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_SQL)) {
+            ps.setString(1, userId);
+            try(ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new RekeyProgress(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Get the progress of all of the re-keys which have not been completed.
+     *
+     * @return The progress of each re-key.
+     */
+
+    public List<RekeyProgress> getAll()
+            throws SQLException {
+        List<RekeyProgress> results = new ArrayList<>();
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(GET_ALL_SQL)) {
+            try(ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    results.add(new RekeyProgress(rs));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The state of a re-key which has been started but not completed.
+     */
+
+    public static final class RekeyProgress {
+        private final String userId;
+        private final byte[] encryptedPendingKey;
+        private String lastItemId;
+        private int itemsDone;
+        private final int itemsTotal;
+        private final long started;
+        private long updated;
+        private SecretKey pendingKey;
+
+        RekeyProgress(final ResultSet rs)
+                throws SQLException {
+            this(rs.getString(1), rs.getBytes(2), rs.getString(3), rs.getInt(4), rs.getInt(5), rs.getLong(6),
+                    rs.getLong(7));
+        }
+
+        RekeyProgress(final String userId, final byte[] encryptedPendingKey, final String lastItemId,
+                      final int itemsDone, final int itemsTotal, final long started, final long updated) {
+            this.userId = userId;
+            this.encryptedPendingKey = encryptedPendingKey;
+            this.lastItemId = lastItemId;
+            this.itemsDone = itemsDone;
+            this.itemsTotal = itemsTotal;
+            this.started = started;
+            this.updated = updated;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getLastItemId() {
+            return lastItemId;
+        }
+
+        public int getItemsDone() {
+            return itemsDone;
+        }
+
+        public int getItemsTotal() {
+            return itemsTotal;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        SecretKey getPendingKey() {
+            return pendingKey;
+        }
+    }
+
+    /**
+     * The keys from an access control encrypted with the users current key, which can be re-encrypted
+     * away from the thread which read them from the database.
+     */
+
+    private static final class EncryptedAccessControl implements Callable<byte[][]> {
+        private final User user;
+        private final String itemId;
+        private final byte[] encryptedReadKey;
+        private final byte[] encryptedModifyKey;
+        private final SecretKey newKey;
+
+        EncryptedAccessControl(final User user, final String itemId, final byte[] encryptedReadKey,
+                               final byte[] encryptedModifyKey, final SecretKey newKey) {
+            this.user = user;
+            this.itemId = itemId;
+            this.encryptedReadKey = encryptedReadKey;
+            this.encryptedModifyKey = encryptedModifyKey;
+            this.newKey = newKey;
+        }
+
+        @Override
+        public byte[][] call() {
+            Decrypter decrypter = user.getKeyDecrypter();
+            Encrypter encrypter = new UserAccessKeyEncryptionHandler(newKey);
+            try {
+                return new byte[][] {
+                    reencrypt(encryptedReadKey, decrypter, encrypter),
+                    reencrypt(encryptedModifyKey, decrypter, encrypter)
+                };
+            } catch (GeneralSecurityException e) {
+                Logger.getAnonymousLogger().log(Level.SEVERE,
+                        "User " + user.getUserName() + " encountered a problem on key update for " + itemId, e);
+                return null;
+            }
+        }
+
+        private byte[] reencrypt(final byte[] encryptedKey, final Decrypter decrypter, final Encrypter encrypter)
+                throws GeneralSecurityException {
+            return encryptedKey == null ? null : encrypter.encrypt(decrypter.decrypt(encryptedKey));
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final UserRekeyDAO INSTANCE = new UserRekeyDAO();
+    }
+
+    public static UserRekeyDAO getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
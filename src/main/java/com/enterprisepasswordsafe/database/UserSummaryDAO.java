@@ -8,7 +8,9 @@ import com.enterprisepasswordsafe.engine.utils.Cache;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class UserSummaryDAO extends StoredObjectManipulator<AbstractUserSummary> {
 
@@ -43,6 +45,27 @@ public class UserSummaryDAO extends StoredObjectManipulator<AbstractUserSummary>
                     + "  AND (disabled is null or disabled = 'N')"
                     + "ORDER BY user_name ASC";
 
+    private static final String GET_NAMES_BY_IDS =
+            "SELECT   user_id, user_name "
+                    + "  FROM application_users "
+                    + " WHERE (disabled is null or disabled = 'N')"
+                    + "   AND user_id IN (";
+
+    private static final int SUMMARY_CACHE_SIZE = 5000;
+
+    private static final long SUMMARY_CACHE_LIFETIME = 5 * 60 * 1000;	// 5m
+
+    /**
+     * Cache of summaries fetched by user ID.
+     */
+
+    private static final Cache<String, AbstractUserSummary> summaryCache =
+            new Cache<>(SUMMARY_CACHE_SIZE, SUMMARY_CACHE_LIFETIME);
+
+    static {
+        CacheInvalidationBus.getInstance().register(CacheInvalidationBus.USER_SUMMARIES, summaryCache);
+    }
+
     public UserSummaryDAO() {
         super(GET_SUMMARY_BY_ID, GET_SUMMARY_BY_NAME, UserDAO.GET_COUNT_SQL);
     }
@@ -56,6 +79,39 @@ public class UserSummaryDAO extends StoredObjectManipulator<AbstractUserSummary>
                 .build();
     }
 
+    @Override
+    public AbstractUserSummary getById(final String id)
+            throws SQLException {
+        if (id == null) {
+            return null;
+        }
+        return summaryCache.get(id, super::getById);
+    }
+
+    /**
+     * Remove any cached summary for a user whose details have changed on this and all other nodes.
+     *
+     * @param userId The ID of the user.
+     */
+
+    static void invalidate(final String userId)
+            throws SQLException {
+        CacheInvalidationBus.getInstance().publish(CacheInvalidationBus.USER_SUMMARIES, userId);
+    }
+
+    /**
+     * Get the names of a set of users. Users which are disabled or don't exist are not included.
+     *
+     * @param ids The IDs of the users.
+     *
+     * @return The names of the users, keyed by their IDs.
+     */
+
+    public Map<String, String> getNamesById(final Collection<String> ids)
+            throws SQLException {
+        return getValuesForKeys(GET_NAMES_BY_IDS, ids);
+    }
+
     public List<AbstractUserSummary> getSummaryList()
             throws SQLException {
         return getMultiple(GET_SUMMARY_LIST_INCLUDING_ADMIN);
@@ -37,4 +37,17 @@ public interface NodeObjectAction {
      */
 
     void process(HierarchyNode theLocation, AccessControledObject aco) throws Exception;
+
+    /**
+     * Check if an object should be passed to the action. Objects which are not wanted may be skipped
+     * before they are decrypted.
+     *
+     * @param objectId The ID of the object.
+     *
+     * @return true if the object should be passed to process.
+     */
+
+    default boolean wants(String objectId) {
+        return true;
+    }
 }
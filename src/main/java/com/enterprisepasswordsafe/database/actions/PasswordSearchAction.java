@@ -26,33 +26,64 @@ import com.enterprisepasswordsafe.engine.users.UserClassifier;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Action which collects the passwords matching a set of tests. Objects may be passed to the action
+ * from several threads at once.
+ */
+
 public class PasswordSearchAction implements NodeObjectAction {
 
     private final List<Predicate<Password>> tests;
 
     private final Map<String,List<Password>> results;
 
-    private int resultCount;
+    private final AtomicInteger resultCount;
 
     private final boolean userIsAdministrator;
 
     private final Summaries summaries = new Summaries();
 
+    private final Set<String> candidateIds;
+
     public PasswordSearchAction( final User theUser, final List<Predicate<Password>> testList)
             throws SQLException {
+        this(theUser, testList, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param theUser The user performing the search.
+     * @param testList The tests each password must pass.
+     * @param candidateIds The IDs of the only passwords which could pass the tests, or null if any could.
+     */
+
+    public PasswordSearchAction( final User theUser, final List<Predicate<Password>> testList,
+                                 final Set<String> candidateIds)
+            throws SQLException {
         tests = testList;
-        results = new HashMap<>();
-        resultCount = 0;
+        this.candidateIds = candidateIds;
+        results = new ConcurrentHashMap<>();
+        resultCount = new AtomicInteger();
         userIsAdministrator = new UserClassifier().isAdministrator(theUser);
     }
 
+    @Override
+    public boolean wants(final String objectId) {
+        return candidateIds == null || candidateIds.contains(objectId);
+    }
+
     @Override
 	public final void process(final HierarchyNode node, final AccessControledObject aco) {
         if (aco == null) {
@@ -71,10 +102,10 @@ public class PasswordSearchAction implements NodeObjectAction {
         }
 
         String nodeId = node.getNodeId();
-        List<Password> theList = results.computeIfAbsent(nodeId, k -> new ArrayList<>());
+        List<Password> theList = results.computeIfAbsent(nodeId, k -> Collections.synchronizedList(new ArrayList<>()));
         theList.add(password);
 
-        resultCount++;
+        resultCount.incrementAndGet();
     }
 
     public final Map<HierarchyNodeSummary,List<Password>> getResults() {
@@ -82,7 +113,7 @@ public class PasswordSearchAction implements NodeObjectAction {
         for(Map.Entry<String, List<Password>> entry : results.entrySet()) {
             try {
                 HierarchyNodeSummary summary = summaries.getSummary(entry.getKey());
-                expandedResults.put(summary, entry.getValue());
+                expandedResults.put(summary, new ArrayList<>(entry.getValue()));
             } catch( SQLException e ) {
                 Logger.getAnonymousLogger().log(Level.SEVERE, "Problem getting summary for "+entry.getKey(), e);
             }
@@ -92,6 +123,6 @@ public class PasswordSearchAction implements NodeObjectAction {
     }
 
     public final int getResultCount() {
-    	return resultCount;
+    	return resultCount.get();
     }
 }
@@ -129,21 +129,14 @@ public class ExpiringAccessiblePasswordsAction implements PasswordAction
         }
 
         // Check that the password is not a personal password
-        HierarchyNodeDAO hnDAO = HierarchyNodeDAO.getInstance();
-        String ultimateParentId = hnDAO.getByName(testPassword.getId()).getNodeId();
-        if(personalNodeId == null) {
-            while( ultimateParentId != null && !ultimateParentId.equals(HierarchyNode.ROOT_NODE_ID)) {
-            	ultimateParentId = hnDAO.getParentIdById(ultimateParentId);
-            }
-        } else {
-            while(	ultimateParentId != null
-    		&&		!ultimateParentId.equals(personalNodeId)
-            &&		!ultimateParentId.equals(HierarchyNode.ROOT_NODE_ID)) {
-            	ultimateParentId = hnDAO.getParentIdById(ultimateParentId);
-            }
-
+        HierarchyNode objectNode = HierarchyNodeDAO.getInstance().getByName(testPassword.getId());
+        if(objectNode == null) {
+            return;
         }
-        if(ultimateParentId == null) {
+        HierarchyPathDAO paths = HierarchyPathDAO.getInstance();
+        String objectNodeId = objectNode.getNodeId();
+        if(!paths.isAncestor(HierarchyNode.ROOT_NODE_ID, objectNodeId)
+        && (personalNodeId == null || !paths.isAncestor(personalNodeId, objectNodeId))) {
         	return;
         }
 
@@ -156,6 +149,10 @@ public class ExpiringAccessiblePasswordsAction implements PasswordAction
         }
     }
 
+    public long getExpiryWarning() {
+        return expiryWarning;
+    }
+
     public Set<Password> getExpired() {
         return expired;
     }
@@ -19,9 +19,11 @@ package com.enterprisepasswordsafe.database.dbpool;
 import com.enterprisepasswordsafe.database.schema.SchemaVersion;
 import com.enterprisepasswordsafe.database.vendorspecific.DALFactory;
 import com.enterprisepasswordsafe.database.vendorspecific.DALInterface;
+import com.enterprisepasswordsafe.engine.configuration.DatabasePoolSettings;
 import com.enterprisepasswordsafe.engine.configuration.JDBCConnectionInformation;
+import com.enterprisepasswordsafe.engine.utils.LatencyHistogram;
 import org.apache.commons.dbcp2.*;
-import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 
 import java.io.UnsupportedEncodingException;
@@ -31,36 +33,98 @@ import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class DatabasePool implements AutoCloseable {
 
+    /**
+     * The name the main pool is registered with the DBCP pooling driver under.
+     */
+    public static final String POOL_NAME = "pwsafe";
+
+    /**
+     * The name the pool of read only connections to the read replica, if there is one, is registered under.
+     */
+    public static final String REPLICA_POOL_NAME = "pwsafe-replica";
+
+    /**
+     * The prefix of the URLs for pools registered with the DBCP pooling driver.
+     */
+    private static final String POOLING_DRIVER_URL = "jdbc:apache:commons:dbcp:";
+
     private static final Object VERIFICATION_LOCK = new Object();
 
+    /**
+     * Used to give each pool created to verify a configuration its own name.
+     */
+    private static final AtomicInteger VERIFICATION_POOL_COUNTER = new AtomicInteger();
+
     private final JDBCConnectionInformation connectionInformation;
 
+    private final String poolName;
+
+    private final InstrumentedPool connectionPool;
+
+    /**
+     * The pool for the read replica, or null if there isn't one.
+     */
+    private DatabasePool replica;
+
     public DatabasePool(final JDBCConnectionInformation connectionInformation) throws ClassNotFoundException, SQLException {
+        this(connectionInformation, POOL_NAME, false);
+        if (connectionInformation.getReadReplica() != null) {
+            replica = new DatabasePool(connectionInformation.getReadReplica(), REPLICA_POOL_NAME, true);
+        }
+    }
+
+    DatabasePool(final JDBCConnectionInformation connectionInformation, final String poolName,
+                 final boolean readOnly)
+            throws ClassNotFoundException, SQLException {
         this.connectionInformation = connectionInformation;
+        this.poolName = poolName;
         Class.forName(connectionInformation.getDriver());
 
+        DatabasePoolSettings settings = connectionInformation.getPoolSettings();
         ConnectionFactory connectionFactory =
                 new DriverManagerConnectionFactory(connectionInformation.getUrl(),
                         connectionInformation.getUsername(), connectionInformation.getPassword());
         PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
-        ObjectPool<PoolableConnection> connectionPool = new GenericObjectPool<>(poolableConnectionFactory);
+        if (readOnly) {
+            poolableConnectionFactory.setDefaultReadOnly(Boolean.TRUE);
+        }
+        poolableConnectionFactory.setValidationQuery(settings.getValidationQuery());
+        poolableConnectionFactory.setValidationQueryTimeout(settings.getValidationTimeoutSeconds());
+        poolableConnectionFactory.setPoolStatements(settings.isPoolPreparedStatements());
+        poolableConnectionFactory.setMaxOpenPreparedStatements(settings.getMaxOpenPreparedStatements());
+
+        connectionPool = new InstrumentedPool(poolableConnectionFactory);
+        connectionPool.setMaxTotal(settings.getMaxTotal());
+        connectionPool.setMaxIdle(settings.getMaxTotal());
+        connectionPool.setMinIdle(settings.getMinIdle());
+        connectionPool.setMaxWaitMillis(settings.getMaxWaitMillis());
+        connectionPool.setTestOnBorrow(true);
+        connectionPool.setTestWhileIdle(true);
+        connectionPool.setMinEvictableIdleTimeMillis(settings.getMinEvictableIdleMillis());
+        connectionPool.setTimeBetweenEvictionRunsMillis(settings.getEvictionIntervalMillis());
         poolableConnectionFactory.setPool(connectionPool);
 
         Class.forName("org.apache.commons.dbcp2.PoolingDriver");
-        PoolingDriver driver = (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
-        driver.registerPool("pwsafe", connectionPool);
+        PoolingDriver driver = (PoolingDriver) DriverManager.getDriver(POOLING_DRIVER_URL);
+        driver.registerPool(poolName, connectionPool);
     }
 
     @Override
     public void close() {
+        if (replica != null) {
+            replica.close();
+        }
     	try {
-	        PoolingDriver driver = (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
-	        driver.closePool("pwsafe");
+	        PoolingDriver driver = (PoolingDriver) DriverManager.getDriver(POOLING_DRIVER_URL);
+	        driver.closePool(poolName);
     	} catch(SQLException sqle) {
     		Logger.getAnonymousLogger().log(Level.WARNING, "Error shutting database pool", sqle);
     	}
@@ -86,7 +150,16 @@ public final class DatabasePool implements AutoCloseable {
     }
 
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection("jdbc:apache:commons:dbcp:pwsafe");
+        return getConnection(poolName);
+    }
+
+    /**
+     * Get a connection from a pool registered with the DBCP pooling driver.
+     *
+     * @param poolName The name of the pool.
+     */
+    public static Connection getConnection(final String poolName) throws SQLException {
+        return DriverManager.getConnection(POOLING_DRIVER_URL + poolName);
     }
 
     public boolean isUsingConfiguration(JDBCConnectionInformation configuration) {
@@ -94,9 +167,18 @@ public final class DatabasePool implements AutoCloseable {
     }
 
     public boolean isConfigured() {
+        return isRegistered(poolName);
+    }
+
+    /**
+     * Check if a pool has been registered with the DBCP pooling driver.
+     *
+     * @param poolName The name of the pool.
+     */
+    public static boolean isRegistered(final String poolName) {
         try {
-            PoolingDriver driver = (PoolingDriver) DriverManager.getDriver("jdbc:apache:commons:dbcp:");
-            return driver.getConnectionPool("pwsafe") != null;
+            PoolingDriver driver = (PoolingDriver) DriverManager.getDriver(POOLING_DRIVER_URL);
+            return driver.getConnectionPool(poolName) != null;
         } catch(SQLException sqle) {
             return false;
         }
@@ -124,7 +206,8 @@ public final class DatabasePool implements AutoCloseable {
     }
 
     private boolean isConfigurationUsable() {
-        try (DatabasePool pool = new DatabasePool(connectionInformation)) {
+        String verificationPoolName = POOL_NAME + "-verify-" + VERIFICATION_POOL_COUNTER.incrementAndGet();
+        try (DatabasePool pool = new DatabasePool(connectionInformation, verificationPoolName, false)) {
             return isPoolUsable(pool);
         } catch (SQLException | ClassNotFoundException e) {
             return false;
@@ -164,4 +247,94 @@ public final class DatabasePool implements AutoCloseable {
         return true;
     }
 
+    public Metrics getMetrics() {
+        return new Metrics(connectionPool);
+    }
+
+    /**
+     * Get the metrics for the read replica pool, or null if there isn't a read replica.
+     */
+    public Metrics getReplicaMetrics() {
+        return replica == null ? null : replica.getMetrics();
+    }
+
+    /**
+     * A snapshot of the state of the pool and the times taken to borrow connections from it.
+     */
+    public static final class Metrics {
+        private final int active, idle, waiters, maxTotal;
+        private final long borrowTimeouts;
+        private final long maxBorrowWaitMillis;
+        private final LatencyHistogram borrowTimes;
+
+        private Metrics(final InstrumentedPool pool) {
+            active = pool.getNumActive();
+            idle = pool.getNumIdle();
+            waiters = pool.getNumWaiters();
+            maxTotal = pool.getMaxTotal();
+            borrowTimeouts = pool.borrowTimeouts.sum();
+            maxBorrowWaitMillis = pool.getMaxBorrowWaitTimeMillis();
+            borrowTimes = pool.borrowTimes;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiters() {
+            return waiters;
+        }
+
+        public int getMaxTotal() {
+            return maxTotal;
+        }
+
+        /**
+         * Get the number of borrows which failed because no valid connection became available in time.
+         */
+        public long getBorrowTimeouts() {
+            return borrowTimeouts;
+        }
+
+        public long getMaxBorrowWaitMillis() {
+            return maxBorrowWaitMillis;
+        }
+
+        /**
+         * Get the times taken to borrow connections. This histogram carries on being updated after
+         * the snapshot is taken.
+         */
+        public LatencyHistogram getBorrowTimes() {
+            return borrowTimes;
+        }
+    }
+
+    /**
+     * Connection pool which records how long each borrow takes and how many time out.
+     */
+    private static final class InstrumentedPool extends GenericObjectPool<PoolableConnection> {
+        private final LatencyHistogram borrowTimes = new LatencyHistogram();
+        private final LongAdder borrowTimeouts = new LongAdder();
+
+        private InstrumentedPool(final PooledObjectFactory<PoolableConnection> factory) {
+            super(factory);
+        }
+
+        @Override
+        public PoolableConnection borrowObject(final long borrowMaxWaitMillis) throws Exception {
+            long start = System.nanoTime();
+            try {
+                return super.borrowObject(borrowMaxWaitMillis);
+            } catch (NoSuchElementException e) {
+                borrowTimeouts.increment();
+                throw e;
+            } finally {
+                borrowTimes.record(System.nanoTime() - start);
+            }
+        }
+    }
 }
@@ -64,6 +64,22 @@ public abstract class AbstractTable {
 		}
 	}
 
+	void createIfNotPresent(final ColumnSpecification column, final IndexSpecification index)
+		throws SQLException {
+		if(columnExists(column.getName())) {
+			return;
+		}
+
+		createIfNotPresent(column);
+		try {
+			BOMFactory.getDatabaseAbstractionLayer().addIndex(index);
+		} catch(SQLException sqlex) {
+			throw sqlex;
+		} catch(Exception ex) {
+			throw new SQLException("Error indexing "+column.getName()+" on "+getTableName(), ex);
+		}
+	}
+
 	boolean createTableIfNotPresent(final ColumnSpecification idColumn)
 		throws SQLException {
 
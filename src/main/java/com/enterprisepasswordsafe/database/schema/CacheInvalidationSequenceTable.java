@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database.schema;
+
+import com.enterprisepasswordsafe.database.BOMFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+public final class CacheInvalidationSequenceTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "cache_invalidation_seq";
+
+	/**
+	 * The ID of the row holding the last sequence number used.
+	 */
+
+	public static final String SEQUENCE_ID = "events";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification ID_COLUMN = new ColumnSpecification("seq_id", ColumnSpecification.TYPE_ID, true, true);
+	private static final ColumnSpecification SEQUENCE_COLUMN = new ColumnSpecification("seq_l", ColumnSpecification.TYPE_LONG);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		ID_COLUMN, SEQUENCE_COLUMN
+	};
+
+	private static final IndexSpecification[] INDEXES = {
+	};
+
+	private static final String INSERT_SEQUENCE_SQL =
+			"INSERT INTO " + TABLE_NAME + "(seq_id, seq_l) VALUES (?, 0)";
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Create the table along with the row holding the sequence.
+	 */
+
+	@Override
+	public void create()
+		throws SQLException {
+		super.create();
+		try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(INSERT_SEQUENCE_SQL)) {
+			ps.setString(1, SEQUENCE_ID);
+			ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Update the current schema to the latest version
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202706) {
+			createTableIfNotPresent(ID_COLUMN);
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static CacheInvalidationSequenceTable getInstance() {
+		return new CacheInvalidationSequenceTable();
+	}
+}
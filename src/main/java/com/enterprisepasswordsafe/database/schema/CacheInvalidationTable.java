@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database.schema;
+
+import java.sql.SQLException;
+
+public final class CacheInvalidationTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "cache_invalidation";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification ID_COLUMN = new ColumnSpecification("event_id", ColumnSpecification.TYPE_ID);
+	private static final ColumnSpecification ORIGIN_COLUMN = new ColumnSpecification("origin", ColumnSpecification.TYPE_ID);
+	private static final ColumnSpecification CACHE_NAME_COLUMN = new ColumnSpecification("cache_name", ColumnSpecification.TYPE_SHORT_STRING);
+	private static final ColumnSpecification CACHE_KEY_COLUMN = new ColumnSpecification("cache_key", ColumnSpecification.TYPE_SHORT_STRING);
+	private static final ColumnSpecification DATE_TIME_COLUMN = new ColumnSpecification("dt_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification SEQUENCE_COLUMN = new ColumnSpecification("seq_l", ColumnSpecification.TYPE_LONG);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		ID_COLUMN, ORIGIN_COLUMN, CACHE_NAME_COLUMN, CACHE_KEY_COLUMN, DATE_TIME_COLUMN, SEQUENCE_COLUMN
+	};
+
+	/**
+	 * The index information
+	 */
+
+    private static final IndexSpecification DATE_TIME_INDEX = new IndexSpecification("ci_dt", TABLE_NAME, DATE_TIME_COLUMN);
+    private static final IndexSpecification SEQUENCE_INDEX = new IndexSpecification("ci_seq", TABLE_NAME, SEQUENCE_COLUMN);
+
+	private static final IndexSpecification[] INDEXES = {
+		DATE_TIME_INDEX, SEQUENCE_INDEX
+	};
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Update the current schema to the latest version
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202610) {
+			createTableIfNotPresent(ID_COLUMN);
+		}
+		if(schemaID < SchemaVersion.SCHEMA_202706) {
+			createIfNotPresent(SEQUENCE_COLUMN, SEQUENCE_INDEX);
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static CacheInvalidationTable getInstance() {
+		return new CacheInvalidationTable();
+	}
+}
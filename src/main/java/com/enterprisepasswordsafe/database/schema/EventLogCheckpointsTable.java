@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database.schema;
+
+import java.sql.SQLException;
+
+public final class EventLogCheckpointsTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "event_log_checkpoints";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification SEQUENCE_COLUMN = new ColumnSpecification("seq_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification DT_COLUMN = new ColumnSpecification("dt_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification CHAIN_COLUMN = new ColumnSpecification("chain_b", ColumnSpecification.TYPE_BLOB);
+	private static final ColumnSpecification VERIFIED_COLUMN = new ColumnSpecification("verified_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification STATUS_COLUMN = new ColumnSpecification("status", ColumnSpecification.TYPE_CHAR);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		SEQUENCE_COLUMN, DT_COLUMN, CHAIN_COLUMN, VERIFIED_COLUMN, STATUS_COLUMN
+	};
+
+	/**
+	 * The index information
+	 */
+
+    private static final IndexSpecification SEQUENCE_INDEX = new IndexSpecification("elc_seq", TABLE_NAME, SEQUENCE_COLUMN);
+
+	private static final IndexSpecification[] INDEXES = {
+		SEQUENCE_INDEX
+	};
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Update the current schema to the latest version
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202702) {
+			createTableIfNotPresent(SEQUENCE_COLUMN);
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static EventLogCheckpointsTable getInstance() {
+		return new EventLogCheckpointsTable();
+	}
+}
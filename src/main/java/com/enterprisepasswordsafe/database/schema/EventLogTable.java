@@ -37,10 +37,13 @@ public final class EventLogTable
 	private static final ColumnSpecification DT_COLUMN = new ColumnSpecification("dt_l", ColumnSpecification.TYPE_LONG);
 	private static final ColumnSpecification EVENT_COLUMN = new ColumnSpecification("event", ColumnSpecification.TYPE_LONG_STRING);
 	private static final ColumnSpecification STAMP_COLUMN = new ColumnSpecification("stamp_b", ColumnSpecification.TYPE_BLOB);
+	private static final ColumnSpecification SEQUENCE_COLUMN = new ColumnSpecification("seq_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification CHAIN_COLUMN = new ColumnSpecification("chain_b", ColumnSpecification.TYPE_BLOB);
 
 
     private static final ColumnSpecification[] COLUMNS = {
-    	USER_ID_COLUMN, ITEM_ID_COLUMN, ITEM_DT_COLUMN, DT_COLUMN, EVENT_COLUMN, STAMP_COLUMN
+    	USER_ID_COLUMN, ITEM_ID_COLUMN, ITEM_DT_COLUMN, DT_COLUMN, EVENT_COLUMN, STAMP_COLUMN, SEQUENCE_COLUMN,
+		CHAIN_COLUMN
     };
 
     /**
@@ -50,9 +53,10 @@ public final class EventLogTable
     private static final IndexSpecification DT_INDEX = new IndexSpecification("el_dt", TABLE_NAME, DT_COLUMN);
     private static final IndexSpecification UID_INDEX = new IndexSpecification("el_uid", TABLE_NAME, USER_ID_COLUMN);
     private static final IndexSpecification IID_INDEX = new IndexSpecification("el_iid", TABLE_NAME, ITEM_ID_COLUMN);
+    private static final IndexSpecification SEQUENCE_INDEX = new IndexSpecification("el_seq", TABLE_NAME, SEQUENCE_COLUMN);
 
     private static final IndexSpecification[] INDEXES = {
-    	DT_INDEX, UID_INDEX, IID_INDEX
+    	DT_INDEX, UID_INDEX, IID_INDEX, SEQUENCE_INDEX
     };
 
 	/**
@@ -97,6 +101,10 @@ public final class EventLogTable
 			createIfNotPresent(DT_COLUMN);
 			createIfNotPresent(STAMP_COLUMN);
 		}
+		if(schemaID < SchemaVersion.SCHEMA_202702) {
+			createIfNotPresent(SEQUENCE_COLUMN, SEQUENCE_INDEX);
+			createIfNotPresent(CHAIN_COLUMN);
+		}
 	}
 
 	/**
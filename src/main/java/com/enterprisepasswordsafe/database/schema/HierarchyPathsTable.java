@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database.schema;
+
+import com.enterprisepasswordsafe.database.HierarchyPathDAO;
+
+import java.sql.SQLException;
+
+public final class HierarchyPathsTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "hierarchy_paths";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification ANCESTOR_ID_COLUMN = new ColumnSpecification("ancestor_id", ColumnSpecification.TYPE_SHORT_STRING);
+	private static final ColumnSpecification DESCENDANT_ID_COLUMN = new ColumnSpecification("descendant_id", ColumnSpecification.TYPE_SHORT_STRING);
+	private static final ColumnSpecification DEPTH_COLUMN = new ColumnSpecification("depth", ColumnSpecification.TYPE_INT);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		ANCESTOR_ID_COLUMN, DESCENDANT_ID_COLUMN, DEPTH_COLUMN
+	};
+
+	/**
+	 * The index information
+	 */
+
+    private static final IndexSpecification ANCESTOR_INDEX =
+			new IndexSpecification("hp_anc", TABLE_NAME, new String[] { "ancestor_id", "descendant_id" });
+    private static final IndexSpecification DESCENDANT_INDEX =
+			new IndexSpecification("hp_des", TABLE_NAME, new String[] { "descendant_id", "depth" });
+
+	private static final IndexSpecification[] INDEXES = {
+		ANCESTOR_INDEX, DESCENDANT_INDEX
+	};
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Update the current schema to the latest version. Installations which already have a hierarchy
+	 * have the paths built from the parent links.
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202611) {
+			createTableIfNotPresent(ANCESTOR_ID_COLUMN);
+			HierarchyPathDAO.getInstance().rebuild();
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static HierarchyPathsTable getInstance() {
+		return new HierarchyPathsTable();
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database.schema;
+
+import java.sql.SQLException;
+
+public final class MailQueueTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "mail_queue";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification ID_COLUMN = new ColumnSpecification("message_id", ColumnSpecification.TYPE_ID);
+	private static final ColumnSpecification CREATED_COLUMN = new ColumnSpecification("created_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification NEXT_ATTEMPT_COLUMN = new ColumnSpecification("next_attempt_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification ATTEMPTS_COLUMN = new ColumnSpecification("attempts", ColumnSpecification.TYPE_INT);
+	private static final ColumnSpecification SENDER_COLUMN = new ColumnSpecification("sender", ColumnSpecification.TYPE_SHORT_STRING);
+	private static final ColumnSpecification RECIPIENTS_COLUMN = new ColumnSpecification("recipients", ColumnSpecification.TYPE_LONG_STRING);
+	private static final ColumnSpecification SUBJECT_COLUMN = new ColumnSpecification("subject", ColumnSpecification.TYPE_LONG_STRING);
+	private static final ColumnSpecification BODY_COLUMN = new ColumnSpecification("body_b", ColumnSpecification.TYPE_BLOB);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		ID_COLUMN, CREATED_COLUMN, NEXT_ATTEMPT_COLUMN, ATTEMPTS_COLUMN, SENDER_COLUMN, RECIPIENTS_COLUMN,
+		SUBJECT_COLUMN, BODY_COLUMN
+	};
+
+	/**
+	 * The index information
+	 */
+
+    private static final IndexSpecification NEXT_ATTEMPT_INDEX = new IndexSpecification("mq_na", TABLE_NAME, NEXT_ATTEMPT_COLUMN);
+
+	private static final IndexSpecification[] INDEXES = {
+		NEXT_ATTEMPT_INDEX
+	};
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Update the current schema to the latest version
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202701) {
+			createTableIfNotPresent(ID_COLUMN);
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static MailQueueTable getInstance() {
+		return new MailQueueTable();
+	}
+}
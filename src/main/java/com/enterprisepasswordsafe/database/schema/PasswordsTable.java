@@ -49,12 +49,13 @@ public final class PasswordsTable
 	private static final ColumnSpecification LOCATION_ID_COLUMN = new ColumnSpecification("location_id", ColumnSpecification.TYPE_ID);
 	private static final ColumnSpecification TYPE_COLUMN = new ColumnSpecification("ptype", ColumnSpecification.TYPE_INT);
 	private static final ColumnSpecification LAST_CHANGED_COLUMN = new ColumnSpecification("last_changed_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification EXPIRY_INDEX_COLUMN = new ColumnSpecification("expiry_l", ColumnSpecification.TYPE_LONG);
 	private static final ColumnSpecification DATA_COLUMN = new ColumnSpecification("password_data", ColumnSpecification.TYPE_BLOB);
 
 	private static final ColumnSpecification[] COLUMNS = {
 		ID_COLUMN, LOCATION_COLUMN, EXPIRY_COLUMN, ENABLED_COLUMN, TYPE_COLUMN, AUDITED_COLUMN,
 		HISTORY_COLUMN, RESTRICTION_COLUMN, RA_ENABLED_COLUMN, RA_APPROVERS_COLUMN,
-		RA_BLOCKERS_COLUMN, LAST_CHANGED_COLUMN, LOCATION_ID_COLUMN, DATA_COLUMN
+		RA_BLOCKERS_COLUMN, LAST_CHANGED_COLUMN, LOCATION_ID_COLUMN, EXPIRY_INDEX_COLUMN, DATA_COLUMN
 	};
 
 	/**
@@ -62,9 +63,10 @@ public final class PasswordsTable
 	 */
 
 	private static final IndexSpecification ID_INDEX = new IndexSpecification("pw_pidx", TABLE_NAME, ID_COLUMN);
+	private static final IndexSpecification EXPIRY_INDEX = new IndexSpecification("pw_exp", TABLE_NAME, EXPIRY_INDEX_COLUMN);
 
 	private static final IndexSpecification[] INDEXES = {
-		ID_INDEX
+		ID_INDEX, EXPIRY_INDEX
 	};
 
 	/**
@@ -147,6 +149,10 @@ public final class PasswordsTable
 				Logger.getAnonymousLogger().log(Level.SEVERE, "Database password types not migrated successfully", ex);
 			}
 		}
+
+		if(schemaID < SchemaVersion.SCHEMA_202704) {
+			createIfNotPresent(EXPIRY_INDEX_COLUMN, EXPIRY_INDEX);
+		}
 	}
 
 	   /**
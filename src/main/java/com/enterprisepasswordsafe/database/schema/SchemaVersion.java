@@ -25,6 +25,10 @@ import java.sql.SQLException;
 
 /**
  * Schema version numbers
+ *
+ * Each version is a year and month (YYYYMM). When a version is added before the month after the
+ * previous one it takes the next month, so the versions stay valid dates and sort in the order the
+ * changes were made.
  */
 public class SchemaVersion {
 
@@ -40,11 +44,71 @@ public class SchemaVersion {
 
     public static final long SCHEMA_201212 = 201212;
 
+    /**
+     * The schema adding the cluster cache invalidation table
+     */
+
+    public static final long SCHEMA_202610 = 202610;
+
+    /**
+     * The schema adding the hierarchy closure table
+     */
+
+    public static final long SCHEMA_202611 = 202611;
+
+    /**
+     * The schema adding the password search index
+     */
+
+    public static final long SCHEMA_202612 = 202612;
+
+    /**
+     * The schema adding the outbound mail queue
+     */
+
+    public static final long SCHEMA_202701 = 202701;
+
+    /**
+     * The schema adding the hash chained event log
+     */
+
+    public static final long SCHEMA_202702 = 202702;
+
+    /**
+     * The schema adding resumable user re-keying
+     */
+
+    public static final long SCHEMA_202703 = 202703;
+
+    /**
+     * The schema adding the password expiry index
+     */
+
+    public static final long SCHEMA_202704 = 202704;
+
+    /**
+     * The schema adding the scheduled expiry summary
+     */
+
+    public static final long SCHEMA_202705 = 202705;
+
+    /**
+     * The schema adding sequence numbers to cache invalidation events
+     */
+
+    public static final long SCHEMA_202706 = 202706;
+
+    /**
+     * The schema adding the pending keys used while re-keying access controls
+     */
+
+    public static final long SCHEMA_202707 = 202707;
+
     /**
 	 * The current schema
 	 */
 
-	public static final long CURRENT_SCHEMA = SCHEMA_201212;
+	public static final long CURRENT_SCHEMA = SCHEMA_202707;
 
 
 	private final ConfigurationDAO configurationDAO;
@@ -60,29 +124,39 @@ public class SchemaVersion {
 	void create()
 		throws SQLException, UnsupportedEncodingException, GeneralSecurityException {
 		AuthenticationSourcesTable.getInstance().create();
+		CacheInvalidationTable.getInstance().create();
+		CacheInvalidationSequenceTable.getInstance().create();
 		ConfigurationTable.getInstance().create();
 		EventLogTable.getInstance().create();
+		EventLogChainTable.getInstance().create();
+		EventLogCheckpointsTable.getInstance().create();
+		ExpirySummaryTable.getInstance().create();
 		GroupAccessControlTable.getInstance().create();
 		GroupAccessRolesTable.getInstance().create();
 		GroupsTable.getInstance().create();
 		HierarchyAccessControlTable.getInstance().create();
 		HierarchyGroupAccessControlTable.getInstance().create();
 		HierarchyPasswordDefaultsTable.getInstance().create();
+		HierarchyPathsTable.getInstance().create();
 		HierarchyTable.getInstance().create();
 		IntegrationModulesConfigurationTable.getInstance().create();
 		IntegrationModulesScriptsTable.getInstance().create();
 		IntegrationModulesTable.getInstance().create();
 		IPZonesTable.getInstance().create();
+		JobLeasesTable.getInstance().create();
 		LocationsTable.getInstance().create();
+		MailQueueTable.getInstance().create();
 		MembershipTable.getInstance().create();
 		PasswordHistoryTable.getInstance().create();
 		PasswordRestrictionsTable.getInstance().create();
+		PasswordSearchIndexTable.getInstance().create();
 		PasswordsTable.getInstance().create();
 		RestrictedAccessApproversTable.getInstance().create();
 		RestrictedAccessRequestsTable.getInstance().create();
 		UserAccessControl.getInstance().create();
 		UserAccessRoles.getInstance().create();
 		UserIPZones.getInstance().create();
+		UserRekeyTable.getInstance().create();
 		UsersTable.getInstance().create();
 
 		GroupDAO gDAO = GroupDAO.getInstance();
@@ -120,22 +194,32 @@ public class SchemaVersion {
 			}
 
 			AuthenticationSourcesTable.getInstance().updateSchema(currentSchema);
+			CacheInvalidationTable.getInstance().updateSchema(currentSchema);
+			CacheInvalidationSequenceTable.getInstance().updateSchema(currentSchema);
 			ConfigurationTable.getInstance().updateSchema(currentSchema);
 			EventLogTable.getInstance().updateSchema(currentSchema);
+			EventLogChainTable.getInstance().updateSchema(currentSchema);
+			EventLogCheckpointsTable.getInstance().updateSchema(currentSchema);
+			ExpirySummaryTable.getInstance().updateSchema(currentSchema);
 			GroupsTable.getInstance().updateSchema(currentSchema);
 			GroupAccessControlTable.getInstance().updateSchema(currentSchema);
 			GroupAccessRolesTable.getInstance().updateSchema(currentSchema);
 			HierarchyPasswordDefaultsTable.getInstance().updateSchema(currentSchema);
 			HierarchyTable.getInstance().updateSchema(currentSchema);
+			HierarchyPathsTable.getInstance().updateSchema(currentSchema);
+			JobLeasesTable.getInstance().updateSchema(currentSchema);
 			LocationsTable.getInstance().updateSchema(currentSchema);
+			MailQueueTable.getInstance().updateSchema(currentSchema);
 			MembershipTable.getInstance().updateSchema(currentSchema);
 			PasswordRestrictionsTable.getInstance().updateSchema(currentSchema);
+			PasswordSearchIndexTable.getInstance().updateSchema(currentSchema);
 			PasswordsTable.getInstance().updateSchema(currentSchema);
 			RestrictedAccessApproversTable.getInstance().updateSchema(currentSchema);
 			RestrictedAccessRequestsTable.getInstance().updateSchema(currentSchema);
 			UserAccessControl.getInstance().updateSchema(currentSchema);
 			UserAccessRoles.getInstance().updateSchema(currentSchema);
 			UserIPZones.getInstance().updateSchema(currentSchema);
+			UserRekeyTable.getInstance().updateSchema(currentSchema);
 			UsersTable.getInstance().updateSchema(currentSchema);
 
 			ConfigurationDAO.getInstance().set(ConfigurationOption.SCHEMA_VERSION, Long.toString(CURRENT_SCHEMA));
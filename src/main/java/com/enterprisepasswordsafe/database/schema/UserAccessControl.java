@@ -36,9 +36,11 @@ public final class UserAccessControl
 	private static final ColumnSpecification ITEM_ID_COLUMN = new ColumnSpecification("item_id", ColumnSpecification.TYPE_ID, false, true);
 	private static final ColumnSpecification MKEY_COLUMN = new ColumnSpecification("mkey", ColumnSpecification.TYPE_BLOB);
 	private static final ColumnSpecification RKEY_COLUMN = new ColumnSpecification("rkey", ColumnSpecification.TYPE_BLOB);
+	private static final ColumnSpecification PENDING_MKEY_COLUMN = new ColumnSpecification("pending_mkey", ColumnSpecification.TYPE_BLOB);
+	private static final ColumnSpecification PENDING_RKEY_COLUMN = new ColumnSpecification("pending_rkey", ColumnSpecification.TYPE_BLOB);
 
 	private static final ColumnSpecification[] COLUMNS = {
-		USER_ID_COLUMN, ITEM_ID_COLUMN, RKEY_COLUMN, MKEY_COLUMN
+		USER_ID_COLUMN, ITEM_ID_COLUMN, RKEY_COLUMN, MKEY_COLUMN, PENDING_RKEY_COLUMN, PENDING_MKEY_COLUMN
 	};
 
 	/**
@@ -98,6 +100,10 @@ public final class UserAccessControl
 			createTableIfNotPresent(USER_ID_COLUMN);
 			renameColumn(ITEM_ID_COLUMN);
 		}
+		if(schemaID < SchemaVersion.SCHEMA_202707) {
+			createIfNotPresent(PENDING_RKEY_COLUMN);
+			createIfNotPresent(PENDING_MKEY_COLUMN);
+		}
 	}
 
 	/**
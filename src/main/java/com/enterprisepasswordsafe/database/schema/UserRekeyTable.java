@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database.schema;
+
+import java.sql.SQLException;
+
+public final class UserRekeyTable
+	extends AbstractTable{
+
+	/**
+	 * The name of this table
+	 */
+
+	private static final String TABLE_NAME = "user_rekey";
+
+	/**
+	 * The column information
+	 */
+
+	private static final ColumnSpecification USER_ID_COLUMN = new ColumnSpecification("user_id", ColumnSpecification.TYPE_ID);
+	private static final ColumnSpecification PENDING_KEY_COLUMN = new ColumnSpecification("pending_key_b", ColumnSpecification.TYPE_BLOB);
+	private static final ColumnSpecification LAST_ITEM_COLUMN = new ColumnSpecification("last_item_id", ColumnSpecification.TYPE_ID);
+	private static final ColumnSpecification DONE_COLUMN = new ColumnSpecification("items_done", ColumnSpecification.TYPE_INT);
+	private static final ColumnSpecification TOTAL_COLUMN = new ColumnSpecification("items_total", ColumnSpecification.TYPE_INT);
+	private static final ColumnSpecification STARTED_COLUMN = new ColumnSpecification("started_l", ColumnSpecification.TYPE_LONG);
+	private static final ColumnSpecification UPDATED_COLUMN = new ColumnSpecification("updated_l", ColumnSpecification.TYPE_LONG);
+
+	private static final ColumnSpecification[] COLUMNS = {
+		USER_ID_COLUMN, PENDING_KEY_COLUMN, LAST_ITEM_COLUMN, DONE_COLUMN, TOTAL_COLUMN, STARTED_COLUMN,
+		UPDATED_COLUMN
+	};
+
+	/**
+	 * The index information
+	 */
+
+	private static final IndexSpecification[] INDEXES = {
+	};
+
+	/**
+	 * Get the name of this table
+	 */
+
+	@Override
+	public String getTableName() {
+		return TABLE_NAME;
+	}
+
+	/**
+	 * Get all of the columns in the table
+	 */
+
+	@Override
+	ColumnSpecification[] getAllColumns() {
+		return COLUMNS;
+	}
+
+	/**
+	 * Get all of the indexes in the table
+	 */
+
+	@Override
+	IndexSpecification[] getAllIndexes() {
+		return INDEXES;
+	}
+
+	/**
+	 * Update the current schema to the latest version
+	 */
+
+	@Override
+	public void updateSchema(final long schemaID)
+		throws SQLException {
+		if(schemaID < SchemaVersion.SCHEMA_202703) {
+			createTableIfNotPresent(USER_ID_COLUMN);
+		}
+	}
+
+	/**
+	 * Gets an instance of this table schema
+	 */
+
+	static UserRekeyTable getInstance() {
+		return new UserRekeyTable();
+	}
+}
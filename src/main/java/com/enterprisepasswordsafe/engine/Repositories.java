@@ -12,4 +12,10 @@ public class Repositories {
 
     public static DatabasePoolFactory databasePoolFactory
             = new DatabasePoolFactory();
+
+    public static Supplier<String> searchIndexKeyRepository
+            = () -> System.getenv("EPS_SEARCH_INDEX_KEY");
+
+    public static Supplier<String> eventLogChainKeyRepository
+            = () -> System.getenv("EPS_EVENT_LOG_CHAIN_KEY");
 }
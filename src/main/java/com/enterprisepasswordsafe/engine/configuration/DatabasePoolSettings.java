@@ -0,0 +1,167 @@
+package com.enterprisepasswordsafe.engine.configuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The sizing, validation and eviction settings for the database connection pool.
+ */
+public class DatabasePoolSettings {
+
+    public static final String MAX_TOTAL_VARIABLE = "EPS_DATABASE_POOL_MAX_TOTAL",
+                               MIN_IDLE_VARIABLE = "EPS_DATABASE_POOL_MIN_IDLE",
+                               MAX_WAIT_VARIABLE = "EPS_DATABASE_POOL_MAX_WAIT_MS",
+                               VALIDATION_QUERY_VARIABLE = "EPS_DATABASE_POOL_VALIDATION_QUERY",
+                               VALIDATION_TIMEOUT_VARIABLE = "EPS_DATABASE_POOL_VALIDATION_TIMEOUT_S",
+                               EVICTION_INTERVAL_VARIABLE = "EPS_DATABASE_POOL_EVICTION_INTERVAL_MS",
+                               MIN_EVICTABLE_IDLE_VARIABLE = "EPS_DATABASE_POOL_MIN_EVICTABLE_IDLE_MS",
+                               POOL_STATEMENTS_VARIABLE = "EPS_DATABASE_POOL_PREPARED_STATEMENTS",
+                               MAX_OPEN_STATEMENTS_VARIABLE = "EPS_DATABASE_POOL_MAX_OPEN_STATEMENTS",
+                               REQUEST_STATEMENT_CACHE_VARIABLE = "EPS_DATABASE_REQUEST_STATEMENT_CACHE";
+
+    /**
+     * The settings used when nothing has been configured.
+     */
+    public static final DatabasePoolSettings DEFAULTS = new DatabasePoolSettings(name -> null);
+
+    private final int maxTotal;
+
+    private final int minIdle;
+
+    private final long maxWaitMillis;
+
+    private final String validationQuery;
+
+    private final int validationTimeoutSeconds;
+
+    private final long evictionIntervalMillis;
+
+    private final long minEvictableIdleMillis;
+
+    private final boolean poolPreparedStatements;
+
+    private final int maxOpenPreparedStatements;
+
+    private final boolean requestStatementCache;
+
+    /**
+     * Read the settings, using the default for any which are missing or invalid.
+     *
+     * @param variables The function used to look up the value of each setting by name.
+     */
+    public DatabasePoolSettings(final Function<String, String> variables) {
+        maxTotal = getInt(variables, MAX_TOTAL_VARIABLE, 20);
+        minIdle = getInt(variables, MIN_IDLE_VARIABLE, 2);
+        maxWaitMillis = getLong(variables, MAX_WAIT_VARIABLE, TimeUnit.SECONDS.toMillis(30));
+        validationQuery = variables.apply(VALIDATION_QUERY_VARIABLE);
+        validationTimeoutSeconds = getInt(variables, VALIDATION_TIMEOUT_VARIABLE, 5);
+        evictionIntervalMillis = getLong(variables, EVICTION_INTERVAL_VARIABLE, TimeUnit.MINUTES.toMillis(1));
+        minEvictableIdleMillis = getLong(variables, MIN_EVICTABLE_IDLE_VARIABLE, TimeUnit.MINUTES.toMillis(10));
+        String poolStatements = variables.apply(POOL_STATEMENTS_VARIABLE);
+        poolPreparedStatements = poolStatements == null || Boolean.parseBoolean(poolStatements);
+        maxOpenPreparedStatements = getInt(variables, MAX_OPEN_STATEMENTS_VARIABLE, 100);
+        String requestCache = variables.apply(REQUEST_STATEMENT_CACHE_VARIABLE);
+        requestStatementCache = requestCache == null || Boolean.parseBoolean(requestCache);
+    }
+
+    /**
+     * Get the settings from the EPS_DATABASE_POOL_* environment variables.
+     */
+    public static DatabasePoolSettings fromEnvironment() {
+        return new DatabasePoolSettings(System::getenv);
+    }
+
+    private static int getInt(final Function<String, String> variables, final String name, final int defaultValue) {
+        return (int) getLong(variables, name, defaultValue);
+    }
+
+    private static long getLong(final Function<String, String> variables, final String name, final long defaultValue) {
+        String value = variables.apply(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            Logger.getLogger(DatabasePoolSettings.class.getName()).log(Level.WARNING,
+                    "Ignoring invalid value for " + name + " : " + value);
+            return defaultValue;
+        }
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Get the query used to check connections, or null to use the driver's own check.
+     */
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public long getEvictionIntervalMillis() {
+        return evictionIntervalMillis;
+    }
+
+    public long getMinEvictableIdleMillis() {
+        return minEvictableIdleMillis;
+    }
+
+    public boolean isPoolPreparedStatements() {
+        return poolPreparedStatements;
+    }
+
+    public int getMaxOpenPreparedStatements() {
+        return maxOpenPreparedStatements;
+    }
+
+    /**
+     * Whether the statements prepared while handling a request are reused until its connection is closed.
+     */
+    public boolean isRequestStatementCache() {
+        return requestStatementCache;
+    }
+
+    /**
+     * Get the number of statements each request can keep for reuse. Statements kept by a request
+     * stay checked out of the connection's statement pool, which fails rather than waits when it is
+     * exhausted, so they are limited to half of the pool to leave room for the statements in use.
+     *
+     * @param maximum The largest number of statements a request should keep.
+     *
+     * @return The number of statements to keep, or zero if statements should not be kept.
+     */
+    public int getRequestStatementCacheSize(final int maximum) {
+        if (!requestStatementCache) {
+            return 0;
+        }
+        if (!poolPreparedStatements || maxOpenPreparedStatements <= 0) {
+            return maximum;
+        }
+        return Math.min(maximum, maxOpenPreparedStatements / 2);
+    }
+
+    @Override
+    public String toString() {
+        return "Max: " + maxTotal + ", Min idle: " + minIdle + ", Max wait: " + maxWaitMillis + "ms"
+                + ", Validation query: " + (validationQuery == null ? "driver check" : validationQuery)
+                + ", Eviction every " + evictionIntervalMillis + "ms after " + minEvictableIdleMillis + "ms idle"
+                + ", Pooled statements: " + (poolPreparedStatements ? maxOpenPreparedStatements : 0)
+                + ", Request statement cache: " + (requestStatementCache ? "on" : "off");
+    }
+}
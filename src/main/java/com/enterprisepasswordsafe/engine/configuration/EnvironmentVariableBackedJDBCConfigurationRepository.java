@@ -26,15 +26,33 @@ public class EnvironmentVariableBackedJDBCConfigurationRepository
 	public JDBCConnectionInformation get() {
 		synchronized (this) {
 			if(connectionInformation == null) {
-				connectionInformation = new GenericJDBCConnectionInformation(
+				DatabasePoolSettings poolSettings = DatabasePoolSettings.fromEnvironment();
+				GenericJDBCConnectionInformation primary = new GenericJDBCConnectionInformation(
 						System.getenv("EPS_DATABASE_TYPE"),
 						System.getenv("EPS_JDBC_DRIVER_CLASS"),
 						System.getenv("EPS_JDBC_URL"),
 						System.getenv("EPS_DATABASE_USERNAME"),
-						System.getenv("EPS_DATABASE_PASSWORD"));
+						System.getenv("EPS_DATABASE_PASSWORD"),
+						poolSettings);
+				String replicaUrl = System.getenv("EPS_REPLICA_JDBC_URL");
+				if (replicaUrl != null && !replicaUrl.isEmpty()) {
+					primary.readReplica = new GenericJDBCConnectionInformation(
+							primary.dbType,
+							primary.driver,
+							replicaUrl,
+							getOrDefault("EPS_REPLICA_DATABASE_USERNAME", primary.username),
+							getOrDefault("EPS_REPLICA_DATABASE_PASSWORD", primary.password),
+							poolSettings);
+				}
+				connectionInformation = primary;
 			}
 		}
 
 		return connectionInformation;
 	}
+
+	private static String getOrDefault(final String name, final String defaultValue) {
+		String value = System.getenv(name);
+		return value == null ? defaultValue : value;
+	}
 }
@@ -13,17 +13,23 @@ public class GenericJDBCConnectionInformation
 
     public String password;
 
+    public DatabasePoolSettings poolSettings;
+
+    public JDBCConnectionInformation readReplica;
+
     public GenericJDBCConnectionInformation() {
         super();
     }
 
     GenericJDBCConnectionInformation(final String dbType, final String driver,
-            final String url, final String username, final String password) {
+            final String url, final String username, final String password,
+            final DatabasePoolSettings poolSettings) {
         this.dbType = dbType;
         this.driver = driver;
         this.url = url;
         this.username = username;
         this.password = password;
+        this.poolSettings = poolSettings;
     }
 
 
@@ -68,4 +74,14 @@ public class GenericJDBCConnectionInformation
     public String getPassword() {
         return password;
     }
+
+    @Override
+    public DatabasePoolSettings getPoolSettings() {
+        return poolSettings == null ? DatabasePoolSettings.DEFAULTS : poolSettings;
+    }
+
+    @Override
+    public JDBCConnectionInformation getReadReplica() {
+        return readReplica;
+    }
 }
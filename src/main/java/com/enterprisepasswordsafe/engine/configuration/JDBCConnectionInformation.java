@@ -13,4 +13,16 @@ public interface JDBCConnectionInformation {
     String getUsername();
 
     String getPassword();
+
+    default DatabasePoolSettings getPoolSettings() {
+        return DatabasePoolSettings.DEFAULTS;
+    }
+
+    /**
+     * Get the details of a read only copy of the database which read heavy queries can be sent to,
+     * or null if there isn't one.
+     */
+    default JDBCConnectionInformation getReadReplica() {
+        return null;
+    }
 }
@@ -20,15 +20,7 @@ public class HierarchyTools {
 
     public List<HierarchyNode> getParentage(final HierarchyNode node)
             throws SQLException {
-        final List<HierarchyNode> parentage = new ArrayList<>();
-        String currentNodeId = node.getParentId();
-        while (currentNodeId != null ) {
-            HierarchyNode thisNode = hierarchyNodeDAO.getById(currentNodeId);
-            parentage.add(0, thisNode);
-            currentNodeId = thisNode.getParentId();
-        }
-
-        return parentage;
+        return hierarchyNodeDAO.getAncestors(node);
     }
 
     public String getParentageAsText(final HierarchyNode node)
@@ -59,9 +51,8 @@ public class HierarchyTools {
                                    final NodeObjectAction action, final boolean recurse)
             throws Exception {
         if(recurse) {
-            for( HierarchyNode thisNode : hierarchyNodeDAO.getChildrenContainerNodesForUser(node, theUser, true, null)) {
-                processObjectNodes(thisNode, theUser, action, true);
-            }
+            hierarchyNodeDAO.processSubtreeObjects(node, theUser, action);
+            return;
         }
 
         for(AccessControledObject aco: hierarchyNodeDAO.getAllChildrenObjects(node, theUser, null)) {
@@ -74,15 +65,7 @@ public class HierarchyTools {
     }
 
     public boolean isPersonalById(final String id) throws SQLException {
-        HierarchyNode node = hierarchyNodeDAO.getById(id);
-        boolean result;
-        if( node.getParentId() != null ) {
-            result = isPersonalById(node.getParentId());
-        } else {
-            result = !node.getNodeId().equals(HierarchyNode.ROOT_NODE_ID);
-        }
-
-        return result;
+        return hierarchyNodeDAO.isPersonal(id);
     }
 
 }
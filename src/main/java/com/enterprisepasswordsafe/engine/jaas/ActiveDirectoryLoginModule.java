@@ -16,10 +16,7 @@
 
 package com.enterprisepasswordsafe.engine.jaas;
 
-import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.security.auth.login.FailedLoginException;
@@ -87,32 +84,14 @@ public final class ActiveDirectoryLoginModule
 
     private boolean canBind(String providerUrl, UserDetails userDetails)
             throws NamingException {
-        DirContext context = new InitialDirContext(getNoAuthEnvironment(providerUrl));
-        try {
-            return canBind(providerUrl, userDetails, context);
-        } finally {
-            context.close();
-        }
-    }
-
-    private boolean canBind(String providerUrl, UserDetails userDetails, DirContext context)
-            throws NamingException {
         String searchFilter = "(&(objectClass=user)(sAMAccountName=" + userDetails.username + "))";
         Hashtable<String,Object> rebindEnv = getSimpleAuthEnvironment(providerUrl);
 
         String searchBase = constructSearchBase();
         SearchControls searchControls = new SearchControls();
         searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        NamingEnumeration<SearchResult> matches = context.search( searchBase, searchFilter, searchControls);
-
-        while (matches.hasMore() && !loginOK) {
-            SearchResult thisResult = matches.next();
-            String dn = thisResult.getName();
-            if(canBindToServer(rebindEnv, searchBase, dn, userDetails.password)) {
-                return true;
-            }
-        }
-        return false;
+        return searchAndBind(getNoAuthEnvironment(providerUrl), searchBase, searchFilter, searchControls,
+                SearchResult::getName, dn -> canBindToServer(rebindEnv, searchBase, dn, userDetails.password));
     }
 
 	@Override
@@ -17,12 +17,8 @@
 package com.enterprisepasswordsafe.engine.jaas;
 
 import javax.naming.Context;
-import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
-import javax.naming.directory.SearchResult;
 import javax.security.auth.login.FailedLoginException;
 import javax.security.auth.login.LoginException;
 import javax.security.auth.spi.LoginModule;
@@ -89,7 +85,7 @@ public final class ActiveDirectoryNonAnonymousLoginModule
         UserDetails userDetails = getUserDetailsFromCallbacks();
         String providerUrl = getBindUrl(options.get(DOMAIN_CONTROLLER_PARAMETERNAME).toString());
         try {
-            if( attemptToBindWithCNs(userDetails, providerUrl, getCandidateUserCNs(providerUrl, userDetails)) ) {
+            if( canBind(userDetails, providerUrl) ) {
                 return true;
             }
         } catch (Exception ex) {
@@ -100,24 +96,37 @@ public final class ActiveDirectoryNonAnonymousLoginModule
         throw new FailedLoginException("Your Active Directory Server did not authenticate you.");
     }
 
-    private boolean attemptToBindWithCNs(UserDetails userDetails, String providerUrl, List<String> userCNs) {
-        if(userCNs.isEmpty()) {
+    private boolean canBind(UserDetails userDetails, String providerUrl)
+            throws NamingException {
+        Hashtable<String,Object> env = getNoAuthEnvironment(providerUrl);
+        addAuthenticationDetails(env);
+
+        SearchControls searchControls = new SearchControls();
+        searchControls.setReturningAttributes(NEEDED_ATTRIBUTES);
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+        String searchFilter = "(&(objectClass=user)(sAMAccountName=" + userDetails.username + "))";
+        Hashtable<String,Object> rebindEnv = getSimpleAuthEnvironment(providerUrl);
+        boolean bound = searchAndBind(env, constructLDAPSearchBase(), searchFilter, searchControls,
+                result -> result.getAttributes().get("cn").get().toString(),
+                userCN -> attemptToBindWithCN(rebindEnv, userCN, userDetails.password));
+        if (!bound) {
             Logger.getLogger(ActiveDirectoryNonAnonymousLoginModule.class.getName()).
                     log(Level.WARNING,
-                            "No matches for " + userDetails.username + " in " + constructLDAPSearchBase());
-            return false;
+                            "Unable to bind as " + userDetails.username + " in " + constructLDAPSearchBase());
         }
-        Hashtable<String,Object> rebindEnv = getSimpleAuthEnvironment(providerUrl);
-        for(String userCN : userCNs) {
-            String bindDN = constructUserDN(userCN);
-            try {
-                attemptBind(rebindEnv, bindDN, userDetails.password);
-                loginOK = true;
-                return true;
-            } catch (Exception ex) {
-                Logger.getLogger(ActiveDirectoryNonAnonymousLoginModule.class.getName()).
-                        log(Level.WARNING, "Failed to bind with " + bindDN, ex);
-            }
+        return bound;
+    }
+
+    private boolean attemptToBindWithCN(Hashtable<String,Object> rebindEnv, String userCN, String password) {
+        String bindDN = constructUserDN(userCN);
+        try {
+            attemptBind(rebindEnv, bindDN, password);
+            loginOK = true;
+            return true;
+        } catch (Exception ex) {
+            Logger.getLogger(ActiveDirectoryNonAnonymousLoginModule.class.getName()).
+                    log(Level.WARNING, "Failed to bind with " + bindDN, ex);
         }
         return false;
     }
@@ -174,31 +183,6 @@ public final class ActiveDirectoryNonAnonymousLoginModule
         ldapBase.delete(ldapBase.length() - 1, ldapBase.length());
     }
 
-    private List<String> getCandidateUserCNs(String providerUrl, UserDetails userDetails)
-            throws NamingException {
-        Hashtable<String,Object> env = getNoAuthEnvironment(providerUrl);
-        addAuthenticationDetails(env);
-
-        List<String> userCNs = new ArrayList<>();
-        DirContext context = new InitialDirContext(env);
-        try {
-            SearchControls searchControls = new SearchControls();
-            searchControls.setReturningAttributes(NEEDED_ATTRIBUTES);
-            searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-
-            String searchFilter = "(&(objectClass=user)(sAMAccountName=" + userDetails.username + "))";
-            NamingEnumeration<SearchResult> matches = context.search(constructLDAPSearchBase(), searchFilter, searchControls);
-            while (matches.hasMore() && !loginOK) {
-                SearchResult thisResult = matches.next();
-                String userCN = thisResult.getAttributes().get("cn").get().toString();
-                userCNs.add(userCN);
-            }
-        } finally {
-            context.close();
-        }
-        return userCNs;
-    }
-
 	@Override
 	public Set<AuthenticationSourceConfigurationOption> getConfigurationOptions() {
     	Set<AuthenticationSourceConfigurationOption> newConfigurationOptions = new TreeSet<>();
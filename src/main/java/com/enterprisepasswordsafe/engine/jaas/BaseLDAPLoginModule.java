@@ -2,12 +2,13 @@ package com.enterprisepasswordsafe.engine.jaas;
 
 import javax.naming.Context;
 import javax.naming.NamingException;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.SearchControls;
 import javax.security.auth.Subject;
 import javax.security.auth.callback.CallbackHandler;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,10 +43,31 @@ abstract class BaseLDAPLoginModule extends BaseLoginModule{
 
     void attemptBind(final Hashtable<String,Object> env, final String dn, final String password)
             throws NamingException {
-        env.put(Context.SECURITY_PRINCIPAL, dn);
-        env.put(Context.SECURITY_CREDENTIALS, password);
-        DirContext ctx = new InitialDirContext(env);
-        ctx.close();
+        LDAPConnectionPool.forEnvironment(env).authenticate(dn, password);
+    }
+
+    /**
+     * Search for the entries matching a filter and try binding as each of them until one succeeds.
+     * If the names came from the pool's cache and none of them could be bound to the search is
+     * repeated against the directory, in case the user's entry has moved.
+     */
+    boolean searchAndBind(final Hashtable<String,Object> searchEnvironment, final String searchBase,
+                          final String filter, final SearchControls searchControls,
+                          final LDAPConnectionPool.ResultMapper mapper, final Predicate<String> binder)
+            throws NamingException {
+        LDAPConnectionPool pool = LDAPConnectionPool.forEnvironment(searchEnvironment);
+        boolean wasCached = pool.isCached(searchBase, filter);
+        List<String> names = pool.search(searchBase, filter, searchControls, mapper);
+        if (names.stream().anyMatch(binder)) {
+            return true;
+        }
+        if (!wasCached) {
+            return false;
+        }
+
+        pool.forget(searchBase, filter);
+        List<String> refreshedNames = pool.search(searchBase, filter, searchControls, mapper);
+        return !refreshedNames.equals(names) && refreshedNames.stream().anyMatch(binder);
     }
 
     Hashtable<String,Object> getNoAuthEnvironment(final Object url) {
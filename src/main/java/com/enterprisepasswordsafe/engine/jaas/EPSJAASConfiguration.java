@@ -20,6 +20,7 @@ import javax.security.auth.login.AppConfigurationEntry;
 import javax.security.auth.login.Configuration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 public final class EPSJAASConfiguration extends Configuration {
 
@@ -63,6 +64,14 @@ public final class EPSJAASConfiguration extends Configuration {
         properties = newProperties;
     }
 
+    /**
+     * Test if this configuration was created from a set of properties.
+     */
+
+    boolean hasProperties(final Map<String,String> otherProperties) {
+        return Objects.equals(properties, otherProperties);
+    }
+
     public void refresh() {
     }
 
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.engine.jaas;
+
+import com.enterprisepasswordsafe.database.AuthenticationSource;
+
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks login details against an authentication source.
+ *
+ * Each source has its own JAAS configuration which is passed directly to the login context, so
+ * logins never change the JVM wide configuration and logins against different sources, or by
+ * the same user, can run at the same time. The configuration for a source is kept until the
+ * properties of the source change.
+ */
+
+public final class JAASAuthenticator {
+
+    private final Map<String, EPSJAASConfiguration> configurations = new ConcurrentHashMap<>();
+
+    private final Map<String, LoginMetrics> metrics = new ConcurrentHashMap<>();
+
+    private JAASAuthenticator() {
+        super();
+    }
+
+    /**
+     * Check a users login details.
+     *
+     * @param source The source to check the details against.
+     * @param username The name the user is logging in with.
+     * @param password The password the user is logging in with.
+     *
+     * @throws LoginException Thrown if the details are not correct.
+     */
+
+    public void login(final AuthenticationSource source, final String username, final char[] password)
+            throws LoginException {
+        LoginMetrics sourceMetrics = metrics.computeIfAbsent(source.getSourceId(), id -> new LoginMetrics());
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            LoginContext loginContext = new LoginContext(source.getJaasType(), null,
+                    new WebLoginCallbackHandler(username, password), getConfiguration(source));
+            loginContext.login();
+            succeeded = true;
+        } finally {
+            sourceMetrics.record(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    /**
+     * Get the JAAS configuration for a source, creating it if the source is new or its properties
+     * have changed.
+     */
+
+    EPSJAASConfiguration getConfiguration(final AuthenticationSource source) {
+        Map<String, String> properties = source.getProperties();
+        EPSJAASConfiguration configuration = configurations.get(source.getSourceId());
+        if (configuration == null || !configuration.hasProperties(properties)) {
+            configuration = new EPSJAASConfiguration(properties == null ? null : new HashMap<>(properties));
+            configurations.put(source.getSourceId(), configuration);
+        }
+        return configuration;
+    }
+
+    /**
+     * Get the login metrics for each source which has been used, keyed by source ID.
+     */
+
+    public Map<String, LoginMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * The number and duration of the logins against a source.
+     */
+
+    public static final class LoginMetrics {
+        private final long created = System.nanoTime();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAccumulator maximumTime = new LongAccumulator(Math::max, 0);
+
+        void record(final long time, final boolean succeeded) {
+            attempts.increment();
+            if (!succeeded) {
+                failures.increment();
+            }
+            totalTime.add(time);
+            maximumTime.accumulate(time);
+        }
+
+        public long getAttempts() {
+            return attempts.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        /**
+         * Get the average time, in nanoseconds, taken by a login.
+         */
+
+        public long getAverageTime() {
+            long count = attempts.sum();
+            return count == 0 ? 0 : totalTime.sum() / count;
+        }
+
+        /**
+         * Get the longest time, in nanoseconds, taken by a login.
+         */
+
+        public long getMaximumTime() {
+            return maximumTime.get();
+        }
+
+        /**
+         * Get the average number of logins per minute since the source was first used.
+         */
+
+        public double getLoginsPerMinute() {
+            long elapsed = Math.max(System.nanoTime() - created, TimeUnit.MINUTES.toNanos(1));
+            return attempts.sum() * (double) TimeUnit.MINUTES.toNanos(1) / elapsed;
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final JAASAuthenticator INSTANCE = new JAASAuthenticator();
+    }
+
+    public static JAASAuthenticator getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.engine.jaas;
+
+import com.enterprisepasswordsafe.engine.utils.Cache;
+
+import javax.naming.AuthenticationException;
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.LdapContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of open LDAP connections for a single directory environment.
+ *
+ * Each authentication source gets a pool for the identity it searches with and one for the
+ * connections it binds users on. Binds are performed by re-authenticating an existing connection
+ * (an LDAPv3 bind on the open socket), so neither the searches nor the credential checks pay
+ * for TCP and TLS setup on every login. Connections which have been idle for a while are
+ * checked with a root DSE read before being handed out, and ones which have been idle for too
+ * long are closed.
+ */
+final class LDAPConnectionPool {
+
+    /**
+     * The maximum number of idle connections kept for each environment.
+     */
+    private static final int MAXIMUM_IDLE = 8;
+
+    /**
+     * How long a connection can be idle before it is closed.
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * How long a connection can be idle before it is checked before reuse.
+     */
+    private static final long VALIDATION_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * How long the results of a user search are remembered.
+     */
+    private static final long NAME_CACHE_LIFETIME = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * The JNDI properties limiting how long a connect or a read can take, and their defaults.
+     */
+    private static final String CONNECT_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.connect.timeout",
+                                READ_TIMEOUT_PROPERTY = "com.sun.jndi.ldap.read.timeout",
+                                DEFAULT_TIMEOUT = "10000";
+
+    /**
+     * The attribute read from the root DSE to check a connection is still alive.
+     */
+    private static final String[] HEALTH_CHECK_ATTRIBUTES = { "supportedLDAPVersion" };
+
+    /**
+     * The pools for each environment seen so far.
+     */
+    private static final Map<Map<String, Object>, LDAPConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * The environment connections are opened with.
+     */
+    private final Map<String, Object> environment;
+
+    /**
+     * The factory used to open connections.
+     */
+    private final ContextFactory contextFactory;
+
+    /**
+     * The source of the current time.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * The idle connections, most recently used first.
+     */
+    private final Deque<PooledContext> idle = new ArrayDeque<>();
+
+    /**
+     * The names found by recent searches, keyed by search base and filter.
+     */
+    private final Cache<String, List<String>> nameCache = new Cache<>(1000, NAME_CACHE_LIFETIME);
+
+    /**
+     * Counts of connections opened and reused.
+     */
+    private final LongAdder opened = new LongAdder(), reused = new LongAdder();
+
+    LDAPConnectionPool(final Map<String, Object> environment, final ContextFactory contextFactory,
+                       final LongSupplier clock) {
+        this.environment = Collections.unmodifiableMap(new HashMap<>(environment));
+        this.contextFactory = contextFactory;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the pool for an environment, creating it if needed.
+     *
+     * @param environment The JNDI environment. Any principal and credentials in it are the
+     *                    identity searches are performed as.
+     *
+     * @return The pool for the environment.
+     */
+    static LDAPConnectionPool forEnvironment(final Hashtable<String, Object> environment) {
+        Map<String, Object> key = new HashMap<>(environment);
+        key.putIfAbsent(CONNECT_TIMEOUT_PROPERTY, DEFAULT_TIMEOUT);
+        key.putIfAbsent(READ_TIMEOUT_PROPERTY, DEFAULT_TIMEOUT);
+        for (LDAPConnectionPool pool : POOLS.values()) {
+            pool.closeExpired();
+        }
+        return POOLS.computeIfAbsent(key,
+                env -> new LDAPConnectionPool(env, context -> new InitialLdapContext(context, null),
+                        System::currentTimeMillis));
+    }
+
+    /**
+     * Search the directory, reusing the results of the same search made recently.
+     *
+     * @param searchBase The base to search from.
+     * @param filter The search filter.
+     * @param controls The search controls.
+     * @param mapper The function extracting the name to return from each result.
+     *
+     * @return The names extracted from the matching entries.
+     */
+    List<String> search(final String searchBase, final String filter, final SearchControls controls,
+                        final ResultMapper mapper)
+            throws NamingException {
+        String cacheKey = searchBase + '\n' + filter;
+        List<String> names = nameCache.get(cacheKey);
+        if (names != null) {
+            return names;
+        }
+
+        PooledContext pooled = borrow();
+        boolean reusable = false;
+        try {
+            if (pooled.boundAsUser) {
+                restoreIdentity(pooled.context);
+                pooled.boundAsUser = false;
+            }
+            names = new ArrayList<>();
+            NamingEnumeration<SearchResult> matches = pooled.context.search(searchBase, filter, controls);
+            try {
+                while (matches.hasMore()) {
+                    names.add(mapper.getName(matches.next()));
+                }
+            } finally {
+                matches.close();
+            }
+            reusable = true;
+        } finally {
+            release(pooled, reusable);
+        }
+
+        if (!names.isEmpty()) {
+            nameCache.put(cacheKey, names);
+        }
+        return names;
+    }
+
+    /**
+     * Check if the results of a search are cached.
+     */
+    boolean isCached(final String searchBase, final String filter) {
+        return nameCache.get(searchBase + '\n' + filter) != null;
+    }
+
+    /**
+     * Forget the cached results of a search, for example because binding as the names it found failed.
+     */
+    void forget(final String searchBase, final String filter) {
+        nameCache.remove(searchBase + '\n' + filter);
+    }
+
+    /**
+     * Check a user's credentials by binding as them on a pooled connection.
+     *
+     * @param dn The DN to bind as.
+     * @param password The password to bind with.
+     *
+     * @throws AuthenticationException if the directory rejected the credentials.
+     * @throws NamingException if there was a problem talking to the directory.
+     */
+    void authenticate(final String dn, final String password)
+            throws NamingException {
+        PooledContext pooled = borrow();
+        boolean reusable = false;
+        try {
+            LdapContext context = pooled.context;
+            pooled.boundAsUser = true;
+            context.addToEnvironment(Context.SECURITY_AUTHENTICATION, "simple");
+            context.addToEnvironment(Context.SECURITY_PRINCIPAL, dn);
+            context.addToEnvironment(Context.SECURITY_CREDENTIALS, password);
+            try {
+                context.reconnect(null);
+            } catch (AuthenticationException e) {
+                // A rejected bind leaves the connection open, so it can still be reused.
+                reusable = true;
+                throw e;
+            } finally {
+                context.removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+            }
+            reusable = true;
+        } finally {
+            release(pooled, reusable);
+        }
+    }
+
+    /**
+     * Put the identity from the pool environment back on a connection a user has been bound on.
+     */
+    private void restoreIdentity(final LdapContext context)
+            throws NamingException {
+        for (String property : new String[] {Context.SECURITY_AUTHENTICATION, Context.SECURITY_PRINCIPAL,
+                Context.SECURITY_CREDENTIALS}) {
+            Object value = environment.get(property);
+            if (value == null) {
+                context.removeFromEnvironment(property);
+            } else {
+                context.addToEnvironment(property, value);
+            }
+        }
+        context.reconnect(null);
+    }
+
+    /**
+     * Get a connection from the pool, opening one if there are no healthy idle connections.
+     */
+    private PooledContext borrow()
+            throws NamingException {
+        while (true) {
+            PooledContext pooled;
+            synchronized (this) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                break;
+            }
+            if (clock.getAsLong() - pooled.lastUsed < VALIDATION_INTERVAL || isHealthy(pooled)) {
+                reused.increment();
+                return pooled;
+            }
+            close(pooled);
+        }
+
+        closeExpired();
+        opened.increment();
+        return new PooledContext(contextFactory.create(new Hashtable<>(environment)));
+    }
+
+    /**
+     * Return a connection to the pool, or close it if it can't be reused or the pool is full.
+     */
+    private void release(final PooledContext pooled, final boolean reusable) {
+        if (reusable) {
+            pooled.lastUsed = clock.getAsLong();
+            synchronized (this) {
+                if (idle.size() < MAXIMUM_IDLE) {
+                    idle.addFirst(pooled);
+                    return;
+                }
+            }
+        }
+        close(pooled);
+    }
+
+    /**
+     * Close the connections which have been idle for longer than the idle timeout.
+     */
+    void closeExpired() {
+        long cutoff = clock.getAsLong() - IDLE_TIMEOUT;
+        List<PooledContext> expired = new ArrayList<>();
+        synchronized (this) {
+            while (!idle.isEmpty() && idle.peekLast().lastUsed < cutoff) {
+                expired.add(idle.pollLast());
+            }
+        }
+        expired.forEach(this::close);
+    }
+
+    private boolean isHealthy(final PooledContext pooled) {
+        try {
+            pooled.context.getAttributes("", HEALTH_CHECK_ATTRIBUTES);
+            return true;
+        } catch (NamingException e) {
+            Logger.getLogger(getClass().getName()).log(Level.FINE, "Discarding broken LDAP connection", e);
+            return false;
+        }
+    }
+
+    private void close(final PooledContext pooled) {
+        try {
+            pooled.context.close();
+        } catch (NamingException e) {
+            Logger.getLogger(getClass().getName()).log(Level.FINE, "Problem closing LDAP connection", e);
+        }
+    }
+
+    synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    long getOpenedCount() {
+        return opened.sum();
+    }
+
+    long getReusedCount() {
+        return reused.sum();
+    }
+
+    /**
+     * Opens connections to the directory.
+     */
+    interface ContextFactory {
+        LdapContext create(Hashtable<String, Object> environment) throws NamingException;
+    }
+
+    /**
+     * Extracts the name to return from a search result.
+     */
+    interface ResultMapper {
+        String getName(SearchResult result) throws NamingException;
+    }
+
+    /**
+     * A connection and its pooling state.
+     */
+    private static final class PooledContext {
+        private final LdapContext context;
+        private boolean boundAsUser;
+        private long lastUsed;
+
+        private PooledContext(final LdapContext context) {
+            this.context = context;
+        }
+    }
+}
@@ -16,12 +16,8 @@
 
 package com.enterprisepasswordsafe.engine.jaas;
 
-import javax.naming.Context;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.security.auth.login.FailedLoginException;
 import javax.security.auth.login.LoginException;
-import java.util.Hashtable;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Level;
@@ -39,19 +35,13 @@ public final class LDAPLoginModule
 
         UserDetails userDetails = getUserDetailsFromCallbacks();
         try {
-            Hashtable<String,Object> env = getSimpleAuthEnvironment();
-
             StringBuilder principal = new StringBuilder();
             principal.append(options.get("prefix"));
             principal.append('=');
             principal.append(userDetails.username);
             principal.append(',');
             principal.append(options.get("base"));
-            env.put(Context.SECURITY_PRINCIPAL, principal.toString());
-            env.put(Context.SECURITY_CREDENTIALS, userDetails.password);
-
-            DirContext ctx = new InitialDirContext(env);
-            ctx.close();
+            attemptBind(getSimpleAuthEnvironment(), principal.toString(), userDetails.password);
 
             loginOK = true;
             return true;
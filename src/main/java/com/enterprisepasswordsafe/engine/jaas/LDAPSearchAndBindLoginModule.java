@@ -17,10 +17,7 @@
 package com.enterprisepasswordsafe.engine.jaas;
 
 import javax.naming.Context;
-import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
-import javax.naming.directory.DirContext;
-import javax.naming.directory.InitialDirContext;
 import javax.naming.directory.SearchControls;
 import javax.naming.directory.SearchResult;
 import javax.security.auth.login.FailedLoginException;
@@ -51,17 +48,8 @@ public final class LDAPSearchAndBindLoginModule
         UserDetails userDetails = getUserDetailsFromCallbacks();
 
         try {
-            Hashtable<String,Object> env = new Hashtable<>();
-            env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
-            env.put(Context.PROVIDER_URL, options.get(PROVIDER_URL_PARAMETERNAME));
-
-            DirContext context = new InitialDirContext(env);
-            try {
-                if(canBind(userDetails, context)) {
-                    return true;
-                }
-            } finally {
-                context.close();
+            if(canBind(userDetails)) {
+                return true;
             }
         } catch (Exception ex) {
             Logger.
@@ -72,10 +60,14 @@ public final class LDAPSearchAndBindLoginModule
         throw new FailedLoginException("Your LDAP Server did not authenticate you.");
     }
 
-    private boolean canBind(UserDetails userDetails, DirContext context)
+    private boolean canBind(UserDetails userDetails)
             throws NamingException {
         String searchAttribute = (String) options.get(SEARCH_ATTRIBUTE_PARAMETERNAME);
 
+        Hashtable<String,Object> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.ldap.LdapCtxFactory");
+        env.put(Context.PROVIDER_URL, options.get(PROVIDER_URL_PARAMETERNAME));
+
         Hashtable<String,Object> rebindEnvironment =
                 getSimpleAuthEnvironment(options.get(PROVIDER_URL_PARAMETERNAME).toString());
 
@@ -83,16 +75,9 @@ public final class LDAPSearchAndBindLoginModule
 
         SearchControls searchControls = new SearchControls();
         searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
-        NamingEnumeration<SearchResult> matches =
-                context.search( searchBase, "(" + searchAttribute + '=' + userDetails.username + ')',
-                        searchControls);
-
-        while (matches.hasMore() && !loginOK) {
-            if(canBindToServer(rebindEnvironment, searchBase, matches.next().getName(), userDetails.password)) {
-                return true;
-            }
-        }
-        return false;
+        return searchAndBind(env, searchBase, "(" + searchAttribute + '=' + userDetails.username + ')',
+                searchControls, SearchResult::getName,
+                dn -> canBindToServer(rebindEnvironment, searchBase, dn, userDetails.password));
     }
 
 	public Set<AuthenticationSourceConfigurationOption> getConfigurationOptions() {
@@ -3,6 +3,8 @@ package com.enterprisepasswordsafe.engine.logging;
 import com.enterprisepasswordsafe.database.TamperproofEventLog;
 import com.enterprisepasswordsafe.database.User;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
@@ -12,6 +14,8 @@ public class LogEventHasher {
 
     private static final String TAMPERSTAMP_HASH_ALGORITHM = "SHA-256";
 
+    private static final String CHAIN_HASH_ALGORITHM = "HmacSHA256";
+
     public byte[] createTamperstamp(User theUser, TamperproofEventLog event)
             throws GeneralSecurityException {
         String tamperStampData = createTamperstampString(event.getDateTime(),
@@ -37,6 +41,49 @@ public class LogEventHasher {
     }
 
 
+    /**
+     * Create the key used for chain hashes.
+     *
+     * @param keyText The secret the key is made from.
+     */
+
+    public static SecretKeySpec createChainKey(final String keyText) {
+        return new SecretKeySpec(keyText.getBytes(StandardCharsets.UTF_8), CHAIN_HASH_ALGORITHM);
+    }
+
+    /**
+     * Create the hash linking an event log entry to the entry before it in the chain. The hash is
+     * keyed, so it can't be recreated for an altered entry without the key.
+     *
+     * @param key The chain key.
+     * @param previousHash The chain hash of the previous entry.
+     * @param sequence The position of the entry in the chain.
+     * @param datetime The time of the event.
+     * @param event The event text.
+     * @param itemId The ID of the item involved, or null.
+     * @param userId The ID of the user involved, or null.
+     * @param tamperstamp The entry's tamperstamp, or null.
+     *
+     * @return The chain hash for the entry.
+     */
+
+    public byte[] createChainHash(final SecretKeySpec key, final byte[] previousHash, final long sequence,
+                                  final long datetime, final String event, final String itemId,
+                                  final String userId, final byte[] tamperstamp)
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(CHAIN_HASH_ALGORITHM);
+        mac.init(key);
+        mac.update(previousHash);
+        mac.update(Long.toString(sequence).getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        mac.update(createTamperstampString(datetime, event, itemId, userId).getBytes(StandardCharsets.UTF_8));
+        if (tamperstamp != null) {
+            mac.update((byte) 0);
+            mac.update(tamperstamp);
+        }
+        return mac.doFinal();
+    }
+
     private byte[] createHash(final String value)
             throws NoSuchAlgorithmException {
         MessageDigest digester = MessageDigest.getInstance(TAMPERSTAMP_HASH_ALGORITHM);
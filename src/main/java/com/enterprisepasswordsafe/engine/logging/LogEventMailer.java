@@ -2,19 +2,37 @@ package com.enterprisepasswordsafe.engine.logging;
 
 import com.enterprisepasswordsafe.database.*;
 
-import javax.mail.Message;
+import com.enterprisepasswordsafe.engine.utils.Cache;
+
 import javax.mail.MessagingException;
-import javax.mail.Session;
-import javax.mail.Transport;
 import javax.mail.internet.AddressException;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
 import java.sql.SQLException;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 
 public class LogEventMailer {
 
+    /**
+     * Value cached for users who do not have an Email address.
+     */
+
+    private static final String NO_EMAIL = "";
+
+    private static final int USER_EMAIL_CACHE_SIZE = 500;
+
+    private static final long USER_EMAIL_CACHE_LIFETIME = 5 * 60 * 1000;	// 5m
+
+    /**
+     * Cache of Email addresses by user ID.
+     */
+
+    private static final Cache<String, String> userEmails = new Cache<>(USER_EMAIL_CACHE_SIZE, USER_EMAIL_CACHE_LIFETIME);
+
+    static {
+        CacheInvalidationBus.getInstance().register(CacheInvalidationBus.USER_SUMMARIES, userEmails);
+    }
+
     private final LogEventParser logEventParser;
 
     public LogEventMailer() {
@@ -26,15 +44,15 @@ public class LogEventMailer {
     }
 
     /**
-     * Sends an Email to to register an event.
+     * Queues an Email to to register an event.
      *
      * @param logLevel The log level for the event.
      * @param eventLogEntry The log entry to email a message for.
      * @param item The item relating to the event log entry.
      *
      * @throws SQLException Thrown if there is a storing retrieving the information.
-     * @throws AddressException Thrown if there is a problem sending the event Email.
-     * @throws MessagingException Thrown if there is a problem sending the event Email.
+     * @throws AddressException Thrown if one of the addresses for the event Email is not valid.
+     * @throws MessagingException Thrown if there is a problem queueing the event Email.
      */
 
     public void sendEmail(final String logLevel, final TamperproofEventLog eventLogEntry,
@@ -54,54 +72,51 @@ public class LogEventMailer {
             }
         }
 
-        Transport.send(constructMessage(eventLogEntry, item));
-    }
-
-    private MimeMessage constructMessage(final TamperproofEventLog eventLogEntry,
-                                         final AccessControledObject item)
-            throws SQLException, MessagingException {
-        Properties props = new Properties();
-        props.put("mail.smtp.host", ConfigurationDAO.getValue(ConfigurationOption.SMTP_HOST));
-        Session s = Session.getInstance(props, null);
-
-        MimeMessage message = new MimeMessage(s);
-
-        InternetAddress from = new InternetAddress(ConfigurationDAO.getValue(ConfigurationOption.SMTP_FROM));
-        message.setFrom(from);
-
-        String recipient = determineRecipients(eventLogEntry);
-        StringTokenizer recipientTokenizer = new StringTokenizer(recipient, ";");
-        while (recipientTokenizer.hasMoreTokens()) {
-            InternetAddress to = new InternetAddress(recipientTokenizer.nextToken());
-            message.addRecipient(Message.RecipientType.TO, to);
+        String sender = ConfigurationDAO.getValue(ConfigurationOption.SMTP_FROM);
+        if (sender == null) {
+            throw new MessagingException("An SMTP sender has not been specified");
         }
-
-        message.setSubject(logEventParser.getParsedMessage(eventLogEntry.getEvent()));
-        message.setText(logEventParser.getFullMessage(eventLogEntry, item));
-
-        return message;
+        OutboundMailQueue.getInstance().enqueue(sender, determineRecipients(eventLogEntry),
+                logEventParser.getParsedMessage(eventLogEntry.getEvent()),
+                logEventParser.getFullMessage(eventLogEntry, item));
     }
 
-    private String determineRecipients(final TamperproofEventLog eventLogEntry)
+    private List<String> determineRecipients(final TamperproofEventLog eventLogEntry)
             throws SQLException {
-        String recipient = ConfigurationDAO.getValue(ConfigurationOption.SMTP_TO_PROPERTY);
+        List<String> recipients = new ArrayList<>();
+        String configuredRecipients = ConfigurationDAO.getValue(ConfigurationOption.SMTP_TO_PROPERTY);
+        if (configuredRecipients != null) {
+            StringTokenizer recipientTokenizer = new StringTokenizer(configuredRecipients, ";");
+            while (recipientTokenizer.hasMoreTokens()) {
+                recipients.add(recipientTokenizer.nextToken());
+            }
+        }
+
         String includeUser = ConfigurationDAO.getValue(ConfigurationOption.INCLUDE_USER_ON_AUDIT_EMAIL);
         if (includeUser != null && includeUser.equalsIgnoreCase("Y")) {
-            User theUser = UserDAO.getInstance().getById(eventLogEntry.getUserId());
-            if (theUser != null ) {
-                String userEmail = theUser.getEmail();
-                if( userEmail != null && userEmail.length() > 0) {
-                    StringBuilder newRecipient = new StringBuilder(recipient);
-                    if (recipient.length() > 0) {
-                        newRecipient.append("; ");
-                    }
-                    newRecipient.append(userEmail);
-                    recipient = newRecipient.toString();
-                }
+            String userEmail = getUserEmail(eventLogEntry.getUserId());
+            if (userEmail != null && userEmail.length() > 0) {
+                recipients.add(userEmail);
             }
         }
 
-        return recipient;
+        return recipients;
+    }
+
+    /**
+     * Get the Email address for a user, caching it so events for the same user do not each need a query.
+     */
+
+    private static String getUserEmail(final String userId)
+            throws SQLException {
+        if (userId == null) {
+            return null;
+        }
+        String email = userEmails.get(userId, id -> {
+            User theUser = UserDAO.getInstance().getById(id);
+            return theUser == null ? NO_EMAIL : theUser.getEmail() == null ? NO_EMAIL : theUser.getEmail();
+        });
+        return NO_EMAIL.equals(email) ? null : email;
     }
 
 }
@@ -1,52 +1,152 @@
 package com.enterprisepasswordsafe.engine.logging;
 
 import com.enterprisepasswordsafe.database.*;
-import com.enterprisepasswordsafe.database.derived.AbstractUserSummary;
 
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
+/**
+ * Expands the {type:id} tokens in event log messages into the names of the objects they refer to.
+ *
+ * The names looked up are remembered for the lifetime of the parser, so an instance should be used
+ * for a single page or export. Events can be registered with prepare before they are parsed, which
+ * allows the tokens from many events to be looked up with one query for each type of object.
+ */
+
 public class LogEventParser {
     private static final String DATE_FORMAT = "dd MMM yyyy '-' HH:mm:ss";
 
+    private static final String USER_TOKEN = "user",
+                                GROUP_TOKEN = "group",
+                                NODE_TOKEN = "node";
 
-    private String valueOfToken(final String variable)
-            throws SQLException {
+    /**
+     * The names which have been looked up, keyed by token type then ID. IDs which were not found are
+     * stored with a null name so they are not looked up again.
+     */
+
+    private final Map<String, Map<String, String>> resolvedNames = new HashMap<>();
+
+    /**
+     * The IDs from prepared events which have not yet been looked up, keyed by token type.
+     */
+
+    private final Map<String, Set<String>> pendingIds = new HashMap<>();
+
+    /**
+     * Record the tokens in an event so they can be looked up along with the tokens from other events.
+     *
+     * @param event The unparsed event message.
+     */
+
+    public void prepare(final String event) {
+        if (event == null || event.indexOf('{') == -1) {
+            return;
+        }
+
+        StringTokenizer tokenizer = new StringTokenizer(event, "{");
+        while (tokenizer.hasMoreTokens()) {
+            String thisToken = tokenizer.nextToken();
+            int closeBracketIdx = thisToken.indexOf('}');
+            if (closeBracketIdx != -1) {
+                addPending(thisToken.substring(0, closeBracketIdx));
+            }
+        }
+    }
+
+    private void addPending(final String variable) {
         int colonIdx = variable.indexOf(':');
         if (colonIdx == -1) {
-            return variable;
+            return;
         }
 
         String variableType = variable.substring(0, colonIdx);
+        if (!variableType.equals(USER_TOKEN) && !variableType.equals(GROUP_TOKEN)
+        &&  !variableType.equals(NODE_TOKEN)) {
+            return;
+        }
+
         String variableId = variable.substring(colonIdx + 1);
+        Map<String, String> names = resolvedNames.get(variableType);
+        if (names == null || !names.containsKey(variableId)) {
+            pendingIds.computeIfAbsent(variableType, type -> new HashSet<>()).add(variableId);
+        }
+    }
+
+    /**
+     * Look up the names for all of the tokens in prepared events which haven't already been found.
+     */
+
+    public void resolvePending()
+            throws SQLException {
+        for (Map.Entry<String, Set<String>> entry : pendingIds.entrySet()) {
+            Set<String> ids = entry.getValue();
+            if (ids.isEmpty()) {
+                continue;
+            }
 
-        if (variableType.equals("user")) {
-            AbstractUserSummary theUser = UserSummaryDAO.getInstance().getById(variableId);
-            if (theUser != null) {
-                return theUser.getName();
+            Map<String, String> found = getNames(entry.getKey(), ids);
+            Map<String, String> names = resolvedNames.computeIfAbsent(entry.getKey(), type -> new HashMap<>());
+            for (String id : ids) {
+                names.put(id, found.get(id));
             }
+        }
+        pendingIds.clear();
+    }
 
-            return "user with the id " + variableId;
+    private Map<String, String> getNames(final String variableType, final Collection<String> ids)
+            throws SQLException {
+        switch (variableType) {
+            case USER_TOKEN:
+                return UserSummaryDAO.getInstance().getNamesById(ids);
+            case GROUP_TOKEN:
+                return GroupDAO.getInstance().getNamesById(ids);
+            default:
+                return HierarchyNodeDAO.getInstance().getNamesById(ids);
         }
+    }
 
-        if (variableType.equals("group")) {
-            Group theGroup = GroupDAO.getInstance().getById(variableId);
-            if( theGroup != null ) {
-                return theGroup.getGroupName();
-            }
+    private String getName(final String variableType, final String variableId)
+            throws SQLException {
+        Map<String, String> names = resolvedNames.get(variableType);
+        if (names == null || !names.containsKey(variableId)) {
+            addPending(variableType + ":" + variableId);
+            resolvePending();
+            names = resolvedNames.get(variableType);
+        }
+        return names.get(variableId);
+    }
+
+    private String valueOfToken(final String variable)
+            throws SQLException {
+        int colonIdx = variable.indexOf(':');
+        if (colonIdx == -1) {
+            return variable;
+        }
 
-            return "group with the id " + variableId;
+        String variableType = variable.substring(0, colonIdx);
+        String variableId = variable.substring(colonIdx + 1);
+
+        if (variableType.equals(USER_TOKEN)) {
+            String name = getName(variableType, variableId);
+            return name == null ? "user with the id " + variableId : name;
         }
 
-        if (variableType.equals("node")) {
-            HierarchyNode theNode = HierarchyNodeDAO.getInstance().getById(variableId);
-            if (theNode != null) {
-                return theNode.getName();
-            }
+        if (variableType.equals(GROUP_TOKEN)) {
+            String name = getName(variableType, variableId);
+            return name == null ? "group with the id " + variableId : name;
+        }
 
-            return "node with the id " + variableId;
+        if (variableType.equals(NODE_TOKEN)) {
+            String name = getName(variableType, variableId);
+            return name == null ? "node with the id " + variableId : name;
         }
 
         return "<< UNKNOWN >>";
@@ -18,22 +18,63 @@ package com.enterprisepasswordsafe.engine.reports;
 
 import com.enterprisepasswordsafe.database.*;
 import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
+import com.enterprisepasswordsafe.engine.accesscontrol.GroupAccessControl;
+import com.enterprisepasswordsafe.engine.accesscontrol.UserAccessControl;
+import com.enterprisepasswordsafe.engine.users.UserClassifier;
+import com.enterprisepasswordsafe.engine.utils.KeyUtils;
+import com.enterprisepasswordsafe.engine.utils.WorkerPool;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.security.GeneralSecurityException;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Report listing which users can access each password, and whether that access is direct or via a group.
+ *
+ * The passwords and the user and group grants are each read in one pass ordered by password ID and
+ * merged, so each password is decrypted once and shared by every user who can see it, and each group
+ * key is decrypted once per report. Lines are written as each password is reached.
+ */
 
 public class AccessReport {
 
-    private static final String GET_ACCESSIBLE_PASSWORDS_FOR_USER_SQL =
-            "SELECT item_id FROM user_access_control WHERE user_id = ?";
+    /**
+     * The number of rows to fetch from the database at a time.
+     */
+
+    private static final int FETCH_SIZE = 500;
+
+    private static final String GET_PASSWORDS_SQL =
+            "SELECT pass.password_id, pass.password_data FROM passwords pass "
+            + " WHERE (pass.enabled is null OR pass.enabled = 'Y') ORDER BY pass.password_id";
+
+    private static final String GET_USER_GRANTS_SQL =
+            "SELECT uac.item_id, appusers.user_id, appusers.user_name, uac.rkey, uac.mkey "
+            + "  FROM user_access_control uac, application_users appusers "
+            + " WHERE appusers.user_id = uac.user_id AND uac.rkey is not null "
+            + "   AND appusers.user_id <> '" + UserClassifier.ADMIN_USER_ID + "' AND appusers.disabled <> 'D' "
+            + " ORDER BY uac.item_id, appusers.user_name";
 
-    private static final String GET_ACCESSIBLE_PASSWORDS_FOR_USER_VIA_GAC_SQL =
-            "SELECT gac.group_id, gac.item_id FROM membership m, group_access_control gac "
-            + " WHERE m.user_id = ? AND m.group_id = gac.group_id AND gac.rkey is not null ";
+    private static final String GET_GROUP_GRANTS_SQL =
+            "SELECT gac.item_id, appusers.user_id, appusers.user_name, gac.rkey, gac.mkey, grp.group_id, grp.group_name "
+            + "  FROM group_access_control gac, membership m, groups grp, application_users appusers "
+            + " WHERE m.group_id = gac.group_id AND grp.group_id = gac.group_id AND appusers.user_id = m.user_id "
+            + "   AND gac.rkey is not null AND grp.status < " + Group.STATUS_DELETED
+            + "   AND gac.group_id <> '" + Group.ADMIN_GROUP_ID + "' AND gac.group_id <> '" + Group.SUBADMIN_GROUP_ID + "' "
+            + "   AND appusers.user_id <> '" + UserClassifier.ADMIN_USER_ID + "' AND appusers.disabled <> 'D' "
+            + " ORDER BY gac.item_id, appusers.user_name, grp.group_name";
 
     private AccessReport() {
         super();
@@ -41,114 +82,212 @@ public class AccessReport {
 
     public void generateReport(final User user, final PrintWriter printWriter, final String separator)
             throws SQLException, GeneralSecurityException, IOException {
-// TODO Look for more efficient algorithm
-
-        GroupDAO gDAO = GroupDAO.getInstance();
-        Group adminGroup = gDAO.getAdminGroup(user);
-        try(PreparedStatement uacPS = BOMFactory.getCurrentConntection().prepareStatement(GET_ACCESSIBLE_PASSWORDS_FOR_USER_SQL)) {
-            try(PreparedStatement gacPS = BOMFactory.getCurrentConntection().prepareStatement(GET_ACCESSIBLE_PASSWORDS_FOR_USER_VIA_GAC_SQL)) {
-                Context context = new Context(uacPS, gacPS, printWriter, separator);
-                for(User thisUser : UserDAO.getInstance().getAll()) {
-                    thisUser.decryptAdminAccessKey(adminGroup);
-
-                    getDirectlyAccessiblePasswords(context, thisUser);
-                    getPasswordsAccessibleViaGroup(context, thisUser);
+        printWriter.print("User");
+        printWriter.print(separator);
+        printWriter.print("Password");
+        printWriter.print(separator);
+        printWriter.print("Group");
+        printWriter.print(separator);
+        printWriter.print("Access");
+        printWriter.println();
+
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(user);
+        Connection connection = BOMFactory.getReadConnection();
+        try(KeyMaterialCache keyMaterialCache = new KeyMaterialCache();
+            PreparedStatement passwordsPS = connection.prepareStatement(GET_PASSWORDS_SQL);
+            PreparedStatement userGrantsPS = connection.prepareStatement(GET_USER_GRANTS_SQL);
+            PreparedStatement groupGrantsPS = connection.prepareStatement(GET_GROUP_GRANTS_SQL)) {
+            passwordsPS.setFetchSize(FETCH_SIZE);
+            userGrantsPS.setFetchSize(FETCH_SIZE);
+            groupGrantsPS.setFetchSize(FETCH_SIZE);
+            try(ResultSet passwords = passwordsPS.executeQuery();
+                ResultSet userGrants = userGrantsPS.executeQuery();
+                ResultSet groupGrants = groupGrantsPS.executeQuery()) {
+                Context context = new Context(adminGroup, keyMaterialCache, printWriter, separator);
+                GrantReader userGrantReader = new GrantReader(userGrants, false);
+                GrantReader groupGrantReader = new GrantReader(groupGrants, true);
+                List<Grant> grants = new ArrayList<>();
+                while (passwords.next()) {
+                    String passwordId = passwords.getString(1);
+                    grants.clear();
+                    userGrantReader.readGrantsFor(passwordId, grants);
+                    groupGrantReader.readGrantsFor(passwordId, grants);
+                    if (!grants.isEmpty()) {
+                        reportPassword(context, passwordId, passwords.getBytes(2), grants);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Generate the report on a worker thread, writing it to a file.
+     *
+     * @param user The user the report is being generated for.
+     * @param destination The file to write the report to.
+     * @param separator The separator to use between fields.
+     *
+     * @return A Future which gives the file once the report has been written.
+     */
 
-    private void getDirectlyAccessiblePasswords(Context context, User user)
-            throws SQLException, IOException, GeneralSecurityException {
-        context.directlyAccessiblePS.setString(1, user.getId());
-        PasswordDAO passwordDAO = PasswordDAO.getInstance();
-        try(ResultSet rsPasswords = context.directlyAccessiblePS.executeQuery()) {
-            while (rsPasswords.next()) {
-                String passwordId = rsPasswords.getString(1);
-                Password thisPassword = passwordDAO.getById(user, passwordId);
-                if( thisPassword == null )
-                    continue;
-                context.output.println(constructDetails( user, thisPassword, null, context.separator));
+    public Future<File> generateReportInBackground(final User user, final File destination, final String separator) {
+        return WorkerPool.getInstance().submit(() -> {
+            try(PrintWriter writer =
+                        new PrintWriter(Files.newBufferedWriter(destination.toPath(), StandardCharsets.UTF_8))) {
+                generateReport(user, writer, separator);
             }
-        }
+            return destination;
+        });
     }
 
-    private void getPasswordsAccessibleViaGroup(Context context, User user)
+    private void reportPassword(final Context context, final String passwordId, final byte[] passwordData,
+                                final List<Grant> grants)
             throws SQLException, GeneralSecurityException, IOException {
-        context.groupAccessiblePS.setString(1, user.getId());
-        try(ResultSet resultSet = context.groupAccessiblePS.executeQuery()) {
-            while (resultSet.next()) {
-                processGroup(context, user, resultSet);
+        AccessControl ac = null;
+        for (Grant grant : grants) {
+            ac = getReadAccessControl(context, passwordId, grant);
+            if (ac != null) {
+                break;
             }
         }
-    }
-
-    private void processGroup(Context context, User user, ResultSet resultSet)
-            throws SQLException, GeneralSecurityException, IOException {
-        Group group = getGroupIfValid(resultSet);
-        if( group == null )
+        if (ac == null) {
             return;
+        }
 
-        String passwordId = resultSet.getString(2);
-
-        AccessControl ac = GroupAccessControlDAO.getInstance().get(user, group, passwordId);
-        if( ac == null )
-            return;
+        Password password = new Password(passwordId, passwordData, ac);
+        for (Grant grant : grants) {
+            context.output.println(constructDetails(grant, password, context.separator));
+        }
+    }
 
-        Password password = PasswordDAO.getInstance().getById(passwordId, ac);
-        if( password == null )
-            return;
+    /**
+     * Decrypt the read key from a grant so the password data can be decrypted.
+     *
+     * @return The access control, or null if the key for the user or group is not available.
+     */
 
-        context.output.println(constructDetails(user, password, group, context.separator));
-    }
+    private AccessControl getReadAccessControl(final Context context, final String passwordId, final Grant grant)
+            throws SQLException, GeneralSecurityException {
+        User grantee = context.keyMaterialCache.getDecryptedUser(grant.userId, context.adminGroup);
+        if (grantee == null) {
+            return null;
+        }
 
-    private Group getGroupIfValid(ResultSet resultSet)
-            throws SQLException {
-        String groupId = resultSet.getString(1);
-        if( groupId.equals(Group.ADMIN_GROUP_ID) ||  groupId.equals(Group.SUBADMIN_GROUP_ID) ) {
-            return  null;
+        if (grant.groupId == null) {
+            return UserAccessControl.builder()
+                    .withItemId(passwordId)
+                    .withAccessorId(grantee.getId())
+                    .withReadKey(KeyUtils.decryptPublicKey(grant.encryptedReadKey, grantee.getKeyDecrypter()))
+                    .build();
         }
 
-        return GroupDAO.getInstance().getById(groupId);
+        Group group = context.groups.get(grant.groupId);
+        if (group == null) {
+            group = context.keyMaterialCache.getDecryptedGroup(grant.groupId, grantee);
+            if (group == null) {
+                return null;
+            }
+            context.groups.put(grant.groupId, group);
+        }
+        return GroupAccessControl.builder()
+                .withItemId(passwordId)
+                .withAccessorId(group.getGroupId())
+                .withReadKey(KeyUtils.decryptPublicKey(grant.encryptedReadKey, group.getKeyDecrypter()))
+                .build();
     }
 
-    private String constructDetails(final User user, final Password password,
-                                    final Group group,  final String separator) {
+    private String constructDetails(final Grant grant, final Password password, final String separator) {
         final StringBuilder details = new StringBuilder();
-        details.append(user.getUserName());
+        details.append(grant.userName);
         details.append(separator);
         details.append(password.getUsername());
         details.append('@');
         details.append(password.getLocation());
         details.append(separator);
-        if (group == null) {
+        if (grant.groupName == null) {
             details.append("None");
         } else {
-            details.append(group.getGroupName());
+            details.append(grant.groupName);
         }
         details.append(separator);
-        if (password.getReadKey() == null) {
-            details.append("NONE");
-        } else if (password.getModifyKey() == null ) {
-            details.append("Read-Only");
-        } else {
+        if (grant.hasModifyKey) {
             details.append("Read-Write");
+        } else {
+            details.append("Read-Only");
         }
 
         return details.toString();
     }
 
+    /**
+     * A single users access to a password, either directly or via a group.
+     */
+
+    private static final class Grant {
+        final String userId;
+        final String userName;
+        final byte[] encryptedReadKey;
+        final boolean hasModifyKey;
+        final String groupId;
+        final String groupName;
+
+        Grant(final ResultSet rs, final boolean viaGroup)
+                throws SQLException {
+            userId = rs.getString(2);
+            userName = rs.getString(3);
+            encryptedReadKey = rs.getBytes(4);
+            hasModifyKey = rs.getBytes(5) != null;
+            groupId = viaGroup ? rs.getString(6) : null;
+            groupName = viaGroup ? rs.getString(7) : null;
+        }
+    }
+
+    /**
+     * Reads grants ordered by password ID, one password at a time.
+     */
+
+    private static final class GrantReader {
+        private final ResultSet resultSet;
+        private final boolean viaGroup;
+        private boolean hasCurrent;
+
+        GrantReader(final ResultSet resultSet, final boolean viaGroup)
+                throws SQLException {
+            this.resultSet = resultSet;
+            this.viaGroup = viaGroup;
+            hasCurrent = resultSet.next();
+        }
+
+        /**
+         * Add the grants for a password to a list, skipping any grants for earlier passwords which
+         * were not in the password list.
+         */
+
+        void readGrantsFor(final String passwordId, final List<Grant> grants)
+                throws SQLException {
+            while (hasCurrent) {
+                int comparison = resultSet.getString(1).compareTo(passwordId);
+                if (comparison > 0) {
+                    return;
+                }
+                if (comparison == 0) {
+                    grants.add(new Grant(resultSet, viaGroup));
+                }
+                hasCurrent = resultSet.next();
+            }
+        }
+    }
+
     private static class Context {
-        final PreparedStatement directlyAccessiblePS;
-        final PreparedStatement groupAccessiblePS;
+        final Group adminGroup;
+        final KeyMaterialCache keyMaterialCache;
+        final Map<String, Group> groups = new HashMap<>();
         final PrintWriter output;
         final String separator;
 
-        Context(PreparedStatement directlyAccessiblePS, PreparedStatement groupAccessiblePS,
-                PrintWriter output, String separator) {
-            this.directlyAccessiblePS = directlyAccessiblePS;
-            this.groupAccessiblePS = groupAccessiblePS;
+        Context(Group adminGroup, KeyMaterialCache keyMaterialCache, PrintWriter output, String separator) {
+            this.adminGroup = adminGroup;
+            this.keyMaterialCache = keyMaterialCache;
             this.output = output;
             this.separator = separator;
         }
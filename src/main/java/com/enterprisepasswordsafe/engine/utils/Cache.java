@@ -16,10 +16,17 @@
 
 package com.enterprisepasswordsafe.engine.utils;
 
-import org.apache.commons.collections4.map.LRUMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Type safe cache. Allows a maximum size to be specified.
+ * Type safe, thread safe cache. Allows a maximum size and a maximum entry lifetime to be specified.
+ *
+ * The cache is split into a number of independently locked segments, each of which evicts its least
+ * recently used entry when it becomes full, so concurrent readers of different keys rarely contend.
  *
  * @author alsutton
  *
@@ -34,18 +41,60 @@ public class Cache<K, V> {
 	private final static int DEFAULT_CACHE_SIZE = 1000;
 
 	/**
-	 * The LRUMap which backs the cache.
+	 * Value used to indicate entries never expire.
+	 */
+	public final static long NO_EXPIRY = 0;
+
+	/**
+	 * The maximum number of segments the cache is split into.
+	 */
+	private final static int MAX_SEGMENTS = 16;
+
+	/**
+	 * The segments holding the cached data.
+	 */
+	private final List<Segment<K, V>> segments;
+
+	/**
+	 * The maximum lifetime of an entry in milliseconds, or NO_EXPIRY.
 	 */
-	private final LRUMap<K, V> cacheMap;
+	private final long timeToLive;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder totalLoadTime = new LongAdder();
 
 	/**
 	 * Constructor.
 	 *
 	 * @param size The maximum number of objects to be stored in the cache.
+	 * @param timeToLive The maximum time, in milliseconds, an entry is held for, or NO_EXPIRY.
+	 */
+
+	public Cache(final int size, final long timeToLive) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Cache size must be positive");
+		}
+		this.timeToLive = timeToLive;
+
+		int segmentCount = Math.min(MAX_SEGMENTS, size);
+		segments = new ArrayList<>(segmentCount);
+		for (int i = 0; i < segmentCount; i++) {
+			int segmentSize = size / segmentCount + (i < size % segmentCount ? 1 : 0);
+			segments.add(new Segment<>(segmentSize, evictions));
+		}
+	}
+
+	/**
+	 * Constructor. Entries do not expire.
+	 *
+	 * @param size The maximum number of objects to be stored in the cache.
 	 */
 
 	public Cache(final int size) {
-		cacheMap = new LRUMap<>(size);
+		this(size, NO_EXPIRY);
 	}
 
 	/**
@@ -60,7 +109,16 @@ public class Cache<K, V> {
 	 */
 
 	public void put(K key, V object) {
-		cacheMap.put(key, object);
+		if (object == null) {
+			remove(key);
+			return;
+		}
+		segmentFor(key).put(key, createEntry(object));
+	}
+
+	private Entry<V> createEntry(final V object) {
+		long expiresAt = timeToLive == NO_EXPIRY ? Long.MAX_VALUE : System.currentTimeMillis() + timeToLive;
+		return new Entry<>(object, expiresAt);
 	}
 
 	/**
@@ -68,7 +126,39 @@ public class Cache<K, V> {
 	 */
 
 	public V get(K key) {
-		return cacheMap.get(key);
+		V value = segmentFor(key).get(key, System.currentTimeMillis());
+		if (value == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+		}
+		return value;
+	}
+
+	/**
+	 * Get an object from the cache, using the loader to fetch it if it is not present. Null values
+	 * returned by the loader are not cached, and neither are values loaded while an entry in the
+	 * same part of the cache was being removed, because they may be older than the removal.
+	 */
+
+	public <E extends Exception> V get(K key, Loader<K, V, E> loader)
+			throws E {
+		V value = get(key);
+		if (value != null) {
+			return value;
+		}
+
+		Segment<K, V> segment = segmentFor(key);
+		long generation = segment.getGeneration();
+		long start = System.nanoTime();
+		value = loader.load(key);
+		loads.increment();
+		totalLoadTime.add(System.nanoTime() - start);
+
+		if (value != null) {
+			segment.putIfUnchanged(key, createEntry(value), generation);
+		}
+		return value;
 	}
 
 	/**
@@ -76,6 +166,151 @@ public class Cache<K, V> {
 	 */
 
 	public void remove(K key) {
-		cacheMap.remove(key);
+		segmentFor(key).remove(key);
+	}
+
+	/**
+	 * Remove all objects from the cache
+	 */
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	/**
+	 * Get the number of objects currently held in the cache, including any which have expired but
+	 * have not yet been removed.
+	 */
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public long getLoadCount() {
+		return loads.sum();
+	}
+
+	/**
+	 * Get the total time, in nanoseconds, spent in loaders.
+	 */
+
+	public long getTotalLoadTime() {
+		return totalLoadTime.sum();
+	}
+
+	private Segment<K, V> segmentFor(K key) {
+		int hash = key == null ? 0 : key.hashCode();
+		hash ^= (hash >>> 16);
+		return segments.get((hash & Integer.MAX_VALUE) % segments.size());
+	}
+
+	/**
+	 * Interface for functions which can fetch a value which is not in the cache.
+	 */
+
+	@FunctionalInterface
+	public interface Loader<K, V, E extends Exception> {
+		V load(K key) throws E;
+	}
+
+	/**
+	 * A value and the time at which it expires.
+	 */
+
+	private static final class Entry<V> {
+		final V value;
+		final long expiresAt;
+
+		Entry(final V value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * An independently locked, least recently used ordered, part of the cache.
+	 */
+
+	private static final class Segment<K, V> {
+		private final LinkedHashMap<K, Entry<V>> entries;
+		private final LongAdder evictions;
+
+		/**
+		 * Incremented whenever entries are removed, so loads which overlap a removal can be detected.
+		 */
+		private long generation;
+
+		Segment(final int maximumSize, final LongAdder evictions) {
+			this.evictions = evictions;
+			entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+					if (size() > maximumSize) {
+						evictions.increment();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		synchronized V get(final K key, final long now) {
+			Entry<V> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (entry.expiresAt < now) {
+				entries.remove(key);
+				evictions.increment();
+				return null;
+			}
+			return entry.value;
+		}
+
+		synchronized void put(final K key, final Entry<V> entry) {
+			entries.put(key, entry);
+		}
+
+		synchronized long getGeneration() {
+			return generation;
+		}
+
+		synchronized void putIfUnchanged(final K key, final Entry<V> entry, final long expectedGeneration) {
+			if (generation == expectedGeneration) {
+				entries.put(key, entry);
+			}
+		}
+
+		synchronized void remove(final K key) {
+			entries.remove(key);
+			generation++;
+		}
+
+		synchronized void clear() {
+			entries.clear();
+			generation++;
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
 	}
 }
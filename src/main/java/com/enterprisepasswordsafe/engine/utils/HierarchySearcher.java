@@ -17,79 +17,212 @@
 package com.enterprisepasswordsafe.engine.utils;
 
 import com.enterprisepasswordsafe.database.AccessControledObject;
+import com.enterprisepasswordsafe.database.ConfigurationDAO;
+import com.enterprisepasswordsafe.database.ConfigurationOption;
 import com.enterprisepasswordsafe.database.HierarchyNode;
 import com.enterprisepasswordsafe.database.HierarchyNodeDAO;
 import com.enterprisepasswordsafe.database.User;
 import com.enterprisepasswordsafe.database.actions.NodeObjectAction;
 
-import java.io.UnsupportedEncodingException;
 import java.security.GeneralSecurityException;
 import java.sql.SQLException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class HierarchySearcher {
+/**
+ * Searches the hierarchy using a shared pool of search threads.
+ *
+ * A search is split into one part for the objects directly under the starting node and one part for
+ * each accessible folder below it. Each search is limited to a configurable number of threads so a
+ * single large search can not take over the pool, and a search can be cancelled, which stops any
+ * parts which have not yet finished.
+ */
 
-    private static final int THREAD_POOL_SIZE = 10;
+public final class HierarchySearcher {
 
-    public void searchHierarchy(final HierarchyNodeDAO hnDAO, final HierarchyNode node, final User theUser,
-                                final NodeObjectAction action, final boolean recurse) {
-        ExecutorService executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+    private final WorkerPool searchPool;
 
-        if(recurse) {
-            submitChildObjectsToExecutor(executorService, hnDAO, node, theUser, action);
-        } else {
-            submitNodeChildrenToExecutor(executorService, hnDAO, node, theUser, action);
-        }
+    HierarchySearcher(final int threadCount) {
+        searchPool = new WorkerPool("eps-search-", threadCount);
+    }
 
-        executorService.shutdown();
+    /**
+     * Search a hierarchy and wait for the search to finish.
+     *
+     * @param hnDAO The DAO to fetch the nodes and objects with.
+     * @param node The node to start the search from.
+     * @param theUser The user performing the search.
+     * @param action The action to pass the objects to. This must be safe to call from multiple threads.
+     * @param recurse true if the folders below the node should also be searched.
+     *
+     * @throws ExecutionException Thrown if any part of the search failed.
+     * @throws TimeoutException Thrown if the search did not finish within the configured time.
+     * @throws InterruptedException Thrown if the calling thread was interrupted while waiting.
+     */
+
+    public void searchHierarchy(final HierarchyNodeDAO hnDAO, final HierarchyNode node, final User theUser,
+                                final NodeObjectAction action, final boolean recurse)
+            throws SQLException, GeneralSecurityException, ExecutionException, TimeoutException, InterruptedException {
+        Search search = start(hnDAO, node, theUser, action, recurse,
+                getConfiguredInt(ConfigurationOption.SEARCH_THREADS_PER_REQUEST));
         try {
-            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            // Do nothing.
+            search.await(getConfiguredInt(ConfigurationOption.SEARCH_TIMEOUT), TimeUnit.SECONDS);
+        } finally {
+            search.cancel();
         }
     }
 
-    private void submitChildObjectsToExecutor(final ExecutorService service, final HierarchyNodeDAO hnDAO,
-                                              final HierarchyNode node, final User theUser, final NodeObjectAction action) {
-        submitNodeChildrenToExecutor(service, hnDAO, node, theUser, action);
-        try {
-            for (HierarchyNode thisNode : hnDAO.getChildrenContainerNodesForUser(node, theUser, true, null)) {
-                submitChildObjectsToExecutor(service, hnDAO, thisNode, theUser, action);
+    /**
+     * Start a search of the hierarchy.
+     *
+     * @param hnDAO The DAO to fetch the nodes and objects with.
+     * @param node The node to start the search from.
+     * @param theUser The user performing the search.
+     * @param action The action to pass the objects to. This must be safe to call from multiple threads.
+     * @param recurse true if the folders below the node should also be searched.
+     * @param maximumThreads The maximum number of threads the search can use at once.
+     *
+     * @return The running search.
+     */
+
+    public Search start(final HierarchyNodeDAO hnDAO, final HierarchyNode node, final User theUser,
+                        final NodeObjectAction action, final boolean recurse, final int maximumThreads)
+            throws SQLException, GeneralSecurityException {
+        Search search = new Search();
+        NodeObjectAction cancellableAction = new NodeObjectAction() {
+            @Override
+            public void process(final HierarchyNode location, final AccessControledObject aco)
+                    throws Exception {
+                search.throwIfCancelled();
+                action.process(location, aco);
             }
-        } catch(SQLException | GeneralSecurityException ex) {
-            reportException(node, ex);
+
+            @Override
+            public boolean wants(final String objectId) {
+                return action.wants(objectId);
+            }
+        };
+
+        search.parts.add(() -> {
+            hnDAO.processChildObjects(node, theUser, cancellableAction);
+            return null;
+        });
+        if (recurse) {
+            for (HierarchyNode child : hnDAO.getChildrenContainerNodesForUser(node, theUser, true, null)) {
+                search.parts.add(() -> {
+                    hnDAO.processSubtreeObjects(child, theUser, cancellableAction);
+                    return null;
+                });
+            }
+        }
+
+        int runnerCount = Math.max(1, Math.min(maximumThreads, search.parts.size()));
+        for (int i = 0; i < runnerCount; i++) {
+            search.runners.add(searchPool.submit(search::runParts));
         }
+        return search;
     }
 
-    private void submitNodeChildrenToExecutor(final ExecutorService service, final HierarchyNodeDAO hnDAO,
-                                              final HierarchyNode node, final User theUser, final NodeObjectAction action) {
-        try {
-            for (final AccessControledObject aco : hnDAO.getAllChildrenObjects(node, theUser, null)) {
-                Runnable nodeProcessor = () -> {
-                    try {
-                        action.process(node, aco);
-                    } catch (Exception ex) {
-                        reportException(node, ex);
+    private static int getConfiguredInt(final ConfigurationOption option) {
+        Long value = ConfigurationDAO.getLongValue(option);
+        return value == null || value < 1 ? 1 : value.intValue();
+    }
+
+    /**
+     * A running search.
+     */
+
+    public static final class Search {
+        private final Queue<Callable<Void>> parts = new ConcurrentLinkedQueue<>();
+        private final List<Future<Void>> runners = new CopyOnWriteArrayList<>();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private volatile boolean cancelled = false;
+
+        private Search() {
+            super();
+        }
+
+        private Void runParts() {
+            Callable<Void> part;
+            while (!cancelled && (part = parts.poll()) != null) {
+                try {
+                    part.call();
+                } catch (Exception e) {
+                    if (!cancelled) {
+                        failure.compareAndSet(null, e);
+                        cancel();
                     }
-                };
-                service.execute(nodeProcessor);
+                }
             }
-        } catch (SQLException | GeneralSecurityException | UnsupportedEncodingException e) {
-            reportException(node, e);
+            return null;
         }
-    }
 
-    private void reportException(HierarchyNode node, Exception ex) {
-        Logger.getAnonymousLogger().log(Level.SEVERE, "Problem processing node "+node.getNodeId(), ex);
+        private void throwIfCancelled() {
+            if (cancelled || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Search cancelled");
+            }
+        }
+
+        /**
+         * Wait for the search to finish.
+         *
+         * @param timeout The maximum time to wait.
+         * @param unit The unit of the timeout.
+         *
+         * @throws ExecutionException Thrown if any part of the search failed.
+         * @throws TimeoutException Thrown if the search did not finish in time.
+         * @throws InterruptedException Thrown if the calling thread was interrupted while waiting.
+         */
+
+        public void await(final long timeout, final TimeUnit unit)
+                throws ExecutionException, TimeoutException, InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (Future<Void> runner : runners) {
+                try {
+                    runner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (CancellationException e) {
+                    break;
+                }
+            }
+            Exception searchFailure = failure.get();
+            if (searchFailure != null) {
+                throw new ExecutionException(searchFailure);
+            }
+            if (cancelled) {
+                throw new CancellationException("Search cancelled");
+            }
+        }
+
+        /**
+         * Stop the search. Any parts which have not started will not be run, and running parts will
+         * stop when they next pass an object to the action.
+         */
+
+        public void cancel() {
+            cancelled = true;
+            for (Future<Void> runner : runners) {
+                runner.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
     }
 
+    //------------------------
 
-    private static class InstanceHolder {
-        final static HierarchySearcher INSTANCE = new HierarchySearcher();
+    private static final class InstanceHolder {
+        static final HierarchySearcher INSTANCE = new HierarchySearcher(getConfiguredInt(ConfigurationOption.SEARCH_THREADS));
     }
 
     public static HierarchySearcher getInstance() {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.engine.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe histogram of operation times, counted into fixed buckets.
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The upper bounds of the buckets in milliseconds. Times above the last bound are counted
+	 * in an overflow bucket.
+	 */
+	private static final long[] BUCKET_BOUNDS = { 1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+	/**
+	 * The number of times recorded in each bucket, followed by the overflow bucket.
+	 */
+	private final LongAdder[] counts = new LongAdder[BUCKET_BOUNDS.length + 1];
+
+	/**
+	 * The total of all the recorded times in nanoseconds.
+	 */
+	private final LongAdder totalTime = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record the time an operation took.
+	 *
+	 * @param nanoseconds The time taken in nanoseconds.
+	 */
+	public void record(final long nanoseconds) {
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS.length && nanoseconds > TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS[bucket])) {
+			bucket++;
+		}
+		counts[bucket].increment();
+		totalTime.add(nanoseconds);
+	}
+
+	/**
+	 * Get the upper bound of each bucket in milliseconds, excluding the overflow bucket.
+	 */
+	public long[] getBucketBounds() {
+		return BUCKET_BOUNDS.clone();
+	}
+
+	/**
+	 * Get the number of times recorded in each bucket, each of which holds the times up to and
+	 * including its bound. The last entry is the overflow bucket.
+	 */
+	public long[] getCounts() {
+		long[] snapshot = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			snapshot[i] = counts[i].sum();
+		}
+		return snapshot;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : counts) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public long getTotalTime() {
+		return totalTime.sum();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.engine.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Converts text into the opaque tokens held in the search index. Each token is a keyed hash of a
+ * three character substring of the text, so the index can answer substring queries without holding
+ * anything which can be read back into the original text without the key.
+ */
+
+public final class SearchTokenizer {
+
+    /**
+     * The number of characters hashed into each token.
+     */
+
+    public static final int GRAM_LENGTH = 3;
+
+    /**
+     * The number of bytes of each hash kept in the token.
+     */
+
+    private static final int TOKEN_BYTES = 16;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+
+    public SearchTokenizer(final String keyText) {
+        key = new SecretKeySpec(keyText.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    /**
+     * Get the tokens for every substring of a value which the index should be able to find.
+     *
+     * @param field The name of the field the value is from.
+     * @param value The value to tokenize.
+     *
+     * @return The tokens for the value, which will be empty if the value is too short to be indexed.
+     */
+
+    public Set<String> tokenize(final String field, final String value)
+            throws GeneralSecurityException {
+        Set<String> tokens = new HashSet<>();
+        if (value == null || value.length() < GRAM_LENGTH) {
+            return tokens;
+        }
+
+        String normalised = value.toLowerCase(Locale.ROOT);
+        Mac mac = newMac();
+        for (int i = 0; i + GRAM_LENGTH <= normalised.length(); i++) {
+            tokens.add(hash(mac, field + ':' + normalised.substring(i, i + GRAM_LENGTH)));
+        }
+        return tokens;
+    }
+
+    /**
+     * Get a value which identifies the key without revealing it, so an index built with a different
+     * key can be detected.
+     */
+
+    public String getKeyFingerprint()
+            throws GeneralSecurityException {
+        return hash(newMac(), "fingerprint");
+    }
+
+    private Mac newMac()
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(key);
+        return mac;
+    }
+
+    private static String hash(final Mac mac, final String text) {
+        byte[] digest = mac.doFinal(text.getBytes(StandardCharsets.UTF_8));
+        return HexConverter.fromBytes(Arrays.copyOf(digest, TOKEN_BYTES));
+    }
+}
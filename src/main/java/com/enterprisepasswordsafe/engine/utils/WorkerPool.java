@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.engine.utils;
+
+import com.enterprisepasswordsafe.database.BOMFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared, bounded pool of worker threads for CPU heavy work such as bulk decryption.
+ *
+ * Tasks which touch the database will be given their own connection via the BOMFactory, which is
+ * released once the task completes so worker threads do not hold connections between tasks.
+ */
+public final class WorkerPool {
+
+    /**
+     * The number of tasks below which the work is done on the calling thread.
+     */
+
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    /**
+     * The maximum number of tasks which can be waiting for a worker.
+     */
+
+    private static final int QUEUE_SIZE = 1024;
+
+    private final ThreadPoolExecutor executor;
+
+    WorkerPool(final int threadCount) {
+        this("eps-worker-", threadCount);
+    }
+
+    WorkerPool(final String threadNamePrefix, final int threadCount) {
+        executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), new WorkerThreadFactory(threadNamePrefix),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run a single task on a worker thread. If all of the workers are busy and the queue is full the
+     * task will be run on the calling thread.
+     *
+     * @param task The task to run.
+     *
+     * @return The Future for the tasks result.
+     */
+
+    public <T> Future<T> submit(final Callable<T> task) {
+        return executor.submit(new ConnectionReleasingTask<>(task));
+    }
+
+    /**
+     * Run a list of tasks and return their results in the same order as the tasks were supplied.
+     *
+     * @param tasks The tasks to run.
+     *
+     * @return The results from each task.
+     *
+     * @throws ExecutionException Thrown if any of the tasks threw an exception.
+     */
+
+    public <T> List<T> invokeAllInOrder(final List<? extends Callable<T>> tasks)
+            throws ExecutionException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() < PARALLEL_THRESHOLD) {
+            for (Callable<T> task : tasks) {
+                results.add(runInline(task));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(new ConnectionReleasingTask<>(task)));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private <T> T runInline(final Callable<T> task)
+            throws ExecutionException {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw new ExecutionException(e);
+        }
+    }
+
+    /**
+     * Wrapper which ensures any database connection opened by a task on a worker thread is released. If
+     * the queue is full the task will run on the submitting thread, whose connection must be left alone.
+     */
+
+    private static final class ConnectionReleasingTask<T> implements Callable<T> {
+        private final Callable<T> task;
+
+        ConnectionReleasingTask(final Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            try {
+                return task.call();
+            } finally {
+                if (Thread.currentThread() instanceof WorkerThread) {
+                    BOMFactory.closeCurrent();
+                }
+            }
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String threadNamePrefix;
+
+        WorkerThreadFactory(final String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new WorkerThread(runnable, threadNamePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static final class WorkerThread extends Thread {
+        WorkerThread(final Runnable runnable, final String name) {
+            super(runnable, name);
+        }
+    }
+
+    //------------------------
+
+    private static final class InstanceHolder {
+        static final WorkerPool INSTANCE = new WorkerPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    public static WorkerPool getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+}
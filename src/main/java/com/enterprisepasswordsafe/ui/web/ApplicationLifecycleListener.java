@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.ui.web;
+
+import com.enterprisepasswordsafe.database.CacheInvalidationBus;
+import com.enterprisepasswordsafe.database.EventLogChainVerifier;
+import com.enterprisepasswordsafe.database.ExpiryDigestScheduler;
+import com.enterprisepasswordsafe.database.OutboundMailQueue;
+import com.enterprisepasswordsafe.database.TamperproofEventLogWriter;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Starts and stops the background services used by the application.
+ */
+
+public final class ApplicationLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(final ServletContextEvent event) {
+        CacheInvalidationBus.getInstance().start();
+        TamperproofEventLogWriter.getInstance().start();
+        OutboundMailQueue.getInstance().start();
+        EventLogChainVerifier.getInstance().start();
+        ExpiryDigestScheduler.getInstance().start();
+    }
+
+    @Override
+    public void contextDestroyed(final ServletContextEvent event) {
+        ExpiryDigestScheduler.getInstance().stop();
+        EventLogChainVerifier.getInstance().stop();
+        TamperproofEventLogWriter.getInstance().stop();
+        OutboundMailQueue.getInstance().stop();
+        CacheInvalidationBus.getInstance().stop();
+    }
+}
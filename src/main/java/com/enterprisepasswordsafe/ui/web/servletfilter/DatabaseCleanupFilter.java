@@ -23,20 +23,32 @@
 package com.enterprisepasswordsafe.ui.web.servletfilter;
 
 import com.enterprisepasswordsafe.database.BOMFactory;
+import com.enterprisepasswordsafe.database.DatabaseAccessManager;
+import com.enterprisepasswordsafe.database.dbpool.DatabasePool;
 import com.enterprisepasswordsafe.engine.Repositories;
 
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.SQLException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Filter to clean up any database connections.
  */
 
 public final class DatabaseCleanupFilter implements Filter {
+
+    /**
+     * The session attribute holding the time until which the session's reads go to the primary database.
+     */
+    private static final String READ_PRIMARY_UNTIL_ATTRIBUTE = "eps.readPrimaryUntil";
+
+    /**
+     * How long after a write a session's reads avoid the read replica, to allow for replication lag.
+     */
+    private static final long READ_YOUR_WRITES_WINDOW = TimeUnit.SECONDS.toMillis(10);
+
     @Override
 	public void init(final FilterConfig config) {
         // Do nothing
@@ -50,23 +62,46 @@ public final class DatabaseCleanupFilter implements Filter {
     @Override
 	public void doFilter(ServletRequest request, ServletResponse response,
             FilterChain next) throws ServletException, IOException {
+        boolean usingReplica = isPoolInitialised() && DatabasePool.isRegistered(DatabasePool.REPLICA_POOL_NAME);
+        if(usingReplica && wroteRecently(request)) {
+            BOMFactory.getInstance().pinToPrimary();
+        }
+
     	try {
     		next.doFilter(request, response);
     	} finally {
             if(isPoolInitialised()) {
-                try {
-                    Connection currentConnection = BOMFactory.getCurrentConntection();
-                    if (currentConnection != null && !currentConnection.isClosed()) {
-                        Logger.getGlobal().log(Level.WARNING, "Reached cleanup filter with open connection.");
-                        BOMFactory.closeCurrent();
-                    }
-                } catch (SQLException e) {
-                    Logger.getGlobal().log(Level.SEVERE, "Problem attempting to check connection", e);
+                DatabaseAccessManager databaseAccessManager = BOMFactory.getInstance();
+                if(usingReplica && databaseAccessManager.hasWritten()) {
+                    recordWrite(request);
                 }
+                // Closing the connections also closes the statements cached for this request, and
+                // clears the routing state so it doesn't carry over to the next request on this thread.
+                databaseAccessManager.close();
             }
     	}
     }
 
+    private boolean wroteRecently(final ServletRequest request) {
+        HttpSession session = getSession(request);
+        if(session == null) {
+            return false;
+        }
+        Long readPrimaryUntil = (Long) session.getAttribute(READ_PRIMARY_UNTIL_ATTRIBUTE);
+        return readPrimaryUntil != null && readPrimaryUntil > System.currentTimeMillis();
+    }
+
+    private void recordWrite(final ServletRequest request) {
+        HttpSession session = getSession(request);
+        if(session != null) {
+            session.setAttribute(READ_PRIMARY_UNTIL_ATTRIBUTE, System.currentTimeMillis() + READ_YOUR_WRITES_WINDOW);
+        }
+    }
+
+    private HttpSession getSession(final ServletRequest request) {
+        return request instanceof HttpServletRequest ? ((HttpServletRequest) request).getSession(false) : null;
+    }
+
     private boolean isPoolInitialised() {
         return Repositories.databasePoolFactory.isConfigured();
     }
@@ -21,7 +21,6 @@ import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
 import com.enterprisepasswordsafe.engine.passwords.AuditingLevel;
 import com.enterprisepasswordsafe.engine.users.UserClassifier;
 import com.enterprisepasswordsafe.engine.utils.DateFormatter;
-import com.enterprisepasswordsafe.ui.web.utils.EmailerThread;
 import com.enterprisepasswordsafe.ui.web.utils.RedirectException;
 import com.enterprisepasswordsafe.ui.web.utils.SecurityUtils;
 import com.enterprisepasswordsafe.ui.web.utils.ServletUtils;
@@ -87,8 +86,8 @@ public final class ChangePassword extends AbstractPasswordManipulatingServlet {
 			try {
 				Set<String> emailAddresses = pDAO.getEmailsOfUsersWithAccess(password);
 				String message =  "The password for "+password+" has changed.";
-				EmailerThread emailer = new EmailerThread(emailAddresses, "Change of password", message);
-				emailer.start();
+				OutboundMailQueue.getInstance().enqueue(ConfigurationDAO.getValue(ConfigurationOption.SMTP_FROM),
+						emailAddresses, "Change of password", message);
 			} catch (Exception excpt) {
 				log("Error attempting to send password change notifications.",
 						excpt);
@@ -43,6 +43,7 @@ public final class Configure extends HttpServlet {
         ConfigurationOption.PASSWORD_ON_SCREEN_TIME,
         ConfigurationOption.PROPERTY_SERVER_BASE_URL,
         ConfigurationOption.REJECT_HISTORICAL_EXPIRY_DATES,
+        ConfigurationOption.EXPIRY_DIGEST_ENABLED,
         ConfigurationOption.DEFAULT_HIERARCHY_ACCESS_RULE,
         ConfigurationOption.HIDE_EMPTY_FOLDERS,
         ConfigurationOption.STORE_PASSWORD_HISTORY,
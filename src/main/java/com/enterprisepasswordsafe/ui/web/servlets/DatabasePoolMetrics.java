@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.ui.web.servlets;
+
+import com.enterprisepasswordsafe.database.dbpool.DatabasePool;
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.utils.LatencyHistogram;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Servlet publishing the state of the database connection pool in the Prometheus text format.
+ */
+
+public final class DatabasePoolMetrics extends HttpServlet {
+
+    /**
+     * @see javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+     */
+	@Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+    	throws ServletException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setHeader("Cache-Control", "no-store");
+
+        try {
+            DatabasePool pool = Repositories.databasePoolFactory.getInstance();
+            Map<String, DatabasePool.Metrics> metricsByPool = new LinkedHashMap<>();
+            metricsByPool.put("primary", pool.getMetrics());
+            if (pool.getReplicaMetrics() != null) {
+                metricsByPool.put("replica", pool.getReplicaMetrics());
+            }
+
+            PrintWriter writer = response.getWriter();
+            writeGauge(writer, "eps_db_pool_active_connections", "Connections currently in use",
+                    metricsByPool, DatabasePool.Metrics::getActive);
+            writeGauge(writer, "eps_db_pool_idle_connections", "Connections waiting in the pool",
+                    metricsByPool, DatabasePool.Metrics::getIdle);
+            writeGauge(writer, "eps_db_pool_waiting_threads", "Threads waiting for a connection",
+                    metricsByPool, DatabasePool.Metrics::getWaiters);
+            writeGauge(writer, "eps_db_pool_max_connections", "The maximum size of the pool",
+                    metricsByPool, DatabasePool.Metrics::getMaxTotal);
+
+            writer.println("# HELP eps_db_pool_borrow_timeouts_total Borrows which found no valid connection in time");
+            writer.println("# TYPE eps_db_pool_borrow_timeouts_total counter");
+            for (Map.Entry<String, DatabasePool.Metrics> entry : metricsByPool.entrySet()) {
+                writer.println("eps_db_pool_borrow_timeouts_total" + labels(entry.getKey(), null) + " "
+                        + entry.getValue().getBorrowTimeouts());
+            }
+
+            writeHistograms(writer, metricsByPool);
+            writer.flush();
+        } catch(Exception e) {
+        	throw new ServletException("The database pool metrics could not be generated due to an error.", e);
+        }
+    }
+
+    private void writeGauge(final PrintWriter writer, final String name, final String help,
+                            final Map<String, DatabasePool.Metrics> metricsByPool,
+                            final ToLongFunction<DatabasePool.Metrics> value) {
+        writer.println("# HELP " + name + " " + help);
+        writer.println("# TYPE " + name + " gauge");
+        for (Map.Entry<String, DatabasePool.Metrics> entry : metricsByPool.entrySet()) {
+            writer.println(name + labels(entry.getKey(), null) + " " + value.applyAsLong(entry.getValue()));
+        }
+    }
+
+    private void writeHistograms(final PrintWriter writer, final Map<String, DatabasePool.Metrics> metricsByPool) {
+        final String name = "eps_db_pool_borrow_seconds";
+        writer.println("# HELP " + name + " Time taken to borrow a connection from the pool");
+        writer.println("# TYPE " + name + " histogram");
+
+        for (Map.Entry<String, DatabasePool.Metrics> entry : metricsByPool.entrySet()) {
+            String pool = entry.getKey();
+            LatencyHistogram histogram = entry.getValue().getBorrowTimes();
+            long[] bounds = histogram.getBucketBounds();
+            long[] counts = histogram.getCounts();
+            long cumulativeCount = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulativeCount += counts[i];
+                writer.println(name + "_bucket" + labels(pool, Double.toString(bounds[i] / 1000.0)) + " "
+                        + cumulativeCount);
+            }
+            cumulativeCount += counts[bounds.length];
+            writer.println(name + "_bucket" + labels(pool, "+Inf") + " " + cumulativeCount);
+            writer.println(name + "_sum" + labels(pool, null) + " "
+                    + (histogram.getTotalTime() / (double) TimeUnit.SECONDS.toNanos(1)));
+            writer.println(name + "_count" + labels(pool, null) + " " + cumulativeCount);
+        }
+    }
+
+    private String labels(final String pool, final String bucketBound) {
+        return bucketBound == null ? "{pool=\"" + pool + "\"}" : "{pool=\"" + pool + "\",le=\"" + bucketBound + "\"}";
+    }
+
+    /**
+     * @see javax.servlet.Servlet#getServletInfo()
+     */
+
+    @Override
+	public String getServletInfo() {
+        return "Publishes the database connection pool metrics";
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.ui.web.servlets;
+
+import com.enterprisepasswordsafe.database.EventLogChainVerifier;
+import com.enterprisepasswordsafe.ui.web.utils.SecurityUtils;
+import com.enterprisepasswordsafe.ui.web.utils.ServletUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+
+/**
+ * Servlet to let event log chain verification continue after a failure has been investigated.
+ */
+
+public final class ResetEventLogChain extends HttpServlet {
+
+    @Override
+    protected void doPost(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        String csrfToken = request.getParameter("token");
+        if(csrfToken == null
+                || !csrfToken.equals(request.getSession(true).getAttribute("csrfToken"))) {
+            throw new ServletException("Permission Denied");
+        }
+
+        try {
+            if (EventLogChainVerifier.getInstance().reset(SecurityUtils.getRemoteUser(request))) {
+                ServletUtils.getInstance().generateMessage(request, "Event log chain verification was reset.");
+            } else {
+                ServletUtils.getInstance().generateMessage(request, "Event log chain verification had not stopped.");
+            }
+        } catch(SQLException | GeneralSecurityException e) {
+            request.setAttribute("error_page", "/admin/ViewSystem");
+            throw new ServletException("Event log chain verification could not be reset.", e);
+        }
+        response.sendRedirect(response.encodeRedirectURL("/admin/ViewSystem"));
+    }
+
+    @Override
+    public String getServletInfo() {
+        return "Servlet to reset event log chain verification.";
+    }
+}
@@ -19,9 +19,11 @@ package com.enterprisepasswordsafe.ui.web.servlets;
 import com.enterprisepasswordsafe.database.HierarchyNode;
 import com.enterprisepasswordsafe.database.HierarchyNodeDAO;
 import com.enterprisepasswordsafe.database.Password;
+import com.enterprisepasswordsafe.database.PasswordSearchIndexDAO;
 import com.enterprisepasswordsafe.database.User;
 import com.enterprisepasswordsafe.database.actions.PasswordSearchAction;
-import com.enterprisepasswordsafe.engine.hierarchy.HierarchyTools;
+import com.enterprisepasswordsafe.engine.users.UserClassifier;
+import com.enterprisepasswordsafe.engine.utils.HierarchySearcher;
 import com.enterprisepasswordsafe.ui.web.utils.SecurityUtils;
 
 import javax.servlet.ServletException;
@@ -29,14 +31,15 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Predicate;
 
 public class SearchServlet extends HttpServlet {
 
-    private final HierarchyTools hierarchyTools = new HierarchyTools();
-
     @Override
     protected void doGet(final HttpServletRequest request,
                          final HttpServletResponse response) throws ServletException, IOException {
@@ -48,7 +51,8 @@ public class SearchServlet extends HttpServlet {
             throws ServletException, IOException {
         try {
             User thisUser = SecurityUtils.getRemoteUser(request);
-            PasswordSearchAction search = new PasswordSearchAction(thisUser, getSearchTests(request));
+            PasswordSearchAction search =
+                    new PasswordSearchAction(thisUser, getSearchTests(request), getCandidateIds(request));
 
             HierarchyNode node = null;
             String searchAll = request.getParameter("searchall");
@@ -65,7 +69,11 @@ public class SearchServlet extends HttpServlet {
                 node = hnDAO.getById(HierarchyNode.ROOT_NODE_ID);
             }
 
-            hierarchyTools.processObjectNodes(node, thisUser, search, true);
+            HierarchySearcher.getInstance().searchHierarchy(hnDAO, node, thisUser, search, true);
+
+            if (new UserClassifier().isAdministrator(thisUser)) {
+                PasswordSearchIndexDAO.getInstance().rebuildInBackgroundIfNeeded(thisUser);
+            }
 
             request.setAttribute("passwordmap", search.getResults());
             request.setAttribute("resultcount", Integer.toString(search.getResultCount()));
@@ -78,6 +86,34 @@ public class SearchServlet extends HttpServlet {
     }
 
 
+    /**
+     * Get the IDs of the only passwords which could match the search from the search index.
+     *
+     * @return The candidate IDs, or null if every password needs to be checked.
+     */
+
+    protected Set<String> getCandidateIds(final HttpServletRequest request)
+            throws SQLException, GeneralSecurityException {
+        Set<String> candidates = null;
+        candidates = intersectCandidates(candidates, PasswordSearchIndexDAO.USERNAME_FIELD, request.getParameter("username"));
+        candidates = intersectCandidates(candidates, PasswordSearchIndexDAO.LOCATION_FIELD, request.getParameter("system"));
+        candidates = intersectCandidates(candidates, PasswordSearchIndexDAO.NOTES_FIELD, request.getParameter("notes"));
+        return candidates;
+    }
+
+    private Set<String> intersectCandidates(final Set<String> candidates, final String field, final String searchString)
+            throws SQLException, GeneralSecurityException {
+        Set<String> fieldCandidates = PasswordSearchIndexDAO.getInstance().getCandidates(field, searchString);
+        if (fieldCandidates == null) {
+            return candidates;
+        }
+        if (candidates == null) {
+            return fieldCandidates;
+        }
+        candidates.retainAll(fieldCandidates);
+        return candidates;
+    }
+
     protected List<Predicate<Password>> getSearchTests(final HttpServletRequest request) {
         List<Predicate<Password>> tests = new ArrayList<>();
         addUsernameTestIfNeeded(request, tests);
@@ -18,8 +18,10 @@ package com.enterprisepasswordsafe.ui.web.servlets;
 
 import com.enterprisepasswordsafe.database.ConfigurationDAO;
 import com.enterprisepasswordsafe.database.ConfigurationOption;
+import com.enterprisepasswordsafe.database.ExpandedTamperproofEventLogEntry;
 import com.enterprisepasswordsafe.database.TamperproofEventLogDAO;
-import com.enterprisepasswordsafe.database.TamperproofEventLogDAO.EventsForDay;
+import com.enterprisepasswordsafe.database.TamperproofEventLogDAO.EventCursor;
+import com.enterprisepasswordsafe.database.TamperproofEventLogDAO.EventsPage;
 import com.enterprisepasswordsafe.database.User;
 import com.enterprisepasswordsafe.ui.web.utils.SecurityUtils;
 import com.enterprisepasswordsafe.ui.web.utils.ServletUtils;
@@ -28,24 +30,34 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
 public final class ViewEvents extends HttpServlet {
 
     private static final String WEB_UI_PAGE = "/admin/view_events.jsp";
-    private static final String CSV_EXPORT_PAGE = "/admin/export_events_csv.jsp";
 
     private static final String DATE_FORMAT = "dd-MMM-yyyy";
+    private static final String TIME_FORMAT = "HH:mm:ss";
+
+    /**
+     * The maximum number of events shown on each page in the browser.
+     */
+
+    private static final int PAGE_SIZE = 250;
 
     private static final String START_DATE_PARAMETER = "startdate";
     private static final String END_DATE_PARAMETER = "enddate";
     private static final String USER_LIMIT_PARAMETER = "ulimit";
+    private static final String CURSOR_PARAMETER = "cursor";
 
     @Override
     public void doGet(final HttpServletRequest request, final HttpServletResponse response)
@@ -67,15 +79,72 @@ public final class ViewEvents extends HttpServlet {
         User remoteUser = getCurrentUserAndStoreInRequest(request);
 
         try {
-            List<EventsForDay> events = TamperproofEventLogDAO.getInstance().
-                    getEventsForDateRange(startDate.getTimeInMillis(), endDate.getTimeInMillis(),
-                        userLimit, passwordLimit, remoteUser, false, true);
-            request.setAttribute("events", events);
+            if (isCSVExport(request)) {
+                exportEvents(response, startDate.getTimeInMillis(), endDate.getTimeInMillis(),
+                        userLimit, passwordLimit, remoteUser);
+                return;
+            }
+
+            EventsPage page = TamperproofEventLogDAO.getInstance().
+                    getEventsPage(startDate.getTimeInMillis(), endDate.getTimeInMillis(),
+                        userLimit, passwordLimit, remoteUser, false, true,
+                        EventCursor.parse(request.getParameter(CURSOR_PARAMETER)), PAGE_SIZE);
+            request.setAttribute("events", page.getDays());
+            if (page.getNextCursor() != null) {
+                request.setAttribute("nextCursor", page.getNextCursor().toString());
+            }
         } catch (SQLException | GeneralSecurityException e) {
             throw new ServletException(e);
         }
 
-        request.getRequestDispatcher(determineNextPage(request)).forward(request, response);
+        request.getRequestDispatcher(WEB_UI_PAGE).forward(request, response);
+    }
+
+    /**
+     * Write the events as CSV as they are read from the database, so that large date ranges can be
+     * exported without holding every event in memory.
+     */
+
+    private void exportEvents(final HttpServletResponse response, final long startDate, final long endDate,
+                              final String userLimit, final String passwordLimit, final User remoteUser)
+            throws SQLException, GeneralSecurityException, IOException {
+        String delimiter = ConfigurationDAO.getValue(ConfigurationOption.REPORT_SEPARATOR);
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        SimpleDateFormat timeFormat = new SimpleDateFormat(TIME_FORMAT);
+
+        response.setContentType("text/csv");
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader("Content-Disposition","attachment; filename=\"EPS_Events.csv\"");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        writer.write("\"Date\",\"Time\",\"Username\",\"Password\",\"Event\",\"Tamperstamp Status\"");
+        TamperproofEventLogDAO.getInstance().streamEvents(startDate, endDate, userLimit, passwordLimit,
+                remoteUser, false, true, event -> {
+                    writer.write('\n');
+                    writer.write(dateFormat.format(event.getDate()));
+                    writer.write(delimiter);
+                    writer.write(timeFormat.format(event.getDate()));
+                    writer.write(delimiter);
+                    writer.write(event.getUsername() == null ? "\" \"" : event.getUsername());
+                    writer.write(delimiter);
+                    writer.write(event.getItem() == null ? "" : event.getItem());
+                    writer.write(delimiter);
+                    writer.write(event.getHumanReadableMessage());
+                    writer.write(delimiter);
+                    writer.write(getTamperstampDescription(event.getTamperstampStatus()));
+                });
+        writer.flush();
+    }
+
+    private String getTamperstampDescription(final ExpandedTamperproofEventLogEntry.Status status) {
+        switch (status) {
+            case UNKNOWN:
+                return "Unavailable";
+            case OK:
+                return "Untampered";
+            default:
+                return "Tampered";
+        }
     }
 
     private User getCurrentUserAndStoreInRequest(HttpServletRequest request)
@@ -138,27 +207,8 @@ public final class ViewEvents extends HttpServlet {
         return cal;
     }
 
-    private String determineNextPage(HttpServletRequest request)
-        throws ServletException {
-        if( isCSVExport(request) ) {
-            prepareExport(request);
-            return CSV_EXPORT_PAGE;
-        }
-
-        return WEB_UI_PAGE;
-    }
-
     private boolean isCSVExport(final HttpServletRequest request) {
         String isExport = request.getParameter("export");
         return (isExport != null && !isExport.isEmpty() && isExport.charAt(0) == 'Y');
     }
-
-    private void prepareExport(HttpServletRequest request)
-        throws ServletException {
-        try {
-            request.setAttribute("delimiter", ConfigurationDAO.getInstance().get(ConfigurationOption.REPORT_SEPARATOR));
-        } catch (SQLException e) {
-            throw new ServletException(e);
-        }
-    }
 }
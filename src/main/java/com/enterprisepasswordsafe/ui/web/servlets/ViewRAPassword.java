@@ -81,7 +81,7 @@ public final class ViewRAPassword extends HttpServlet {
 
 	        Set<ApproverSummary> approvers = AccessRoleDAO.getInstance().getApprovers(passwordId, ignoreUserId);
 
-	    	new ApprovalRequestMailer(approvers, thisUser, password, raRequest, approvalURL).start();
+	    	new ApprovalRequestMailer(approvers, thisUser, password, raRequest, approvalURL).send();
 
 	    	request.setAttribute("otid", request.getSession().getAttribute("nextOtid"));
 	    	request.getRequestDispatcher("/system/ViewPassword").forward(request, response);
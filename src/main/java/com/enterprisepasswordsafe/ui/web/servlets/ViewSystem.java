@@ -16,8 +16,17 @@
 
 package com.enterprisepasswordsafe.ui.web.servlets;
 
+import com.enterprisepasswordsafe.database.AuthenticationSource;
+import com.enterprisepasswordsafe.database.AuthenticationSourceDAO;
 import com.enterprisepasswordsafe.database.BOMFactory;
+import com.enterprisepasswordsafe.database.EventLogChainDAO;
+import com.enterprisepasswordsafe.database.User;
 import com.enterprisepasswordsafe.database.UserDAO;
+import com.enterprisepasswordsafe.database.UserRekeyDAO;
+import com.enterprisepasswordsafe.database.dbpool.DatabasePool;
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.jaas.JAASAuthenticator;
+import com.enterprisepasswordsafe.engine.utils.LatencyHistogram;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -25,8 +34,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.sql.DatabaseMetaData;
+import java.util.Date;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -55,6 +66,60 @@ public final class ViewSystem extends HttpServlet {
 	            log("Error counting enabled users.", ex);
 	        }
 
+	        try {
+	            for (UserRekeyDAO.RekeyProgress progress : UserRekeyDAO.getInstance().getAll()) {
+	                User user = UserDAO.getInstance().getById(progress.getUserId());
+	                systemProperties.put(
+	                        "Access key change for " + (user == null ? progress.getUserId() : user.getUserName()),
+	                        progress.getItemsDone() + " of " + progress.getItemsTotal()
+	                            + " access controls re-encrypted, last progress at " + new Date(progress.getUpdated())
+	                    );
+	            }
+	        } catch (Exception ex) {
+	            log("Error fetching access key change progress.", ex);
+	        }
+
+	        try {
+	            EventLogChainDAO chainDAO = EventLogChainDAO.getInstance();
+	            long stoppedAt = chainDAO.getStoppedAt();
+	            if (stoppedAt != -1) {
+	                systemProperties.put("Event Log Chain",
+	                        "Verification stopped at entry " + stoppedAt + " and needs resetting");
+	                request.setAttribute("eventLogChainStopped", Boolean.TRUE);
+	            } else if (chainDAO.isEnabled()) {
+	                systemProperties.put("Event Log Chain", "Verified up to entry " + chainDAO.getVerifiedUpTo());
+	            }
+	        } catch (Exception ex) {
+	            log("Error fetching the event log chain status.", ex);
+	        }
+
+	        try {
+	            for (Map.Entry<String, JAASAuthenticator.LoginMetrics> entry
+	                    : JAASAuthenticator.getInstance().getMetrics().entrySet()) {
+	                AuthenticationSource source = AuthenticationSourceDAO.getInstance().getById(entry.getKey());
+	                JAASAuthenticator.LoginMetrics metrics = entry.getValue();
+	                systemProperties.put(
+	                        "Logins via " + (source == null ? entry.getKey() : source.getName()),
+	                        metrics.getAttempts() + " attempts, " + metrics.getFailures() + " failed, "
+	                            + String.format("%.1f", metrics.getLoginsPerMinute()) + " per minute, average "
+	                            + TimeUnit.NANOSECONDS.toMillis(metrics.getAverageTime()) + "ms, longest "
+	                            + TimeUnit.NANOSECONDS.toMillis(metrics.getMaximumTime()) + "ms"
+	                    );
+	            }
+	        } catch (Exception ex) {
+	            log("Error fetching login metrics.", ex);
+	        }
+
+	        try {
+	            DatabasePool pool = Repositories.databasePoolFactory.getInstance();
+	            systemProperties.put("Database Connections", describe(pool.getMetrics()));
+	            if (pool.getReplicaMetrics() != null) {
+	                systemProperties.put("Database Replica Connections", describe(pool.getReplicaMetrics()));
+	            }
+	        } catch (Exception ex) {
+	            log("Error fetching database pool metrics.", ex);
+	        }
+
 	        systemProperties.put("EPS Version", "20120418-DEV"); //CheckLicence.CURRENT_VERSION_NUMBER+"."+CheckLicence.CURRENT_PATCH_NUMBER);
 	        systemProperties.put("Database", metaData.getDatabaseProductName());
 	        systemProperties.put("Database URL", metaData.getURL());
@@ -76,6 +141,16 @@ public final class ViewSystem extends HttpServlet {
         }
     }
 
+    private String describe(final DatabasePool.Metrics metrics) {
+        LatencyHistogram borrowTimes = metrics.getBorrowTimes();
+        long borrows = borrowTimes.getCount();
+        return metrics.getActive() + " of " + metrics.getMaxTotal() + " in use, " + metrics.getIdle()
+            + " idle, " + metrics.getWaiters() + " waiting, " + borrows + " borrowed, "
+            + metrics.getBorrowTimeouts() + " timed out, average wait "
+            + (borrows == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(borrowTimes.getTotalTime() / borrows))
+            + "ms, longest " + metrics.getMaxBorrowWaitMillis() + "ms";
+    }
+
     /**
      * Converts any semicolons in the string into line breaks.
      *
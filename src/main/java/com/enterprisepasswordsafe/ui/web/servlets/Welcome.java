@@ -112,6 +112,7 @@ public final class Welcome extends PasswordSafeBaseServlet {
 					request.getRequestDispatcher("/admin/upgrades_available.jsp").forward(request, response);
 					return;
 				}
+				PasswordDAO.getInstance().backfillExpiryIndexInBackgroundIfNeeded(thisUser);
 			}
 
 	    	// If not check for expiring passwords.
@@ -25,7 +25,6 @@ import com.enterprisepasswordsafe.ui.web.utils.SecurityUtils;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.PrintWriter;
 
 /**
  * Servlet to generate the user access report.
@@ -52,19 +51,7 @@ public final class UserAccessCSV extends BaseExporter {
 	                true
 	    		);
 
-	        PrintWriter pw = response.getWriter();
-
-	        String separator = getSeparator();
-	        pw.print("User");
-	        pw.print(separator);
-	        pw.print("Password");
-	        pw.print(separator);
-	        pw.print("Group");
-	        pw.print(separator);
-	        pw.print("Access");
-	        pw.println();
-
-            AccessReport.getInstance().generateReport(user, pw, separator);
+            AccessReport.getInstance().generateReport(user, response.getWriter(), getSeparator());
 
         } catch(Exception e) {
         	throw new ServletException("The access controls could not be exported due to an error.", e);
@@ -18,31 +18,19 @@ package com.enterprisepasswordsafe.ui.web.utils;
 
 import com.enterprisepasswordsafe.database.*;
 
-import javax.mail.Message;
-import javax.mail.MessagingException;
-import javax.mail.Session;
-import javax.mail.Transport;
-import javax.mail.internet.AddressException;
-import javax.mail.internet.InternetAddress;
-import javax.mail.internet.MimeMessage;
-import java.sql.SQLException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
 /**
- * The class responsible for mailing notifications that a password has been accessed. Mailing
- * is performed in a seperate thread to the main one.
+ * The class responsible for mailing notifications that a password has been accessed. The
+ * notification is queued and sent to all of the approvers in a single message.
  */
-public class ApprovalRequestMailer
-	extends Thread {
-
-	/**
-	 * The list of mailers currently working.
-	 */
-
-	private static final List<ApprovalRequestMailer> activeMailers = new ArrayList<>();
+public class ApprovalRequestMailer {
 
 	/**
 	 * The set of approvers to send the messages to
@@ -50,12 +38,6 @@ public class ApprovalRequestMailer
 
 	private final Set<AccessRole.ApproverSummary> recipients;
 
-	/**
-	 * The SMTP server to send the mail via.
-	 */
-
-	private final String smtpServer;
-
 	/**
 	 * The sender for the messages.
 	 */
@@ -75,15 +57,11 @@ public class ApprovalRequestMailer
 	private final String messageText;
 
 	/**
-	 * Constructors, stores the information and starts the sender.
+	 * Constructors, stores the information.
 	 */
 	public ApprovalRequestMailer(final Set<AccessRole.ApproverSummary> approvers, final User requester,
                                  final Password password, final RestrictedAccessRequest request,
-                                 final String approvalURL)
-		throws SQLException {
-
-        smtpServer = ConfigurationDAO.getValue(ConfigurationOption.SMTP_HOST);
-
+                                 final String approvalURL) {
 		sender = requester.getEmail();
 		if( sender == null ) {
 			sender = "eps@enterprise-password-safe.com";
@@ -108,70 +86,27 @@ public class ApprovalRequestMailer
 		messageTextBuffer.append(approvalURL);
 
 		messageText = messageTextBuffer.toString();
-
-		activeMailers.add(this);
 	}
 
 	/**
-	 * Run method. Tries to send all emails individually so if there is a problem with one
-	 * the others can get out.
+	 * Queues the notification for all of the approvers which have an Email address.
 	 */
 
-	@Override
-	public void run() {
+	public void send() {
+		List<String> addresses = new ArrayList<>(recipients.size());
 		for(AccessRole.ApproverSummary summary : recipients) {
 			String mailAddress = summary.getEmail();
-			try {
-				sendEmail(mailAddress);
-			} catch(Exception ex) {
-	            Logger.
-	            	getLogger(ApprovalRequestMailer.class.getName()).
-                    	log(Level.SEVERE, "Unable to send mail to "+mailAddress, ex);
-
+			if (mailAddress != null) {
+				addresses.addAll(Arrays.asList(mailAddress.split(";")));
 			}
 		}
-		activeMailers.remove(this);
-	}
 
-    /**
-     * Sends an Email to to register an event.
-     *
-     * @param recipient The recipient to sent the email to.
-     *
-     * @throws AddressException
-     *             Thrown if there is a problem sending the event Email.
-     * @throws MessagingException
-     *             Thrown if there is a problem sending the event Email.
-     */
-
-    public void sendEmail(final String recipient)
-    	throws AddressException, MessagingException {
-    	if( recipient == null )
-    		return;
-
-    	if( smtpServer == null ) {
-    		throw new MessagingException("An SMTP Server has not been specified");
-    	}
-
-        Properties props = new Properties();
-        props.put("mail.smtp.host", smtpServer);
-        Session s = Session.getInstance(props, null);
-
-        MimeMessage message = new MimeMessage(s);
-
-        InternetAddress from = new InternetAddress(sender);
-        message.setFrom(from);
-
-        StringTokenizer recipientTokenizer = new StringTokenizer(recipient, ";");
-        while (recipientTokenizer.hasMoreTokens()) {
-            InternetAddress to = new InternetAddress(recipientTokenizer
-                    .nextToken());
-            message.addRecipient(Message.RecipientType.TO, to);
-        }
-
-        message.setSubject(subject);
-        message.setText(messageText);
-
-        Transport.send(message);
-    }
+		try {
+			OutboundMailQueue.getInstance().enqueue(sender, addresses, subject, messageText);
+		} catch(Exception ex) {
+			Logger.
+				getLogger(ApprovalRequestMailer.class.getName()).
+				log(Level.SEVERE, "Unable to send mail to "+addresses, ex);
+		}
+	}
 }
@@ -342,6 +342,22 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
     </select>
 </div>
 
+<div class="form-group">
+    <label for="expiry.digest">Email users a daily expiry digest :</label>
+    <select name="expiry.digest" id="expiry.digest" class="form-control">
+        <c:choose>
+            <c:when test="${requestScope.expiry_digest == 'Y'}">
+                <option value="Y" selected="selected">Yes</option>
+                <option value="N">No</option>
+            </c:when>
+            <c:otherwise>
+                <option value="Y">Yes</option>
+                <option value="N" selected="selected">No</option>
+            </c:otherwise>
+        </c:choose>
+    </select>
+</div>
+
 
 <div class="row">
     <div class="col-md-12"><h3>Password Retention and Auditing</h3></div>
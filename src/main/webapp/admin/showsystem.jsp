@@ -26,5 +26,21 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
             <div class="col-md-8 text-left"><c:out value="${thisEntry.value}" /></div>
         </div>
     </c:forEach>
+    <c:if test="${requestScope.eventLogChainStopped}">
+        <div class="spacer">&nbsp;</div>
+        <form action="<c:url value='/admin/ResetEventLogChain' />" method="POST"
+              accept-charset="UTF-8" name="resetchain">
+            <fieldset>
+                <input type="hidden" name="token" value="<c:out value='${sessionScope.csrfToken}' />"/>
+                <div class="row">
+                    <div class="col-md-8 col-md-offset-4 text-left">
+                        <button type="submit" class="btn btn-sm btn-primary" name="action" value="reset">
+                            Continue Event Log Chain Verification
+                        </button>
+                    </div>
+                </div>
+            </fieldset>
+        </form>
+    </c:if>
 </body>
 </html>
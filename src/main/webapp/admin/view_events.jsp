@@ -87,6 +87,27 @@ OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
 
 <jsp:include page="/WEB-INF/includes/display_events.jsp" />
 
+<c:if test="${not empty requestScope.nextCursor}">
+    <form action="<c:url value='/admin/ViewEvents' />" method="POST" accept-charset="ISO-8859-1"
+          class="form-horizontal" role="form" name="NextEvents">
+        <input type="hidden" name="startdate" value="${requestScope.startdate}"/>
+        <input type="hidden" name="enddate" value="${requestScope.enddate}"/>
+        <c:if test="${not empty requestScope.ulimit}">
+            <input type="hidden" name="ulimit" value="<c:out value='${requestScope.ulimit}'/>"/>
+        </c:if>
+        <c:if test="${not empty requestScope.id}">
+            <input type="hidden" name="id" value="<c:out value='${requestScope.id}'/>"/>
+        </c:if>
+        <input type="hidden" name="export" value="N"/>
+        <input type="hidden" name="cursor" value="${requestScope.nextCursor}"/>
+        <div class="row">
+            <div class="col-md-12 text-center">
+                <button type="submit" class="btn btn-default">More Events</button>
+            </div>
+        </div>
+    </form>
+</c:if>
+
 <script src="<c:url value='/js/bootstrap-datepicker.js' />"></script>
 <script src="<c:url value='/js/eventlogdatepicker.js'/>"></script>
 </body>
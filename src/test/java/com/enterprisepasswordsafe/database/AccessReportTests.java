@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
+import com.enterprisepasswordsafe.engine.reports.AccessReport;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for the report of who can access each password.
+ */
+public class AccessReportTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testReportListsDirectAndGroupAccess()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        String[] expected = createGrants(adminUser, runId);
+
+        StringWriter output = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(output)) {
+            AccessReport.getInstance().generateReport(adminUser, printWriter, ",");
+        }
+
+        List<String> lines = List.of(output.toString().split(System.lineSeparator()));
+        Assertions.assertEquals("User,Password,Group,Access", lines.get(0));
+        for (String line : expected) {
+            Assertions.assertTrue(lines.contains(line), "Missing " + line);
+        }
+    }
+
+    @Test
+    public void testReportCanBeWrittenToAFileInTheBackground()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        String[] expected = createGrants(adminUser, runId);
+
+        File destination = File.createTempFile("access", ".csv");
+        try {
+            File written = AccessReport.getInstance()
+                    .generateReportInBackground(adminUser, destination, ",")
+                    .get(60, TimeUnit.SECONDS);
+            List<String> lines = Files.readAllLines(written.toPath(), StandardCharsets.UTF_8);
+            for (String line : expected) {
+                Assertions.assertTrue(lines.contains(line), "Missing " + line);
+            }
+        } finally {
+            Files.deleteIfExists(destination.toPath());
+        }
+    }
+
+    /**
+     * Create a user with read access to a password directly and modify access via a group.
+     *
+     * @return The report lines expected for the user.
+     */
+
+    private String[] createGrants(final User adminUser, final String runId)
+            throws Exception {
+        User user = UserTestUtils.createUser(adminUser, "report_" + runId);
+        Group group = GroupDAO.getInstance().create(adminUser, "report_" + runId);
+        MembershipDAO.getInstance().create(user, group);
+
+        Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId, "l" + runId);
+        UserAccessControlDAO.getInstance().create(user, password, PasswordPermission.READ);
+        GroupAccessControlDAO.getInstance().create(group, password, PasswordPermission.MODIFY);
+
+        return new String[] {
+            "report_" + runId + ",u" + runId + "@l" + runId + ",None,Read-Only",
+            "report_" + runId + ",u" + runId + "@l" + runId + ",report_" + runId + ",Read-Write"
+        };
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Compares building the user access summaries for a password with a pair of queries per user against
+ * the set based queries.
+ */
+public class AccessSummaryBenchmarkTests extends BenchmarkTestBase {
+
+    private static final int USER_COUNT = 3_000;
+
+    private static final String BENCHMARK_ID_PREFIX = "bm";
+
+    /**
+     * The set based queries were around twice as fast when they were introduced.
+     */
+
+    private static final double MINIMUM_SPEED_UP = 1.5;
+
+    @Test
+    public void benchmarkPerUserQueriesAgainstSetBasedQueries()
+            throws Exception {
+        User adminUser = getAdminUser();
+        Password password = PasswordTestUtils.createPassword(adminUser, "benchmark-user", "benchmark-location");
+
+        AccessSummaryTests.seedUsers(BENCHMARK_ID_PREFIX, USER_COUNT);
+        try {
+            for (int i = 0; i < USER_COUNT; i += 10) {
+                AccessSummaryTests.grantUserAccess(BENCHMARK_ID_PREFIX + i, password.getId(), i % 20 == 0,
+                        AccessRole.HISTORYVIEWER_ROLE);
+            }
+
+            int[] readable = new int[2];
+            long perUserTime = time(() -> readable[0] = countPerUser(password.getId()));
+            long setBasedTime = time(() -> {
+                for (AccessSummary summary : UserAccessControlDAO.getInstance().getSummaries(password)) {
+                    if (summary.isReadable()) {
+                        readable[1]++;
+                    }
+                }
+            });
+
+            Assertions.assertEquals(readable[0], readable[1]);
+            assertFaster(perUserTime, setBasedTime, MINIMUM_SPEED_UP);
+        } finally {
+            AccessSummaryTests.deleteUsers(BENCHMARK_ID_PREFIX);
+        }
+    }
+
+    /**
+     * The summary construction used before the set based queries; one access control and one
+     * role query for every user in the system.
+     */
+
+    private int countPerUser(final String itemId)
+            throws SQLException {
+        int readable = 0;
+        try (PreparedStatement uacPS = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT uac.rkey, uac.mkey FROM user_access_control uac "
+                        + " WHERE uac.item_id = ? AND uac.user_id = ? AND uac.rkey is not null ");
+             PreparedStatement uarPS = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT uar.role FROM user_access_roles uar WHERE uar.item_id = ? AND uar.actor_id = ?")) {
+            uacPS.setString(1, itemId);
+            uarPS.setString(1, itemId);
+            for (User user : UserDAO.getInstance().getAll()) {
+                uacPS.setString(2, user.getId());
+                try (ResultSet rs = uacPS.executeQuery()) {
+                    if (rs.next()) {
+                        readable++;
+                    }
+                }
+                uarPS.setString(2, user.getId());
+                try (ResultSet rs = uarPS.executeQuery()) {
+                    while (rs.next()) {
+                        rs.getString(1);
+                    }
+                }
+            }
+        }
+        return readable;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Test cases for the access summaries shown when altering access to a password
+ */
+public class AccessSummaryTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testSummariesReflectGrants()
+            throws Exception {
+        String prefix = "as" + System.currentTimeMillis() + "_";
+        User adminUser = getAdminUser();
+        Password password = PasswordTestUtils.createPassword(adminUser, "summary", "summary-location");
+
+        seedUsers(prefix, 3);
+        try {
+            grantUserAccess(prefix + 0, password.getId(), false, AccessRole.HISTORYVIEWER_ROLE);
+            grantUserAccess(prefix + 1, password.getId(), true, AccessRole.APPROVER_ROLE);
+
+            Set<AccessSummary> users = UserAccessControlDAO.getInstance().getSummaries(password);
+            assertSummary(users, prefix + 0, true, false, false, true);
+            assertSummary(users, prefix + 1, true, true, true, false);
+            assertSummary(users, prefix + 2, false, false, false, false);
+
+            Set<AccessSummary> groups = GroupAccessControlDAO.getInstance().getSummaries(password);
+            assertSummary(groups, Group.ADMIN_GROUP_ID, true, true, false, false);
+        } finally {
+            deleteUsers(prefix);
+        }
+    }
+
+    private void assertSummary(final Set<AccessSummary> summaries, final String id, final boolean canRead,
+                               final boolean canModify, final boolean canApprove, final boolean canViewHistory) {
+        for (AccessSummary summary : summaries) {
+            if (summary.getId().equals(id)) {
+                Assertions.assertEquals(canRead, summary.isReadable());
+                Assertions.assertEquals(canModify, summary.isModifiable());
+                Assertions.assertEquals(canApprove, summary.isRestrictedAccessApprover());
+                Assertions.assertEquals(canViewHistory, summary.isHistoryViewer());
+                return;
+            }
+        }
+        Assertions.fail("No summary for " + id);
+    }
+
+    /**
+     * Add enabled users with IDs and names made up of the prefix and a number.
+     */
+    static void seedUsers(final String prefix, final int count)
+            throws SQLException {
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO application_users(user_id, user_name, disabled) VALUES (?, ?, 'N')")) {
+            for (int i = 0; i < count; i++) {
+                ps.setString(1, prefix + i);
+                ps.setString(2, prefix + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    static void grantUserAccess(final String userId, final String itemId, final boolean canModify,
+                                final String role)
+            throws SQLException {
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO user_access_control(user_id, item_id, rkey, mkey) VALUES (?, ?, ?, ?)")) {
+            ps.setString(1, userId);
+            ps.setString(2, itemId);
+            ps.setBytes(3, new byte[] { 1 });
+            ps.setBytes(4, canModify ? new byte[] { 1 } : null);
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO user_access_roles(item_id, actor_id, role) VALUES (?, ?, ?)")) {
+            ps.setString(1, itemId);
+            ps.setString(2, userId);
+            ps.setString(3, role);
+            ps.executeUpdate();
+        }
+    }
+
+    static void deleteUsers(final String prefix)
+            throws SQLException {
+        for (String sql : new String[] {
+                "DELETE FROM user_access_roles WHERE actor_id LIKE ?",
+                "DELETE FROM user_access_control WHERE user_id LIKE ?",
+                "DELETE FROM application_users WHERE user_id LIKE ?" }) {
+            try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(sql)) {
+                ps.setString(1, prefix + "%");
+                ps.executeUpdate();
+            }
+        }
+    }
+}
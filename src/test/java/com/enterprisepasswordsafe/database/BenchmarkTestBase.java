@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for benchmarks comparing an implementation with the one it replaced. Benchmarks seed large
+ * amounts of data, so are only run when the eps.benchmark system property is set to true.
+ */
+abstract class BenchmarkTestBase extends EmbeddedDatabaseTestBase {
+
+    @BeforeAll
+    public static void checkBenchmarksEnabled() {
+        Assumptions.assumeTrue(Boolean.getBoolean("eps.benchmark"), "eps.benchmark is not set to true");
+    }
+
+    /**
+     * Work being timed.
+     */
+
+    interface Work {
+        void run() throws Exception;
+    }
+
+    /**
+     * Time a piece of work.
+     *
+     * @return The time taken, in nanoseconds.
+     */
+
+    static long time(final Work work)
+            throws Exception {
+        long start = System.nanoTime();
+        work.run();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Check the new implementation is faster than the previous one by at least a given factor.
+     *
+     * @param previousTime The time taken by the previous implementation, in nanoseconds.
+     * @param newTime The time taken by the new implementation, in nanoseconds.
+     * @param minimumSpeedUp The factor by which the new implementation must be faster.
+     */
+
+    static void assertFaster(final long previousTime, final long newTime, final double minimumSpeedUp) {
+        Assertions.assertTrue(previousTime >= newTime * minimumSpeedUp,
+                () -> "Expected a speed up of at least " + minimumSpeedUp + " times, but took "
+                        + TimeUnit.NANOSECONDS.toMillis(newTime) + "ms against "
+                        + TimeUnit.NANOSECONDS.toMillis(previousTime) + "ms");
+    }
+}
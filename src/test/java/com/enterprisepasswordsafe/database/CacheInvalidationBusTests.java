@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.utils.Cache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Test cases for the CacheInvalidationBus, using two buses to simulate two nodes sharing a database.
+ */
+public class CacheInvalidationBusTests extends EmbeddedDatabaseTestBase {
+
+    private static final String CACHE_NAME = "test";
+
+    @Test
+    public void testPublishInvalidatesOtherNodes() throws SQLException {
+        String key = "k" + System.currentTimeMillis();
+        CacheInvalidationBus publisher = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node1");
+        CacheInvalidationBus receiver = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node2");
+        Cache<String, String> publisherCache = new Cache<>();
+        Cache<String, String> receiverCache = new Cache<>();
+        publisher.register(CACHE_NAME, publisherCache);
+        receiver.register(CACHE_NAME, receiverCache);
+        publisherCache.put(key, "value");
+        receiverCache.put(key, "value");
+
+        publisher.publish(CACHE_NAME, key);
+        Assertions.assertNull(publisherCache.get(key));
+        Assertions.assertEquals("value", receiverCache.get(key));
+
+        receiver.poll();
+        Assertions.assertNull(receiverCache.get(key));
+    }
+
+    @Test
+    public void testNodeIgnoresItsOwnEvents() throws SQLException {
+        String key = "k" + System.currentTimeMillis();
+        CacheInvalidationBus bus = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node3");
+        Cache<String, String> cache = new Cache<>();
+        bus.register(CACHE_NAME, cache);
+
+        bus.publish(CACHE_NAME, key);
+        cache.put(key, "new value");
+        bus.poll();
+        Assertions.assertEquals("new value", cache.get(key));
+    }
+
+    @Test
+    public void testPollsOnlyDeliverNewEvents() throws SQLException {
+        String firstKey = "k1" + System.currentTimeMillis();
+        String secondKey = "k2" + System.currentTimeMillis();
+        CacheInvalidationBus publisher = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node4");
+        CacheInvalidationBus receiver = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node5");
+        Cache<String, String> receiverCache = new Cache<>();
+        receiver.register(CACHE_NAME, receiverCache);
+
+        publisher.publish(CACHE_NAME, firstKey);
+        receiver.poll();
+        receiverCache.put(firstKey, "reloaded");
+        receiverCache.put(secondKey, "value");
+
+        publisher.publish(CACHE_NAME, secondKey);
+        receiver.poll();
+        Assertions.assertEquals("reloaded", receiverCache.get(firstKey));
+        Assertions.assertNull(receiverCache.get(secondKey));
+    }
+
+    @Test
+    public void testLocalCacheIsInvalidatedAgainWhenTheTransactionEnds() throws SQLException {
+        String key = "k" + System.currentTimeMillis();
+        CacheInvalidationBus bus = new CacheInvalidationBus(CacheInvalidationDAO.getInstance(), "node6");
+        Cache<String, String> cache = new Cache<>();
+        bus.register(CACHE_NAME, cache);
+        cache.put(key, "old value");
+
+        Connection connection = BOMFactory.getCurrentConntection();
+        connection.setAutoCommit(false);
+        try {
+            bus.publish(CACHE_NAME, key);
+            Assertions.assertNull(cache.get(key));
+
+            cache.put(key, "old value");
+            connection.commit();
+            Assertions.assertNull(cache.get(key));
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void testTransportFailuresArePassedOn() {
+        String key = "k" + System.currentTimeMillis();
+        CacheInvalidationTransport failingTransport = new CacheInvalidationTransport() {
+            @Override
+            public void publish(final String origin, final String cacheName, final String eventKey)
+                    throws SQLException {
+                throw new SQLException("Transport unavailable");
+            }
+
+            @Override
+            public long deliverSince(final long sinceSequence, final Receiver receiver) {
+                return sinceSequence;
+            }
+
+            @Override
+            public void purge(final long olderThan) {
+            }
+        };
+        CacheInvalidationBus bus = new CacheInvalidationBus(failingTransport, "node7");
+        Cache<String, String> cache = new Cache<>();
+        bus.register(CACHE_NAME, cache);
+        cache.put(key, "value");
+
+        Assertions.assertThrows(SQLException.class, () -> bus.publish(CACHE_NAME, key));
+        Assertions.assertNull(cache.get(key));
+    }
+}
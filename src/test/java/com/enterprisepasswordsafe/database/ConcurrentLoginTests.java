@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.jaas.JAASAuthenticator;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.security.auth.login.LoginException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test cases for logging in against the database authentication source from several threads at once.
+ */
+public class ConcurrentLoginTests extends EmbeddedDatabaseTestBase {
+
+    private static final int THREADS = 8;
+
+    private static final int LOGINS_PER_THREAD = 5;
+
+    @Test
+    public void testConcurrentLoginsAllSucceed()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        List<User> users = createUsers("login_" + runId + "_", 4);
+        JAASAuthenticator.LoginMetrics before =
+                JAASAuthenticator.getInstance().getMetrics().get(AuthenticationSource.DEFAULT_SOURCE_ID);
+        long attemptsBefore = before == null ? 0 : before.getAttempts();
+
+        for (Future<Integer> result : runConcurrently(users, "password", THREADS, LOGINS_PER_THREAD)) {
+            Assertions.assertEquals(Integer.valueOf(0), result.get());
+        }
+
+        JAASAuthenticator.LoginMetrics metrics =
+                JAASAuthenticator.getInstance().getMetrics().get(AuthenticationSource.DEFAULT_SOURCE_ID);
+        Assertions.assertNotNull(metrics);
+        Assertions.assertTrue(metrics.getAttempts() - attemptsBefore >= THREADS * LOGINS_PER_THREAD);
+        Assertions.assertTrue(metrics.getMaximumTime() >= metrics.getAverageTime());
+        Assertions.assertTrue(metrics.getLoginsPerMinute() > 0);
+        for (User user : users) {
+            Assertions.assertEquals(0, UserDAO.getInstance().getFailedLoginAttempts(user));
+        }
+    }
+
+    @Test
+    public void testConcurrentFailuresAreAllCounted()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        List<User> users = createUsers("failure_" + runId + "_", 1);
+
+        List<Future<Integer>> results = runConcurrently(users, "wrong", 2, 1);
+        for (Future<Integer> result : results) {
+            Assertions.assertEquals(Integer.valueOf(1), result.get());
+        }
+
+        Assertions.assertEquals(2, UserDAO.getInstance().getFailedLoginAttempts(users.get(0)));
+    }
+
+    private static List<User> createUsers(final String prefix, final int count)
+            throws Exception {
+        User adminUser = UserDAO.getInstance().getByName("admin");
+        adminUser.decryptAccessKey("admin");
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            UserTestUtils.createUser(adminUser, prefix + i);
+            users.add(UserDAO.getInstance().getByName(prefix + i));
+        }
+        return users;
+    }
+
+    /**
+     * Log in as the users from several threads which all start together.
+     *
+     * @return The number of failed logins on each thread.
+     */
+
+    private static List<Future<Integer>> runConcurrently(final List<User> users, final String password,
+                                                         final int threads, final int loginsPerThread)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>(threads);
+            for (int thread = 0; thread < threads; thread++) {
+                final int threadNumber = thread;
+                Callable<Integer> logins = () -> {
+                    start.await();
+                    int failures = 0;
+                    try {
+                        for (int i = 0; i < loginsPerThread; i++) {
+                            User user = users.get((threadNumber + i) % users.size());
+                            try {
+                                UserDAO.getInstance().authenticateUser(user, password);
+                            } catch (LoginException e) {
+                                failures++;
+                            }
+                        }
+                    } finally {
+                        BOMFactory.closeCurrent();
+                    }
+                    return failures;
+                };
+                results.add(executor.submit(logins));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                result.get();
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
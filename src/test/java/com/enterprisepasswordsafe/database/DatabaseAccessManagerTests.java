@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test cases for the tasks run when a transaction ends
+ */
+public class DatabaseAccessManagerTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testCommitOnlyTasksAreDroppedOnRollback() throws SQLException {
+        List<String> run = new ArrayList<>();
+        Connection connection = BOMFactory.getCurrentConntection();
+        connection.setAutoCommit(false);
+        try {
+            BOMFactory.getInstance().runAfterTransaction(() -> run.add("transaction"));
+            BOMFactory.getInstance().runAfterCommit(() -> run.add("commit"));
+            Assertions.assertTrue(run.isEmpty());
+            connection.rollback();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        Assertions.assertEquals(Arrays.asList("transaction"), run);
+    }
+
+    @Test
+    public void testCommitOnlyTasksRunOnCommit() throws SQLException {
+        List<String> run = new ArrayList<>();
+        Connection connection = BOMFactory.getCurrentConntection();
+        connection.setAutoCommit(false);
+        try {
+            BOMFactory.getInstance().runAfterTransaction(() -> run.add("transaction"));
+            BOMFactory.getInstance().runAfterCommit(() -> run.add("commit"));
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        Assertions.assertEquals(Arrays.asList("transaction", "commit"), run);
+
+        BOMFactory.getInstance().runAfterCommit(() -> run.add("no transaction"));
+        Assertions.assertEquals("no transaction", run.get(2));
+    }
+}
@@ -25,7 +25,7 @@ import java.security.GeneralSecurityException;
 import java.sql.SQLException;
 
 
-abstract class EmbeddedDatabaseTestBase {
+public abstract class EmbeddedDatabaseTestBase {
 
     @BeforeAll
     public static void initialise()
@@ -38,7 +38,7 @@ abstract class EmbeddedDatabaseTestBase {
      * Get the admin user.
      */
 
-    User getAdminUser() throws SQLException, GeneralSecurityException {
+    protected User getAdminUser() throws SQLException, GeneralSecurityException {
         User admin = UserDAO.getInstance().getByName("admin");
         admin.decryptAccessKey("admin");
         return admin;
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.database.schema.EventLogChainTable;
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.logging.LogEventHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Test cases for the chained event log and its verifier
+ */
+public class EventLogChainTests extends EmbeddedDatabaseTestBase {
+
+    private static final int EVENT_COUNT = 5;
+
+    private Supplier<String> originalKeyRepository;
+
+    @BeforeEach
+    public void setUpChainKey() {
+        originalKeyRepository = Repositories.eventLogChainKeyRepository;
+        Repositories.eventLogChainKeyRepository = () -> "chain test key";
+    }
+
+    @AfterEach
+    public void restoreChainKey() {
+        Repositories.eventLogChainKeyRepository = originalKeyRepository;
+    }
+
+    @Test
+    public void testChainIsVerifiedAndTamperingIsDetected()
+            throws Exception {
+        String runId = "chain" + System.currentTimeMillis();
+        User adminUser = getAdminUser();
+        long start = System.currentTimeMillis() - 1000;
+
+        ConfigurationDAO.getInstance().set(ConfigurationOption.EVENT_LOG_CHAINED, "Y");
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                TamperproofEventLogDAO.getInstance().create(adminUser, null, runId + "_" + i, true,
+                        TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            }
+
+            Assertions.assertTrue(EventLogChainVerifier.getInstance().verify() >= EVENT_COUNT);
+            for (ExpandedTamperproofEventLogEntry entry : getEvents(start, runId, adminUser)) {
+                Assertions.assertEquals(ExpandedTamperproofEventLogEntry.Status.OK, entry.getTamperstampStatus());
+            }
+
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, runId + "_altered", true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                    "UPDATE event_log SET event = ? WHERE event = ?")) {
+                ps.setString(1, runId + "_changed");
+                ps.setString(2, runId + "_altered");
+                Assertions.assertEquals(1, ps.executeUpdate());
+            }
+
+            EventLogChainVerifier.getInstance().verify();
+            Assertions.assertEquals(EventLogChainDAO.STATUS_FAILED,
+                    EventLogChainDAO.getInstance().getLastCheckpoint().status);
+
+            boolean foundChanged = false;
+            for (ExpandedTamperproofEventLogEntry entry : getEvents(start, runId, adminUser)) {
+                if (entry.getHumanReadableMessage().equals(runId + "_changed")) {
+                    Assertions.assertEquals(ExpandedTamperproofEventLogEntry.Status.INVALID,
+                            entry.getTamperstampStatus());
+                    foundChanged = true;
+                } else {
+                    Assertions.assertEquals(ExpandedTamperproofEventLogEntry.Status.OK, entry.getTamperstampStatus());
+                }
+            }
+            Assertions.assertTrue(foundChanged);
+
+            Assertions.assertEquals(0, EventLogChainVerifier.getInstance().verify());
+            Assertions.assertTrue(EventLogChainVerifier.getInstance().reset(adminUser));
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, runId + "_after", true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            Assertions.assertTrue(EventLogChainVerifier.getInstance().verify() >= 1);
+            Assertions.assertEquals(EventLogChainDAO.STATUS_VERIFIED,
+                    EventLogChainDAO.getInstance().getLastCheckpoint().status);
+            Assertions.assertEquals(-1, EventLogChainDAO.getInstance().getStoppedAt());
+
+            for (ExpandedTamperproofEventLogEntry entry : getEvents(start, runId, adminUser)) {
+                ExpandedTamperproofEventLogEntry.Status expected =
+                        entry.getHumanReadableMessage().equals(runId + "_changed") ?
+                                ExpandedTamperproofEventLogEntry.Status.INVALID :
+                                ExpandedTamperproofEventLogEntry.Status.OK;
+                Assertions.assertEquals(expected, entry.getTamperstampStatus());
+            }
+        } finally {
+            ConfigurationDAO.getInstance().delete(ConfigurationOption.EVENT_LOG_CHAINED);
+        }
+    }
+
+    @Test
+    public void testEntriesAlteredAfterVerificationAreStillDetected()
+            throws Exception {
+        String runId = "rewritten" + System.currentTimeMillis();
+        User adminUser = getAdminUser();
+        long start = System.currentTimeMillis() - 1000;
+
+        ConfigurationDAO.getInstance().set(ConfigurationOption.EVENT_LOG_CHAINED, "Y");
+        try {
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, runId + "_original", true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            Assertions.assertTrue(EventLogChainVerifier.getInstance().verify() >= 1);
+
+            try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                    "UPDATE event_log SET event = ? WHERE event = ?")) {
+                ps.setString(1, runId + "_changed");
+                ps.setString(2, runId + "_original");
+                Assertions.assertEquals(1, ps.executeUpdate());
+            }
+
+            List<ExpandedTamperproofEventLogEntry> events = getEvents(start, runId, adminUser);
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals(ExpandedTamperproofEventLogEntry.Status.INVALID,
+                    events.get(0).getTamperstampStatus());
+        } finally {
+            ConfigurationDAO.getInstance().delete(ConfigurationOption.EVENT_LOG_CHAINED);
+        }
+    }
+
+    @Test
+    public void testEntriesRechainedWithoutTheKeyAreDetected()
+            throws Exception {
+        String runId = "rechained" + System.currentTimeMillis();
+        User adminUser = getAdminUser();
+        long start = System.currentTimeMillis() - 1000;
+
+        ConfigurationDAO.getInstance().set(ConfigurationOption.EVENT_LOG_CHAINED, "Y");
+        try {
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, runId + "_original", true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            Assertions.assertTrue(EventLogChainVerifier.getInstance().verify() >= 1);
+
+            Connection connection = BOMFactory.getCurrentConntection();
+            EventLogChainDAO.ChainedEntry entry;
+            byte[] previousHash;
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT evl.seq_l, evl.chain_b, evl.dt_l, evl.event, evl.item_id, evl.user_id, evl.stamp_b, "
+                    + "prev.chain_b FROM event_log evl LEFT OUTER JOIN event_log prev ON prev.seq_l = evl.seq_l - 1 "
+                    + "WHERE evl.event = ?")) {
+                ps.setString(1, runId + "_original");
+                try (ResultSet rs = ps.executeQuery()) {
+                    Assertions.assertTrue(rs.next());
+                    entry = new EventLogChainDAO.ChainedEntry(rs.getLong(1), rs.getBytes(2), rs.getLong(3),
+                            runId + "_changed", rs.getString(5), rs.getString(6), rs.getBytes(7));
+                    previousHash = entry.sequence == 1 ? EventLogChainTable.GENESIS_HASH : rs.getBytes(8);
+                }
+            }
+            byte[] forgedHash = new LogEventHasher().createChainHash(LogEventHasher.createChainKey("guessed key"),
+                    previousHash, entry.sequence, entry.datetime, entry.event, entry.itemId, entry.userId,
+                    entry.tamperstamp);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE event_log SET event = ?, chain_b = ? WHERE seq_l = ?")) {
+                ps.setString(1, entry.event);
+                ps.setBytes(2, forgedHash);
+                ps.setLong(3, entry.sequence);
+                Assertions.assertEquals(1, ps.executeUpdate());
+            }
+
+            List<ExpandedTamperproofEventLogEntry> events = getEvents(start, runId, adminUser);
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals(ExpandedTamperproofEventLogEntry.Status.INVALID,
+                    events.get(0).getTamperstampStatus());
+        } finally {
+            ConfigurationDAO.getInstance().delete(ConfigurationOption.EVENT_LOG_CHAINED);
+        }
+    }
+
+    @Test
+    public void testChainedEntriesJoinAnOpenTransaction()
+            throws Exception {
+        String runId = "joined" + System.currentTimeMillis();
+        User adminUser = getAdminUser();
+
+        ConfigurationDAO.getInstance().set(ConfigurationOption.EVENT_LOG_CHAINED, "Y");
+        Connection connection = BOMFactory.getCurrentConntection();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                TamperproofEventLogDAO.getInstance().write(Collections.singletonList(
+                        new TamperproofEventLogWriter.PendingEntry(TamperproofEventLog.LOG_LEVEL_REPORTS,
+                                new TamperproofEventLog(adminUser, null, runId, true), null, false)));
+                Assertions.assertFalse(connection.getAutoCommit());
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT COUNT(*) FROM event_log WHERE event = ?")) {
+                ps.setString(1, runId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    Assertions.assertEquals(0, rs.getInt(1));
+                }
+            }
+        } finally {
+            ConfigurationDAO.getInstance().delete(ConfigurationOption.EVENT_LOG_CHAINED);
+        }
+    }
+
+    private List<ExpandedTamperproofEventLogEntry> getEvents(final long start, final String runId,
+                                                             final User adminUser)
+            throws Exception {
+        List<ExpandedTamperproofEventLogEntry> events = new ArrayList<>();
+        for (TamperproofEventLogDAO.EventsForDay day : TamperproofEventLogDAO.getInstance().getEventsForDateRange(
+                start, System.currentTimeMillis() + 1000, null, null, adminUser, true, true)) {
+            for (ExpandedTamperproofEventLogEntry entry : day.getEvents()) {
+                if (entry.getHumanReadableMessage().startsWith(runId)) {
+                    events.add(entry);
+                }
+            }
+        }
+        Assertions.assertFalse(events.isEmpty());
+        return events;
+    }
+}
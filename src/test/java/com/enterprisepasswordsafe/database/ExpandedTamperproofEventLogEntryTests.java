@@ -103,7 +103,7 @@ public class ExpandedTamperproofEventLogEntryTests {
     @Test
     public void testDecodesItemId() throws GeneralSecurityException, IOException, SQLException {
         AccessControl accessControl = Mockito.mock(AccessControl.class);
-        when(accessControlDAO.getReadAccessControl(eq(user), eq(TEST_ITEM_ID))).thenReturn(accessControl);
+        when(accessControlDAO.getReadAccessControl(eq(user), eq(TEST_ITEM_ID), any(KeyMaterialCache.class))).thenReturn(accessControl);
 
         when(password.getUsername()).thenReturn("TEST_PASSWORD_USERNAME");
         when(password.getLocation()).thenReturn("TEST_PASSWORD_LOCATION");
@@ -117,13 +117,13 @@ public class ExpandedTamperproofEventLogEntryTests {
         assertEquals(TEST_ITEM_ID, testInstance.getItemId());
         assertEquals("TEST_PASSWORD_USERNAME @ TEST_PASSWORD_LOCATION", testInstance.getItem());
         assertTrue(testInstance.isHistoryStored());
-        verify(accessControlDAO).getReadAccessControl(eq(user), eq(TEST_ITEM_ID));
+        verify(accessControlDAO).getReadAccessControl(eq(user), eq(TEST_ITEM_ID), any(KeyMaterialCache.class));
     }
 
     @Test
     public void testDoesntCrashWithPasswordDecodingException() throws GeneralSecurityException, IOException, SQLException {
         AccessControl accessControl = Mockito.mock(AccessControl.class);
-        when(accessControlDAO.getReadAccessControl(eq(user), eq(TEST_ITEM_ID))).thenReturn(accessControl);
+        when(accessControlDAO.getReadAccessControl(eq(user), eq(TEST_ITEM_ID), any(KeyMaterialCache.class))).thenReturn(accessControl);
 
         when(passwordUtils.decrypt(eq(accessControl), any(byte[].class))).thenThrow(new GeneralSecurityException("Test Exception"));
         when(resultSet.getString(8)).thenReturn("Y");
@@ -133,7 +133,7 @@ public class ExpandedTamperproofEventLogEntryTests {
         assertEquals(TEST_ITEM_ID, testInstance.getItemId());
         assertEquals("", testInstance.getItem());
         assertTrue(testInstance.isHistoryStored());
-        verify(accessControlDAO).getReadAccessControl(eq(user), eq(TEST_ITEM_ID));
+        verify(accessControlDAO).getReadAccessControl(eq(user), eq(TEST_ITEM_ID), any(KeyMaterialCache.class));
     }
 
     @Test
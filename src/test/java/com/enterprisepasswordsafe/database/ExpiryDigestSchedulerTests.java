@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.database.derived.ExpiringAccessiblePasswords;
+import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test cases for the scheduled expiry summary and the leases which control it.
+ */
+public class ExpiryDigestSchedulerTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testLeaseIsOnlyHeldByOneRunner()
+            throws Exception {
+        String jobId = "test.job." + System.currentTimeMillis();
+        JobLeaseDAO leases = JobLeaseDAO.getInstance();
+
+        Assertions.assertEquals(0, leases.getLastRun(jobId));
+        Assertions.assertTrue(leases.acquire(jobId, 60000, 60000));
+        Assertions.assertFalse(leases.acquire(jobId, 60000, 0));
+
+        leases.complete(jobId);
+        Assertions.assertTrue(leases.getLastRun(jobId) > 0);
+        Assertions.assertFalse(leases.acquire(jobId, 60000, 60000));
+        Assertions.assertTrue(leases.acquire(jobId, 60000, -1));
+    }
+
+    @Test
+    public void testExpiringPasswordsAreReadFromTheSummary()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        User user = UserTestUtils.createUser(adminUser, "digest_" + runId, "digest_" + runId + "@example.com");
+
+        long now = System.currentTimeMillis();
+        Password expired = PasswordTestUtils.createPassword(adminUser, "expired_" + runId, "location",
+                now - TimeUnit.DAYS.toMillis(2));
+        Password expiring = PasswordTestUtils.createPassword(adminUser, "expiring_" + runId, "location",
+                now + TimeUnit.DAYS.toMillis(2));
+        long warningDate = PasswordDAO.getInstance().getExpiryWarningDate();
+        Password nearlyExpiring = PasswordTestUtils.createPassword(adminUser, "nearly_" + runId, "location",
+                warningDate + TimeUnit.MINUTES.toMillis(10));
+        Password later = PasswordTestUtils.createPassword(adminUser, "later_" + runId, "location",
+                now + TimeUnit.DAYS.toMillis(60));
+        for (Password password : new Password[] {expired, expiring, nearlyExpiring, later}) {
+            UserAccessControlDAO.getInstance().create(user, password, PasswordPermission.READ);
+        }
+
+        JobLeaseDAO leases = JobLeaseDAO.getInstance();
+        Assertions.assertTrue(leases.acquire(ExpirySummaryDAO.JOB_ID, 60000, -1));
+        ExpirySummaryDAO.getInstance().rebuild(warningDate);
+        leases.complete(ExpirySummaryDAO.JOB_ID);
+
+        Assertions.assertTrue(ExpirySummaryDAO.getInstance().isCurrent());
+        Assertions.assertEquals(3, ExpirySummaryDAO.getInstance().getPasswordIds(user).size());
+
+        ExpiringAccessiblePasswords result = PasswordDAO.getInstance().getExpiringPasswords(user);
+        Assertions.assertEquals(1, result.getExpired().size());
+        Assertions.assertEquals(expired.getId(), result.getExpired().iterator().next().getId());
+        Assertions.assertEquals(1, result.getExpiring().size());
+        Assertions.assertEquals(expiring.getId(), result.getExpiring().iterator().next().getId());
+
+        ExpirySummaryDAO.Digest digest = null;
+        for (ExpirySummaryDAO.Digest candidate : ExpirySummaryDAO.getInstance().getDigests(now, warningDate)) {
+            if (candidate.userId.equals(user.getId())) {
+                digest = candidate;
+            }
+        }
+        Assertions.assertNotNull(digest);
+        Assertions.assertEquals(1, digest.expired);
+        Assertions.assertEquals(1, digest.expiring);
+    }
+
+    @Test
+    public void testUnindexedPasswordsAreAddedToTheSummary()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        User user = UserTestUtils.createUser(adminUser, "unindexed_" + runId, "unindexed_" + runId + "@example.com");
+
+        long now = System.currentTimeMillis();
+        Password unindexed = PasswordTestUtils.createPassword(adminUser, "unindexed_" + runId, "location",
+                now + TimeUnit.DAYS.toMillis(2));
+        UserAccessControlDAO.getInstance().create(user, unindexed, PasswordPermission.READ);
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "UPDATE passwords SET expiry_l = NULL WHERE password_id = ?")) {
+            ps.setString(1, unindexed.getId());
+            ps.executeUpdate();
+        }
+
+        JobLeaseDAO leases = JobLeaseDAO.getInstance();
+        Assertions.assertTrue(leases.acquire(ExpirySummaryDAO.JOB_ID, 60000, -1));
+        ExpirySummaryDAO.getInstance().rebuild(PasswordDAO.getInstance().getExpiryWarningDate());
+        leases.complete(ExpirySummaryDAO.JOB_ID);
+        Assertions.assertTrue(ExpirySummaryDAO.getInstance().getPasswordIds(user).isEmpty());
+
+        ExpiringAccessiblePasswords result = PasswordDAO.getInstance().getExpiringPasswords(user);
+        Assertions.assertEquals(1, result.getExpiring().size());
+        Assertions.assertEquals(unindexed.getId(), result.getExpiring().iterator().next().getId());
+    }
+
+    @Test
+    public void testDisabledPasswordsAreOnlyListedForAdministrators()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(adminUser);
+        User user = UserTestUtils.createUser(adminUser, "disabled_" + runId, "disabled_" + runId + "@example.com");
+        User administrator = UserTestUtils.createUser(adminUser, "disabledadmin_" + runId,
+                "disabledadmin_" + runId + "@example.com");
+        MembershipDAO.getInstance().create(administrator, adminGroup);
+
+        long now = System.currentTimeMillis();
+        Password disabled = PasswordTestUtils.createPassword(adminUser, "disabled_" + runId, "location",
+                now + TimeUnit.DAYS.toMillis(2));
+        UserAccessControlDAO.getInstance().create(user, disabled, PasswordPermission.READ);
+        UserAccessControlDAO.getInstance().create(administrator, disabled, PasswordPermission.READ);
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "UPDATE passwords SET enabled = 'N' WHERE password_id = ?")) {
+            ps.setString(1, disabled.getId());
+            ps.executeUpdate();
+        }
+
+        JobLeaseDAO leases = JobLeaseDAO.getInstance();
+        Assertions.assertTrue(leases.acquire(ExpirySummaryDAO.JOB_ID, 60000, -1));
+        ExpirySummaryDAO.getInstance().rebuild(PasswordDAO.getInstance().getExpiryWarningDate());
+        leases.complete(ExpirySummaryDAO.JOB_ID);
+
+        Assertions.assertTrue(ExpirySummaryDAO.getInstance().getPasswordIds(user).isEmpty());
+        Assertions.assertTrue(PasswordDAO.getInstance().getExpiringPasswords(user).getExpiring().isEmpty());
+
+        Assertions.assertTrue(ExpirySummaryDAO.getInstance().getPasswordIds(administrator).contains(disabled.getId()));
+        boolean listed = false;
+        for (Password password : PasswordDAO.getInstance().getExpiringPasswords(administrator).getExpiring()) {
+            listed |= password.getId().equals(disabled.getId());
+        }
+        Assertions.assertTrue(listed);
+
+        for (ExpirySummaryDAO.Digest digest : ExpirySummaryDAO.getInstance().getDigests(now,
+                PasswordDAO.getInstance().getExpiryWarningDate())) {
+            Assertions.assertNotEquals(user.getId(), digest.userId);
+            if (digest.userId.equals(administrator.getId())) {
+                Assertions.assertTrue(digest.expiring >= 1);
+            }
+        }
+    }
+}
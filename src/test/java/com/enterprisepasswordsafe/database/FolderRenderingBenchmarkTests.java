@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.database.derived.HierarchyNodeChildren;
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.configuration.DatabasePoolSettings;
+import com.enterprisepasswordsafe.engine.configuration.JDBCConnectionInformation;
+import com.enterprisepasswordsafe.engine.hierarchy.HierarchyTools;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Compares rendering a folder with and without the per request statement cache. Each render
+ * uses a fresh connection, as a request would.
+ */
+public class FolderRenderingBenchmarkTests extends BenchmarkTestBase {
+
+    private static final int PASSWORD_COUNT = 200;
+
+    private static final int FOLDER_COUNT = 20;
+
+    private static final int RENDER_COUNT = 50;
+
+    /**
+     * Embedded Derby prepares statements in-process, so the cache only saved around 4% here when it
+     * was introduced. This only checks the cache doesn't make rendering noticeably slower.
+     */
+
+    private static final double MINIMUM_SPEED_UP = 0.9;
+
+    @Test
+    public void benchmarkFolderRenderingWithAndWithoutStatementCache()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        HierarchyNode folder = HierarchyNodeDAO.getInstance().create("bm_" + runId, HierarchyNode.ROOT_NODE_ID,
+                HierarchyNode.CONTAINER_NODE);
+        for (int i = 0; i < FOLDER_COUNT; i++) {
+            HierarchyNodeDAO.getInstance().create("bm_" + runId + "_" + i, folder.getNodeId(),
+                    HierarchyNode.CONTAINER_NODE);
+        }
+        for (int i = 0; i < PASSWORD_COUNT; i++) {
+            PasswordTestUtils.createPassword(adminUser, "u" + runId + "_" + i, "p" + runId + "_" + i,
+                    "l" + runId, Long.MAX_VALUE, folder.getNodeId());
+        }
+        BOMFactory.closeCurrent();
+
+        Supplier<JDBCConnectionInformation> originalRepository = Repositories.jdbcConfigurationRepository;
+        try {
+            // Warm up the JIT and the database's own statement cache before timing anything.
+            render(originalRepository, false, folder, adminUser);
+            render(originalRepository, true, folder, adminUser);
+
+            long uncachedTime = render(originalRepository, false, folder, adminUser);
+            long cachedTime = render(originalRepository, true, folder, adminUser);
+            assertFaster(uncachedTime, cachedTime, MINIMUM_SPEED_UP);
+        } finally {
+            Repositories.jdbcConfigurationRepository = originalRepository;
+        }
+    }
+
+    /**
+     * Render the folder on a new thread, so it gets a database access manager using the given setting.
+     */
+    private long render(final Supplier<JDBCConnectionInformation> repository, final boolean cacheStatements,
+                        final HierarchyNode folder, final User user)
+            throws Exception {
+        DatabasePoolSettings settings = new DatabasePoolSettings(
+                Collections.singletonMap(DatabasePoolSettings.REQUEST_STATEMENT_CACHE_VARIABLE,
+                        Boolean.toString(cacheStatements))::get);
+        Repositories.jdbcConfigurationRepository = () -> withSettings(repository.get(), settings);
+
+        Callable<Long> renderer = () -> {
+            HierarchyTools hierarchyTools = new HierarchyTools();
+            return time(() -> {
+                for (int i = 0; i < RENDER_COUNT; i++) {
+                    HierarchyNodeChildren children =
+                            hierarchyTools.getChildrenValidForUser(folder, user, true, null, null);
+                    Assertions.assertEquals(FOLDER_COUNT, children.getNodes().size());
+                    Assertions.assertEquals(PASSWORD_COUNT, children.getObjects().size());
+                    BOMFactory.closeCurrent();
+                }
+            });
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            return executor.submit(renderer).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static JDBCConnectionInformation withSettings(final JDBCConnectionInformation information,
+                                                          final DatabasePoolSettings settings) {
+        return new JDBCConnectionInformation() {
+            @Override
+            public boolean isValid() {
+                return information.isValid();
+            }
+
+            @Override
+            public String getDbType() {
+                return information.getDbType();
+            }
+
+            @Override
+            public String getDriver() {
+                return information.getDriver();
+            }
+
+            @Override
+            public String getUrl() {
+                return information.getUrl();
+            }
+
+            @Override
+            public String getUsername() {
+                return information.getUsername();
+            }
+
+            @Override
+            public String getPassword() {
+                return information.getPassword();
+            }
+
+            @Override
+            public DatabasePoolSettings getPoolSettings() {
+                return settings;
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test cases for listing the access rules for a hierarchy node.
+ */
+public class HierarchyNodeAccessRuleDAOTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testUserRulesAreListedForEveryUser()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(adminUser);
+        HierarchyNode node = HierarchyNodeDAO.getInstance().create("rules_" + runId, HierarchyNode.ROOT_NODE_ID,
+                HierarchyNode.CONTAINER_NODE);
+
+        HierarchyNodeAccessRuleDAO dao = HierarchyNodeAccessRuleDAO.getInstance();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            users.add(UserTestUtils.createUser(adminUser, "rules_" + runId + "_" + i));
+        }
+        for (int i = 0; i < 5; i++) {
+            dao.setAccessibleByUser(node, users.get(i), i % 2 == 0 ?
+                    HierarchyNodeAccessRuleDAO.ACCESIBILITY_ALLOWED : HierarchyNodeAccessRuleDAO.ACCESIBILITY_DENIED);
+        }
+
+        Map<String, Byte> rules = new HashMap<>();
+        for (HierarchyNodeAccessRule rule : dao.getAccessibilityRules(node, adminGroup)) {
+            rules.put(rule.getActorId(), rule.getRule());
+        }
+
+        for (int i = 0; i < 5; i++) {
+            byte expected = i % 2 == 0 ?
+                    HierarchyNodeAccessRuleDAO.ACCESIBILITY_ALLOWED : HierarchyNodeAccessRuleDAO.ACCESIBILITY_DENIED;
+            Assertions.assertEquals(Byte.valueOf(expected), rules.get(users.get(i).getId()));
+        }
+        Assertions.assertEquals(Byte.valueOf(HierarchyNodeAccessRuleDAO.ACCESIBILITY_DEFAULT),
+                rules.get(users.get(5).getId()));
+    }
+
+    @Test
+    public void testGroupRulesAreListedForEveryGroup()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        HierarchyNode node = HierarchyNodeDAO.getInstance().create("grouprules_" + runId, HierarchyNode.ROOT_NODE_ID,
+                HierarchyNode.CONTAINER_NODE);
+        Group allowed = GroupDAO.getInstance().create(adminUser, "allowed_" + runId);
+        Group unset = GroupDAO.getInstance().create(adminUser, "unset_" + runId);
+
+        HierarchyNodeAccessRuleDAO dao = HierarchyNodeAccessRuleDAO.getInstance();
+        dao.setAccessibleByGroup(node, allowed.getGroupId(), HierarchyNodeAccessRuleDAO.ACCESIBILITY_ALLOWED);
+
+        Map<String, Byte> rules = new HashMap<>();
+        for (HierarchyNodeAccessRule rule : dao.getGroupAccessibilityRules(node)) {
+            rules.put(rule.getActorId(), rule.getRule());
+        }
+
+        Assertions.assertEquals(Byte.valueOf(HierarchyNodeAccessRuleDAO.ACCESIBILITY_ALLOWED),
+                rules.get(allowed.getGroupId()));
+        Assertions.assertEquals(Byte.valueOf(HierarchyNodeAccessRuleDAO.ACCESIBILITY_DEFAULT),
+                rules.get(unset.getGroupId()));
+    }
+}
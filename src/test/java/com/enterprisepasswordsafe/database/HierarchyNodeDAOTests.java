@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test cases for the HierarchyNodeDAO
+ */
+public class HierarchyNodeDAOTests extends EmbeddedDatabaseTestBase {
+
+    private static final int PASSWORD_COUNT = 10;
+
+    @Test
+    public void testGetAllChildrenObjectsReturnsEveryPasswordInOrder()
+            throws GeneralSecurityException, IOException, SQLException {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        HierarchyNode node = createPopulatedNode(runId, adminUser);
+
+        Set<Password> children = HierarchyNodeDAO.getInstance().getAllChildrenObjects(node, adminUser,
+                Comparator.comparing(Password::getUsername));
+
+        Assertions.assertEquals(PASSWORD_COUNT, children.size());
+        Iterator<Password> iterator = children.iterator();
+        for (int i = 0; i < PASSWORD_COUNT; i++) {
+            Password password = iterator.next();
+            Assertions.assertEquals("u" + runId + "_" + i, password.getUsername());
+            Assertions.assertEquals("p" + runId + "_" + i, password.getPassword());
+        }
+    }
+
+    @Test
+    public void testProcessSubtreeObjectsVisitsEveryLevel()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        HierarchyNode top = HierarchyNodeDAO.getInstance().create("top_" + runId, HierarchyNode.ROOT_NODE_ID,
+                HierarchyNode.CONTAINER_NODE);
+        HierarchyNode populated = createPopulatedNode(runId, adminUser);
+        populated.setParentId(top.getNodeId());
+        HierarchyNodeDAO.getInstance().store(populated);
+
+        List<String> visitedNodes = new ArrayList<>();
+        HierarchyNodeDAO.getInstance().processSubtreeObjects(top, adminUser,
+                (node, aco) -> visitedNodes.add(node.getNodeId()));
+
+        Assertions.assertEquals(PASSWORD_COUNT, visitedNodes.size());
+        for (String nodeId : visitedNodes) {
+            Assertions.assertEquals(populated.getNodeId(), nodeId);
+        }
+    }
+
+    @Test
+    public void testAncestorsFollowMovedNodes()
+            throws GeneralSecurityException, SQLException {
+        String runId = Long.toString(System.currentTimeMillis());
+        HierarchyNodeDAO dao = HierarchyNodeDAO.getInstance();
+        HierarchyNode first = dao.create("first_" + runId, HierarchyNode.ROOT_NODE_ID, HierarchyNode.CONTAINER_NODE);
+        HierarchyNode second = dao.create("second_" + runId, HierarchyNode.ROOT_NODE_ID, HierarchyNode.CONTAINER_NODE);
+        HierarchyNode middle = dao.create("middle_" + runId, first.getNodeId(), HierarchyNode.CONTAINER_NODE);
+        HierarchyNode leaf = dao.create("leaf_" + runId, middle.getNodeId(), HierarchyNode.CONTAINER_NODE);
+
+        assertAncestors(dao.getAncestors(leaf), HierarchyNode.ROOT_NODE_ID, first.getNodeId(), middle.getNodeId());
+
+        middle.setParentId(second.getNodeId());
+        dao.store(middle);
+
+        assertAncestors(dao.getAncestors(leaf), HierarchyNode.ROOT_NODE_ID, second.getNodeId(), middle.getNodeId());
+        Assertions.assertFalse(HierarchyPathDAO.getInstance().isAncestor(first.getNodeId(), leaf.getNodeId()));
+        Assertions.assertTrue(HierarchyPathDAO.getInstance().isAncestor(second.getNodeId(), leaf.getNodeId()));
+        Assertions.assertFalse(dao.isPersonal(leaf.getNodeId()));
+
+        HierarchyPathDAO.getInstance().rebuild();
+        assertAncestors(dao.getAncestors(leaf), HierarchyNode.ROOT_NODE_ID, second.getNodeId(), middle.getNodeId());
+    }
+
+    private void assertAncestors(final List<HierarchyNode> ancestors, final String... expectedIds) {
+        Assertions.assertEquals(expectedIds.length, ancestors.size());
+        for (int i = 0; i < expectedIds.length; i++) {
+            Assertions.assertEquals(expectedIds[i], ancestors.get(i).getNodeId());
+        }
+    }
+
+    private HierarchyNode createPopulatedNode(final String runId, final User adminUser)
+            throws GeneralSecurityException, IOException, SQLException {
+        HierarchyNode node = HierarchyNodeDAO.getInstance().create("node_" + runId, HierarchyNode.ROOT_NODE_ID,
+                HierarchyNode.CONTAINER_NODE);
+        for (int i = PASSWORD_COUNT - 1; i >= 0; i--) {
+            PasswordTestUtils.createPassword(adminUser, "u" + runId + "_" + i, "p" + runId + "_" + i,
+                    "l" + runId, Long.MAX_VALUE, node.getNodeId());
+        }
+        return node;
+    }
+}
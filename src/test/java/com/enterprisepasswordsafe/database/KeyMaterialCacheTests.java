@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.accesscontrol.AccessControl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the KeyMaterialCache
+ */
+public class KeyMaterialCacheTests {
+
+    private static final String USER_ID = "USER_ID";
+    private static final String ITEM_ID = "ITEM_ID";
+
+    @Test
+    public void testKeysAreOnlyFetchedOnceAndClearedOnClose()
+            throws Exception {
+        UserDAO userDAO = Mockito.mock(UserDAO.class);
+        AccessControlDAO accessControlDAO = Mockito.mock(AccessControlDAO.class);
+        Group adminGroup = Mockito.mock(Group.class);
+        User user = Mockito.mock(User.class);
+        AccessControl accessControl = Mockito.mock(AccessControl.class);
+        when(user.getId()).thenReturn(USER_ID);
+        when(userDAO.getByIdDecrypted(eq(USER_ID), eq(adminGroup))).thenReturn(user);
+        when(accessControlDAO.getReadAccessControl(eq(user), eq(ITEM_ID), any(KeyMaterialCache.class)))
+                .thenReturn(accessControl);
+
+        KeyMaterialCache keyMaterialCache = new KeyMaterialCache(userDAO, accessControlDAO);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertSame(user, keyMaterialCache.getDecryptedUser(USER_ID, adminGroup));
+            Assertions.assertSame(accessControl, keyMaterialCache.getReadAccessControl(user, ITEM_ID));
+        }
+        verify(userDAO, times(1)).getByIdDecrypted(eq(USER_ID), eq(adminGroup));
+        verify(accessControlDAO, times(1)).getReadAccessControl(eq(user), eq(ITEM_ID), any(KeyMaterialCache.class));
+
+        keyMaterialCache.close();
+        verify(user).setAccessKey(null);
+    }
+
+    @Test
+    public void testMissingEntriesAreRemembered()
+            throws Exception {
+        UserDAO userDAO = Mockito.mock(UserDAO.class);
+        AccessControlDAO accessControlDAO = Mockito.mock(AccessControlDAO.class);
+        Group adminGroup = Mockito.mock(Group.class);
+
+        try (KeyMaterialCache keyMaterialCache = new KeyMaterialCache(userDAO, accessControlDAO)) {
+            Assertions.assertNull(keyMaterialCache.getDecryptedUser(USER_ID, adminGroup));
+            Assertions.assertNull(keyMaterialCache.getDecryptedUser(USER_ID, adminGroup));
+        }
+        verify(userDAO, times(1)).getByIdDecrypted(eq(USER_ID), eq(adminGroup));
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.internet.AddressException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test cases for the OutboundMailQueue
+ */
+public class OutboundMailQueueTests extends EmbeddedDatabaseTestBase {
+
+    private static final String SENDER = "eps@example.com";
+
+    private SmtpStub smtpStub;
+
+    @BeforeEach
+    public void startSmtpStub()
+            throws IOException, SQLException {
+        smtpStub = new SmtpStub();
+        useSmtpPort(smtpStub.getPort());
+        drainQueue();
+    }
+
+    @AfterEach
+    public void stopSmtpStub()
+            throws IOException, SQLException {
+        ConfigurationDAO.getInstance().delete(ConfigurationOption.SMTP_HOST);
+        ConfigurationDAO.getInstance().delete(ConfigurationOption.SMTP_PORT);
+        smtpStub.close();
+    }
+
+    @Test
+    public void testQueuedMessagesShareOneConnection()
+            throws Exception {
+        OutboundMailQueue queue = OutboundMailQueue.getInstance();
+        long sent = queue.getMessagesSent();
+
+        queue.enqueue(SENDER, Arrays.asList("one@example.com", "two@example.com"), "First", "Body one");
+        queue.enqueue(SENDER, Collections.singletonList("three@example.com"), "Second", "Body two");
+        Assertions.assertEquals(2, queue.getQueueDepth());
+
+        Assertions.assertEquals(2, queue.sendDue());
+
+        Assertions.assertEquals(0, queue.getQueueDepth());
+        Assertions.assertEquals(sent + 2, queue.getMessagesSent());
+        Assertions.assertEquals(1, smtpStub.getConnectionCount());
+        Assertions.assertEquals(2, smtpStub.getMessages().size());
+        Assertions.assertEquals(Arrays.asList("one@example.com", "two@example.com"),
+                smtpStub.getMessages().get(0).recipients);
+        Assertions.assertTrue(smtpStub.getMessages().get(1).data.contains("Body two"));
+    }
+
+    @Test
+    public void testUnsentMessagesAreRetriedLater()
+            throws Exception {
+        OutboundMailQueue queue = OutboundMailQueue.getInstance();
+        long failures = queue.getFailedAttempts();
+        useSmtpPort(getUnusedPort());
+
+        queue.enqueue(SENDER, Collections.singletonList("retry@example.com"), "Retry", "Body");
+        Assertions.assertEquals(1, queue.sendDue());
+
+        Assertions.assertEquals(failures + 1, queue.getFailedAttempts());
+        Assertions.assertEquals(1, queue.getQueueDepth());
+        // The message is not due again until the retry delay has passed.
+        Assertions.assertEquals(0, queue.sendDue());
+    }
+
+    @Test
+    public void testMessagesWithoutRecipientsAreNotQueued()
+            throws Exception {
+        OutboundMailQueue.getInstance().enqueue(SENDER, Arrays.asList("", null), "Nobody", "Body");
+        Assertions.assertEquals(0, OutboundMailQueue.getInstance().getQueueDepth());
+    }
+
+    @Test
+    public void testInvalidRecipientsAreSkipped()
+            throws Exception {
+        OutboundMailQueue queue = OutboundMailQueue.getInstance();
+        queue.enqueue(SENDER, Arrays.asList("not an address@", "valid@example.com"), "Partly", "Body");
+        Assertions.assertEquals(1, queue.getQueueDepth());
+
+        Assertions.assertEquals(1, queue.sendDue());
+        Assertions.assertEquals(Collections.singletonList("valid@example.com"),
+                smtpStub.getMessages().get(0).recipients);
+
+        Assertions.assertThrows(AddressException.class,
+                () -> queue.enqueue(SENDER, Collections.singletonList("not an address@"), "Nobody", "Body"));
+        Assertions.assertEquals(0, queue.getQueueDepth());
+    }
+
+    private void useSmtpPort(final int port)
+            throws SQLException {
+        ConfigurationDAO.getInstance().set(ConfigurationOption.SMTP_HOST, "127.0.0.1");
+        ConfigurationDAO.getInstance().set(ConfigurationOption.SMTP_PORT, Integer.toString(port));
+    }
+
+    private int getUnusedPort()
+            throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void drainQueue()
+            throws SQLException {
+        try (PreparedStatement ps =
+                     BOMFactory.getCurrentConntection().prepareStatement("DELETE FROM mail_queue")) {
+            ps.executeUpdate();
+        }
+    }
+}
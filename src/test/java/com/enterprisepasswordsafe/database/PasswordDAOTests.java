@@ -16,12 +16,16 @@
 
 package com.enterprisepasswordsafe.database;
 
+import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
 import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
@@ -84,4 +88,79 @@ public class PasswordDAOTests extends EmbeddedDatabaseTestBase {
         }
         Assertions.assertTrue(found);
     }
+
+    @Test
+    public void testExpiryIndexFollowsWritesAndUpdates()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        User user = UserTestUtils.createUser(adminUser, "expiry_" + runId);
+        Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId, "l" + runId, Long.MAX_VALUE);
+        UserAccessControlDAO.getInstance().create(user, password, PasswordPermission.READ);
+
+        PasswordDAO pDAO = PasswordDAO.getInstance();
+        Assertions.assertEquals(Long.valueOf(Long.MAX_VALUE), getIndexedExpiry(password.getId()));
+        Assertions.assertFalse(pDAO.hasExpiringPasswords(user));
+
+        long expiry = System.currentTimeMillis() + 60000;
+        Password retrieved = pDAO.getById(adminUser, password.getId());
+        retrieved.setExpiry(expiry);
+        pDAO.update(retrieved, adminUser);
+
+        Assertions.assertEquals(Long.valueOf(retrieved.getExpiry()), getIndexedExpiry(password.getId()));
+        Assertions.assertTrue(pDAO.hasExpiringPasswords(user));
+    }
+
+    @Test
+    public void testUnindexedPasswordsAreIndexedWhenChecked()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        User user = UserTestUtils.createUser(adminUser, "unindexed_" + runId);
+        Group group = GroupDAO.getInstance().create(adminUser, "unindexed_" + runId);
+        MembershipDAO.getInstance().create(user, group);
+        Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId, "l" + runId,
+                System.currentTimeMillis() - 60000);
+        GroupAccessControlDAO.getInstance().create(group, password, PasswordPermission.READ);
+        clearIndexedExpiry(password.getId());
+
+        Assertions.assertNull(getIndexedExpiry(password.getId()));
+        Assertions.assertTrue(PasswordDAO.getInstance().hasExpiringPasswords(user));
+        Assertions.assertEquals(Long.valueOf(password.getExpiry()), getIndexedExpiry(password.getId()));
+    }
+
+    @Test
+    public void testBackfillIndexesReadablePasswords()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId, "l" + runId, Long.MAX_VALUE);
+        clearIndexedExpiry(password.getId());
+
+        PasswordDAO.getInstance().backfillExpiryIndex(adminUser);
+
+        Assertions.assertEquals(Long.valueOf(Long.MAX_VALUE), getIndexedExpiry(password.getId()));
+    }
+
+    private Long getIndexedExpiry(final String passwordId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT expiry_l FROM passwords WHERE password_id = ?")) {
+            ps.setString(1, passwordId);
+            try(ResultSet rs = ps.executeQuery()) {
+                Assertions.assertTrue(rs.next());
+                long expiry = rs.getLong(1);
+                return rs.wasNull() ? null : expiry;
+            }
+        }
+    }
+
+    private void clearIndexedExpiry(final String passwordId)
+            throws SQLException {
+        try(PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "UPDATE passwords SET expiry_l = NULL WHERE password_id = ?")) {
+            ps.setString(1, passwordId);
+            ps.executeUpdate();
+        }
+    }
 }
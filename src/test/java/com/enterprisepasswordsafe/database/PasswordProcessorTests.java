@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Test cases for passing every password a user can access to an action.
+ */
+public class PasswordProcessorTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testEachPasswordIsProcessedOnceInOrder()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        User user = UserTestUtils.createUser(adminUser, "processor_" + runId);
+        Group group = GroupDAO.getInstance().create(adminUser, "processor_" + runId);
+        MembershipDAO.getInstance().create(user, group);
+
+        List<String> direct = new ArrayList<>();
+        List<String> viaGroup = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId + "_" + i, "l" + runId);
+            if (i % 3 != 2) {
+                UserAccessControlDAO.getInstance().create(user, password, PasswordPermission.READ);
+                direct.add(password.getId());
+            }
+            if (i % 3 != 0) {
+                GroupAccessControlDAO.getInstance().create(group, password, PasswordPermission.READ);
+                if (i % 3 == 2) {
+                    viaGroup.add(password.getId());
+                }
+            }
+        }
+
+        List<String> processed = new ArrayList<>();
+        new PasswordProcessor(2).processAllPasswords(user, (node, password) -> {
+            Assertions.assertTrue(password.getUsername().startsWith("u" + runId));
+            processed.add(password.getId());
+        });
+
+        Assertions.assertEquals(direct.size() + viaGroup.size(), processed.size());
+        Assertions.assertEquals(new HashSet<>(direct), new HashSet<>(processed.subList(0, direct.size())));
+        Assertions.assertEquals(new HashSet<>(viaGroup),
+                new HashSet<>(processed.subList(direct.size(), processed.size())));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Compares searching by decrypting every password with searching using the search index.
+ */
+public class PasswordSearchIndexBenchmarkTests extends BenchmarkTestBase {
+
+    private static final int[] PASSWORD_COUNTS = { 10_000, 100_000 };
+
+    private static final String BENCHMARK_ID_PREFIX = "bm";
+
+    /**
+     * The index was around ten times faster at each size when it was introduced.
+     */
+
+    private static final double MINIMUM_SPEED_UP = 5;
+
+    @Test
+    public void benchmarkFullScanAgainstIndex()
+            throws Exception {
+        Supplier<String> originalKeyRepository = Repositories.searchIndexKeyRepository;
+        Repositories.searchIndexKeyRepository = () -> "benchmark-search-index-key";
+        try {
+            User adminUser = getAdminUser();
+            PasswordSearchIndexDAO indexDAO = PasswordSearchIndexDAO.getInstance();
+            indexDAO.rebuild(adminUser);
+
+            Password password = PasswordTestUtils.createPassword(adminUser, "benchmark-user", "benchmark-location");
+
+            for (int count : PASSWORD_COUNTS) {
+                long fullScanTime = timeFullScan(adminUser, password.getId(), count);
+
+                addIndexEntries(indexDAO, count);
+                try {
+                    long indexTime = time(() -> {
+                        Set<String> candidates =
+                                indexDAO.getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "user1234");
+                        Assertions.assertTrue(candidates.contains(BENCHMARK_ID_PREFIX + 1234));
+                    });
+                    assertFaster(fullScanTime, indexTime, MINIMUM_SPEED_UP);
+                } finally {
+                    try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                            "DELETE FROM password_search_index WHERE password_id LIKE '" + BENCHMARK_ID_PREFIX + "%'")) {
+                        ps.executeUpdate();
+                    }
+                }
+            }
+        } finally {
+            Repositories.searchIndexKeyRepository = originalKeyRepository;
+        }
+    }
+
+    /**
+     * Time a full scan, which fetches the access control and decrypts the password for every password.
+     */
+
+    private long timeFullScan(final User adminUser, final String passwordId, final int count)
+            throws Exception {
+        PasswordDAO passwordDAO = PasswordDAO.getInstance();
+        return time(() -> {
+            int matches = 0;
+            for (int i = 0; i < count; i++) {
+                Password password = passwordDAO.getById(adminUser, passwordId);
+                if (password.getUsername().toLowerCase().contains("user1234")) {
+                    matches++;
+                }
+            }
+            Assertions.assertEquals(0, matches);
+        });
+    }
+
+    private void addIndexEntries(final PasswordSearchIndexDAO indexDAO, final int count)
+            throws SQLException, GeneralSecurityException {
+        for (int i = 0; i < count; i++) {
+            indexDAO.addTokens(BENCHMARK_ID_PREFIX + i,
+                    indexDAO.getTokenizer().tokenize(PasswordSearchIndexDAO.USERNAME_FIELD, "user" + i));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.Repositories;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Test cases for the PasswordSearchIndexDAO
+ */
+public class PasswordSearchIndexDAOTests extends EmbeddedDatabaseTestBase {
+
+    private Supplier<String> originalKeyRepository;
+
+    @BeforeEach
+    public void enableIndex() {
+        originalKeyRepository = Repositories.searchIndexKeyRepository;
+        Repositories.searchIndexKeyRepository = () -> "test-search-index-key";
+    }
+
+    @AfterEach
+    public void restoreIndexKey() {
+        Repositories.searchIndexKeyRepository = originalKeyRepository;
+    }
+
+    @Test
+    public void testCandidatesIncludeMatchingPasswords()
+            throws GeneralSecurityException, IOException, SQLException {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        PasswordSearchIndexDAO.getInstance().rebuild(adminUser);
+        Password matching = PasswordTestUtils.createPassword(adminUser, "alpha" + runId, "location");
+        Password other = PasswordTestUtils.createPassword(adminUser, "beta" + runId, "location");
+
+        Set<String> candidates = PasswordSearchIndexDAO.getInstance()
+                .getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "LPHA" + runId);
+
+        Assertions.assertNotNull(candidates);
+        Assertions.assertTrue(candidates.contains(matching.getId()));
+        Assertions.assertFalse(candidates.contains(other.getId()));
+    }
+
+    @Test
+    public void testDeletedPasswordsAreRemoved()
+            throws GeneralSecurityException, IOException, SQLException {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        PasswordSearchIndexDAO.getInstance().rebuild(adminUser);
+        Password password = PasswordTestUtils.createPassword(adminUser, "gamma" + runId, "location");
+
+        PasswordDAO.getInstance().delete(adminUser, password);
+
+        Set<String> candidates = PasswordSearchIndexDAO.getInstance()
+                .getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "gamma" + runId);
+        Assertions.assertFalse(candidates.contains(password.getId()));
+    }
+
+    @Test
+    public void testIndexIsNotUsedWhenDisabled()
+            throws GeneralSecurityException, IOException, SQLException {
+        User adminUser = getAdminUser();
+        PasswordSearchIndexDAO.getInstance().rebuild(adminUser);
+        Repositories.searchIndexKeyRepository = () -> null;
+
+        Assertions.assertNull(PasswordSearchIndexDAO.getInstance()
+                .getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "anything"));
+    }
+
+    @Test
+    public void testWritesWhileDisabledInvalidateTheIndex()
+            throws GeneralSecurityException, IOException, SQLException {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        PasswordSearchIndexDAO.getInstance().rebuild(adminUser);
+
+        Repositories.searchIndexKeyRepository = () -> null;
+        PasswordTestUtils.createPassword(adminUser, "delta" + runId, "location");
+        Repositories.searchIndexKeyRepository = () -> "test-search-index-key";
+
+        Assertions.assertFalse(PasswordSearchIndexDAO.getInstance().isUsable());
+        Assertions.assertNull(PasswordSearchIndexDAO.getInstance()
+                .getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "delta" + runId));
+    }
+
+    @Test
+    public void testShortQueriesAreNotAnswered()
+            throws GeneralSecurityException, IOException, SQLException {
+        PasswordSearchIndexDAO.getInstance().rebuild(getAdminUser());
+
+        Assertions.assertNull(PasswordSearchIndexDAO.getInstance()
+                .getCandidates(PasswordSearchIndexDAO.USERNAME_FIELD, "ab"));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the StatementCache
+ */
+public class StatementCacheTests {
+
+    private static final String SQL = "SELECT 1 FROM objects WHERE id = ?";
+
+    private Connection connection;
+
+    private StatementCache statementCache;
+
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp()
+            throws SQLException {
+        connection = Mockito.mock(Connection.class);
+        when(connection.prepareStatement(anyString()))
+                .thenAnswer(invocation -> {
+                    PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+                    prepared.add(statement);
+                    return statement;
+                });
+        statementCache = new StatementCache(connection);
+    }
+
+    @Test
+    public void testClosedStatementsAreReused()
+            throws SQLException {
+        Connection cachingConnection = statementCache.getConnection();
+        for (int i = 0; i < 3; i++) {
+            try (PreparedStatement ps = cachingConnection.prepareStatement(SQL)) {
+                ps.setString(1, "id" + i);
+                ps.executeQuery();
+                Assertions.assertSame(cachingConnection, ps.getConnection());
+            }
+        }
+
+        verify(connection, times(1)).prepareStatement(SQL);
+        Assertions.assertEquals(2, statementCache.getHitCount());
+        Assertions.assertEquals(1, statementCache.getMissCount());
+    }
+
+    @Test
+    public void testStatementsInUseAreNotShared()
+            throws SQLException {
+        Connection cachingConnection = statementCache.getConnection();
+        try (PreparedStatement outer = cachingConnection.prepareStatement(SQL)) {
+            outer.executeQuery();
+            try (PreparedStatement inner = cachingConnection.prepareStatement(SQL)) {
+                inner.executeQuery();
+            }
+        }
+
+        verify(connection, times(2)).prepareStatement(SQL);
+        verify(prepared.get(0)).executeQuery();
+        verify(prepared.get(1)).executeQuery();
+        // Only one statement is kept for each SQL string, so the one returned last is closed.
+        verify(prepared.get(0)).close();
+        verify(prepared.get(1), never()).close();
+    }
+
+    @Test
+    public void testSettingsArePutBackWhenReturned()
+            throws SQLException {
+        PreparedStatement ps = statementCache.getConnection().prepareStatement(SQL);
+        PreparedStatement statement = prepared.get(0);
+        when(statement.getMaxRows()).thenReturn(0);
+        ps.setMaxRows(1);
+        ps.close();
+        ps.close();
+
+        verify(statement).setMaxRows(1);
+        verify(statement).setMaxRows(0);
+        verify(statement).clearParameters();
+        verify(statement, never()).close();
+        Assertions.assertThrows(SQLException.class, ps::executeQuery);
+    }
+
+    @Test
+    public void testChangedStatementsAreNotReused()
+            throws SQLException {
+        PreparedStatement ps = statementCache.getConnection().prepareStatement(SQL);
+        PreparedStatement statement = prepared.get(0);
+        ps.setCursorName("cursor");
+        ps.close();
+
+        verify(statement).close();
+        statementCache.getConnection().prepareStatement(SQL).close();
+        verify(connection, times(2)).prepareStatement(SQL);
+    }
+
+    @Test
+    public void testClosingTheConnectionClosesCachedStatements()
+            throws SQLException {
+        Connection cachingConnection = statementCache.getConnection();
+        PreparedStatement ps = cachingConnection.prepareStatement(SQL);
+        PreparedStatement statement = prepared.get(0);
+        ps.close();
+
+        cachingConnection.close();
+        verify(statement).close();
+        verify(connection).close();
+    }
+
+    @Test
+    public void testWritesAreDetected() {
+        Assertions.assertFalse(StatementCache.isWrite("SELECT id FROM folders WHERE id = ?"));
+        Assertions.assertFalse(StatementCache.isWrite("  select count(*) from users"));
+        Assertions.assertFalse(StatementCache.isWrite("VALUES 1"));
+        Assertions.assertTrue(StatementCache.isWrite("SELECT id FROM folders WHERE id = ? FOR UPDATE"));
+        Assertions.assertTrue(StatementCache.isWrite("INSERT INTO folders (id) VALUES (?)"));
+        Assertions.assertTrue(StatementCache.isWrite("UPDATE users SET name = ?"));
+        Assertions.assertTrue(StatementCache.isWrite("DELETE FROM folders"));
+    }
+}
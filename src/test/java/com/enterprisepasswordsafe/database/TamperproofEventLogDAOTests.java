@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Test cases for reading the event log with the TamperproofEventLogDAO
+ */
+public class TamperproofEventLogDAOTests extends EmbeddedDatabaseTestBase {
+
+    private static final long FIRST_DATETIME = 1000;
+    private static final long SECOND_DATETIME = 2000;
+    private static final int EVENTS_AT_FIRST_DATETIME = 7;
+    private static final int EVENTS_AT_SECOND_DATETIME = 3;
+    private static final int EVENT_COUNT = EVENTS_AT_FIRST_DATETIME + EVENTS_AT_SECOND_DATETIME;
+
+    @Test
+    public void testPagesAndStreamReturnEveryEventOnce()
+            throws Exception {
+        User adminUser = getAdminUser();
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO event_log(dt_l, user_id, event) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                ps.setLong(1, i < EVENTS_AT_FIRST_DATETIME ? FIRST_DATETIME : SECOND_DATETIME);
+                ps.setString(2, adminUser.getId());
+                ps.setString(3, "paged_" + i);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        TamperproofEventLogDAO dao = TamperproofEventLogDAO.getInstance();
+        Set<String> paged = new HashSet<>();
+        TamperproofEventLogDAO.EventCursor cursor = null;
+        int pages = 0;
+        do {
+            TamperproofEventLogDAO.EventsPage page = dao.getEventsPage(0, SECOND_DATETIME, null, null,
+                    adminUser, true, false, TamperproofEventLogDAO.EventCursor.parse(
+                            cursor == null ? null : cursor.toString()), 3);
+            for (TamperproofEventLogDAO.EventsForDay day : page.getDays()) {
+                for (ExpandedTamperproofEventLogEntry entry : day.getEvents()) {
+                    Assertions.assertTrue(paged.add(entry.getHumanReadableMessage()));
+                }
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        Assertions.assertEquals(EVENT_COUNT, paged.size());
+        Assertions.assertEquals(4, pages);
+
+        Set<String> streamed = new HashSet<>();
+        dao.streamEvents(0, SECOND_DATETIME, null, null, adminUser, true, false,
+                entry -> streamed.add(entry.getHumanReadableMessage()));
+        Assertions.assertEquals(paged, streamed);
+    }
+
+    @Test
+    public void testTokensAreExpandedInPagesAndStreams()
+            throws Exception {
+        User adminUser = getAdminUser();
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(adminUser);
+        String rootName = HierarchyNodeDAO.getInstance().getById(HierarchyNode.ROOT_NODE_ID).getName();
+        long datetime = 3000;
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO event_log(dt_l, user_id, event) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                ps.setLong(1, datetime);
+                ps.setString(2, adminUser.getId());
+                ps.setString(3, "{user:" + adminUser.getId() + "} changed {group:" + adminGroup.getGroupId()
+                        + "} in {node:" + HierarchyNode.ROOT_NODE_ID + "} for {user:missing" + i + "}");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        List<String> messages = new ArrayList<>();
+        TamperproofEventLogDAO.getInstance().streamEvents(datetime, datetime, null, null, adminUser, true, false,
+                entry -> messages.add(entry.getHumanReadableMessage()));
+        Assertions.assertEquals(EVENT_COUNT, messages.size());
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            Assertions.assertTrue(messages.contains(adminUser.getUserName() + " changed " + adminGroup.getGroupName()
+                    + " in " + rootName + " for user with the id missing" + i));
+        }
+    }
+
+    @Test
+    public void testInvalidCursorsAreIgnored() {
+        Assertions.assertNull(TamperproofEventLogDAO.EventCursor.parse(null));
+        Assertions.assertNull(TamperproofEventLogDAO.EventCursor.parse("1000"));
+        Assertions.assertNull(TamperproofEventLogDAO.EventCursor.parse("1000:-1"));
+        Assertions.assertNull(TamperproofEventLogDAO.EventCursor.parse("abc:1"));
+        Assertions.assertEquals("1000:2", TamperproofEventLogDAO.EventCursor.parse("1000:2").toString());
+    }
+
+    @Test
+    public void testBatchesAreWrittenInOneTransaction()
+            throws Exception {
+        String runId = "batch" + System.currentTimeMillis();
+        StringBuilder unwritable = new StringBuilder(runId);
+        while (unwritable.length() < 40000) {
+            unwritable.append(" too long for the event column");
+        }
+        User adminUser = getAdminUser();
+        List<TamperproofEventLogWriter.PendingEntry> batch = new ArrayList<>();
+        batch.add(new TamperproofEventLogWriter.PendingEntry(TamperproofEventLog.LOG_LEVEL_REPORTS,
+                new TamperproofEventLog(adminUser, null, runId, true), null, false));
+        batch.add(new TamperproofEventLogWriter.PendingEntry(TamperproofEventLog.LOG_LEVEL_REPORTS,
+                new TamperproofEventLog(adminUser, null, unwritable.toString(), true), null, false));
+
+        Assertions.assertThrows(SQLException.class, () -> TamperproofEventLogDAO.getInstance().write(batch));
+        Assertions.assertTrue(BOMFactory.getCurrentConntection().getAutoCommit());
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT COUNT(*) FROM event_log WHERE event = ?")) {
+            ps.setString(1, runId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                Assertions.assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+}
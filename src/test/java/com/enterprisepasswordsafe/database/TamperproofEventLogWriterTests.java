@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Test cases for the TamperproofEventLogWriter
+ */
+public class TamperproofEventLogWriterTests extends EmbeddedDatabaseTestBase {
+
+    private static final int EVENT_COUNT = 500;
+
+    @Test
+    public void testEntriesAreWrittenWhenNotStarted()
+            throws GeneralSecurityException, SQLException {
+        String runId = "sync" + System.currentTimeMillis();
+        TamperproofEventLogWriter writer = TamperproofEventLogWriter.getInstance();
+        long synchronousWrites = writer.getSynchronousWrites();
+
+        TamperproofEventLogDAO.getInstance().create(getAdminUser(), null, runId, true,
+                TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+
+        Assertions.assertEquals(1, countEvents(runId));
+        Assertions.assertEquals(synchronousWrites + 1, writer.getSynchronousWrites());
+    }
+
+    @Test
+    public void testQueuedEntriesAreWrittenByTheTimeTheWriterStops()
+            throws GeneralSecurityException, SQLException {
+        String runId = "async" + System.currentTimeMillis();
+        User adminUser = getAdminUser();
+        TamperproofEventLogWriter writer = TamperproofEventLogWriter.getInstance();
+        long entriesWritten = writer.getEntriesWritten();
+
+        writer.start();
+        try {
+            for (int i = 0; i < EVENT_COUNT; i++) {
+                TamperproofEventLogDAO.getInstance().create(adminUser, null, runId, true,
+                        TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            }
+        } finally {
+            writer.stop();
+        }
+
+        Assertions.assertEquals(EVENT_COUNT, countEvents(runId));
+        Assertions.assertEquals(0, writer.getQueueDepth());
+        Assertions.assertEquals(entriesWritten + EVENT_COUNT, writer.getEntriesWritten());
+    }
+
+    @Test
+    public void testEntriesTheWriterCanNotWriteAreKept()
+            throws GeneralSecurityException, SQLException, InterruptedException {
+        String runId = "kept" + System.currentTimeMillis();
+        StringBuilder unwritable = new StringBuilder(runId);
+        while (unwritable.length() < 40000) {
+            unwritable.append(" too long for the event column");
+        }
+        User adminUser = getAdminUser();
+        TamperproofEventLogWriter writer = TamperproofEventLogWriter.getInstance();
+
+        writer.start();
+        try {
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, unwritable.toString(), true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            long giveUpAt = System.currentTimeMillis() + 15000;
+            while (writer.getUnwrittenCount() == 0 && System.currentTimeMillis() < giveUpAt) {
+                Thread.sleep(100);
+            }
+            Assertions.assertEquals(1, writer.getUnwrittenCount());
+
+            long synchronousWrites = writer.getSynchronousWrites();
+            TamperproofEventLogDAO.getInstance().create(adminUser, null, runId, true,
+                    TamperproofEventLog.LOG_LEVEL_REPORTS, false);
+            Assertions.assertEquals(1, countEvents(runId));
+            Assertions.assertEquals(synchronousWrites + 1, writer.getSynchronousWrites());
+            Assertions.assertEquals(1, writer.getUnwrittenCount());
+        } finally {
+            writer.stop();
+        }
+        Assertions.assertEquals(0, writer.getUnwrittenCount());
+    }
+
+    private int countEvents(final String event)
+            throws SQLException {
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT COUNT(*) FROM event_log WHERE event = ?")) {
+            ps.setString(1, event);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
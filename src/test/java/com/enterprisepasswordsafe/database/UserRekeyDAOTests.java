@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.database;
+
+import com.enterprisepasswordsafe.engine.accesscontrol.PasswordPermission;
+import com.enterprisepasswordsafe.engine.accesscontrol.UserAccessControl;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import com.enterprisepasswordsafe.engine.tests.utils.UserTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test cases for re-encrypting a users access controls with a new access key.
+ */
+public class UserRekeyDAOTests extends EmbeddedDatabaseTestBase {
+
+    @Test
+    public void testInterruptedRekeyResumesFromMarker()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(adminUser);
+        User user = UserTestUtils.createUser(adminUser, "rekey_" + runId);
+        List<Password> passwords = createPasswords(user, runId, 7);
+
+        UserRekeyDAO dao = new UserRekeyDAO(3);
+        UserRekeyDAO.RekeyProgress progress = dao.startOrResume(user, adminGroup);
+        Assertions.assertEquals(7, progress.getItemsTotal());
+        Assertions.assertTrue(dao.rekeyNextChunk(user, progress));
+        assertReadable(user, passwords);
+
+        UserRekeyDAO.RekeyProgress resumed = dao.startOrResume(user, adminGroup);
+        Assertions.assertEquals(3, resumed.getItemsDone());
+        Assertions.assertEquals(progress.getLastItemId(), resumed.getLastItemId());
+        Assertions.assertEquals(progress.getPendingKey(), resumed.getPendingKey());
+
+        SecretKey newKey = dao.rekeyAccessControls(user, adminGroup);
+        Assertions.assertEquals(progress.getPendingKey(), newKey);
+        Assertions.assertEquals(7, dao.get(user.getId()).getItemsDone());
+        assertReadable(user, passwords);
+
+        dao.complete(user, newKey);
+        user.setAccessKey(newKey);
+        assertReadable(user, passwords);
+        Assertions.assertNull(dao.get(user.getId()));
+    }
+
+    @Test
+    public void testAccessControlsWrittenDuringRekeyAreRekeyed()
+            throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        Group adminGroup = GroupDAO.getInstance().getAdminGroup(adminUser);
+        User user = UserTestUtils.createUser(adminUser, "rekey_changed_" + runId);
+        List<Password> passwords = createPasswords(user, runId, 7);
+
+        UserRekeyDAO dao = new UserRekeyDAO(3);
+        UserRekeyDAO.RekeyProgress progress = dao.startOrResume(user, adminGroup);
+        Assertions.assertTrue(dao.rekeyNextChunk(user, progress));
+
+        Password changed = null;
+        for (Password password : passwords) {
+            if (password.getId().compareTo(progress.getLastItemId()) <= 0
+                    && UserAccessControlDAO.getInstance().get(user, password).getModifyKey() != null) {
+                changed = password;
+                break;
+            }
+        }
+        Assertions.assertNotNull(changed);
+        UserAccessControlDAO.getInstance().delete(UserAccessControlDAO.getInstance().get(user, changed));
+        UserAccessControlDAO.getInstance().create(user, changed, PasswordPermission.READ);
+
+        SecretKey newKey = dao.rekeyAccessControls(user, adminGroup);
+        passwords.addAll(createPasswords(user, runId + "_late", 2));
+
+        dao.complete(user, newKey);
+        user.setAccessKey(newKey);
+        for (Password password : passwords) {
+            UserAccessControl uac = UserAccessControlDAO.getInstance().get(user, password);
+            Assertions.assertNotNull(uac);
+            Assertions.assertEquals(password.getReadKey(), uac.getReadKey());
+            if (password == changed) {
+                Assertions.assertNull(uac.getModifyKey());
+            }
+        }
+    }
+
+    private List<Password> createPasswords(final User user, final String runId, final int count)
+            throws Exception {
+        User adminUser = getAdminUser();
+        List<Password> passwords = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Password password = PasswordTestUtils.createPassword(adminUser, "u" + runId + "_" + i, "rekey_" + runId);
+            UserAccessControlDAO.getInstance().create(user, password,
+                    i % 2 == 0 ? PasswordPermission.MODIFY : PasswordPermission.READ);
+            passwords.add(password);
+        }
+        return passwords;
+    }
+
+    private void assertReadable(final User user, final List<Password> passwords)
+            throws Exception {
+        for (int i = 0; i < passwords.size(); i++) {
+            UserAccessControl uac = UserAccessControlDAO.getInstance().get(user, passwords.get(i));
+            Assertions.assertNotNull(uac);
+            Assertions.assertEquals(passwords.get(i).getReadKey(), uac.getReadKey());
+            Assertions.assertEquals(i % 2 == 0, uac.getModifyKey() != null);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database.dbpool;
+
+import com.enterprisepasswordsafe.database.vendorspecific.SupportedDatabase;
+import com.enterprisepasswordsafe.engine.configuration.DatabasePoolSettings;
+import com.enterprisepasswordsafe.engine.configuration.JDBCConnectionInformation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test cases for the DatabasePool
+ */
+public class DatabasePoolTests {
+
+    private static JDBCConnectionInformation createConnectionInformation(final DatabasePoolSettings settings) {
+        return new JDBCConnectionInformation() {
+            @Override
+            public boolean isValid() {
+                return true;
+            }
+
+            @Override
+            public String getDbType() {
+                return SupportedDatabase.APACHE_DERBY.getType();
+            }
+
+            @Override
+            public String getDriver() {
+                return "org.apache.derby.jdbc.EmbeddedDriver";
+            }
+
+            @Override
+            public String getUrl() {
+                return "jdbc:derby:memory:poolTestDB;create=true";
+            }
+
+            @Override
+            public String getUsername() {
+                return "";
+            }
+
+            @Override
+            public String getPassword() {
+                return "";
+            }
+
+            @Override
+            public DatabasePoolSettings getPoolSettings() {
+                return settings;
+            }
+        };
+    }
+
+    @Test
+    public void testSettingsFallBackToDefaults() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put(DatabasePoolSettings.MAX_TOTAL_VARIABLE, "50");
+        variables.put(DatabasePoolSettings.MAX_WAIT_VARIABLE, "soon");
+        variables.put(DatabasePoolSettings.POOL_STATEMENTS_VARIABLE, "false");
+        DatabasePoolSettings settings = new DatabasePoolSettings(variables::get);
+
+        Assertions.assertEquals(50, settings.getMaxTotal());
+        Assertions.assertEquals(DatabasePoolSettings.DEFAULTS.getMaxWaitMillis(), settings.getMaxWaitMillis());
+        Assertions.assertEquals(DatabasePoolSettings.DEFAULTS.getMinIdle(), settings.getMinIdle());
+        Assertions.assertFalse(settings.isPoolPreparedStatements());
+        Assertions.assertTrue(DatabasePoolSettings.DEFAULTS.isPoolPreparedStatements());
+    }
+
+    @Test
+    public void testRequestStatementCacheFitsInTheStatementPool() {
+        Assertions.assertEquals(50, DatabasePoolSettings.DEFAULTS.getRequestStatementCacheSize(64));
+
+        Map<String, String> variables = new HashMap<>();
+        variables.put(DatabasePoolSettings.MAX_OPEN_STATEMENTS_VARIABLE, "500");
+        Assertions.assertEquals(64, new DatabasePoolSettings(variables::get).getRequestStatementCacheSize(64));
+
+        variables.put(DatabasePoolSettings.MAX_OPEN_STATEMENTS_VARIABLE, "1");
+        Assertions.assertEquals(0, new DatabasePoolSettings(variables::get).getRequestStatementCacheSize(64));
+
+        variables.put(DatabasePoolSettings.POOL_STATEMENTS_VARIABLE, "false");
+        Assertions.assertEquals(64, new DatabasePoolSettings(variables::get).getRequestStatementCacheSize(64));
+
+        variables.put(DatabasePoolSettings.REQUEST_STATEMENT_CACHE_VARIABLE, "false");
+        Assertions.assertEquals(0, new DatabasePoolSettings(variables::get).getRequestStatementCacheSize(64));
+    }
+
+    @Test
+    public void testPoolLimitsAndMetrics()
+            throws SQLException, ClassNotFoundException {
+        Map<String, String> variables = new HashMap<>();
+        variables.put(DatabasePoolSettings.MAX_TOTAL_VARIABLE, "2");
+        variables.put(DatabasePoolSettings.MIN_IDLE_VARIABLE, "0");
+        variables.put(DatabasePoolSettings.MAX_WAIT_VARIABLE, "100");
+        variables.put(DatabasePoolSettings.VALIDATION_QUERY_VARIABLE, "VALUES 1");
+        DatabasePoolSettings settings = new DatabasePoolSettings(variables::get);
+
+        String poolName = "pool-tests";
+        try (DatabasePool pool = new DatabasePool(createConnectionInformation(settings), poolName, false)) {
+            Assertions.assertTrue(pool.isConfigured());
+            try (Connection first = pool.getConnection();
+                 Connection second = DatabasePool.getConnection(poolName)) {
+                Assertions.assertNotSame(first, second);
+                DatabasePool.Metrics metrics = pool.getMetrics();
+                Assertions.assertEquals(2, metrics.getActive());
+                Assertions.assertEquals(0, metrics.getIdle());
+                Assertions.assertEquals(2, metrics.getMaxTotal());
+
+                Assertions.assertThrows(SQLException.class, pool::getConnection);
+            }
+
+            DatabasePool.Metrics metrics = pool.getMetrics();
+            Assertions.assertEquals(0, metrics.getActive());
+            Assertions.assertEquals(2, metrics.getIdle());
+            Assertions.assertEquals(1, metrics.getBorrowTimeouts());
+            Assertions.assertEquals(3, metrics.getBorrowTimes().getCount());
+            Assertions.assertTrue(metrics.getMaxBorrowWaitMillis() >= 100);
+        }
+    }
+}
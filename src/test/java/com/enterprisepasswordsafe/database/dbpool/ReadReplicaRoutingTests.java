@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.database.dbpool;
+
+import com.enterprisepasswordsafe.database.BOMFactory;
+import com.enterprisepasswordsafe.database.vendorspecific.SupportedDatabase;
+import com.enterprisepasswordsafe.engine.configuration.GenericJDBCConnectionInformation;
+import com.enterprisepasswordsafe.engine.configuration.TestJDBCConfiguration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Test cases for routing reads to the read replica. A second in-memory database stands in for
+ * the replica, so which database answered a query can be told from the data it returns.
+ */
+public class ReadReplicaRoutingTests {
+
+    private static final String TABLE_NAME = "replica_routing_test";
+
+    private static DatabasePool replica;
+
+    @BeforeAll
+    public static void setUpReplica() throws Exception {
+        TestJDBCConfiguration.forceTestingConfiguration();
+
+        GenericJDBCConnectionInformation replicaInformation = new GenericJDBCConnectionInformation();
+        replicaInformation.dbType = SupportedDatabase.APACHE_DERBY.getType();
+        replicaInformation.driver = "org.apache.derby.jdbc.EmbeddedDriver";
+        replicaInformation.url = "jdbc:derby:memory:replicaDB;create=true";
+        replicaInformation.username = "";
+        replicaInformation.password = "";
+
+        try (Connection connection = DriverManager.getConnection(replicaInformation.url);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + TABLE_NAME + " (id VARCHAR(36))");
+        }
+        try (Statement statement = BOMFactory.getCurrentConntection().createStatement()) {
+            statement.execute("CREATE TABLE " + TABLE_NAME + " (id VARCHAR(36))");
+        }
+        BOMFactory.closeCurrent();
+
+        replica = new DatabasePool(replicaInformation, DatabasePool.REPLICA_POOL_NAME, true);
+    }
+
+    @AfterAll
+    public static void tearDownReplica() {
+        BOMFactory.closeCurrent();
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    @AfterEach
+    public void closeConnections() {
+        BOMFactory.closeCurrent();
+    }
+
+    @Test
+    public void testReadsMoveToThePrimaryAfterAWrite() throws SQLException {
+        String id = UUID.randomUUID().toString();
+
+        Assertions.assertFalse(contains(BOMFactory.getReadConnection(), id));
+        Assertions.assertTrue(BOMFactory.getReadConnection().isReadOnly());
+
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "INSERT INTO " + TABLE_NAME + " (id) VALUES (?)")) {
+            ps.setString(1, id);
+            ps.executeUpdate();
+        }
+        Assertions.assertTrue(BOMFactory.getInstance().hasWritten());
+        Assertions.assertSame(BOMFactory.getCurrentConntection(), BOMFactory.getReadConnection());
+        Assertions.assertTrue(contains(BOMFactory.getReadConnection(), id));
+
+        BOMFactory.closeCurrent();
+        Assertions.assertFalse(contains(BOMFactory.getReadConnection(), id));
+    }
+
+    @Test
+    public void testReadsBeforeAWriteUseTheReplica() throws SQLException {
+        String id = UUID.randomUUID().toString();
+
+        try (PreparedStatement ps = BOMFactory.getCurrentConntection().prepareStatement(
+                "SELECT id FROM " + TABLE_NAME + " WHERE id = ?")) {
+            ps.setString(1, id);
+            ps.executeQuery().close();
+        }
+        Assertions.assertFalse(BOMFactory.getInstance().hasWritten());
+        Assertions.assertNotSame(BOMFactory.getCurrentConntection(), BOMFactory.getReadConnection());
+    }
+
+    @Test
+    public void testPinningReadsToThePrimary() throws SQLException {
+        BOMFactory.getInstance().pinToPrimary();
+        Assertions.assertSame(BOMFactory.getCurrentConntection(), BOMFactory.getReadConnection());
+
+        BOMFactory.closeCurrent();
+        Assertions.assertNotSame(BOMFactory.getCurrentConntection(), BOMFactory.getReadConnection());
+    }
+
+    @Test
+    public void testReplicaConnectionsAreReadOnly() {
+        Assertions.assertThrows(SQLException.class, () -> {
+            try (PreparedStatement ps = BOMFactory.getReadConnection().prepareStatement(
+                    "INSERT INTO " + TABLE_NAME + " (id) VALUES ('x')")) {
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    private static boolean contains(final Connection connection, final String id) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT id FROM " + TABLE_NAME + " WHERE id = ?")) {
+            ps.setString(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+
+package com.enterprisepasswordsafe.engine.jaas;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.LdapContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test cases for the LDAPConnectionPool
+ */
+public class LDAPConnectionPoolTests {
+
+    private static final String SEARCH_BASE = "ou=People,dc=example,dc=com";
+    private static final String FILTER = "(uid=user)";
+    private static final String USER_DN = "uid=user," + SEARCH_BASE;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    private final List<LdapContext> contexts = new ArrayList<>();
+
+    private LDAPConnectionPool createPool() {
+        Map<String, Object> environment = new HashMap<>();
+        environment.put(Context.PROVIDER_URL, "ldap://localhost:389/");
+        return new LDAPConnectionPool(environment, env -> {
+            LdapContext context = Mockito.mock(LdapContext.class);
+            contexts.add(context);
+            return context;
+        }, now::get);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void returnSearchResult(LdapContext context)
+            throws NamingException {
+        NamingEnumeration<SearchResult> results = Mockito.mock(NamingEnumeration.class);
+        when(results.hasMore()).thenReturn(true, false);
+        when(results.next()).thenReturn(new SearchResult(USER_DN, null, null));
+        when(context.search(anyString(), anyString(), any(SearchControls.class))).thenReturn(results);
+    }
+
+    @Test
+    public void testBindsReuseTheSameConnection()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        for (int i = 0; i < 3; i++) {
+            pool.authenticate(USER_DN, "password");
+        }
+
+        Assertions.assertEquals(1, contexts.size());
+        Assertions.assertEquals(1, pool.getOpenedCount());
+        Assertions.assertEquals(2, pool.getReusedCount());
+        LdapContext context = contexts.get(0);
+        verify(context, times(3)).addToEnvironment(Context.SECURITY_PRINCIPAL, USER_DN);
+        verify(context, times(3)).reconnect(null);
+        verify(context, times(3)).removeFromEnvironment(Context.SECURITY_CREDENTIALS);
+        verify(context, never()).close();
+    }
+
+    @Test
+    public void testRejectedBindKeepsTheConnection()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        pool.authenticate(USER_DN, "password");
+        doThrow(new AuthenticationException("Invalid credentials")).when(contexts.get(0)).reconnect(null);
+
+        Assertions.assertThrows(AuthenticationException.class, () -> pool.authenticate(USER_DN, "wrong"));
+        Assertions.assertEquals(1, pool.getIdleCount());
+        verify(contexts.get(0), never()).close();
+    }
+
+    @Test
+    public void testBrokenConnectionIsDiscarded()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        pool.authenticate(USER_DN, "password");
+        doThrow(new CommunicationException("Connection reset")).when(contexts.get(0)).reconnect(null);
+
+        Assertions.assertThrows(CommunicationException.class, () -> pool.authenticate(USER_DN, "password"));
+        Assertions.assertEquals(0, pool.getIdleCount());
+        verify(contexts.get(0)).close();
+
+        pool.authenticate(USER_DN, "password");
+        Assertions.assertEquals(2, contexts.size());
+    }
+
+    @Test
+    public void testSearchResultsAreCached()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        pool.authenticate(USER_DN, "password");
+        LdapContext context = contexts.get(0);
+        returnSearchResult(context);
+
+        Assertions.assertFalse(pool.isCached(SEARCH_BASE, FILTER));
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals(Collections.singletonList(USER_DN),
+                    pool.search(SEARCH_BASE, FILTER, new SearchControls(), SearchResult::getName));
+        }
+        Assertions.assertTrue(pool.isCached(SEARCH_BASE, FILTER));
+        verify(context, times(1)).search(eq(SEARCH_BASE), eq(FILTER), any(SearchControls.class));
+        // The connection was bound as the user, so the pool identity is restored before the search.
+        verify(context).removeFromEnvironment(Context.SECURITY_PRINCIPAL);
+
+        pool.forget(SEARCH_BASE, FILTER);
+        pool.search(SEARCH_BASE, FILTER, new SearchControls(), SearchResult::getName);
+        verify(context, times(2)).search(eq(SEARCH_BASE), eq(FILTER), any(SearchControls.class));
+        Assertions.assertEquals(1, contexts.size());
+    }
+
+    @Test
+    public void testIdleConnectionsAreValidatedBeforeReuse()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        pool.authenticate(USER_DN, "password");
+        LdapContext context = contexts.get(0);
+        when(context.getAttributes(eq(""), any(String[].class))).thenThrow(new CommunicationException("Gone"));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        pool.authenticate(USER_DN, "password");
+        verify(context, never()).getAttributes(eq(""), any(String[].class));
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        pool.authenticate(USER_DN, "password");
+        verify(context).getAttributes(eq(""), any(String[].class));
+        verify(context).close();
+        Assertions.assertEquals(2, contexts.size());
+    }
+
+    @Test
+    public void testLongIdleConnectionsAreClosed()
+            throws NamingException {
+        LDAPConnectionPool pool = createPool();
+        pool.authenticate(USER_DN, "password");
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(10));
+        pool.closeExpired();
+        Assertions.assertEquals(0, pool.getIdleCount());
+        verify(contexts.get(0)).close();
+    }
+}
@@ -16,10 +16,13 @@
 
 package com.enterprisepasswordsafe.engine.tests.utils;
 
+import com.enterprisepasswordsafe.database.GroupDAO;
+import com.enterprisepasswordsafe.database.HierarchyNode;
 import com.enterprisepasswordsafe.database.Password;
 import com.enterprisepasswordsafe.database.PasswordDAO;
 import com.enterprisepasswordsafe.database.User;
 import com.enterprisepasswordsafe.engine.accesscontrol.UserAccessControl;
+import com.enterprisepasswordsafe.engine.passwords.AuditingLevel;
 
 import java.io.IOException;
 import java.security.GeneralSecurityException;
@@ -54,4 +57,55 @@ public final class PasswordTestUtils {
         UserAccessControl uac = pDAO.storeNewPassword(newPassword, adminUser);
         return uac.getItemId();
     }
+
+    /**
+     * Create an unaudited system password, owned by the admin group, in the top level of the hierarchy
+     * which doesn't expire.
+     *
+     * @param adminUser The administrator creating the password.
+     * @param username The username for the password.
+     * @param location The location for the password.
+     *
+     * @return The created password.
+     */
+    public static Password createPassword(final User adminUser, final String username, final String location)
+            throws GeneralSecurityException, IOException, SQLException {
+        return createPassword(adminUser, username, location, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create an unaudited system password, owned by the admin group, in the top level of the hierarchy.
+     *
+     * @param adminUser The administrator creating the password.
+     * @param username The username for the password.
+     * @param location The location for the password.
+     * @param expiry The expiry date for the password.
+     *
+     * @return The created password.
+     */
+    public static Password createPassword(final User adminUser, final String username, final String location,
+                                          final long expiry)
+            throws GeneralSecurityException, IOException, SQLException {
+        return createPassword(adminUser, username, "password", location, expiry, HierarchyNode.ROOT_NODE_ID);
+    }
+
+    /**
+     * Create an unaudited system password owned by the admin group.
+     *
+     * @param adminUser The administrator creating the password.
+     * @param username The username for the password.
+     * @param password The password itself.
+     * @param location The location for the password.
+     * @param expiry The expiry date for the password.
+     * @param parentNodeId The ID of the node the password is stored under.
+     *
+     * @return The created password.
+     */
+    public static Password createPassword(final User adminUser, final String username, final String password,
+                                          final String location, final long expiry, final String parentNodeId)
+            throws GeneralSecurityException, IOException, SQLException {
+        return PasswordDAO.getInstance().create(adminUser, GroupDAO.getInstance().getAdminGroup(adminUser),
+                username, password, location, "notes", AuditingLevel.NONE, false, expiry, parentNodeId,
+                null, false, 0, 0, Password.TYPE_SYSTEM, null);
+    }
 }
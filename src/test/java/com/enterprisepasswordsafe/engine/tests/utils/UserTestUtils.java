@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.engine.tests.utils;
+
+import com.enterprisepasswordsafe.database.GroupDAO;
+import com.enterprisepasswordsafe.database.User;
+import com.enterprisepasswordsafe.database.UserDAO;
+
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+
+/**
+ * Utility methods supporting user manipulation
+ */
+public final class UserTestUtils {
+
+    /**
+     * The login password given to users created by these methods.
+     */
+
+    public static final String PASSWORD = "password";
+
+    /**
+     * Do not instantiate
+     */
+
+    private UserTestUtils() {
+        super();
+    }
+
+    /**
+     * Create a user without an Email address.
+     *
+     * @param adminUser The administrator creating the user.
+     * @param username The username for the user.
+     *
+     * @return The created user.
+     */
+    public static User createUser(final User adminUser, final String username)
+            throws GeneralSecurityException, SQLException {
+        return createUser(adminUser, username, null);
+    }
+
+    /**
+     * Create a user.
+     *
+     * @param adminUser The administrator creating the user.
+     * @param username The username for the user.
+     * @param email The Email address for the user.
+     *
+     * @return The created user.
+     */
+    public static User createUser(final User adminUser, final String username, final String email)
+            throws GeneralSecurityException, SQLException {
+        User user = new User(username, PASSWORD, "Test User", email);
+        UserDAO.getInstance().write(user, GroupDAO.getInstance().getAdminGroup(adminUser), PASSWORD);
+        return user;
+    }
+}
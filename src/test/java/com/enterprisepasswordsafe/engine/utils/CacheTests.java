@@ -0,0 +1,77 @@
+package com.enterprisepasswordsafe.engine.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CacheTests {
+
+    @Test
+    public void testPutThenGetReturnsValue() {
+        Cache<String, String> cache = new Cache<>();
+        cache.put("key", "value");
+        Assertions.assertEquals("value", cache.get("key"));
+        Assertions.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testMissingKeyIsCountedAsMiss() {
+        Cache<String, String> cache = new Cache<>();
+        Assertions.assertNull(cache.get("key"));
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testRemoveDropsValue() {
+        Cache<String, String> cache = new Cache<>();
+        cache.put("key", "value");
+        cache.remove("key");
+        Assertions.assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        Cache<Integer, Integer> cache = new Cache<>(32);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        Assertions.assertTrue(cache.size() <= 32);
+        Assertions.assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreNotReturned() throws InterruptedException {
+        Cache<String, String> cache = new Cache<>(10, 1);
+        cache.put("key", "value");
+        Thread.sleep(10);
+        Assertions.assertNull(cache.get("key"));
+        Assertions.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLoaderIsOnlyCalledOnMiss() {
+        Cache<String, String> cache = new Cache<>();
+        Assertions.assertEquals("KEY", cache.get("key", String::toUpperCase));
+        Assertions.assertEquals("KEY", cache.get("key", key -> "not expected"));
+        Assertions.assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    public void testNullFromLoaderIsNotCached() {
+        Cache<String, String> cache = new Cache<>();
+        Assertions.assertNull(cache.get("key", key -> null));
+        Assertions.assertEquals("value", cache.get("key", key -> "value"));
+        Assertions.assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    public void testValueLoadedDuringRemoveIsNotCached() {
+        Cache<String, String> cache = new Cache<>();
+        Assertions.assertEquals("old value", cache.get("key", key -> {
+            cache.remove(key);
+            return "old value";
+        }));
+        Assertions.assertNull(cache.get("key"));
+        Assertions.assertEquals("new value", cache.get("key", key -> "new value"));
+        Assertions.assertEquals("new value", cache.get("key"));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Carbon Security Ltd. <opensource@carbonsecurity.co.uk>
+ *
+ * Permission to use, copy, modify, and distribute this software for any
+ * purpose with or without fee is hereby granted, provided that the above
+ * copyright notice and this permission notice appear in all copies.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS" AND THE AUTHOR DISCLAIMS ALL WARRANTIES
+ * WITH REGARD TO THIS SOFTWARE INCLUDING ALL IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS. IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR
+ * ANY SPECIAL, DIRECT, INDIRECT, OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES
+ * WHATSOEVER RESULTING FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN
+ * ACTION OF CONTRACT, NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF
+ * OR IN CONNECTION WITH THE USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package com.enterprisepasswordsafe.engine.utils;
+
+import com.enterprisepasswordsafe.database.EmbeddedDatabaseTestBase;
+import com.enterprisepasswordsafe.database.HierarchyNode;
+import com.enterprisepasswordsafe.database.HierarchyNodeDAO;
+import com.enterprisepasswordsafe.database.User;
+import com.enterprisepasswordsafe.database.actions.PasswordSearchAction;
+import com.enterprisepasswordsafe.engine.tests.utils.PasswordTestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+/**
+ * Test cases for searching the hierarchy with the shared HierarchySearcher.
+ */
+public class HierarchySearcherTests extends EmbeddedDatabaseTestBase {
+
+    private static final int FOLDER_COUNT = 6;
+
+    @Test
+    public void testSearchFindsPasswordsInEveryFolder() throws Exception {
+        String runId = Long.toString(System.currentTimeMillis());
+        User adminUser = getAdminUser();
+        HierarchyNodeDAO hnDAO = HierarchyNodeDAO.getInstance();
+
+        HierarchyNode top = hnDAO.create("search_" + runId, HierarchyNode.ROOT_NODE_ID, HierarchyNode.CONTAINER_NODE);
+        for (int i = 0; i < FOLDER_COUNT; i++) {
+            HierarchyNode folder = hnDAO.create("folder_" + i, top.getNodeId(), HierarchyNode.CONTAINER_NODE);
+            PasswordTestUtils.createPassword(adminUser, "u" + runId + "_" + i, "p" + i, "l" + runId,
+                    Long.MAX_VALUE, folder.getNodeId());
+        }
+
+        PasswordSearchAction search = new PasswordSearchAction(adminUser,
+                Collections.singletonList(password -> ("l" + runId).equals(password.getLocation())));
+        HierarchySearcher.getInstance().searchHierarchy(hnDAO, top, adminUser, search, true);
+
+        Assertions.assertEquals(FOLDER_COUNT, search.getResultCount());
+        Assertions.assertEquals(FOLDER_COUNT, search.getResults().size());
+    }
+}